@@ -364,6 +364,9 @@ export function ClusterSetup() {
   const installModalLogRef = useRef<HTMLDivElement>(null);
   const installTaskPollingRef = useRef<NodeJS.Timeout | null>(null);
   const installTaskLogLengthRef = useRef<number>(0);
+  // Task đang chạy trong modal (để hủy qua /install/cancel/{taskId})
+  const [installTaskId, setInstallTaskId] = useState<string | null>(null);
+  const [isCancellingInstallTask, setIsCancellingInstallTask] = useState(false);
   
   // Install modal auth status (for Ansible installation)
   const [installModalAuthStatus, setInstallModalAuthStatus] = useState<{
@@ -861,21 +864,17 @@ export function ClusterSetup() {
       return new Promise<void>((resolve, reject) => {
         const poll = async () => {
     try {
-            const res = await api.get(`/install/status/${taskId}`);
+            // Chỉ lấy phần log mới kể từ offset đã nhận
+            const res = await api.get(`/install/status/${taskId}`, {
+              params: { since: installTaskLogLengthRef.current },
+            });
             const status = res.data;
             
-            if (status.logs) {
-              const logs = status.logs;
-              if (typeof logs === "string") {
-                if (logs.length < installTaskLogLengthRef.current) {
-                  installTaskLogLengthRef.current = 0;
-    }
-                const newChunk = logs.substring(installTaskLogLengthRef.current);
-                installTaskLogLengthRef.current = logs.length;
-                if (newChunk) {
-                  appendInstallLogChunk(newChunk);
-    }
-              }
+            if (typeof status.logs === "string" && status.logs) {
+              appendInstallLogChunk(status.logs);
+            }
+            if (typeof status.nextOffset === "number") {
+              installTaskLogLengthRef.current = status.nextOffset;
             }
 
             if (status.status === "running") {
@@ -889,6 +888,11 @@ export function ClusterSetup() {
               const errorMsg = status.error || "Thao tác thất bại";
               appendInstallLogChunk(`❌ Lỗi: ${errorMsg}\n`);
               reject(new Error(errorMsg));
+            } else if (status.status === "cancelled") {
+              cancelInstallTaskPolling();
+              const errorMsg = status.error || "Task đã bị hủy";
+              appendInstallLogChunk(`⛔ ${errorMsg}\n`);
+              reject(new Error(errorMsg));
             } else if (status.status === "not_found") {
               cancelInstallTaskPolling();
               const errorMsg = "Không tìm thấy task hoặc task đã hết hạn";
@@ -954,6 +958,7 @@ export function ClusterSetup() {
       if (taskId) {
         // Use polling to monitor task
         appendInstallLogChunk(`📋 Task ID: ${taskId}\n`);
+        setInstallTaskId(taskId);
         await monitorInstallTask(taskId);
         
         // Update step 2 to completed and step 3 to completed
@@ -1011,10 +1016,26 @@ export function ClusterSetup() {
       toast.error(msg);
     } finally {
       setLoading(false);
+      setInstallTaskId(null);
       cancelInstallTaskPolling();
     }
   };
 
+  // Hủy task đang chạy: server kill tiến trình trên node, polling sẽ nhận trạng thái "cancelled"
+  const handleCancelInstallTask = async () => {
+    if (!installTaskId) return;
+    setIsCancellingInstallTask(true);
+    try {
+      await api.post(`/install/cancel/${installTaskId}`);
+      appendInstallLogChunk("⛔ Đã gửi yêu cầu hủy task, đang chờ dừng...\n");
+    } catch (error: any) {
+      const msg = error?.response?.data?.message || error?.message || "Không thể hủy task";
+      toast.error(msg);
+    } finally {
+      setIsCancellingInstallTask(false);
+    }
+  };
+
   const handleCloseInstallModal = () => {
     if (installModalAction?.setLoading) {
       const isLoading = installModalAction.setLoading;
@@ -1563,15 +1584,13 @@ export function ClusterSetup() {
       return new Promise<void>((resolve, reject) => {
         const poll = async () => {
           try {
-            const status = await adminAPI.getAnsibleInitStatus(taskId);
+            // Chỉ lấy phần log mới kể từ offset đã nhận
+            const status = await adminAPI.getAnsibleInitStatus(taskId, initTaskLogLengthRef.current);
             if (status.logs) {
-              const logs = status.logs;
-              if (logs.length < initTaskLogLengthRef.current) {
-                initTaskLogLengthRef.current = 0;
-              }
-              const newChunk = logs.substring(initTaskLogLengthRef.current);
-              initTaskLogLengthRef.current = logs.length;
-              appendInitLogChunk(newChunk);
+              appendInitLogChunk(status.logs);
+            }
+            if (typeof status.nextOffset === "number") {
+              initTaskLogLengthRef.current = status.nextOffset;
             }
 
             if (status.status === "running") {
@@ -1838,14 +1857,13 @@ export function ClusterSetup() {
     (taskId: string, playbookName: string) => {
       const poll = async () => {
         try {
-          const status = await adminAPI.getPlaybookExecutionStatus(taskId);
+          // Chỉ lấy phần log mới kể từ offset đã nhận
+          const status = await adminAPI.getPlaybookExecutionStatus(taskId, playbookTaskLogLengthRef.current);
           if (status.logs) {
-            if (status.logs.length < playbookTaskLogLengthRef.current) {
-              playbookTaskLogLengthRef.current = 0;
-            }
-            const newChunk = status.logs.substring(playbookTaskLogLengthRef.current);
-            playbookTaskLogLengthRef.current = status.logs.length;
-            appendPlaybookLogChunk(newChunk);
+            appendPlaybookLogChunk(status.logs);
+          }
+          if (typeof status.nextOffset === "number") {
+            playbookTaskLogLengthRef.current = status.nextOffset;
           }
 
           if (status.status === "running") {
@@ -4312,6 +4330,20 @@ export function ClusterSetup() {
 
             {/* Action Buttons - Bên phải */}
             <div className="flex gap-2 flex-shrink-0">
+              {installTaskId && installModalSteps.some((s) => s.status === "active") && (
+                <Button
+                  variant="destructive"
+                  onClick={handleCancelInstallTask}
+                  disabled={isCancellingInstallTask}
+                >
+                  {isCancellingInstallTask ? (
+                    <Loader2 className="h-4 w-4 mr-2 animate-spin" />
+                  ) : (
+                    <XCircle className="h-4 w-4 mr-2" />
+                  )}
+                  Hủy task
+                </Button>
+              )}
               <Button
                 variant="outline"
                 onClick={handleCloseInstallModal}
@@ -2797,7 +2797,8 @@ export function ClusterSetupAmd() {
       return new Promise<void>((resolve, reject) => {
         const poll = async () => {
           try {
-            const status = await infrastructureAPI.getDockerTaskStatus(taskId);
+            // Màn hình này chỉ dùng trạng thái/progress, không hiển thị log -> bỏ qua phần log
+            const status = await infrastructureAPI.getDockerTaskStatus(taskId, Number.MAX_SAFE_INTEGER);
             
             // Cập nhật steps theo currentStep từ BE
             if (status.status === "running" && status.progress !== undefined) {
@@ -2866,15 +2867,13 @@ export function ClusterSetupAmd() {
       return new Promise<void>((resolve, reject) => {
         const poll = async () => {
           try {
-            const status = await adminAPI.getAnsibleInitStatus(taskId);
+            // Chỉ lấy phần log mới kể từ offset đã nhận
+            const status = await adminAPI.getAnsibleInitStatus(taskId, initTaskLogLengthRef.current);
             if (status.logs) {
-              const logs = status.logs;
-              if (logs.length < initTaskLogLengthRef.current) {
-                initTaskLogLengthRef.current = 0;
-              }
-              const newChunk = logs.substring(initTaskLogLengthRef.current);
-              initTaskLogLengthRef.current = logs.length;
-              appendInitLogChunk(newChunk);
+              appendInitLogChunk(status.logs);
+            }
+            if (typeof status.nextOffset === "number") {
+              initTaskLogLengthRef.current = status.nextOffset;
             }
 
             if (status.status === "running") {
@@ -3345,14 +3344,13 @@ export function ClusterSetupAmd() {
     (taskId: string, playbookName: string) => {
       const poll = async () => {
         try {
-          const status = await adminAPI.getPlaybookExecutionStatus(taskId);
+          // Chỉ lấy phần log mới kể từ offset đã nhận
+          const status = await adminAPI.getPlaybookExecutionStatus(taskId, playbookTaskLogLengthRef.current);
           if (status.logs) {
-            if (status.logs.length < playbookTaskLogLengthRef.current) {
-              playbookTaskLogLengthRef.current = 0;
-            }
-            const newChunk = status.logs.substring(playbookTaskLogLengthRef.current);
-            playbookTaskLogLengthRef.current = status.logs.length;
-            appendPlaybookLogChunk(newChunk);
+            appendPlaybookLogChunk(status.logs);
+          }
+          if (typeof status.nextOffset === "number") {
+            playbookTaskLogLengthRef.current = status.nextOffset;
           }
 
           if (status.status === "running") {
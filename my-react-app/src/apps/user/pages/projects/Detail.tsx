@@ -6,7 +6,7 @@ import { useForm, Controller } from "react-hook-form"
 import { zodResolver } from "@hookform/resolvers/zod"
 import { z } from "zod"
 import { getProjectById, deployProject, addDatabaseToProject, addBackendToProject, addFrontendToProject } from "@/lib/mock-api"
-import { getProjectBasicInfo, getProjectOverview, getProjectDatabases, getProjectBackends, getProjectFrontends, deleteProject, getProjectDeploymentHistory, getProjectRequestHistory, deployDatabase, deployBackend, deployFrontend, startProjectFrontend, stopProjectFrontend, startProjectBackend, stopProjectBackend, deleteProjectBackend, deleteProjectFrontend, startProjectDatabase, stopProjectDatabase, deleteProjectDatabase, checkDomainNameSystem, type DatabaseInfo, type BackendInfo, type FrontendInfo, type DeploymentHistoryItem, type RequestHistoryItem, createBackendScaleRequest, getBackendReplicaInfo, cancelBackendScaleRequest, createFrontendScaleRequest, getFrontendReplicaInfo, cancelFrontendScaleRequest } from "@/lib/project-api"
+import { getProjectBasicInfo, getProjectOverview, getProjectDatabases, getProjectBackends, getProjectFrontends, deleteProject, getProjectDeploymentHistory, getProjectRequestHistory, deployDatabase, deployBackend, waitForDeployJob, deployFrontend, startProjectFrontend, stopProjectFrontend, startProjectBackend, stopProjectBackend, deleteProjectBackend, deleteProjectFrontend, startProjectDatabase, stopProjectDatabase, deleteProjectDatabase, checkDomainNameSystem, type DatabaseInfo, type BackendInfo, type FrontendInfo, type DeploymentHistoryItem, type RequestHistoryItem, createBackendScaleRequest, getBackendReplicaInfo, cancelBackendScaleRequest, createFrontendScaleRequest, getFrontendReplicaInfo, cancelFrontendScaleRequest } from "@/lib/project-api"
 import { useAuth } from "@/contexts/AuthContext"
 import type { Project, ComponentStatus } from "@/types"
 import { Card, CardContent, CardDescription, CardHeader, CardTitle } from "@/components/ui/card"
@@ -1089,7 +1089,7 @@ export function ProjectDetail() {
       const deploymentType = data.sourceKind === "zip" ? "FILE" : "DOCKER" as "FILE" | "DOCKER"
 
       // Gọi API deploy backend
-      await deployBackend({
+      const { jobId } = await deployBackend({
         projectName: data.name,
         deploymentType: deploymentType,
         frameworkType: frameworkType,
@@ -1105,6 +1105,16 @@ export function ProjectDetail() {
         projectId: Number(id),
       })
 
+      // Deploy chạy nền trên server: chờ job kết thúc, hiển thị bước đang chạy trên toast
+      await waitForDeployJob(jobId, (job) => {
+        if (job.currentStage) {
+          toast.loading("Đang triển khai backend...", {
+            id: loadingToast,
+            description: `Bước: ${job.currentStage}`,
+          })
+        }
+      })
+
       toast.dismiss(loadingToast)
       toast.success(`Đã thêm backend "${data.name}" thành công!`)
       setShowAddBackend(false)
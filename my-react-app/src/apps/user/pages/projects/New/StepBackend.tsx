@@ -15,7 +15,7 @@ import { Dialog, DialogContent, DialogDescription, DialogHeader, DialogTitle } f
 import { HintBox } from "@/apps/user/components/HintBox"
 import { useWizardStore } from "@/apps/user/stores/wizard-store"
 import { useAuth } from "@/contexts/AuthContext"
-import { getProjectDatabases, getProjectBackends, deployBackend, deleteProjectBackend, checkDomainNameSystem, type DatabaseInfo, type BackendInfo } from "@/lib/project-api"
+import { getProjectDatabases, getProjectBackends, deployBackend, waitForDeployJob, deleteProjectBackend, checkDomainNameSystem, type DatabaseInfo, type BackendInfo } from "@/lib/project-api"
 import { toast } from "sonner"
 
 const backendSchema = z.object({
@@ -324,7 +324,7 @@ export function StepBackend() {
       const deploymentType = data.sourceType === "zip" ? "FILE" : "DOCKER" as "FILE" | "DOCKER"
 
       // Gọi API deploy backend
-      await deployBackend({
+      const { jobId } = await deployBackend({
         projectName: data.name,
         deploymentType: deploymentType,
         frameworkType: frameworkType,
@@ -340,6 +340,16 @@ export function StepBackend() {
         projectId: projectId,
       })
 
+      // Deploy chạy nền trên server: chờ job kết thúc, hiển thị bước đang chạy trên toast
+      await waitForDeployJob(jobId, (job) => {
+        if (job.currentStage) {
+          toast.loading("Đang triển khai backend...", {
+            id: loadingToast,
+            description: `Bước: ${job.currentStage}`,
+          })
+        }
+      })
+
       // Tạo env vars từ database connection fields để lưu vào store
       const env: Array<{ key: string; value: string }> = []
       if (data.dbName) env.push({ key: "DB_NAME", value: data.dbName })
@@ -234,7 +234,9 @@ export function StepDatabase() {
 
       addDatabase(dbData)
       toast.dismiss(loadingToast)
-      toast.success(`Đã thêm database "${data.name}" thành công!`)
+      toast.success(`Đã thêm database "${data.name}" thành công!`, {
+        description: "Đang khởi động trên cluster, trạng thái sẽ chuyển sang RUNNING khi sẵn sàng",
+      })
       
       // Reload danh sách databases từ API
       await loadProjectDatabases()
@@ -280,7 +280,9 @@ export function StepFrontend() {
 
       addFrontend(feData)
       toast.dismiss(loadingToast)
-      toast.success(`Đã thêm frontend "${data.name}" thành công!`)
+      toast.success(`Đã thêm frontend "${data.name}" thành công!`, {
+        description: "Đang khởi động trên cluster, trạng thái sẽ chuyển sang RUNNING khi sẵn sàng",
+      })
       
       // Reload frontends từ API
       await loadProjectFrontends()
@@ -33,6 +33,11 @@ const ANSI_BG_COLORS: Record<number, string> = {
   104: '#5c5cff', 105: '#ff00ff', 106: '#00ffff', 107: '#ffffff',
 };
 
+const RESUME_TOKEN_PREFIX = "[server] resume-token ";
+// Server giữ shell 60 giây sau khi mất kết nối
+const MAX_RESUME_ATTEMPTS = 5;
+const RESUME_DELAY_MS = 2000;
+
 /**
  * Terminal Component - SSH Terminal qua WebSocket với đầy đủ tính năng
  * Hỗ trợ: ANSI colors, command history, special keys, copy/paste, zoom, themes
@@ -55,6 +60,9 @@ export function Terminal({ open, onClose, server }: TerminalProps) {
   const commandInputRef = useRef<HTMLInputElement>(null);
   const isUserScrollingRef = useRef(false);
   const scrollTimeoutRef = useRef<NodeJS.Timeout | null>(null);
+  // Token server cấp sau khi kết nối, dùng để gắn lại shell cũ khi WebSocket bị đứt
+  const resumeTokenRef = useRef<string | null>(null);
+  const resumeAttemptsRef = useRef(0);
 
   // Tự động kết nối khi mở dialog
   useEffect(() => {
@@ -104,6 +112,50 @@ export function Terminal({ open, onClose, server }: TerminalProps) {
     }, 2000);
   }, []);
 
+  const getWebSocketUrl = () => {
+    const apiBaseUrl = import.meta.env.VITE_API_BASE_URL || "http://localhost:8080";
+    return `${apiBaseUrl.replace(/^http/, "ws")}/ws/terminal`;
+  };
+
+  // Gắn các handler dùng chung cho WebSocket terminal (kết nối mới và resume).
+  // onText nhận thông báo text "[server] ..." còn lại sau khi đã tách output nhị phân và resume token.
+  const attachSocket = (ws: WebSocket, onText: (message: string) => void) => {
+    wsRef.current = ws;
+    // Output shell tới dưới dạng frame nhị phân, decode UTF-8 dạng stream để không vỡ ký tự nhiều byte giữa các frame
+    ws.binaryType = "arraybuffer";
+    const decoder = new TextDecoder("utf-8");
+
+    ws.onmessage = (event) => {
+      if (event.data instanceof ArrayBuffer) {
+        appendToTerminal(decoder.decode(event.data, { stream: true }));
+        return;
+      }
+      const message = event.data;
+      if (handleResumeToken(message)) return;
+      onText(message);
+    };
+
+    ws.onerror = (error) => {
+      console.error("WebSocket error:", error);
+      // Lỗi trong lúc đang thử resume: onclose sẽ thử lại, không báo lỗi
+      if (resumeAttemptsRef.current > 0) return;
+      appendToTerminal("\n[ERROR] Connection error occurred\n");
+      setConnecting(false);
+      toast.error("Không thể kết nối đến terminal");
+    };
+
+    ws.onclose = (event) => {
+      console.log("WebSocket closed:", event.code, event.reason, event.wasClean);
+      setConnected(false);
+      setConnecting(false);
+      wsRef.current = null;
+      if (scheduleResume(event)) return;
+      if (!event.wasClean && event.code !== 1000) {
+        appendToTerminal(`\n[Connection closed: ${event.code} - ${event.reason || "Unknown"}]\n`);
+      }
+    };
+  };
+
   // Kết nối bằng SSH key (tự động)
   const connectWithSshKey = () => {
     if (connecting || connected || wsRef.current) return;
@@ -112,32 +164,11 @@ export function Terminal({ open, onClose, server }: TerminalProps) {
     appendToTerminal("\n[Connecting via SSH key...]\n");
 
     try {
-      const getWebSocketUrl = () => {
-        const apiBaseUrl = import.meta.env.VITE_API_BASE_URL || "http://localhost:8080";
-        const wsUrl = apiBaseUrl.replace(/^http/, "ws");
-        return `${wsUrl}/ws/terminal`;
-      };
-      
       const wsUrl = getWebSocketUrl();
       console.log("Connecting to WebSocket:", wsUrl);
 
       const ws = new WebSocket(wsUrl);
-      wsRef.current = ws;
-
-      ws.onopen = () => {
-        const config = {
-          host: server.ipAddress,
-          port: server.port || 22,
-          username: server.username || "root",
-          serverId: parseInt(server.id),
-        };
-
-        ws.send(JSON.stringify(config));
-      };
-
-      ws.onmessage = (event) => {
-        const message = event.data;
-        
+      attachSocket(ws, (message) => {
         if (message.includes("[server] SSH connected")) {
           const cleanMessage = processAnsiCodes(message);
           appendToTerminal(cleanMessage);
@@ -153,25 +184,17 @@ export function Terminal({ open, onClose, server }: TerminalProps) {
         } else {
           appendToTerminal(message);
         }
-      };
+      });
 
-      ws.onerror = (error) => {
-        console.error("WebSocket error:", error);
-        appendToTerminal("\n[ERROR] Connection error occurred\n");
-        setConnecting(false);
-        toast.error("Không thể kết nối đến terminal");
-      };
+      ws.onopen = () => {
+        const config = {
+          host: server.ipAddress,
+          port: server.port || 22,
+          username: server.username || "root",
+          serverId: parseInt(server.id),
+        };
 
-      ws.onclose = (event) => {
-        console.log("WebSocket closed:", event.code, event.reason, event.wasClean);
-        setConnected(false);
-        setConnecting(false);
-        wsRef.current = null;
-        if (terminalContentRef.current && event.code !== 1000) {
-          if (!event.wasClean) {
-            appendToTerminal(`\n[Connection closed: ${event.code} - ${event.reason || "Unknown"}]\n`);
-          }
-        }
+        ws.send(JSON.stringify(config));
       };
 
     } catch (error) {
@@ -196,17 +219,19 @@ export function Terminal({ open, onClose, server }: TerminalProps) {
     }
 
     try {
-      const getWebSocketUrl = () => {
-        const apiBaseUrl = import.meta.env.VITE_API_BASE_URL || "http://localhost:8080";
-        const wsUrl = apiBaseUrl.replace(/^http/, "ws");
-        return `${wsUrl}/ws/terminal`;
-      };
-      
       const wsUrl = getWebSocketUrl();
       console.log("Connecting to WebSocket (with password):", wsUrl);
 
       const ws = new WebSocket(wsUrl);
-      wsRef.current = ws;
+      attachSocket(ws, (message) => {
+        appendToTerminal(message);
+        if (message.includes("[server] SSH connected")) {
+          setConnected(true);
+          setConnecting(false);
+          setPassword("");
+          commandInputRef.current?.focus();
+        }
+      });
 
       ws.onopen = () => {
         const config = {
@@ -220,43 +245,70 @@ export function Terminal({ open, onClose, server }: TerminalProps) {
         ws.send(JSON.stringify(config));
       };
 
-      ws.onmessage = (event) => {
-        const message = event.data;
+    } catch (error) {
+      console.error("Failed to connect:", error);
+      toast.error("Không thể khởi tạo kết nối");
+      setConnecting(false);
+    }
+  };
+
+  // Lưu resume token server gửi (không hiển thị lên terminal)
+  const handleResumeToken = (message: string): boolean => {
+    if (message.startsWith(RESUME_TOKEN_PREFIX)) {
+      resumeTokenRef.current = message.substring(RESUME_TOKEN_PREFIX.length).trim();
+      resumeAttemptsRef.current = 0;
+      return true;
+    }
+    if (message.includes("Terminal session expired")) {
+      resumeTokenRef.current = null;
+    }
+    return false;
+  };
+
+  // WebSocket đứt bất thường (mạng, server restart proxy...): thử gắn lại shell cũ trong thời gian server còn giữ
+  const scheduleResume = (event: CloseEvent): boolean => {
+    const abnormal = event.code === 1001 || event.code === 1006;
+    if (!abnormal || !resumeTokenRef.current || resumeAttemptsRef.current >= MAX_RESUME_ATTEMPTS) {
+      return false;
+    }
+    resumeAttemptsRef.current += 1;
+    appendToTerminal("\n[Connection lost, reconnecting...]\n");
+    setConnecting(true);
+    setTimeout(resumeSession, RESUME_DELAY_MS * resumeAttemptsRef.current);
+    return true;
+  };
+
+  const resumeSession = () => {
+    const resumeToken = resumeTokenRef.current;
+    if (!resumeToken || wsRef.current) {
+      setConnecting(false);
+      return;
+    }
+
+    try {
+      const ws = new WebSocket(getWebSocketUrl());
+      attachSocket(ws, (message) => {
         appendToTerminal(message);
-        
         if (message.includes("[server] SSH connected")) {
+          resumeAttemptsRef.current = 0;
           setConnected(true);
           setConnecting(false);
-          setPassword("");
           commandInputRef.current?.focus();
         }
-      };
-
-      ws.onerror = (error) => {
-        console.error("WebSocket error:", error);
-        appendToTerminal("\n[ERROR] Connection error occurred\n");
-        setConnecting(false);
-        toast.error("Không thể kết nối đến terminal");
-      };
+      });
 
-      ws.onclose = (event) => {
-        console.log("WebSocket closed:", event.code, event.reason, event.wasClean);
-        setConnected(false);
-        setConnecting(false);
-        wsRef.current = null;
-        if (!event.wasClean && event.code !== 1000) {
-          appendToTerminal(`\n[Connection closed: ${event.code} - ${event.reason || "Unknown"}]\n`);
-        }
+      ws.onopen = () => {
+        ws.send(JSON.stringify({ resumeToken }));
       };
-
     } catch (error) {
-      console.error("Failed to connect:", error);
-      toast.error("Không thể khởi tạo kết nối");
+      console.error("Failed to resume:", error);
       setConnecting(false);
     }
   };
 
   const disconnect = () => {
+    // Đóng chủ động (code 1000): server đóng shell ngay, không giữ chờ resume
+    resumeTokenRef.current = null;
     if (wsRef.current) {
       wsRef.current.close();
       wsRef.current = null;
@@ -1089,19 +1089,21 @@ export const infrastructureAPI = {
   /**
    * Lấy trạng thái task Docker
    */
-  getDockerTaskStatus: async (taskId: string): Promise<{
+  getDockerTaskStatus: async (taskId: string, since?: number): Promise<{
     success: boolean;
     taskId: string;
     status: string;
     progress?: number;
     logs?: string;
+    logOffset?: number;
+    nextOffset?: number;
     startTime?: number;
     endTime?: number;
     error?: string;
   }> => {
     try {
       const response = await api.get("/admin/docker/task/status", {
-        params: { taskId },
+        params: { taskId, since },
       });
       return response.data;
     } catch (error: any) {
@@ -1498,22 +1500,26 @@ export const infrastructureAPI = {
   /**
    * Lấy trạng thái thực thi của quá trình init Ansible
    * @param taskId Task ID nhận được khi gọi init step
+   * @param since Offset log đã nhận (nextOffset của lần trước), bỏ trống để lấy toàn bộ log
    */
   getAnsibleInitStatus: async (
-    taskId: string
+    taskId: string,
+    since?: number
   ): Promise<{
     success: boolean;
     taskId: string;
     status: string;
     progress?: number;
     logs?: string;
+    logOffset?: number;
+    nextOffset?: number;
     startTime?: number;
     endTime?: number;
     error?: string;
   }> => {
     try {
       const response = await api.get("/admin/ansible/init/status", {
-        params: { taskId },
+        params: { taskId, since },
       });
       return response.data;
     } catch (error: any) {
@@ -1672,20 +1678,23 @@ export const infrastructureAPI = {
   },
   
   getPlaybookExecutionStatus: async (
-    taskId: string
+    taskId: string,
+    since?: number
   ): Promise<{
     success: boolean;
     taskId: string;
     status: string;
     progress?: number;
     logs?: string;
+    logOffset?: number;
+    nextOffset?: number;
     startTime?: number;
     endTime?: number;
     error?: string;
   }> => {
     try {
       const response = await api.get("/admin/ansible/playbooks/status", {
-        params: { taskId },
+        params: { taskId, since },
       });
       return response.data;
     } catch (error: any) {
@@ -667,6 +667,32 @@ export interface DeployBackendResponse {
   url: string
   status: string
   domainNameSystem: string
+  backendId: number
+  // Server trả 202 ngay sau khi tạo job, tiến trình theo dõi qua jobId
+  jobId: string
+}
+
+export type DeployJobStatus = "QUEUED" | "RUNNING" | "SUCCEEDED" | "FAILED"
+
+export interface DeployJobStage {
+  name: "UPLOAD" | "BUILD" | "PUSH" | "APPLY" | "ROLLOUT_WAIT"
+  status: "PENDING" | "RUNNING" | "SUCCEEDED" | "FAILED" | "SKIPPED"
+  message?: string | null
+  startedAt?: string | null
+  finishedAt?: string | null
+  durationMs?: number | null
+}
+
+export interface DeployJob {
+  jobId: string
+  backendId: number
+  status: DeployJobStatus
+  currentStage?: string | null
+  errorMessage?: string | null
+  createdAt?: string | null
+  startedAt?: string | null
+  finishedAt?: string | null
+  stages: DeployJobStage[]
 }
 
 export async function deployBackend(request: DeployBackendRequest): Promise<DeployBackendResponse> {
@@ -704,6 +730,59 @@ export async function deployBackend(request: DeployBackendRequest): Promise<Depl
   return response.json()
 }
 
+export async function getDeployJob(jobId: string): Promise<DeployJob> {
+  const response = await fetch(`${API_BASE_URL}/api/project-backends/deploy-jobs/${encodeURIComponent(jobId)}`)
+
+  if (!response.ok) {
+    const error = await response.json().catch(() => ({ message: "Không thể lấy trạng thái deploy job" }))
+    throw new Error(error.message || "Không thể lấy trạng thái deploy job")
+  }
+
+  return response.json()
+}
+
+/**
+ * Chờ deploy job kết thúc qua SSE (sự kiện "job" mang trạng thái đầy đủ của job).
+ * Resolve khi SUCCEEDED, reject với errorMessage khi FAILED. Mất kết nối SSE thì đọc lại trạng thái một lần.
+ */
+export function waitForDeployJob(jobId: string, onUpdate?: (job: DeployJob) => void): Promise<DeployJob> {
+  return new Promise((resolve, reject) => {
+    const source = new EventSource(`${API_BASE_URL}/api/project-backends/deploy-jobs/${encodeURIComponent(jobId)}/stream`)
+    let settled = false
+
+    const handle = (job: DeployJob) => {
+      onUpdate?.(job)
+      if (job.status === "SUCCEEDED" || job.status === "FAILED") {
+        settled = true
+        source.close()
+        if (job.status === "SUCCEEDED") {
+          resolve(job)
+        } else {
+          reject(new Error(job.errorMessage || "Triển khai backend thất bại"))
+        }
+      }
+    }
+
+    source.addEventListener("job", (event) => {
+      handle(JSON.parse((event as MessageEvent).data) as DeployJob)
+    })
+
+    source.onerror = () => {
+      if (settled) return
+      // Server đóng stream (job đã xong) hoặc mạng lỗi: lấy trạng thái hiện tại, chưa xong thì EventSource tự kết nối lại
+      getDeployJob(jobId)
+        .then((job) => {
+          if (job.status === "SUCCEEDED" || job.status === "FAILED") handle(job)
+        })
+        .catch((err) => {
+          settled = true
+          source.close()
+          reject(err)
+        })
+    }
+  })
+}
+
 /**
  * Deploy Frontend
  */
@@ -2,8 +2,10 @@ package my_spring_app.my_spring_app;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class MySpringAppApplication {
 
 	public static void main(String[] args) {
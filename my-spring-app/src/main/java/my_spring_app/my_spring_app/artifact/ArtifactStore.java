@@ -0,0 +1,258 @@
+package my_spring_app.my_spring_app.artifact;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import my_spring_app.my_spring_app.ssh.SshCommandExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Kho artifact (file zip source) đánh địa chỉ theo nội dung (SHA-256).
+ *
+ * Khi nhận upload, stream được ghi thẳng xuống đĩa bằng FileChannel.transferFrom và băm đồng thời,
+ * không giữ toàn bộ file trên heap. File được đặt tên theo hash nên upload trùng nội dung chỉ lưu một bản.
+ * Phía DOCKER server cũng giữ cache theo hash: artifact đã có sẵn thì chỉ hard-link sang thư mục build
+ * thay vì truyền lại qua SFTP.
+ *
+ * Mỗi artifact có file &lt;id&gt;.owners ghi các username đã upload nội dung đó; khi deploy bằng artifactId
+ * chỉ user có trong danh sách này mới dùng được artifact.
+ */
+@Component
+public class ArtifactStore {
+
+    private static final Path STORE_DIR = Paths.get(System.getProperty("java.io.tmpdir"), "artifact-store");
+    // Thư mục cache trên remote, nằm ngoài ~/uploads vì thư mục uploads bị xóa sau mỗi lần build
+    private static final String REMOTE_CACHE_DIR = ".artifact-cache";
+    private static final long TRANSFER_CHUNK_BYTES = 8L * 1024 * 1024;
+    // Giới hạn cho upload dạng stream (không đi qua giới hạn multipart 100MB)
+    public static final long MAX_ARTIFACT_BYTES = 1024L * 1024 * 1024;
+    private static final long LOCAL_RETENTION_MS = 24L * 60 * 60 * 1000;
+    private static final int REMOTE_RETENTION_DAYS = 7;
+    // File .part cũ hơn mốc này là của lần upload đã chết giữa chừng
+    private static final int REMOTE_PART_RETENTION_MINUTES = 120;
+    private static final long REMOTE_COMMAND_TIMEOUT_MS = 60_000;
+    private static final Pattern ARTIFACT_ID = Pattern.compile("[0-9a-f]{64}");
+
+    private final SshCommandExecutor sshCommandExecutor;
+
+    public ArtifactStore(SshCommandExecutor sshCommandExecutor) {
+        this.sshCommandExecutor = sshCommandExecutor;
+    }
+
+    /**
+     * Artifact đã lưu trong kho.
+     *
+     * @param id     SHA-256 (hex) của nội dung
+     * @param path   đường dẫn file trong kho
+     * @param size   kích thước (byte)
+     * @param reused true nếu nội dung đã có sẵn trong kho từ trước
+     */
+    public record Artifact(String id, Path path, long size, boolean reused) {
+    }
+
+    /**
+     * Ghi stream vào kho, vừa ghi vừa băm SHA-256 và ghi nhận owner là người upload. Stream không bị đóng.
+     */
+    public Artifact store(InputStream in, String owner) throws IOException {
+        Files.createDirectories(STORE_DIR);
+        MessageDigest digest = newDigest();
+        Path tmp = Files.createTempFile(STORE_DIR, "upload-", ".part");
+        long size = 0;
+        try {
+            ReadableByteChannel src = Channels.newChannel(new DigestInputStream(in, digest));
+            try (FileChannel dst = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                long n;
+                while ((n = dst.transferFrom(src, size, TRANSFER_CHUNK_BYTES)) > 0) {
+                    size += n;
+                    if (size > MAX_ARTIFACT_BYTES) {
+                        throw new RuntimeException("Artifact vượt quá kích thước cho phép " + (MAX_ARTIFACT_BYTES / 1024 / 1024) + "MB");
+                    }
+                }
+            }
+            if (size == 0) {
+                throw new RuntimeException("Artifact rỗng");
+            }
+
+            String id = HexFormat.of().formatHex(digest.digest());
+            Path target = pathFor(id);
+            // Cùng hash nghĩa là cùng nội dung: nếu đã có thì bỏ file tạm, nếu chưa thì rename
+            // (hai upload trùng nhau chạy song song cũng chỉ ghi đè bằng đúng nội dung đó)
+            boolean reused = Files.exists(target);
+            if (!reused) {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            addOwner(id, owner);
+            touch(id);
+            System.out.println("[ArtifactStore] Lưu artifact " + id + " (" + size + " bytes" + (reused ? ", đã có sẵn" : "") + ")");
+            return new Artifact(id, target, size, reused);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Lấy artifact mà owner đã upload trước đó theo id. Ném RuntimeException nếu không tồn tại
+     * hoặc owner chưa từng upload artifact này (artifactId của người khác không dùng được).
+     */
+    public Artifact get(String id, String owner) throws IOException {
+        if (id == null || !ARTIFACT_ID.matcher(id).matches()) {
+            throw new RuntimeException("Artifact id không hợp lệ");
+        }
+        Path path = pathFor(id);
+        if (!Files.isRegularFile(path) || !ownersOf(id).contains(owner)) {
+            // Không phân biệt hai trường hợp để không lộ artifact của user khác
+            throw new RuntimeException("Không tìm thấy artifact: " + id);
+        }
+        touch(id);
+        return new Artifact(id, path, Files.size(path), true);
+    }
+
+    /**
+     * Đưa artifact tới remotePath trên server đích.
+     * Nếu cache remote đã có đúng file (theo hash và kích thước) thì chỉ hard-link, không truyền lại.
+     *
+     * @param session    SSH session đã mượn (người gọi tự trả về pool)
+     * @param sftp       SFTP channel đã mở trên cùng session
+     * @param remoteHome thư mục home của user trên server đích
+     * @param remotePath đường dẫn file zip đích (thư mục cha phải tồn tại)
+     * @return true nếu đã dùng lại bản cache, false nếu phải upload
+     */
+    public boolean uploadTo(Session session, ChannelSftp sftp, Artifact artifact, String remoteHome, String remotePath) throws Exception {
+        String cacheDir = remoteHome + "/" + REMOTE_CACHE_DIR;
+        String cachePath = cacheDir + "/" + artifact.id() + ".zip";
+
+        SshCommandExecutor.CommandResult stat = sshCommandExecutor.execute(session,
+                "stat -c %s " + quote(cachePath) + " 2>/dev/null || echo MISSING", REMOTE_COMMAND_TIMEOUT_MS);
+        boolean cached = String.valueOf(artifact.size()).equals(stat.stdout().trim());
+
+        if (cached) {
+            System.out.println("[ArtifactStore] Dùng lại artifact " + artifact.id() + " trong cache remote");
+        } else {
+            runRemote(session, "mkdir -p " + quote(cacheDir));
+            // Tên tạm riêng cho mỗi lần upload: hai deploy cùng artifact chạy song song không ghi chung một file
+            String partPath = cachePath + "." + UUID.randomUUID() + ".part";
+            System.out.println("[ArtifactStore] Upload artifact " + artifact.id() + " (" + artifact.size() + " bytes) lên " + cachePath);
+            try {
+                sftp.put(artifact.path().toString(), partPath);
+                runRemote(session, "mv -f " + quote(partPath) + " " + quote(cachePath));
+            } catch (Exception e) {
+                sshCommandExecutor.execute(session, "rm -f " + quote(partPath), REMOTE_COMMAND_TIMEOUT_MS);
+                throw e;
+            }
+            // Dọn các artifact lâu không dùng và file tạm bị bỏ dở trong cache remote
+            sshCommandExecutor.execute(session, "find " + quote(cacheDir) + " \\( -name '*.zip' -mtime +"
+                    + REMOTE_RETENTION_DAYS + " -o -name '*.part' -mmin +" + REMOTE_PART_RETENTION_MINUTES
+                    + " \\) -delete 2>/dev/null || true", REMOTE_COMMAND_TIMEOUT_MS);
+        }
+
+        // Hard-link (không tốn thêm I/O), fallback sang cp nếu khác filesystem
+        runRemote(session, "touch " + quote(cachePath) + " && (ln -f " + quote(cachePath) + " " + quote(remotePath)
+                + " 2>/dev/null || cp -f " + quote(cachePath) + " " + quote(remotePath) + ")");
+        return cached;
+    }
+
+    /**
+     * Xóa artifact local không được dùng trong khoảng thời gian lưu giữ
+     */
+    @Scheduled(fixedDelay = 60 * 60 * 1000L, initialDelay = 60 * 60 * 1000L)
+    public void evictExpired() {
+        if (!Files.isDirectory(STORE_DIR)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - LOCAL_RETENTION_MS;
+        int removed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(STORE_DIR)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < cutoff && Files.deleteIfExists(file)) {
+                        removed++;
+                    }
+                } catch (IOException e) {
+                    System.err.println("[ArtifactStore] Không thể xóa " + file + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[ArtifactStore] Lỗi khi dọn kho artifact: " + e.getMessage());
+        }
+        if (removed > 0) {
+            System.out.println("[ArtifactStore] Đã xóa " + removed + " artifact hết hạn");
+        }
+    }
+
+    private void runRemote(Session session, String command) throws Exception {
+        SshCommandExecutor.CommandResult result = sshCommandExecutor.execute(session, command, REMOTE_COMMAND_TIMEOUT_MS);
+        if (!result.isSuccess()) {
+            throw new RuntimeException("Lệnh thất bại (exit " + result.exitStatus() + "): " + command
+                    + (result.stderr().isBlank() ? "" : " - " + result.stderr().trim()));
+        }
+    }
+
+    private static Path pathFor(String id) {
+        return STORE_DIR.resolve(id + ".zip");
+    }
+
+    private static Path ownersPathFor(String id) {
+        return STORE_DIR.resolve(id + ".owners");
+    }
+
+    private synchronized void addOwner(String id, String owner) throws IOException {
+        if (owner == null || owner.isBlank()) {
+            throw new RuntimeException("Thiếu username của người upload artifact");
+        }
+        if (!ownersOf(id).contains(owner)) {
+            Files.writeString(ownersPathFor(id), owner + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private synchronized Set<String> ownersOf(String id) throws IOException {
+        Path owners = ownersPathFor(id);
+        if (!Files.isRegularFile(owners)) {
+            return Set.of();
+        }
+        return new HashSet<>(Files.readAllLines(owners, StandardCharsets.UTF_8));
+    }
+
+    // Artifact và file owners được dọn theo cùng mốc thời gian
+    private static void touch(String id) throws IOException {
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        Files.setLastModifiedTime(pathFor(id), now);
+        if (Files.exists(ownersPathFor(id))) {
+            Files.setLastModifiedTime(ownersPathFor(id), now);
+        }
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "'\"'\"'") + "'";
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
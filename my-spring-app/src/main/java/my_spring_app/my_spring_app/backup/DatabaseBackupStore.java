@@ -0,0 +1,215 @@
+package my_spring_app.my_spring_app.backup;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Kho backup của database project trên đĩa local: &lt;app.backup.dir&gt;/&lt;databaseId&gt;/&lt;file&gt;.gz.
+ *
+ * Thư mục gốc lấy từ app.backup.dir (mặc định ~/my-spring-app/db-backups). Khi chạy trong cluster, trỏ nó
+ * tới mount path của một PVC để backup còn lại sau khi pod của ứng dụng bị tạo lại. Backup được ghi vào file .part rồi rename nên danh sách backup không bao giờ có file dở dang.
+ * Mỗi database giữ tối đa MAX_BACKUPS_PER_DATABASE bản và không quá MAX_AGE_MS; bản cũ hơn bị xóa sau mỗi
+ * lần backup và định kỳ mỗi giờ.
+ */
+@Component
+public class DatabaseBackupStore {
+
+    static final int MAX_BACKUPS_PER_DATABASE = 7;
+    static final long MAX_AGE_MS = 30L * 24 * 60 * 60 * 1000;
+    // File .part không còn được ghi (ứng dụng dừng giữa chừng) bị xóa sau khoảng này
+    private static final long STALE_PART_MS = 24L * 60 * 60 * 1000;
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+    private static final Pattern FILE_NAME = Pattern.compile("[A-Za-z0-9._-]+\\.gz");
+
+    private final Path backupDir;
+
+    // Database đang được backup (mỗi database chỉ một backup tại một thời điểm)
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+
+    public DatabaseBackupStore(@Value("${app.backup.dir}") String backupDir) {
+        this.backupDir = Paths.get(backupDir).toAbsolutePath();
+        System.out.println("[DatabaseBackupStore] Thư mục backup: " + this.backupDir);
+    }
+
+    /**
+     * Backup đã lưu
+     *
+     * @param createdAt thời điểm backup hoàn tất (epoch ms)
+     */
+    public record Backup(String fileName, Path path, long size, long createdAt) {
+    }
+
+    /**
+     * Ghi nội dung backup vào OutputStream được truyền vào
+     */
+    @FunctionalInterface
+    public interface BackupWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Database có đang được backup không
+     */
+    public boolean isRunning(Long databaseId) {
+        return running.contains(databaseId);
+    }
+
+    /**
+     * Tạo backup mới rồi áp dụng retention cho database
+     *
+     * @throws RuntimeException database đang có backup khác chạy, hoặc writer lỗi (file dở dang bị xóa)
+     */
+    public Backup create(Long databaseId, String fileName, BackupWriter writer) throws IOException {
+        validateFileName(fileName);
+        if (!running.add(databaseId)) {
+            throw new RuntimeException("Database đang được backup, vui lòng chờ bản backup hiện tại hoàn tất");
+        }
+        Path dir = dirOf(databaseId);
+        Path target = dir.resolve(fileName);
+        Path part = dir.resolve(fileName + ".part");
+        try {
+            Files.createDirectories(dir);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(part), WRITE_BUFFER_BYTES)) {
+                writer.writeTo(out);
+            }
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Backup backup = toBackup(target);
+            System.out.println("[DatabaseBackupStore] Đã lưu backup " + target + " (" + backup.size() + " bytes)");
+            applyRetention(databaseId);
+            return backup;
+        } finally {
+            Files.deleteIfExists(part);
+            running.remove(databaseId);
+        }
+    }
+
+    /**
+     * Danh sách backup của database, mới nhất trước
+     */
+    public List<Backup> list(Long databaseId) {
+        Path dir = dirOf(databaseId);
+        List<Backup> backups = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return backups;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.gz")) {
+            for (Path file : files) {
+                backups.add(toBackup(file));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Không đọc được danh sách backup: " + e.getMessage(), e);
+        }
+        backups.sort(Comparator.comparingLong(Backup::createdAt).reversed());
+        return backups;
+    }
+
+    /**
+     * Lấy backup theo tên file, ném RuntimeException nếu không tồn tại
+     */
+    public Backup get(Long databaseId, String fileName) {
+        validateFileName(fileName);
+        Path path = dirOf(databaseId).resolve(fileName);
+        if (!Files.isRegularFile(path)) {
+            throw new RuntimeException("Không tìm thấy backup: " + fileName);
+        }
+        try {
+            return toBackup(path);
+        } catch (IOException e) {
+            throw new RuntimeException("Không đọc được backup: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Áp dụng retention cho mọi database và dọn file .part bị bỏ dở
+     */
+    @Scheduled(fixedDelay = 60 * 60 * 1000L, initialDelay = 15 * 60 * 1000L)
+    public void applyRetention() {
+        if (!Files.isDirectory(backupDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(backupDir)) {
+            for (Path dir : dirs) {
+                Long databaseId = parseId(dir.getFileName().toString());
+                if (databaseId != null && Files.isDirectory(dir)) {
+                    if (!running.contains(databaseId)) {
+                        deleteStaleParts(dir);
+                    }
+                    applyRetention(databaseId);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[DatabaseBackupStore] Lỗi khi dọn kho backup: " + e.getMessage());
+        }
+    }
+
+    private void applyRetention(Long databaseId) {
+        List<Backup> backups = list(databaseId);
+        long cutoff = System.currentTimeMillis() - MAX_AGE_MS;
+        int removed = 0;
+        for (int i = 0; i < backups.size(); i++) {
+            Backup backup = backups.get(i);
+            if (i >= MAX_BACKUPS_PER_DATABASE || backup.createdAt() < cutoff) {
+                try {
+                    if (Files.deleteIfExists(backup.path())) {
+                        removed++;
+                    }
+                } catch (IOException e) {
+                    System.err.println("[DatabaseBackupStore] Không thể xóa " + backup.path() + ": " + e.getMessage());
+                }
+            }
+        }
+        if (removed > 0) {
+            System.out.println("[DatabaseBackupStore] Đã xóa " + removed + " backup cũ của database " + databaseId);
+        }
+    }
+
+    private void deleteStaleParts(Path dir) throws IOException {
+        long cutoff = System.currentTimeMillis() - STALE_PART_MS;
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(dir, "*.part")) {
+            for (Path part : parts) {
+                if (Files.getLastModifiedTime(part).toMillis() < cutoff) {
+                    Files.deleteIfExists(part);
+                }
+            }
+        }
+    }
+
+    private static Backup toBackup(Path file) throws IOException {
+        return new Backup(file.getFileName().toString(), file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+    }
+
+    private Path dirOf(Long databaseId) {
+        return backupDir.resolve(String.valueOf(databaseId));
+    }
+
+    // Tên file đến từ request: chỉ cho phép ký tự an toàn để không thoát ra ngoài thư mục của database
+    private static void validateFileName(String fileName) {
+        if (fileName == null || !FILE_NAME.matcher(fileName).matches() || fileName.startsWith(".")) {
+            throw new RuntimeException("Tên file backup không hợp lệ");
+        }
+    }
+
+    private static Long parseId(String name) {
+        try {
+            return Long.parseLong(name);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
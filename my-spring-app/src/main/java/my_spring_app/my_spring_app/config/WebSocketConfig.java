@@ -1,6 +1,10 @@
 package my_spring_app.my_spring_app.config;
 
+import jakarta.annotation.PreDestroy;
+import my_spring_app.my_spring_app.k8s.KubernetesClientRegistry;
 import my_spring_app.my_spring_app.service.ServerService;
+import my_spring_app.my_spring_app.ssh.TerminalSessionRegistry;
+import my_spring_app.my_spring_app.ws.PodExecWebSocketHandler;
 import my_spring_app.my_spring_app.ws.TerminalWebSocketHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -15,15 +19,26 @@ import org.springframework.web.socket.server.support.HttpSessionHandshakeInterce
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final ServerService serverService;
+    private final TerminalSessionRegistry terminalSessionRegistry;
+    private final KubernetesClientRegistry kubernetesClientRegistry;
 
-    public WebSocketConfig(ServerService serverService) {
+    public WebSocketConfig(ServerService serverService, TerminalSessionRegistry terminalSessionRegistry,
+                           KubernetesClientRegistry kubernetesClientRegistry) {
         this.serverService = serverService;
+        this.terminalSessionRegistry = terminalSessionRegistry;
+        this.kubernetesClientRegistry = kubernetesClientRegistry;
     }
 
     @Bean
     @NonNull
     public TerminalWebSocketHandler terminalWebSocketHandler() {
-        return new TerminalWebSocketHandler(serverService);
+        return new TerminalWebSocketHandler(serverService, terminalSessionRegistry);
+    }
+
+    @Bean
+    @NonNull
+    public PodExecWebSocketHandler podExecWebSocketHandler() {
+        return new PodExecWebSocketHandler(kubernetesClientRegistry);
     }
 
     @Override
@@ -40,5 +55,15 @@ public class WebSocketConfig implements WebSocketConfigurer {
         registry.addHandler(terminalWebSocketHandler(), "/ws/terminal")
                 .addInterceptors(httpSessionInterceptor)
                 .setAllowedOrigins("*");
+        registry.addHandler(podExecWebSocketHandler(), "/ws/pod-exec")
+                .addInterceptors(httpSessionInterceptor)
+                .setAllowedOrigins("*");
+    }
+
+    // Dừng executor dùng chung của các handler khi ứng dụng tắt
+    @PreDestroy
+    public void shutdownHandlers() {
+        TerminalWebSocketHandler.shutdown();
+        PodExecWebSocketHandler.shutdown();
     }
-}
\ No newline at end of file
+}
@@ -55,6 +55,7 @@ import my_spring_app.my_spring_app.dto.request.ExecutePlaybookRequest;
 import my_spring_app.my_spring_app.dto.request.InstallDockerRequest;
 import my_spring_app.my_spring_app.dto.request.DockerLoginRequest;
 import my_spring_app.my_spring_app.dto.request.InstallK8sRequest;
+import my_spring_app.my_spring_app.dto.request.JoinNodesRequest;
 import my_spring_app.my_spring_app.dto.request.NamespaceRequest;
 import my_spring_app.my_spring_app.dto.request.NamespaceUpdateRequest;
 import my_spring_app.my_spring_app.dto.request.ScaleRequest;
@@ -65,15 +66,18 @@ import my_spring_app.my_spring_app.dto.request.StatefulsetRequest;
 import my_spring_app.my_spring_app.dto.request.ServiceRequest;
 import my_spring_app.my_spring_app.dto.request.PVCRequest;
 import my_spring_app.my_spring_app.dto.request.PVRequest;
+import my_spring_app.my_spring_app.k8s.PodLogStreamer;
 import my_spring_app.my_spring_app.service.AdminService;
 import my_spring_app.my_spring_app.service.AnsibleService;
 import my_spring_app.my_spring_app.service.DockerService;
 import my_spring_app.my_spring_app.service.ServerService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import jakarta.validation.Valid;
 import java.util.Map;
 import java.util.HashMap;
@@ -94,6 +98,9 @@ public class AdminController {
     @Autowired
     private ServerService serverService;
 
+    @Autowired
+    private PodLogStreamer podLogStreamer;
+
     // User Services - Services
     // Cluster & Overview - Overview
     @GetMapping("/user-services/overview")
@@ -208,6 +215,19 @@ public class AdminController {
         }
     }
 
+    @PostMapping("/cluster/nodes/join")
+    public ResponseEntity<?> joinNodesToK8s(@Valid @RequestBody JoinNodesRequest request) {
+        try {
+            return ResponseEntity.ok(adminService.joinNodesToK8s(request.getServerIds()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "JOIN_ERROR", "message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "INTERNAL_ERROR", "message", "Lỗi khi join node: " + e.getMessage()));
+        }
+    }
+
     @DeleteMapping("/cluster/nodes/{nodeName}")
     public ResponseEntity<?> removeNodeFromK8s(@PathVariable String nodeName, @RequestParam(required = false) String ip) {
         try {
@@ -399,6 +419,40 @@ public class AdminController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Stream log của pod qua SSE (sự kiện "log" rồi "end"), follow=true để theo dõi log mới
+     */
+    @GetMapping(value = "/workloads/pods/{namespace}/{name}/logs/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPodLogs(
+            @PathVariable String namespace,
+            @PathVariable String name,
+            @RequestParam(required = false) String container,
+            @RequestParam(defaultValue = "false") boolean follow,
+            @RequestParam(required = false) Integer sinceSeconds,
+            @RequestParam(required = false) Integer tailLines,
+            @RequestParam(required = false) Integer limitBytes,
+            @RequestParam(defaultValue = "false") boolean timestamps) {
+        return podLogStreamer.streamPod(namespace, name,
+                new PodLogStreamer.LogOptions(container, follow, sinceSeconds, tailLines, limitBytes, timestamps));
+    }
+
+    /**
+     * Stream log gộp của mọi pod có label app trong namespace, sắp theo timestamp
+     */
+    @GetMapping(value = "/workloads/pods/{namespace}/logs/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAppLogs(
+            @PathVariable String namespace,
+            @RequestParam String app,
+            @RequestParam(required = false) String container,
+            @RequestParam(defaultValue = "false") boolean follow,
+            @RequestParam(required = false) Integer sinceSeconds,
+            @RequestParam(required = false) Integer tailLines,
+            @RequestParam(required = false) Integer limitBytes,
+            @RequestParam(defaultValue = "false") boolean timestamps) {
+        return podLogStreamer.streamApp(namespace, app,
+                new PodLogStreamer.LogOptions(container, follow, sinceSeconds, tailLines, limitBytes, timestamps));
+    }
+
     @PostMapping("/workloads/pods/{namespace}/{name}/exec")
     public ResponseEntity<Map<String, String>> execPodCommand(
             @PathVariable String namespace,
@@ -767,8 +821,9 @@ public class AdminController {
     
     @GetMapping("/ansible/init/status")
     public ResponseEntity<my_spring_app.my_spring_app.dto.reponse.AnsibleTaskStatusResponse> getAnsibleInitStatus(
-            @RequestParam String taskId) {
-        my_spring_app.my_spring_app.dto.reponse.AnsibleTaskStatusResponse response = ansibleService.getInitTaskStatus(taskId);
+            @RequestParam String taskId,
+            @RequestParam(defaultValue = "0") long since) {
+        my_spring_app.my_spring_app.dto.reponse.AnsibleTaskStatusResponse response = ansibleService.getInitTaskStatus(taskId, since);
         return ResponseEntity.ok(response);
     }
     
@@ -828,9 +883,10 @@ public class AdminController {
 
     @GetMapping("/ansible/playbooks/status")
     public ResponseEntity<my_spring_app.my_spring_app.dto.reponse.AnsibleTaskStatusResponse> getPlaybookExecutionStatus(
-            @RequestParam String taskId) {
+            @RequestParam String taskId,
+            @RequestParam(defaultValue = "0") long since) {
         my_spring_app.my_spring_app.dto.reponse.AnsibleTaskStatusResponse response =
-                ansibleService.getPlaybookTaskStatus(taskId);
+                ansibleService.getPlaybookTaskStatus(taskId, since);
         return ResponseEntity.ok(response);
     }
 
@@ -907,8 +963,9 @@ public class AdminController {
 
     // Infrastructure - Get Docker Task Status
     @GetMapping("/docker/task/status")
-    public ResponseEntity<AnsibleTaskStatusResponse> getDockerTaskStatus(@RequestParam String taskId) {
-        AnsibleTaskStatusResponse response = dockerService.getDockerTaskStatus(taskId);
+    public ResponseEntity<AnsibleTaskStatusResponse> getDockerTaskStatus(@RequestParam String taskId,
+                                                                          @RequestParam(defaultValue = "0") long since) {
+        AnsibleTaskStatusResponse response = dockerService.getDockerTaskStatus(taskId, since);
         return ResponseEntity.ok(response);
     }
 
@@ -0,0 +1,50 @@
+package my_spring_app.my_spring_app.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import my_spring_app.my_spring_app.artifact.ArtifactStore;
+import my_spring_app.my_spring_app.dto.reponse.ArtifactUploadResponse;
+import my_spring_app.my_spring_app.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/artifacts")
+public class ArtifactController {
+
+    @Autowired
+    private ArtifactStore artifactStore;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Upload file zip dạng raw body (application/octet-stream), không qua multipart.
+     * Body được ghi thẳng vào kho artifact trong lúc nhận, trả về artifactId để dùng khi deploy.
+     * Artifact gắn với username upload, chỉ user đó mới deploy được bằng artifactId này.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> upload(@RequestParam String fileName, @RequestParam String username,
+                                    HttpServletRequest request) throws IOException {
+        if (!userRepository.existsByUsername(username)) {
+            throw new RuntimeException("User không tồn tại");
+        }
+        if (request.getContentLengthLong() > ArtifactStore.MAX_ARTIFACT_BYTES) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(Map.of("error", "PAYLOAD_TOO_LARGE", "message", "Artifact vượt quá kích thước cho phép"));
+        }
+        String safeName = fileName.replaceAll("[^a-zA-Z0-9._-]", "_");
+        try (InputStream in = request.getInputStream()) {
+            ArtifactStore.Artifact artifact = artifactStore.store(in, username);
+            ArtifactUploadResponse response = new ArtifactUploadResponse(
+                    artifact.id(), safeName, artifact.size(), artifact.reused());
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        }
+    }
+}
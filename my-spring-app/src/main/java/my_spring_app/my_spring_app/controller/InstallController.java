@@ -7,15 +7,16 @@ import my_spring_app.my_spring_app.dto.reponse.AnsibleOperationResponse;
 import my_spring_app.my_spring_app.dto.reponse.DockerStatusResponse;
 import my_spring_app.my_spring_app.dto.request.SaveAnsibleConfigRequest;
 import my_spring_app.my_spring_app.service.InstallService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/install")
@@ -29,20 +30,32 @@ public class InstallController {
 
     /**
      * Endpoint để poll status của install task
+     * Truyền since = nextOffset của lần poll trước để chỉ nhận phần log mới
      */
     @GetMapping("/status/{taskId}")
-    public ResponseEntity<InstallStatusResponse> getInstallStatus(@PathVariable String taskId) {
-        InstallStatusResponse response = installService.getInstallStatus(taskId);
+    public ResponseEntity<InstallStatusResponse> getInstallStatus(@PathVariable String taskId,
+                                                                  @RequestParam(defaultValue = "0") long since) {
+        InstallStatusResponse response = installService.getInstallStatus(taskId, since);
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Hủy task đang chạy, kill tiến trình tương ứng trên server đích
+     */
+    @PostMapping("/cancel/{taskId}")
+    public ResponseEntity<InstallTaskResponse> cancelInstallTask(@PathVariable String taskId) {
+        if (!installService.cancelInstallTask(taskId)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new InstallTaskResponse(taskId, "not_running", "Task không tồn tại hoặc đã kết thúc"));
+        }
+        return ResponseEntity.ok(new InstallTaskResponse(taskId, "cancelled", "Đã hủy task"));
+    }
+
     @PostMapping("/setup-ansible")
     public ResponseEntity<InstallTaskResponse> setupAnsibleOnK8sNodes() {
         String taskId = UUID.randomUUID().toString();
-        // Chạy async
-        CompletableFuture.runAsync(() -> {
-            installService.setupAnsibleOnK8sNodes(taskId);
-        });
+        // Service đăng ký task rồi chạy nền trên TaskRunner, trả về ngay
+        installService.setupAnsibleOnK8sNodes(taskId);
         InstallTaskResponse response = new InstallTaskResponse(taskId, "running", "Đã bắt đầu cài đặt Ansible");
         return ResponseEntity.ok(response);
     }
@@ -50,10 +63,7 @@ public class InstallController {
     @PostMapping("/uninstall-ansible")
     public ResponseEntity<InstallTaskResponse> uninstallAnsibleFromK8sNodes() {
         String taskId = UUID.randomUUID().toString();
-        // Chạy async
-        CompletableFuture.runAsync(() -> {
-            installService.uninstallAnsibleFromK8sNodes(taskId);
-        });
+        installService.uninstallAnsibleFromK8sNodes(taskId);
         InstallTaskResponse response = new InstallTaskResponse(taskId, "running", "Đã bắt đầu gỡ cài đặt Ansible");
         return ResponseEntity.ok(response);
     }
@@ -61,9 +71,7 @@ public class InstallController {
     @PostMapping("/install-kubernetes-kubespray")
     public ResponseEntity<InstallTaskResponse> installKubernetesWithKubespray() {
         String taskId = UUID.randomUUID().toString();
-        CompletableFuture.runAsync(() -> {
-            installService.installKubernetesWithKubespray(taskId);
-        });
+        installService.installKubernetesWithKubespray(taskId);
         InstallTaskResponse response = new InstallTaskResponse(taskId, "running", "Đã bắt đầu cài đặt Kubernetes");
         return ResponseEntity.ok(response);
     }
@@ -71,9 +79,7 @@ public class InstallController {
     @PostMapping("/uninstall-kubernetes-kubespray")
     public ResponseEntity<InstallTaskResponse> uninstallKubernetesFromK8sNodes() {
         String taskId = UUID.randomUUID().toString();
-        CompletableFuture.runAsync(() -> {
-            installService.uninstallKubernetesFromK8sNodes(taskId);
-        });
+        installService.uninstallKubernetesFromK8sNodes(taskId);
         InstallTaskResponse response = new InstallTaskResponse(taskId, "running", "Đã bắt đầu gỡ cài đặt Kubernetes");
         return ResponseEntity.ok(response);
     }
@@ -81,9 +87,7 @@ public class InstallController {
     @PostMapping("/install-k8s-addons")
     public ResponseEntity<InstallTaskResponse> installK8sAddons() {
         String taskId = UUID.randomUUID().toString();
-        CompletableFuture.runAsync(() -> {
-            installService.installK8sAddons(taskId);
-        });
+        installService.installK8sAddons(taskId);
         InstallTaskResponse response = new InstallTaskResponse(taskId, "running", "Đã bắt đầu cài đặt K8s Addons");
         return ResponseEntity.ok(response);
     }
@@ -91,9 +95,7 @@ public class InstallController {
     @PostMapping("/uninstall-k8s-addons")
     public ResponseEntity<InstallTaskResponse> uninstallK8sAddons() {
         String taskId = UUID.randomUUID().toString();
-        CompletableFuture.runAsync(() -> {
-            installService.uninstallK8sAddons(taskId);
-        });
+        installService.uninstallK8sAddons(taskId);
         InstallTaskResponse response = new InstallTaskResponse(taskId, "running", "Đã bắt đầu gỡ cài đặt K8s Addons");
         return ResponseEntity.ok(response);
     }
@@ -101,9 +103,7 @@ public class InstallController {
     @PostMapping("/install-metrics-server")
     public ResponseEntity<InstallTaskResponse> installMetricsServer() {
         String taskId = UUID.randomUUID().toString();
-        CompletableFuture.runAsync(() -> {
-            installService.installMetricsServer(taskId);
-        });
+        installService.installMetricsServer(taskId);
         InstallTaskResponse response = new InstallTaskResponse(taskId, "running", "Đã bắt đầu cài đặt Metrics Server");
         return ResponseEntity.ok(response);
     }
@@ -111,9 +111,7 @@ public class InstallController {
     @PostMapping("/uninstall-metrics-server")
     public ResponseEntity<InstallTaskResponse> uninstallMetricsServer() {
         String taskId = UUID.randomUUID().toString();
-        CompletableFuture.runAsync(() -> {
-            installService.uninstallMetricsServer(taskId);
-        });
+        installService.uninstallMetricsServer(taskId);
         InstallTaskResponse response = new InstallTaskResponse(taskId, "running", "Đã bắt đầu gỡ cài đặt Metrics Server");
         return ResponseEntity.ok(response);
     }
@@ -121,9 +119,7 @@ public class InstallController {
     @PostMapping("/install-docker")
     public ResponseEntity<InstallTaskResponse> installDocker() {
         String taskId = UUID.randomUUID().toString();
-        CompletableFuture.runAsync(() -> {
-            installService.installDocker(taskId);
-        });
+        installService.installDocker(taskId);
         InstallTaskResponse response = new InstallTaskResponse(taskId, "running", "Đã bắt đầu cài đặt Docker");
         return ResponseEntity.ok(response);
     }
@@ -131,9 +127,7 @@ public class InstallController {
     @PostMapping("/uninstall-docker")
     public ResponseEntity<InstallTaskResponse> uninstallDocker() {
         String taskId = UUID.randomUUID().toString();
-        CompletableFuture.runAsync(() -> {
-            installService.uninstallDocker(taskId);
-        });
+        installService.uninstallDocker(taskId);
         InstallTaskResponse response = new InstallTaskResponse(taskId, "running", "Đã bắt đầu gỡ cài đặt Docker");
         return ResponseEntity.ok(response);
     }
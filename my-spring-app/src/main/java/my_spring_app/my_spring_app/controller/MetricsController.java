@@ -0,0 +1,96 @@
+package my_spring_app.my_spring_app.controller;
+
+import my_spring_app.my_spring_app.dto.reponse.MetricSeriesResponse;
+import my_spring_app.my_spring_app.metrics.MetricsCollector;
+import my_spring_app.my_spring_app.metrics.ServerMetricsHistory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    private static final Set<String> KINDS = Set.of(
+            MetricsCollector.KIND_SERVER, MetricsCollector.KIND_NODE, MetricsCollector.KIND_NAMESPACE);
+
+    // Mặc định trả về 1 giờ gần nhất, tối đa 360 điểm
+    private static final long DEFAULT_RANGE_MS = 3_600_000L;
+    private static final int DEFAULT_MAX_POINTS = 360;
+    private static final long DEFAULT_HISTORY_RANGE_MS = 24 * 3_600_000L;
+
+    @Autowired
+    private MetricsCollector metricsCollector;
+
+    @Autowired
+    private ServerMetricsHistory serverMetricsHistory;
+
+    /**
+     * Danh sách id đang có series theo loại (server, node, namespace)
+     */
+    @GetMapping("/{kind}")
+    public ResponseEntity<?> listSeries(@PathVariable String kind) {
+        if (!KINDS.contains(kind)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "VALIDATION_ERROR", "message", "Loại metrics không hợp lệ: " + kind));
+        }
+        List<String> ids = metricsCollector.listIds(kind);
+        return ResponseEntity.ok(Map.of("kind", kind, "ids", ids));
+    }
+
+    /**
+     * Lấy series CPU/Memory/Disk đã được collector lấy mẫu sẵn
+     * Query: from, to (epoch millis), maxPoints (gộp trung bình khi vượt quá)
+     */
+    @GetMapping("/{kind}/{id}")
+    public ResponseEntity<?> getSeries(@PathVariable String kind,
+                                       @PathVariable String id,
+                                       @RequestParam(required = false) Long from,
+                                       @RequestParam(required = false) Long to,
+                                       @RequestParam(required = false) Integer maxPoints) {
+        if (!KINDS.contains(kind)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "VALIDATION_ERROR", "message", "Loại metrics không hợp lệ: " + kind));
+        }
+        long toMs = to != null ? to : System.currentTimeMillis();
+        long fromMs = from != null ? from : toMs - DEFAULT_RANGE_MS;
+        if (fromMs > toMs) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "VALIDATION_ERROR", "message", "from phải nhỏ hơn hoặc bằng to"));
+        }
+        MetricSeriesResponse response = metricsCollector.query(kind, id, fromMs, toMs,
+                maxPoints != null ? maxPoints : DEFAULT_MAX_POINTS);
+        if (response == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "NOT_FOUND", "message", "Chưa có dữ liệu metrics cho " + kind + " " + id));
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Lịch sử metrics của server lưu trong DB (giữ lâu hơn series trong bộ nhớ)
+     * Query: resolution (raw, 1m, 5m, 1h; mặc định 5m), from, to (epoch millis, mặc định 24 giờ gần nhất)
+     */
+    @GetMapping("/server/{id}/history")
+    public ResponseEntity<?> getServerHistory(@PathVariable Long id,
+                                              @RequestParam(defaultValue = "5m") String resolution,
+                                              @RequestParam(required = false) Long from,
+                                              @RequestParam(required = false) Long to) {
+        if (!ServerMetricsHistory.resolutions().contains(resolution)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "VALIDATION_ERROR", "message", "resolution phải là một trong " + ServerMetricsHistory.resolutions()));
+        }
+        long toMs = to != null ? to : System.currentTimeMillis();
+        long fromMs = from != null ? from : toMs - DEFAULT_HISTORY_RANGE_MS;
+        if (fromMs > toMs) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "VALIDATION_ERROR", "message", "from phải nhỏ hơn hoặc bằng to"));
+        }
+        return ResponseEntity.ok(serverMetricsHistory.query(id, resolution, fromMs, toMs));
+    }
+}
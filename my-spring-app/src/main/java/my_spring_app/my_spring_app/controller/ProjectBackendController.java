@@ -3,13 +3,16 @@ package my_spring_app.my_spring_app.controller;
 import jakarta.validation.Valid;
 import my_spring_app.my_spring_app.dto.reponse.BackendReplicaInfoResponse;
 import my_spring_app.my_spring_app.dto.reponse.DeployBackendResponse;
+import my_spring_app.my_spring_app.dto.reponse.DeployJobResponse;
 import my_spring_app.my_spring_app.dto.request.DeployBackendRequest;
+import my_spring_app.my_spring_app.service.DeployJobService;
 import my_spring_app.my_spring_app.service.ProjectBackendService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/project-backends")
@@ -18,10 +21,25 @@ public class ProjectBackendController {
     @Autowired
     private ProjectBackendService projectBackendService;
 
+    @Autowired
+    private DeployJobService deployJobService;
+
     @PostMapping(value = "/deploy", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<DeployBackendResponse> deploy(@ModelAttribute @Valid DeployBackendRequest request) {
         DeployBackendResponse response = projectBackendService.deploy(request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        // Triển khai chạy nền, client theo dõi qua jobId
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    @GetMapping("/deploy-jobs/{jobId}")
+    public ResponseEntity<DeployJobResponse> getDeployJob(@PathVariable String jobId) {
+        DeployJobResponse response = deployJobService.getJob(jobId);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping(value = "/deploy-jobs/{jobId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDeployJob(@PathVariable String jobId) {
+        return deployJobService.streamJob(jobId);
     }
 
     @PostMapping("/{projectId}/{backendId}/stop")
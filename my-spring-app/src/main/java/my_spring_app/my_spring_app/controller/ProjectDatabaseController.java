@@ -1,18 +1,29 @@
 package my_spring_app.my_spring_app.controller;
 
 import jakarta.validation.Valid;
+import my_spring_app.my_spring_app.dto.reponse.DatabaseBackupResponse;
 import my_spring_app.my_spring_app.dto.reponse.DeployDatabaseResponse;
+import my_spring_app.my_spring_app.dto.reponse.InstallTaskResponse;
 import my_spring_app.my_spring_app.dto.request.DeployDatabaseRequest;
 import my_spring_app.my_spring_app.service.ProjectDatabaseService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.file.Path;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/project-databases")
@@ -44,5 +55,38 @@ public class ProjectDatabaseController {
         projectDatabaseService.deleteDatabase(projectId, databaseId);
         return ResponseEntity.ok("Đã xóa database thành công");
     }
-}
 
+    /**
+     * Tải dump của database (mysqldump/mongodump nén gzip), stream thẳng từ pod ra response
+     */
+    @GetMapping("/{projectId}/{databaseId}/export")
+    public ResponseEntity<StreamingResponseBody> exportDatabase(@PathVariable Long projectId, @PathVariable Long databaseId) {
+        String fileName = projectDatabaseService.getExportFileName(projectId, databaseId);
+        StreamingResponseBody body = out -> projectDatabaseService.exportDatabase(projectId, databaseId, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    @PostMapping("/{projectId}/{databaseId}/backups")
+    public ResponseEntity<InstallTaskResponse> createBackup(@PathVariable Long projectId, @PathVariable Long databaseId) {
+        InstallTaskResponse response = projectDatabaseService.createBackup(projectId, databaseId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    @GetMapping("/{projectId}/{databaseId}/backups")
+    public ResponseEntity<List<DatabaseBackupResponse>> listBackups(@PathVariable Long projectId, @PathVariable Long databaseId) {
+        return ResponseEntity.ok(projectDatabaseService.listBackups(projectId, databaseId));
+    }
+
+    @GetMapping("/{projectId}/{databaseId}/backups/{fileName:.+}")
+    public ResponseEntity<Resource> downloadBackup(@PathVariable Long projectId, @PathVariable Long databaseId,
+                                                   @PathVariable String fileName) {
+        Path file = projectDatabaseService.getBackupFile(projectId, databaseId, fileName);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(new FileSystemResource(file));
+    }
+}
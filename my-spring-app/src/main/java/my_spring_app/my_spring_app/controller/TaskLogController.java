@@ -0,0 +1,58 @@
+package my_spring_app.my_spring_app.controller;
+
+import my_spring_app.my_spring_app.dto.reponse.TaskLogChunkResponse;
+import my_spring_app.my_spring_app.tasklog.TaskLogHub;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Đọc log của task chạy nền (install, ansible init/playbook, docker) theo offset.
+ * taskId là id trả về khi bắt đầu task ở các endpoint tương ứng.
+ */
+@RestController
+@RequestMapping("/api/tasks")
+public class TaskLogController {
+
+    @Autowired
+    private TaskLogHub taskLogHub;
+
+    /**
+     * Phần log từ offset since, dành cho client poll
+     */
+    @GetMapping("/{taskId}/logs")
+    public ResponseEntity<TaskLogChunkResponse> getLogs(@PathVariable String taskId,
+                                                        @RequestParam(defaultValue = "0") long since) {
+        TaskLogChunkResponse chunk = taskLogHub.read(taskId, since);
+        if ("not_found".equals(chunk.getStatus())) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(chunk);
+        }
+        return ResponseEntity.ok(chunk);
+    }
+
+    /**
+     * Stream log qua SSE: sự kiện "log" chứa phần log mới, sự kiện "status" khi task kết thúc.
+     * Khi kết nối lại, EventSource gửi Last-Event-ID (= offset đã nhận) nên chỉ nhận tiếp phần còn thiếu.
+     */
+    @GetMapping(value = "/{taskId}/logs/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamLogs(@PathVariable String taskId,
+                                 @RequestParam(defaultValue = "0") long since,
+                                 @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        long offset = since;
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            try {
+                offset = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException ignored) {
+                // Giữ offset từ tham số since
+            }
+        }
+        // taskId không tồn tại (gõ sai, đã hết hạn): 404 thay vì tạo log rỗng "running" mãi mãi
+        if (taskLogHub.get(taskId) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(taskLogHub.subscribe(taskId, offset));
+    }
+}
@@ -19,6 +19,14 @@ public class AnsibleTaskStatusResponse {
      */
     private Integer progress;
     private String logs;
+    /**
+     * Offset bắt đầu của phần logs trả về
+     */
+    private Long logOffset;
+    /**
+     * Offset dùng cho lần poll tiếp theo (?since=)
+     */
+    private Long nextOffset;
     private Long startTime;
     private Long endTime;
     private String error;
@@ -0,0 +1,16 @@
+package my_spring_app.my_spring_app.dto.reponse;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArtifactUploadResponse {
+
+    private String artifactId; // SHA-256 của nội dung, dùng làm artifactId khi deploy
+    private String fileName; // tên file gốc (đã chuẩn hóa)
+    private long size; // kích thước (byte)
+    private boolean reused; // true nếu nội dung đã có sẵn trong kho
+}
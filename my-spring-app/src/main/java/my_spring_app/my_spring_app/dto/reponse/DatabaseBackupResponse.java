@@ -0,0 +1,19 @@
+package my_spring_app.my_spring_app.dto.reponse;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một bản backup của database project trong kho backup
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DatabaseBackupResponse {
+    private String fileName;
+    private long sizeBytes;
+    private LocalDateTime createdAt;
+}
@@ -12,4 +12,6 @@ public class DeployBackendResponse {
     private String url; // url of the project
     private String status; // RUNNING, STOPPED, ERROR
     private String domainNameSystem; // domain name system
+    private Long backendId; // id của backend vừa tạo
+    private String jobId; // id của deploy job để theo dõi tiến trình
 }
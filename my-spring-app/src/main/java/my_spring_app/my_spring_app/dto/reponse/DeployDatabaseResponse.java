@@ -9,8 +9,8 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class DeployDatabaseResponse {
 
-    private String status; // RUNNING, ERROR
-    private String databaseIp; // IP của database server
+    private String status; // BUILDING (đang chờ sẵn sàng), RUNNING, ERROR
+    private String databaseIp; // IP của database server (null khi còn BUILDING)
     private Integer databasePort; // Port của database server
     private String databaseName; // Tên database (UUID)
     private String databaseUsername; // Username database (UUID)
@@ -10,6 +10,6 @@ import lombok.NoArgsConstructor;
 public class DeployFrontendResponse {
 
     private String url; // url of the project
-    private String status; // RUNNING, STOPPED, ERROR
+    private String status; // BUILDING (đang rollout), RUNNING, STOPPED, ERROR
     private String domainNameSystem; // domain name system
 }
@@ -0,0 +1,36 @@
+package my_spring_app.my_spring_app.dto.reponse;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeployJobResponse {
+
+    private String jobId;
+    private Long backendId;
+    private String status; // QUEUED, RUNNING, SUCCEEDED, FAILED
+    private String currentStage;
+    private String errorMessage;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private List<StageInfo> stages;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class StageInfo {
+        private String name; // UPLOAD, BUILD, PUSH, APPLY, ROLLOUT_WAIT
+        private String status; // PENDING, RUNNING, SUCCEEDED, FAILED, SKIPPED
+        private String message;
+        private LocalDateTime startedAt;
+        private LocalDateTime finishedAt;
+        private Long durationMs;
+    }
+}
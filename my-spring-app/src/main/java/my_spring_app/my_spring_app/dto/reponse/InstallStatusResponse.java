@@ -17,15 +17,25 @@ public class InstallStatusResponse {
     private String taskId;
     
     /**
-     * running | completed | failed | not_found
+     * running | completed | failed | cancelled | not_found
      */
     private String status;
     
     /**
-     * Logs tích lũy (tất cả logs từ đầu đến hiện tại)
+     * Logs tích lũy từ offset since client gửi lên (since = 0 thì là toàn bộ logs)
      */
     private String logs;
     
+    /**
+     * Offset bắt đầu của phần logs trả về
+     */
+    private Long logOffset;
+    
+    /**
+     * Offset dùng cho lần poll tiếp theo (?since=)
+     */
+    private Long nextOffset;
+    
     /**
      * Thời gian bắt đầu (milliseconds)
      */
@@ -40,5 +50,25 @@ public class InstallStatusResponse {
      * Lỗi (nếu có)
      */
     private String error;
+
+    /**
+     * Tiến độ (%) ước lượng theo số bước đã xong
+     */
+    private Integer progress;
+
+    /**
+     * Bước đang chạy (đếm từ 1), 0 nếu chưa bắt đầu bước nào
+     */
+    private Integer currentStep;
+
+    /**
+     * Tổng số bước dự kiến, 0 nếu không xác định
+     */
+    private Integer totalSteps;
+
+    /**
+     * Tên bước đang chạy
+     */
+    private String stepName;
 }
 
@@ -0,0 +1,34 @@
+package my_spring_app.my_spring_app.dto.reponse;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kết quả join nhiều node vào K8s cluster: tổng hợp và kết quả theo từng node
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JoinNodesResponse {
+    private int total;
+    private int succeeded;
+    private int failed;
+    private long durationMs;
+    private List<NodeResult> results = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class NodeResult {
+        private Long serverId;
+        private String host;
+        private boolean success;
+        private boolean timedOut;
+        private String error;
+        private long durationMs;
+    }
+}
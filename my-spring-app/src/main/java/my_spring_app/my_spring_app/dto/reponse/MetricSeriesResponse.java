@@ -0,0 +1,21 @@
+package my_spring_app.my_spring_app.dto.reponse;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricSeriesResponse {
+    private String kind; // server, node, namespace
+    private String id; // server id, tên node hoặc tên namespace
+    private Long intervalMs; // chu kỳ lấy mẫu của collector
+    private long[] timestamps; // epoch millis, tăng dần
+    private double[] cpu; // cores (server: số core đang bận theo /proc/stat)
+    private long[] memory; // bytes đã dùng
+    private long[] disk; // bytes đã dùng (0 với node/namespace)
+    private Double cpuCapacity; // cores
+    private Long memoryCapacity; // bytes
+    private Long diskCapacity; // bytes
+}
@@ -0,0 +1,19 @@
+package my_spring_app.my_spring_app.dto.reponse;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một đoạn log của pod gửi qua SSE
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PodLogChunkResponse {
+    /**
+     * Tên pod, null ở chế độ gộp nhiều pod (mỗi dòng đã có tiền tố [pod])
+     */
+    private String pod;
+    private String text;
+}
@@ -29,6 +29,13 @@ public class ServerResponse {
     private String ramUsed;
     private String diskTotal;
     private String diskUsed;
+    // Cùng metrics ở dạng số (millicores, bytes) để client không phải parse chuỗi
+    private Long cpuMillicores;
+    private Long cpuUsedMillicores;
+    private Long ramTotalBytes;
+    private Long ramUsedBytes;
+    private Long diskTotalBytes;
+    private Long diskUsedBytes;
 }
 
 
@@ -0,0 +1,30 @@
+package my_spring_app.my_spring_app.dto.reponse;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một đoạn log mới của task, tính từ offset client đã có
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskLogChunkResponse {
+    private String taskId;
+    /**
+     * Offset bắt đầu của đoạn log này
+     */
+    private long offset;
+    /**
+     * Offset để dùng cho lần đọc tiếp theo (?since=)
+     */
+    private long nextOffset;
+    private String text;
+    /**
+     * running | completed | failed | not_found
+     */
+    private String status;
+    private Integer progress;
+    private String error;
+}
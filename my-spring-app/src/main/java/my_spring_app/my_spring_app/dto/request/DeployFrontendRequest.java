@@ -25,6 +25,10 @@ public class DeployFrontendRequest {
 
     private MultipartFile file; // deploymentType = FILE
 
+    private String artifactId; // deploymentType = FILE, thay cho file: id trả về từ /api/artifacts
+
+    private String artifactFileName; // tên file zip gốc đi kèm artifactId
+
     @NotBlank(message = "Domain name system không được để trống")
     private String domainNameSystem;
 
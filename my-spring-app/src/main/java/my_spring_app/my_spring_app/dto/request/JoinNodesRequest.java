@@ -0,0 +1,21 @@
+package my_spring_app.my_spring_app.dto.request;
+
+import jakarta.validation.constraints.NotEmpty;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Request join nhiều server vào K8s cluster cùng lúc
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JoinNodesRequest {
+
+    @NotEmpty(message = "serverIds is required")
+    private List<Long> serverIds;
+}
@@ -0,0 +1,58 @@
+package my_spring_app.my_spring_app.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "build_cache")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BuildCacheEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // SHA-256 của (artifact, framework, Dockerfile)
+    @Column(name = "cache_key", nullable = false, unique = true, length = 64)
+    private String cacheKey;
+
+    // SHA-256 của file zip nguồn
+    @Column(name = "artifact_id", nullable = false, length = 64)
+    private String artifactId;
+
+    @Column(name = "framework_type", nullable = false)
+    private String frameworkType;
+
+    // Image đã push, ưu tiên dạng digest (repo@sha256:...) để không bị đổi khi tag bị ghi đè
+    @Column(name = "image_ref", nullable = false, length = 512)
+    private String imageRef;
+
+    @Column(name = "hit_count", nullable = false)
+    private Long hitCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_used_at", nullable = false)
+    private LocalDateTime lastUsedAt;
+
+    @PrePersist
+    public void prePersist() {
+        LocalDateTime now = LocalDateTime.now();
+        if (createdAt == null) {
+            createdAt = now;
+        }
+        if (lastUsedAt == null) {
+            lastUsedAt = now;
+        }
+        if (hitCount == null) {
+            hitCount = 0L;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package my_spring_app.my_spring_app.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "deploy_job")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeployJobEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // ID trả về cho client để theo dõi tiến trình
+    @Column(name = "job_id", nullable = false, unique = true, length = 36)
+    private String jobId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "backend_id", nullable = false)
+    private ProjectBackendEntity backend;
+
+    @Column(nullable = false)
+    private String status; // QUEUED, RUNNING, SUCCEEDED, FAILED
+
+    @Column(name = "current_stage", nullable = true)
+    private String currentStage;
+
+    @Column(name = "error_message", nullable = true, length = 2000)
+    private String errorMessage;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at", nullable = true)
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at", nullable = true)
+    private LocalDateTime finishedAt;
+
+    @PrePersist
+    public void prePersist() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+}
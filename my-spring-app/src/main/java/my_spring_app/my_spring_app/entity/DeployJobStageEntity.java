@@ -0,0 +1,45 @@
+package my_spring_app.my_spring_app.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "deploy_job_stage")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeployJobStageEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "job_id", nullable = false)
+    private DeployJobEntity job;
+
+    @Column(name = "stage_order", nullable = false)
+    private Integer stageOrder;
+
+    @Column(nullable = false)
+    private String name; // UPLOAD, BUILD, PUSH, APPLY, ROLLOUT_WAIT
+
+    @Column(nullable = false)
+    private String status; // PENDING, RUNNING, SUCCEEDED, FAILED, SKIPPED
+
+    @Column(name = "message", nullable = true, length = 2000)
+    private String message;
+
+    @Column(name = "started_at", nullable = true)
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at", nullable = true)
+    private LocalDateTime finishedAt;
+
+    @Column(name = "duration_ms", nullable = true)
+    private Long durationMs;
+}
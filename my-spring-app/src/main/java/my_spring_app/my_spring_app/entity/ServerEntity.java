@@ -53,12 +53,31 @@ public class ServerEntity {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
-    // Metrics fields (optional - có thể null) - lưu cả total và used
+    // Metrics dạng số (optional - có thể null), dùng cho tính toán/tổng hợp thay vì parse chuỗi
+    @Column(name = "cpu_millicores")
+    private Long cpuMillicores; // Tổng CPU, ví dụ: 4000 (4 cores)
+
+    @Column(name = "cpu_used_millicores")
+    private Long cpuUsedMillicores; // CPU đang bận, ví dụ: 1200
+
+    @Column(name = "ram_total_bytes")
+    private Long ramTotalBytes;
+
+    @Column(name = "ram_used_bytes")
+    private Long ramUsedBytes;
+
+    @Column(name = "disk_total_bytes")
+    private Long diskTotalBytes;
+
+    @Column(name = "disk_used_bytes")
+    private Long diskUsedBytes;
+
+    // Metrics dạng chuỗi hiển thị (giữ cho API cũ), luôn được ghi cùng lúc với các cột số ở trên
     @Column(name = "cpu_cores", length = 20)
     private String cpuCores; // Số CPU cores, ví dụ: "4"
 
     @Column(name = "cpu_used", length = 20)
-    private String cpuUsed; // CPU load (usage), ví dụ: "1.2", "0.8"
+    private String cpuUsed; // CPU đang bận (cores), ví dụ: "1.2", "0.8"
 
     @Column(name = "ram_total", length = 20)
     private String ramTotal; // Tổng RAM, ví dụ: "8.0Gi", "16G"
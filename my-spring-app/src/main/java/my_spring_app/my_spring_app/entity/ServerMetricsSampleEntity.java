@@ -0,0 +1,67 @@
+package my_spring_app.my_spring_app.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một điểm trong lịch sử metrics của server (bảng chỉ ghi nối thêm).
+ *
+ * resolution = "raw" là sample gốc từ collector; "1m", "5m", "1h" là rollup theo bucket,
+ * khi đó sampledAt là đầu bucket, giá trị used là trung bình và *_max là đỉnh trong bucket.
+ * Ghi bằng JDBC batch trong {@link my_spring_app.my_spring_app.metrics.ServerMetricsHistory},
+ * entity chỉ dùng để Hibernate tạo bảng và index.
+ */
+@Entity
+@Table(name = "server_metrics_sample", indexes = {
+        @Index(name = "idx_server_metrics_sample_lookup", columnList = "resolution, server_id, sampled_at"),
+        @Index(name = "idx_server_metrics_sample_time", columnList = "resolution, sampled_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServerMetricsSampleEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "server_id", nullable = false)
+    private Long serverId;
+
+    @Column(name = "resolution", nullable = false, length = 8)
+    private String resolution; // raw, 1m, 5m, 1h
+
+    // Epoch millis (đầu bucket với rollup)
+    @Column(name = "sampled_at", nullable = false)
+    private Long sampledAt;
+
+    // Số sample gốc gộp vào điểm này
+    @Column(name = "sample_count", nullable = false)
+    private Integer sampleCount;
+
+    @Column(name = "cpu_millicores")
+    private Long cpuMillicores;
+
+    @Column(name = "cpu_used_millicores")
+    private Long cpuUsedMillicores;
+
+    @Column(name = "cpu_used_max_millicores")
+    private Long cpuUsedMaxMillicores;
+
+    @Column(name = "ram_total_bytes")
+    private Long ramTotalBytes;
+
+    @Column(name = "ram_used_bytes")
+    private Long ramUsedBytes;
+
+    @Column(name = "ram_used_max_bytes")
+    private Long ramUsedMaxBytes;
+
+    @Column(name = "disk_total_bytes")
+    private Long diskTotalBytes;
+
+    @Column(name = "disk_used_bytes")
+    private Long diskUsedBytes;
+}
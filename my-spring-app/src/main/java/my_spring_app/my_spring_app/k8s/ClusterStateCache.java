@@ -0,0 +1,325 @@
+package my_spring_app.my_spring_app.k8s;
+
+import io.kubernetes.client.common.KubernetesListObject;
+import io.kubernetes.client.common.KubernetesObject;
+import io.kubernetes.client.informer.ResourceEventHandler;
+import io.kubernetes.client.informer.SharedIndexInformer;
+import io.kubernetes.client.informer.SharedInformerFactory;
+import io.kubernetes.client.informer.cache.Caches;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.models.V1Deployment;
+import io.kubernetes.client.openapi.models.V1DeploymentList;
+import io.kubernetes.client.openapi.models.V1Ingress;
+import io.kubernetes.client.openapi.models.V1IngressList;
+import io.kubernetes.client.openapi.models.V1Namespace;
+import io.kubernetes.client.openapi.models.V1NamespaceList;
+import io.kubernetes.client.openapi.models.V1Node;
+import io.kubernetes.client.openapi.models.V1NodeList;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1PersistentVolume;
+import io.kubernetes.client.openapi.models.V1PersistentVolumeClaim;
+import io.kubernetes.client.openapi.models.V1PersistentVolumeClaimList;
+import io.kubernetes.client.openapi.models.V1PersistentVolumeList;
+import io.kubernetes.client.openapi.models.V1Pod;
+import io.kubernetes.client.openapi.models.V1PodList;
+import io.kubernetes.client.openapi.models.V1Service;
+import io.kubernetes.client.openapi.models.V1ServiceList;
+import io.kubernetes.client.openapi.models.V1StatefulSet;
+import io.kubernetes.client.openapi.models.V1StatefulSetList;
+import io.kubernetes.client.util.generic.GenericKubernetesApi;
+import io.kubernetes.client.util.generic.KubernetesApiResponse;
+import io.kubernetes.client.util.generic.options.ListOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Cache trạng thái cluster trong bộ nhớ dựa trên SharedInformerFactory.
+ *
+ * Mỗi loại resource (pods, deployments, statefulsets, PVC, PV, services, ingress, namespaces, nodes)
+ * giữ một watch duy nhất tới apiserver, các endpoint danh sách/chi tiết của admin đọc từ store local
+ * thay vì gọi list*ForAllNamespaces cho mỗi HTTP request.
+ *
+ * Store được index theo namespace, label "app" và node (với pod). Informer được khởi động lazy ở lần
+ * truy cập đầu tiên và khởi động lại khi {@link KubernetesClientRegistry} tạo client mới. Khi informer
+ * chưa đồng bộ xong thì đọc trực tiếp từ API để request đầu tiên không bị chặn.
+ */
+@Component
+public class ClusterStateCache {
+
+    public static final String NAMESPACE_INDEX = Caches.NAMESPACE_INDEX;
+    public static final String APP_INDEX = "app";
+    public static final String NODE_INDEX = "node";
+
+    private final KubernetesClientRegistry clientRegistry;
+
+    private final ResourceCache<V1Pod, V1PodList> pods =
+            new ResourceCache<>(V1Pod.class, V1PodList.class, "", "v1", "pods", true);
+    private final ResourceCache<V1Deployment, V1DeploymentList> deployments =
+            new ResourceCache<>(V1Deployment.class, V1DeploymentList.class, "apps", "v1", "deployments", true);
+    private final ResourceCache<V1StatefulSet, V1StatefulSetList> statefulSets =
+            new ResourceCache<>(V1StatefulSet.class, V1StatefulSetList.class, "apps", "v1", "statefulsets", true);
+    private final ResourceCache<V1PersistentVolumeClaim, V1PersistentVolumeClaimList> persistentVolumeClaims =
+            new ResourceCache<>(V1PersistentVolumeClaim.class, V1PersistentVolumeClaimList.class, "", "v1", "persistentvolumeclaims", true);
+    private final ResourceCache<V1PersistentVolume, V1PersistentVolumeList> persistentVolumes =
+            new ResourceCache<>(V1PersistentVolume.class, V1PersistentVolumeList.class, "", "v1", "persistentvolumes", false);
+    private final ResourceCache<V1Service, V1ServiceList> services =
+            new ResourceCache<>(V1Service.class, V1ServiceList.class, "", "v1", "services", true);
+    private final ResourceCache<V1Ingress, V1IngressList> ingresses =
+            new ResourceCache<>(V1Ingress.class, V1IngressList.class, "networking.k8s.io", "v1", "ingresses", true);
+    private final ResourceCache<V1Namespace, V1NamespaceList> namespaces =
+            new ResourceCache<>(V1Namespace.class, V1NamespaceList.class, "", "v1", "namespaces", false);
+    private final ResourceCache<V1Node, V1NodeList> nodes =
+            new ResourceCache<>(V1Node.class, V1NodeList.class, "", "v1", "nodes", false);
+
+    private final List<ResourceCache<?, ?>> all = List.of(
+            pods, deployments, statefulSets, persistentVolumeClaims, persistentVolumes,
+            services, ingresses, namespaces, nodes);
+
+    private SharedInformerFactory factory;
+    // Watch client mà informer hiện tại đang dùng; volatile để đường đọc kiểm tra không cần lock
+    private volatile ApiClient factoryClient;
+
+    public ClusterStateCache(KubernetesClientRegistry clientRegistry) {
+        this.clientRegistry = clientRegistry;
+    }
+
+    public ResourceCache<V1Pod, V1PodList> pods() {
+        return pods;
+    }
+
+    public ResourceCache<V1Deployment, V1DeploymentList> deployments() {
+        return deployments;
+    }
+
+    public ResourceCache<V1StatefulSet, V1StatefulSetList> statefulSets() {
+        return statefulSets;
+    }
+
+    public ResourceCache<V1PersistentVolumeClaim, V1PersistentVolumeClaimList> persistentVolumeClaims() {
+        return persistentVolumeClaims;
+    }
+
+    public ResourceCache<V1PersistentVolume, V1PersistentVolumeList> persistentVolumes() {
+        return persistentVolumes;
+    }
+
+    public ResourceCache<V1Service, V1ServiceList> services() {
+        return services;
+    }
+
+    public ResourceCache<V1Ingress, V1IngressList> ingresses() {
+        return ingresses;
+    }
+
+    public ResourceCache<V1Namespace, V1NamespaceList> namespaces() {
+        return namespaces;
+    }
+
+    public ResourceCache<V1Node, V1NodeList> nodes() {
+        return nodes;
+    }
+
+    /**
+     * Khởi động informer nếu chưa chạy, hoặc khởi động lại nếu registry đã tạo client mới
+     * (server MASTER đổi / kubeconfig đổi).
+     */
+    private void ensureStarted() throws Exception {
+        ApiClient watchClient = clientRegistry.getWatchClient();
+        if (factoryClient == watchClient) {
+            return;
+        }
+        synchronized (this) {
+            if (factoryClient != watchClient) {
+                restartInformers(watchClient);
+            }
+        }
+    }
+
+    private void restartInformers(ApiClient watchClient) {
+        if (factory != null) {
+            System.out.println("[ClusterStateCache] Kubernetes client đã thay đổi, khởi động lại informers");
+            factory.stopAllRegisteredInformers();
+        }
+        SharedInformerFactory newFactory = new SharedInformerFactory(watchClient);
+        for (ResourceCache<?, ?> cache : all) {
+            cache.register(newFactory, watchClient);
+        }
+        newFactory.startAllRegisteredInformers();
+        factory = newFactory;
+        factoryClient = watchClient;
+        System.out.println("[ClusterStateCache] Đã khởi động informers cho " + all.size() + " loại resource");
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (factory != null) {
+            factory.stopAllRegisteredInformers();
+            factory = null;
+            factoryClient = null;
+        }
+    }
+
+    private static List<String> appIndexFunc(KubernetesObject obj) {
+        V1ObjectMeta meta = obj.getMetadata();
+        if (meta == null || meta.getLabels() == null || meta.getLabels().get("app") == null) {
+            return Collections.emptyList();
+        }
+        return List.of(meta.getLabels().get("app"));
+    }
+
+    private static List<String> nodeIndexFunc(V1Pod pod) {
+        if (pod.getSpec() == null || pod.getSpec().getNodeName() == null) {
+            return Collections.emptyList();
+        }
+        return List.of(pod.getSpec().getNodeName());
+    }
+
+    /**
+     * Store local của một loại resource, có fallback đọc trực tiếp API khi informer chưa đồng bộ.
+     */
+    public class ResourceCache<T extends KubernetesObject, L extends KubernetesListObject> {
+        private final Class<T> apiTypeClass;
+        private final Class<L> apiListTypeClass;
+        private final String group;
+        private final String version;
+        private final String plural;
+        private final boolean namespaced;
+        private final List<ResourceEventHandler<T>> eventHandlers = new CopyOnWriteArrayList<>();
+        private volatile SharedIndexInformer<T> informer;
+
+        ResourceCache(Class<T> apiTypeClass, Class<L> apiListTypeClass, String group, String version,
+                      String plural, boolean namespaced) {
+            this.apiTypeClass = apiTypeClass;
+            this.apiListTypeClass = apiListTypeClass;
+            this.group = group;
+            this.version = version;
+            this.plural = plural;
+            this.namespaced = namespaced;
+        }
+
+        /**
+         * Toàn bộ resource trong cluster.
+         */
+        public List<T> list() throws Exception {
+            SharedIndexInformer<T> synced = syncedInformer();
+            if (synced != null) {
+                return synced.getIndexer().list();
+            }
+            return items(api().list());
+        }
+
+        /**
+         * Resource trong một namespace.
+         */
+        public List<T> listByNamespace(String namespace) throws Exception {
+            SharedIndexInformer<T> synced = syncedInformer();
+            if (synced != null) {
+                return synced.getIndexer().byIndex(NAMESPACE_INDEX, namespace);
+            }
+            return items(api().list(namespace));
+        }
+
+        /**
+         * Resource có label app=&lt;app&gt; (mọi namespace).
+         */
+        public List<T> listByApp(String app) throws Exception {
+            SharedIndexInformer<T> synced = syncedInformer();
+            if (synced != null) {
+                return synced.getIndexer().byIndex(APP_INDEX, app);
+            }
+            ListOptions options = new ListOptions();
+            options.setLabelSelector("app=" + app);
+            return items(api().list(options));
+        }
+
+        /**
+         * Pod đang chạy trên node (chỉ dùng cho pods).
+         */
+        public List<T> listByNode(String nodeName) throws Exception {
+            SharedIndexInformer<T> synced = syncedInformer();
+            if (synced != null && synced.getIndexer().getIndexers().containsKey(NODE_INDEX)) {
+                return synced.getIndexer().byIndex(NODE_INDEX, nodeName);
+            }
+            ListOptions options = new ListOptions();
+            options.setFieldSelector("spec.nodeName=" + nodeName);
+            return items(api().list(options));
+        }
+
+        /**
+         * Lấy một resource theo namespace/name (namespace = null với resource cluster-scoped).
+         *
+         * @return resource hoặc null nếu không tồn tại
+         */
+        public T get(String namespace, String name) throws Exception {
+            SharedIndexInformer<T> synced = syncedInformer();
+            if (synced != null) {
+                String key = namespaced && namespace != null ? namespace + "/" + name : name;
+                return synced.getIndexer().getByKey(key);
+            }
+            KubernetesApiResponse<T> response = namespaced ? api().get(namespace, name) : api().get(name);
+            if (response.getHttpStatusCode() == 404) {
+                return null;
+            }
+            return response.throwsApiException().getObject();
+        }
+
+        /**
+         * Đăng ký nhận sự kiện add/update/delete từ watch dùng chung của resource.
+         * Handler được giữ lại và gắn vào informer mới mỗi khi informer khởi động lại.
+         */
+        public void addEventHandler(ResourceEventHandler<T> handler) throws Exception {
+            ensureStarted();
+            synchronized (ClusterStateCache.this) {
+                eventHandlers.add(handler);
+                SharedIndexInformer<T> current = informer;
+                if (current != null) {
+                    current.addEventHandler(handler);
+                }
+            }
+        }
+
+        private void register(SharedInformerFactory newFactory, ApiClient watchClient) {
+            GenericKubernetesApi<T, L> watchApi = new GenericKubernetesApi<>(
+                    apiTypeClass, apiListTypeClass, group, version, plural, watchClient);
+            SharedIndexInformer<T> newInformer = newFactory.sharedIndexInformerFor(watchApi, apiTypeClass, 0L);
+            Map<String, Function<T, List<String>>> indexers = new HashMap<>();
+            indexers.put(APP_INDEX, ClusterStateCache::appIndexFunc);
+            if (apiTypeClass == V1Pod.class) {
+                indexers.put(NODE_INDEX, obj -> nodeIndexFunc((V1Pod) obj));
+            }
+            newInformer.addIndexers(indexers);
+            for (ResourceEventHandler<T> handler : eventHandlers) {
+                newInformer.addEventHandler(handler);
+            }
+            informer = newInformer;
+        }
+
+        private SharedIndexInformer<T> syncedInformer() throws Exception {
+            ensureStarted();
+            SharedIndexInformer<T> current = informer;
+            return current != null && current.hasSynced() ? current : null;
+        }
+
+        private GenericKubernetesApi<T, L> api() throws Exception {
+            return new GenericKubernetesApi<>(apiTypeClass, apiListTypeClass, group, version, plural,
+                    clientRegistry.getClient());
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<T> items(KubernetesApiResponse<L> response) throws Exception {
+            L list = response.throwsApiException().getObject();
+            if (list == null || list.getItems() == null) {
+                return new ArrayList<>();
+            }
+            return new ArrayList<>((List<T>) list.getItems());
+        }
+    }
+}
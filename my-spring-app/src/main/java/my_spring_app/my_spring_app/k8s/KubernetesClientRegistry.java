@@ -0,0 +1,285 @@
+package my_spring_app.my_spring_app.k8s;
+
+import com.jcraft.jsch.Session;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.util.Config;
+import my_spring_app.my_spring_app.entity.ServerEntity;
+import my_spring_app.my_spring_app.repository.ServerRepository;
+import my_spring_app.my_spring_app.ssh.SshCommandExecutor;
+import my_spring_app.my_spring_app.ssh.SshSessionPool;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry giữ một ApiClient sống lâu cho cluster (theo server MASTER).
+ *
+ * Kubeconfig chỉ được đọc qua SSH một lần và parse trong bộ nhớ (không ghi file tạm),
+ * ApiClient dùng OkHttp connection pool riêng nên các request sau tái sử dụng kết nối TLS đến apiserver.
+ * Client chỉ được tạo lại khi thông tin server MASTER trong DB thay đổi hoặc kubeconfig/cert trên master đổi.
+ * Đường đọc thường chỉ đọc một field volatile, không query DB: thông tin MASTER chỉ được kiểm tra lại sau khi
+ * server được sửa/xóa ({@link #markMasterChanged()}) và trong lần kiểm tra kubeconfig định kỳ.
+ *
+ * Registry KHÔNG gọi Configuration.setDefaultApiClient: mỗi API phải được tạo với client trả về,
+ * tránh race giữa các request dùng chung default client toàn cục.
+ */
+@Component
+public class KubernetesClientRegistry {
+
+    private static final String[] KUBECONFIG_PATHS = {
+            "~/.kube/config",
+            "/etc/kubernetes/admin.conf",
+            "/root/.kube/config",
+            "$HOME/.kube/config"
+    };
+
+    // Số kết nối idle giữ lại tới apiserver
+    private static final int MAX_IDLE_CONNECTIONS = 16;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+    private static final long READ_TIMEOUT_SECONDS = 60;
+    // Ping HTTP/2 cho các kết nối watch sống lâu
+    private static final long WATCH_PING_INTERVAL_SECONDS = 30;
+    // Thời gian tối đa cho lệnh đọc kubeconfig qua SSH
+    private static final long EXEC_TIMEOUT_MS = 15_000L;
+
+    private final ServerRepository serverRepository;
+    private final SshSessionPool sshSessionPool;
+    private final SshCommandExecutor sshCommandExecutor;
+
+    private volatile CachedClient cached;
+    // Bật khi server có thể đã đổi; lần gọi getClient kế tiếp sẽ so lại fingerprint MASTER trong DB
+    private volatile boolean masterChanged;
+
+    public KubernetesClientRegistry(ServerRepository serverRepository, SshSessionPool sshSessionPool,
+                                    SshCommandExecutor sshCommandExecutor) {
+        this.serverRepository = serverRepository;
+        this.sshSessionPool = sshSessionPool;
+        this.sshCommandExecutor = sshCommandExecutor;
+    }
+
+    /**
+     * Lấy ApiClient của cluster, tạo mới nếu chưa có hoặc server MASTER đã thay đổi.
+     */
+    public ApiClient getClient() throws Exception {
+        return getClient(null);
+    }
+
+    /**
+     * Lấy ApiClient của cluster. Nếu cần đọc lại kubeconfig thì dùng luôn SSH session
+     * đến MASTER mà caller đang giữ (nếu có) thay vì mượn session khác.
+     *
+     * @param masterSession SSH session đến MASTER (có thể null)
+     */
+    public ApiClient getClient(Session masterSession) throws Exception {
+        return current(masterSession).client;
+    }
+
+    /**
+     * Lấy ApiClient dùng cho watch/informer (không giới hạn read timeout, có ping giữ kết nối).
+     * Client này được tạo lại cùng lúc với {@link #getClient()}, caller có thể so sánh identity
+     * để biết khi nào cần mở lại watch.
+     */
+    public ApiClient getWatchClient() throws Exception {
+        return current(null).watchClient;
+    }
+
+    /**
+     * Báo thông tin server có thể đã đổi (sửa/xóa server, đổi role). Nếu đang trong transaction thì chỉ
+     * đánh dấu sau khi commit, để lần kiểm tra lại đọc được dữ liệu mới.
+     */
+    public void markMasterChanged() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    masterChanged = true;
+                }
+            });
+        } else {
+            masterChanged = true;
+        }
+    }
+
+    /**
+     * Bỏ client hiện tại (ví dụ khi nhận 401 hoặc sau khi cài lại cluster), lần gọi sau sẽ đọc lại kubeconfig.
+     */
+    public void invalidate() {
+        CachedClient current = cached;
+        cached = null;
+        if (current != null) {
+            shutdown(current);
+            System.out.println("[KubernetesClientRegistry] Đã hủy ApiClient hiện tại");
+        }
+    }
+
+    /**
+     * Định kỳ kiểm tra kubeconfig trên MASTER, nếu cert/nội dung đổi thì tạo lại client.
+     * Chỉ chạy khi đã có client (không tạo kết nối SSH khi cluster chưa được dùng).
+     */
+    @Scheduled(fixedDelay = 5 * 60_000L, initialDelay = 5 * 60_000L)
+    public void refreshIfKubeconfigChanged() {
+        CachedClient current = cached;
+        if (current == null) {
+            return;
+        }
+        try {
+            ServerEntity master = getMasterServer();
+            String kubeconfig = readKubeconfig(master, null);
+            String contentHash = sha256(replaceServerUrl(kubeconfig, master.getIp()));
+            if (!contentHash.equals(current.kubeconfigHash) || !current.serverFingerprint.equals(serverFingerprint(master))) {
+                synchronized (this) {
+                    // Trong lúc đọc kubeconfig client đã được tạo lại/hủy, hoặc MASTER vừa đổi (master ở trên có thể
+                    // đã cũ): bỏ qua lần kiểm tra này, không ghi đè client mới hơn
+                    if (cached != current || masterChanged) {
+                        return;
+                    }
+                    cached = buildClient(master, serverFingerprint(master), kubeconfig);
+                }
+                shutdown(current);
+                System.out.println("[KubernetesClientRegistry] Kubeconfig trên MASTER đã thay đổi, đã tạo lại ApiClient");
+            }
+        } catch (Exception e) {
+            System.err.println("[KubernetesClientRegistry] Không thể kiểm tra kubeconfig: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Client hiện tại; chỉ vào khối synchronized (và query DB) khi chưa có client hoặc MASTER có thể đã đổi.
+     */
+    private CachedClient current(Session masterSession) throws Exception {
+        CachedClient current = cached;
+        if (current != null && !masterChanged) {
+            return current;
+        }
+        synchronized (this) {
+            current = cached;
+            if (current != null && !masterChanged) {
+                return current;
+            }
+            masterChanged = false;
+            ServerEntity master = getMasterServer();
+            String serverFingerprint = serverFingerprint(master);
+            if (current != null && current.serverFingerprint.equals(serverFingerprint)) {
+                return current;
+            }
+            String kubeconfig = readKubeconfig(master, masterSession);
+            CachedClient rebuilt = buildClient(master, serverFingerprint, kubeconfig);
+            cached = rebuilt;
+            if (current != null) {
+                shutdown(current);
+            }
+            System.out.println("[KubernetesClientRegistry] Đã tạo ApiClient mới cho cluster (MASTER " + master.getIp() + ")");
+            return rebuilt;
+        }
+    }
+
+    /**
+     * Thay https://127.0.0.1:6443 / https://localhost:6443 bằng https://<master-ip>:6443
+     */
+    public static String replaceServerUrl(String kubeconfigContent, String masterIp) {
+        if (kubeconfigContent == null || masterIp == null || masterIp.isBlank()) {
+            return kubeconfigContent;
+        }
+        String newServerUrl = "https://" + masterIp + ":6443";
+        return kubeconfigContent
+                .replace("https://127.0.0.1:6443", newServerUrl)
+                .replace("https://localhost:6443", newServerUrl);
+    }
+
+    private ServerEntity getMasterServer() {
+        return serverRepository.findByRole("MASTER").orElseThrow(() -> new RuntimeException(
+                "Không tìm thấy server MASTER. Vui lòng cấu hình server MASTER trong hệ thống."));
+    }
+
+    private String serverFingerprint(ServerEntity master) {
+        return master.getId() + "|" + master.getIp() + "|" + master.getPort() + "|"
+                + master.getUsername() + "|" + master.getPassword();
+    }
+
+    private CachedClient buildClient(ServerEntity master, String serverFingerprint, String kubeconfig) throws Exception {
+        String content = replaceServerUrl(kubeconfig, master.getIp());
+        ApiClient client = Config.fromConfig(new StringReader(content));
+        OkHttpClient httpClient = client.getHttpClient().newBuilder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(true)
+                .build();
+        client.setHttpClient(httpClient);
+
+        ApiClient watchClient = Config.fromConfig(new StringReader(content));
+        watchClient.setHttpClient(watchClient.getHttpClient().newBuilder()
+                .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(0, TimeUnit.SECONDS)
+                .pingInterval(WATCH_PING_INTERVAL_SECONDS, TimeUnit.SECONDS)
+                .build());
+        return new CachedClient(client, watchClient, serverFingerprint, sha256(content));
+    }
+
+    private String readKubeconfig(ServerEntity master, Session masterSession) throws Exception {
+        Session session = masterSession;
+        boolean borrowed = false;
+        if (session == null) {
+            session = sshSessionPool.acquire(master);
+            borrowed = true;
+        }
+        try {
+            for (String path : KUBECONFIG_PATHS) {
+                try {
+                    String content = exec(session, "cat " + path);
+                    if (content != null && !content.trim().isEmpty()) {
+                        return content;
+                    }
+                } catch (Exception ignored) {
+                }
+            }
+            throw new RuntimeException("Không thể đọc kubeconfig từ master server.");
+        } finally {
+            if (borrowed) {
+                sshSessionPool.release(session);
+            }
+        }
+    }
+
+    private String exec(Session session, String command) throws Exception {
+        SshCommandExecutor.CommandResult result = sshCommandExecutor.execute(session, command, EXEC_TIMEOUT_MS);
+        return result.isSuccess() ? result.stdout() : null;
+    }
+
+    private static void shutdown(CachedClient cachedClient) {
+        try {
+            cachedClient.client.getHttpClient().connectionPool().evictAll();
+            cachedClient.watchClient.getHttpClient().connectionPool().evictAll();
+        } catch (Exception ignored) {
+        }
+    }
+
+    private static String sha256(String content) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static class CachedClient {
+        final ApiClient client;
+        final ApiClient watchClient;
+        final String serverFingerprint;
+        final String kubeconfigHash;
+
+        CachedClient(ApiClient client, ApiClient watchClient, String serverFingerprint, String kubeconfigHash) {
+            this.client = client;
+            this.watchClient = watchClient;
+            this.serverFingerprint = serverFingerprint;
+            this.kubeconfigHash = kubeconfigHash;
+        }
+    }
+}
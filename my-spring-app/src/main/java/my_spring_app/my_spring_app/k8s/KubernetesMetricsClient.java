@@ -0,0 +1,159 @@
+package my_spring_app.my_spring_app.k8s;
+
+import io.kubernetes.client.custom.ContainerMetrics;
+import io.kubernetes.client.custom.NodeMetrics;
+import io.kubernetes.client.custom.NodeMetricsList;
+import io.kubernetes.client.custom.PodMetrics;
+import io.kubernetes.client.custom.PodMetricsList;
+import io.kubernetes.client.custom.Quantity;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.util.generic.GenericKubernetesApi;
+import io.kubernetes.client.util.generic.KubernetesApiResponse;
+import io.kubernetes.client.util.generic.options.ListOptions;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client đọc CPU/Memory từ metrics.k8s.io/v1beta1 (PodMetrics/NodeMetrics) qua ApiClient dùng chung,
+ * thay cho việc SSH lên MASTER chạy "kubectl top" rồi tách chuỗi output.
+ *
+ * Một lần gọi list trả về metrics của toàn cluster (hoặc một namespace / label selector),
+ * giá trị đã được quy đổi sẵn sang cores (double) và bytes (long).
+ */
+@Component
+public class KubernetesMetricsClient {
+
+    private static final String METRICS_GROUP = "metrics.k8s.io";
+    private static final String METRICS_VERSION = "v1beta1";
+
+    private final KubernetesClientRegistry clientRegistry;
+
+    public KubernetesMetricsClient(KubernetesClientRegistry clientRegistry) {
+        this.clientRegistry = clientRegistry;
+    }
+
+    /**
+     * CPU/Memory của một pod (tổng các container).
+     */
+    public record PodUsage(String namespace, String name, Map<String, String> labels,
+                           double cpuCores, long memoryBytes) {
+    }
+
+    /**
+     * CPU/Memory của một node.
+     */
+    public record NodeUsage(String name, double cpuCores, long memoryBytes) {
+    }
+
+    /**
+     * Lấy metrics của tất cả pod trong cluster bằng một request.
+     */
+    public List<PodUsage> listPodUsage() throws Exception {
+        return listPodUsage(null, null);
+    }
+
+    /**
+     * Lấy metrics pod theo namespace và label selector.
+     *
+     * @param namespace     namespace cần lấy (null = tất cả namespace)
+     * @param labelSelector label selector dạng "app=xxx" (null = không lọc)
+     */
+    public List<PodUsage> listPodUsage(String namespace, String labelSelector) throws Exception {
+        GenericKubernetesApi<PodMetrics, PodMetricsList> api = podMetricsApi();
+        ListOptions options = new ListOptions();
+        if (labelSelector != null && !labelSelector.isBlank()) {
+            options.setLabelSelector(labelSelector);
+        }
+        PodMetricsList list = (namespace == null || namespace.isBlank())
+                ? api.list(options).throwsApiException().getObject()
+                : api.list(namespace, options).throwsApiException().getObject();
+
+        List<PodUsage> result = new ArrayList<>();
+        if (list == null || list.getItems() == null) {
+            return result;
+        }
+        for (PodMetrics item : list.getItems()) {
+            result.add(toPodUsage(item, namespace));
+        }
+        return result;
+    }
+
+    /**
+     * Lấy metrics của một pod.
+     *
+     * @return PodUsage hoặc null nếu pod chưa có metrics (404)
+     */
+    public PodUsage getPodUsage(String namespace, String name) throws Exception {
+        KubernetesApiResponse<PodMetrics> response = podMetricsApi().get(namespace, name);
+        if (response.getHttpStatusCode() == 404) {
+            return null;
+        }
+        return toPodUsage(response.throwsApiException().getObject(), namespace);
+    }
+
+    /**
+     * Lấy metrics của tất cả node, key là tên node.
+     */
+    public Map<String, NodeUsage> listNodeUsage() throws Exception {
+        GenericKubernetesApi<NodeMetrics, NodeMetricsList> api = new GenericKubernetesApi<>(
+                NodeMetrics.class, NodeMetricsList.class, METRICS_GROUP, METRICS_VERSION, "nodes", clientRegistry.getClient());
+        NodeMetricsList list = api.list().throwsApiException().getObject();
+
+        Map<String, NodeUsage> result = new HashMap<>();
+        if (list == null || list.getItems() == null) {
+            return result;
+        }
+        for (NodeMetrics item : list.getItems()) {
+            if (item.getMetadata() == null || item.getMetadata().getName() == null) {
+                continue;
+            }
+            String name = item.getMetadata().getName();
+            result.put(name, new NodeUsage(name, cpuCores(item.getUsage()), memoryBytes(item.getUsage())));
+        }
+        return result;
+    }
+
+    // Tạo mới theo client hiện tại của registry (client có thể được tạo lại khi kubeconfig đổi)
+    private GenericKubernetesApi<PodMetrics, PodMetricsList> podMetricsApi() throws Exception {
+        return new GenericKubernetesApi<>(
+                PodMetrics.class, PodMetricsList.class, METRICS_GROUP, METRICS_VERSION, "pods", clientRegistry.getClient());
+    }
+
+    private static PodUsage toPodUsage(PodMetrics item, String namespace) {
+        double cpu = 0.0;
+        long memory = 0L;
+        if (item.getContainers() != null) {
+            for (ContainerMetrics container : item.getContainers()) {
+                cpu += cpuCores(container.getUsage());
+                memory += memoryBytes(container.getUsage());
+            }
+        }
+        V1ObjectMeta meta = item.getMetadata();
+        return new PodUsage(
+                meta != null ? meta.getNamespace() : namespace,
+                meta != null ? meta.getName() : null,
+                meta != null && meta.getLabels() != null ? meta.getLabels() : Collections.emptyMap(),
+                cpu, memory);
+    }
+
+    private static double cpuCores(Map<String, Quantity> usage) {
+        if (usage == null) {
+            return 0.0;
+        }
+        Quantity cpu = usage.get("cpu");
+        return cpu != null && cpu.getNumber() != null ? cpu.getNumber().doubleValue() : 0.0;
+    }
+
+    private static long memoryBytes(Map<String, Quantity> usage) {
+        if (usage == null) {
+            return 0L;
+        }
+        Quantity memory = usage.get("memory");
+        return memory != null && memory.getNumber() != null ? memory.getNumber().longValue() : 0L;
+    }
+}
@@ -0,0 +1,234 @@
+package my_spring_app.my_spring_app.k8s;
+
+import io.kubernetes.client.common.KubernetesListObject;
+import io.kubernetes.client.common.KubernetesObject;
+import io.kubernetes.client.custom.V1Patch;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.models.V1ConfigMap;
+import io.kubernetes.client.openapi.models.V1ConfigMapList;
+import io.kubernetes.client.openapi.models.V1Deployment;
+import io.kubernetes.client.openapi.models.V1DeploymentList;
+import io.kubernetes.client.openapi.models.V1Ingress;
+import io.kubernetes.client.openapi.models.V1IngressList;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1PersistentVolumeClaim;
+import io.kubernetes.client.openapi.models.V1PersistentVolumeClaimList;
+import io.kubernetes.client.openapi.models.V1Secret;
+import io.kubernetes.client.openapi.models.V1SecretList;
+import io.kubernetes.client.openapi.models.V1Service;
+import io.kubernetes.client.openapi.models.V1ServiceList;
+import io.kubernetes.client.openapi.models.V1StatefulSet;
+import io.kubernetes.client.openapi.models.V1StatefulSetList;
+import io.kubernetes.client.openapi.models.V2HorizontalPodAutoscaler;
+import io.kubernetes.client.openapi.models.V2HorizontalPodAutoscalerList;
+import io.kubernetes.client.util.Yaml;
+import io.kubernetes.client.util.generic.GenericKubernetesApi;
+import io.kubernetes.client.util.generic.KubernetesApiResponse;
+import io.kubernetes.client.util.generic.options.PatchOptions;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Apply manifest vào cluster bằng server-side apply qua Kubernetes API (không SFTP, không kubectl).
+ *
+ * YAML nhiều document do các service sinh ra được parse thành object có kiểu (V1Deployment, V1Service...),
+ * sắp theo thứ tự phụ thuộc (Secret/PVC → Service → StatefulSet/Deployment → Ingress → HPA) rồi apply từng kind.
+ * Mỗi object được gắn annotation hash của trạng thái mong muốn: nếu object trên cluster đã mang đúng hash
+ * thì bỏ qua, nên deploy lại với manifest không đổi không tạo thêm request ghi nào.
+ */
+@Component
+public class ManifestApplier {
+
+    public static final String FIELD_MANAGER = "my-spring-app";
+    public static final String HASH_ANNOTATION = "my-spring-app/applied-hash";
+
+    private final KubernetesClientRegistry clientRegistry;
+    private final ClusterStateCache clusterStateCache;
+
+    /**
+     * Kind được hỗ trợ, khai báo theo thứ tự apply
+     */
+    private static final List<KindSpec<?, ?>> KINDS = List.of(
+            new KindSpec<>("Secret", V1Secret.class, V1SecretList.class, "", "v1", "secrets"),
+            new KindSpec<>("ConfigMap", V1ConfigMap.class, V1ConfigMapList.class, "", "v1", "configmaps"),
+            new KindSpec<>("PersistentVolumeClaim", V1PersistentVolumeClaim.class, V1PersistentVolumeClaimList.class, "", "v1", "persistentvolumeclaims"),
+            new KindSpec<>("Service", V1Service.class, V1ServiceList.class, "", "v1", "services"),
+            new KindSpec<>("StatefulSet", V1StatefulSet.class, V1StatefulSetList.class, "apps", "v1", "statefulsets"),
+            new KindSpec<>("Deployment", V1Deployment.class, V1DeploymentList.class, "apps", "v1", "deployments"),
+            new KindSpec<>("Ingress", V1Ingress.class, V1IngressList.class, "networking.k8s.io", "v1", "ingresses"),
+            new KindSpec<>("HorizontalPodAutoscaler", V2HorizontalPodAutoscaler.class, V2HorizontalPodAutoscalerList.class, "autoscaling", "v2", "horizontalpodautoscalers")
+    );
+
+    private record KindSpec<T extends KubernetesObject, L extends KubernetesListObject>(
+            String kind, Class<T> apiClass, Class<L> listClass, String group, String version, String plural) {
+
+        String apiVersion() {
+            return group.isEmpty() ? version : group + "/" + version;
+        }
+
+        GenericKubernetesApi<T, L> api(ApiClient client) {
+            return new GenericKubernetesApi<>(apiClass, listClass, group, version, plural, client);
+        }
+    }
+
+    private record Manifest(KindSpec<?, ?> spec, KubernetesObject object, String hash) {
+    }
+
+    /**
+     * Kết quả apply
+     *
+     * @param applied     số object đã gửi lên apiserver
+     * @param unchanged   số object bỏ qua vì không thay đổi
+     * @param generations metadata.generation của từng object sau khi apply, khóa "Kind/name"
+     */
+    public record ApplyResult(int applied, int unchanged, Map<String, Long> generations) {
+
+        /**
+         * Generation của object sau khi apply (0 nếu không rõ), dùng để chờ rollout đúng phiên bản vừa apply
+         */
+        public long generationOf(String kind, String name) {
+            Long generation = generations.get(kind + "/" + name);
+            return generation == null ? 0 : generation;
+        }
+    }
+
+    public ManifestApplier(KubernetesClientRegistry clientRegistry, ClusterStateCache clusterStateCache) {
+        this.clientRegistry = clientRegistry;
+        this.clusterStateCache = clusterStateCache;
+    }
+
+    /**
+     * Apply toàn bộ document trong yamlContent vào namespace (document không khai báo namespace thì dùng namespace này).
+     * Namespace phải tồn tại trước khi gọi.
+     */
+    public ApplyResult apply(String namespace, String yamlContent) throws Exception {
+        List<Manifest> manifests = parse(namespace, yamlContent);
+        ApiClient client = clientRegistry.getClient();
+
+        int applied = 0;
+        int unchanged = 0;
+        Map<String, Long> generations = new HashMap<>();
+        for (Manifest manifest : manifests) {
+            V1ObjectMeta metadata = manifest.object().getMetadata();
+            String kindName = manifest.spec().kind() + "/" + metadata.getName();
+            KubernetesObject existing = current(client, manifest);
+            KubernetesObject result;
+            if (existing != null && manifest.hash().equals(appliedHash(existing))) {
+                System.out.println("[ManifestApplier] Không thay đổi, bỏ qua: " + kindName);
+                result = existing;
+                unchanged++;
+            } else {
+                result = serverSideApply(client, manifest);
+                System.out.println("[ManifestApplier] Đã apply: " + kindName + " (namespace " + metadata.getNamespace() + ")");
+                applied++;
+            }
+            if (result != null && result.getMetadata() != null && result.getMetadata().getGeneration() != null) {
+                generations.put(kindName, result.getMetadata().getGeneration());
+            }
+        }
+        return new ApplyResult(applied, unchanged, generations);
+    }
+
+    /**
+     * Parse YAML nhiều document thành object có kiểu, gắn hash và sắp theo thứ tự apply
+     */
+    private List<Manifest> parse(String namespace, String yamlContent) throws Exception {
+        Map<String, KindSpec<?, ?>> specsByKey = new HashMap<>();
+        for (KindSpec<?, ?> spec : KINDS) {
+            specsByKey.put(spec.apiVersion() + "/" + spec.kind(), spec);
+        }
+
+        List<Manifest> manifests = new ArrayList<>();
+        for (Object document : new org.yaml.snakeyaml.Yaml().loadAll(yamlContent)) {
+            if (!(document instanceof Map<?, ?> raw) || raw.isEmpty()) {
+                continue;
+            }
+            String key = raw.get("apiVersion") + "/" + raw.get("kind");
+            KindSpec<?, ?> spec = specsByKey.get(key);
+            if (spec == null) {
+                throw new RuntimeException("Manifest không được hỗ trợ: " + key);
+            }
+            KubernetesObject object = Yaml.loadAs(new org.yaml.snakeyaml.Yaml().dump(raw), spec.apiClass());
+            V1ObjectMeta metadata = object.getMetadata();
+            if (metadata == null || metadata.getName() == null) {
+                throw new RuntimeException("Manifest " + spec.kind() + " thiếu metadata.name");
+            }
+            if (metadata.getNamespace() == null) {
+                metadata.setNamespace(namespace);
+            }
+            // Hash tính trước khi gắn annotation để chỉ phản ánh trạng thái mong muốn
+            if (metadata.getAnnotations() != null) {
+                metadata.getAnnotations().remove(HASH_ANNOTATION);
+            }
+            String hash = sha256(Yaml.dump(object));
+            Map<String, String> annotations = metadata.getAnnotations() == null
+                    ? new LinkedHashMap<>() : new LinkedHashMap<>(metadata.getAnnotations());
+            annotations.put(HASH_ANNOTATION, hash);
+            metadata.setAnnotations(annotations);
+            manifests.add(new Manifest(spec, object, hash));
+        }
+        manifests.sort(Comparator.comparingInt(manifest -> KINDS.indexOf(manifest.spec())));
+        return manifests;
+    }
+
+    /**
+     * Object hiện có trên cluster; đọc từ informer cache nếu kind được cache, ngược lại GET trực tiếp
+     *
+     * @return object hoặc null nếu chưa tồn tại
+     */
+    private KubernetesObject current(ApiClient client, Manifest manifest) throws Exception {
+        V1ObjectMeta metadata = manifest.object().getMetadata();
+        return switch (manifest.spec().kind()) {
+            case "Deployment" -> clusterStateCache.deployments().get(metadata.getNamespace(), metadata.getName());
+            case "StatefulSet" -> clusterStateCache.statefulSets().get(metadata.getNamespace(), metadata.getName());
+            case "Service" -> clusterStateCache.services().get(metadata.getNamespace(), metadata.getName());
+            case "Ingress" -> clusterStateCache.ingresses().get(metadata.getNamespace(), metadata.getName());
+            case "PersistentVolumeClaim" -> clusterStateCache.persistentVolumeClaims().get(metadata.getNamespace(), metadata.getName());
+            default -> {
+                KubernetesApiResponse<? extends KubernetesObject> response = manifest.spec().api(client).get(metadata.getNamespace(), metadata.getName());
+                yield response.isSuccess() ? response.getObject() : null;
+            }
+        };
+    }
+
+    /**
+     * Hash đã apply bởi engine này, null nếu object chưa từng được apply qua đây
+     */
+    private static String appliedHash(KubernetesObject existing) {
+        if (existing.getMetadata() == null || existing.getMetadata().getAnnotations() == null) {
+            return null;
+        }
+        return existing.getMetadata().getAnnotations().get(HASH_ANNOTATION);
+    }
+
+    private KubernetesObject serverSideApply(ApiClient client, Manifest manifest) throws Exception {
+        V1ObjectMeta metadata = manifest.object().getMetadata();
+        PatchOptions options = new PatchOptions().fieldManager(FIELD_MANAGER).force(true);
+        KubernetesApiResponse<? extends KubernetesObject> response = manifest.spec().api(client).patch(
+                metadata.getNamespace(),
+                metadata.getName(),
+                V1Patch.PATCH_FORMAT_APPLY_YAML,
+                new V1Patch(Yaml.dump(manifest.object())),
+                options);
+        if (!response.isSuccess()) {
+            String message = response.getStatus() != null ? response.getStatus().getMessage() : null;
+            throw new RuntimeException("Không thể apply " + manifest.spec().kind() + "/" + metadata.getName()
+                    + " (HTTP " + response.getHttpStatusCode() + "): " + message);
+        }
+        return response.getObject();
+    }
+
+    private static String sha256(String value) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,206 @@
+package my_spring_app.my_spring_app.k8s;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot CPU/Memory của toàn bộ pod trong cluster, dùng chung cho các builder của bảng danh sách.
+ *
+ * Metrics được lấy bằng một request PodMetrics cho cả cluster và giữ trong TTL ngắn (Metrics Server
+ * cũng chỉ cập nhật khoảng 15s một lần). Snapshot được index theo namespace, tên pod và cặp label
+ * key=value nên mỗi dòng của bảng chỉ cần tra selector trong bộ nhớ thay vì gọi metrics một lần.
+ */
+@Component
+public class MetricsSnapshotService {
+
+    // Thời gian sống của snapshot
+    private static final long TTL_MS = 15_000L;
+
+    private final KubernetesMetricsClient metricsClient;
+
+    private volatile Snapshot snapshot;
+
+    public MetricsSnapshotService(KubernetesMetricsClient metricsClient) {
+        this.metricsClient = metricsClient;
+    }
+
+    /**
+     * Tổng CPU/Memory của một nhóm pod.
+     */
+    public record Usage(double cpuCores, long memoryBytes) {
+        public static final Usage ZERO = new Usage(0.0, 0L);
+    }
+
+    /**
+     * Tổng usage của các pod trong namespace khớp label selector.
+     * Selector chỉ gồm điều kiện bằng ("k1=v1,k2==v2") được tra trong snapshot; selector có điều kiện khác
+     * (!=, in/notin, tồn tại/không tồn tại label) được gửi nguyên cho metrics API để apiserver lọc.
+     * Selector rỗng/null trả về {@link Usage#ZERO} (giống việc không có selector để tính).
+     */
+    public Usage usageForSelector(String namespace, String labelSelector) throws Exception {
+        if (namespace == null || labelSelector == null || labelSelector.isBlank()) {
+            return Usage.ZERO;
+        }
+        Map<String, String> labels = parseEqualitySelector(labelSelector);
+        if (labels == null) {
+            double cpu = 0.0;
+            long memory = 0L;
+            for (KubernetesMetricsClient.PodUsage pod : metricsClient.listPodUsage(namespace, labelSelector)) {
+                cpu += pod.cpuCores();
+                memory += pod.memoryBytes();
+            }
+            return new Usage(cpu, memory);
+        }
+        Snapshot current = current();
+        // Lấy danh sách ứng viên theo cặp label đầu tiên rồi lọc theo các label còn lại
+        Map.Entry<String, String> first = labels.entrySet().iterator().next();
+        List<KubernetesMetricsClient.PodUsage> candidates = current.byLabel
+                .getOrDefault(namespace, Collections.emptyMap())
+                .getOrDefault(first.getKey() + "=" + first.getValue(), Collections.emptyList());
+        double cpu = 0.0;
+        long memory = 0L;
+        for (KubernetesMetricsClient.PodUsage pod : candidates) {
+            if (matches(pod.labels(), labels)) {
+                cpu += pod.cpuCores();
+                memory += pod.memoryBytes();
+            }
+        }
+        return new Usage(cpu, memory);
+    }
+
+    /**
+     * Usage của một pod, null nếu pod chưa có metrics.
+     */
+    public Usage usageForPod(String namespace, String name) throws Exception {
+        KubernetesMetricsClient.PodUsage pod = current().byKey.get(namespace + "/" + name);
+        return pod != null ? new Usage(pod.cpuCores(), pod.memoryBytes()) : null;
+    }
+
+    /**
+     * Tổng usage của các pod trong namespace có tên bắt đầu bằng prefix (ví dụ "app-&lt;uuid&gt;").
+     */
+    public Usage usageForPodPrefix(String namespace, String podNamePrefix) throws Exception {
+        double cpu = 0.0;
+        long memory = 0L;
+        for (KubernetesMetricsClient.PodUsage pod : current().byNamespace.getOrDefault(namespace, Collections.emptyList())) {
+            if (pod.name() != null && pod.name().startsWith(podNamePrefix)) {
+                cpu += pod.cpuCores();
+                memory += pod.memoryBytes();
+            }
+        }
+        return new Usage(cpu, memory);
+    }
+
+    /**
+     * Tổng usage theo từng namespace.
+     */
+    public Map<String, Usage> usageByNamespace() throws Exception {
+        return current().namespaceTotals;
+    }
+
+    /**
+     * Metrics của tất cả pod trong namespace.
+     */
+    public List<KubernetesMetricsClient.PodUsage> podsInNamespace(String namespace) throws Exception {
+        return current().byNamespace.getOrDefault(namespace, Collections.emptyList());
+    }
+
+    /**
+     * Metrics của tất cả pod trong cluster.
+     */
+    public List<KubernetesMetricsClient.PodUsage> allPods() throws Exception {
+        return current().pods;
+    }
+
+    private Snapshot current() throws Exception {
+        Snapshot current = snapshot;
+        if (current != null && System.currentTimeMillis() - current.fetchedAt < TTL_MS) {
+            return current;
+        }
+        synchronized (this) {
+            // Chỉ một thread gọi metrics API khi snapshot hết hạn, các thread khác dùng kết quả đó
+            current = snapshot;
+            if (current != null && System.currentTimeMillis() - current.fetchedAt < TTL_MS) {
+                return current;
+            }
+            current = new Snapshot(metricsClient.listPodUsage());
+            snapshot = current;
+            return current;
+        }
+    }
+
+    /**
+     * Parse selector chỉ gồm điều kiện bằng ("k=v" hoặc "k==v", nối bằng dấu phẩy).
+     *
+     * @return map label -> giá trị, hoặc null nếu selector có điều kiện khác (!=, in/notin, "k", "!k")
+     *         hay sai cú pháp; khi đó không thể tra trong snapshot
+     */
+    static Map<String, String> parseEqualitySelector(String labelSelector) {
+        // Set-based (in/notin) có dấu phẩy trong ngoặc, không tách theo dấu phẩy được
+        if (labelSelector.indexOf('(') >= 0 || labelSelector.indexOf('!') >= 0) {
+            return null;
+        }
+        Map<String, String> labels = new LinkedHashMap<>();
+        for (String part : labelSelector.split(",", -1)) {
+            int eq = part.indexOf('=');
+            if (eq < 0) {
+                return null;
+            }
+            String key = part.substring(0, eq).trim();
+            String value = part.substring(part.startsWith("=", eq + 1) ? eq + 2 : eq + 1).trim();
+            if (key.isEmpty() || value.indexOf('=') >= 0) {
+                return null;
+            }
+            // Cùng key với hai giá trị khác nhau thì không pod nào khớp; giữ đúng ngữ nghĩa bằng cách để apiserver xử lý
+            String previous = labels.put(key, value);
+            if (previous != null && !previous.equals(value)) {
+                return null;
+            }
+        }
+        return labels;
+    }
+
+    private static boolean matches(Map<String, String> podLabels, Map<String, String> selector) {
+        for (Map.Entry<String, String> entry : selector.entrySet()) {
+            if (!entry.getValue().equals(podLabels.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Snapshot {
+        final long fetchedAt = System.currentTimeMillis();
+        final List<KubernetesMetricsClient.PodUsage> pods;
+        final Map<String, List<KubernetesMetricsClient.PodUsage>> byNamespace = new HashMap<>();
+        final Map<String, KubernetesMetricsClient.PodUsage> byKey = new HashMap<>();
+        // namespace -> "key=value" -> pods
+        final Map<String, Map<String, List<KubernetesMetricsClient.PodUsage>>> byLabel = new HashMap<>();
+        final Map<String, Usage> namespaceTotals = new HashMap<>();
+
+        Snapshot(List<KubernetesMetricsClient.PodUsage> pods) {
+            this.pods = Collections.unmodifiableList(pods);
+            Map<String, double[]> totals = new HashMap<>();
+            for (KubernetesMetricsClient.PodUsage pod : pods) {
+                String namespace = pod.namespace();
+                byNamespace.computeIfAbsent(namespace, key -> new ArrayList<>()).add(pod);
+                byKey.put(namespace + "/" + pod.name(), pod);
+                Map<String, List<KubernetesMetricsClient.PodUsage>> labelIndex =
+                        byLabel.computeIfAbsent(namespace, key -> new HashMap<>());
+                for (Map.Entry<String, String> label : pod.labels().entrySet()) {
+                    labelIndex.computeIfAbsent(label.getKey() + "=" + label.getValue(), key -> new ArrayList<>()).add(pod);
+                }
+                double[] total = totals.computeIfAbsent(namespace, key -> new double[2]);
+                total[0] += pod.cpuCores();
+                total[1] += pod.memoryBytes();
+            }
+            totals.forEach((namespace, total) -> namespaceTotals.put(namespace, new Usage(total[0], (long) total[1])));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package my_spring_app.my_spring_app.k8s;
+
+import io.kubernetes.client.Exec;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Chạy lệnh dump (mysqldump, mongodump) trong pod qua API exec và nén gzip stdout của nó thẳng vào
+ * OutputStream đích (HTTP response hoặc file backup), chiều ngược lại của {@link PodStreamImporter}.
+ *
+ * Dữ liệu chỉ đi qua một buffer cố định: đích ghi chậm thì thread này ngừng đọc stdout, pipe của kết nối exec
+ * đầy và API server ngừng gửi (backpressure qua TCP), nên heap không tăng theo kích thước database.
+ */
+@Component
+public class PodDumpExporter {
+
+    private static final int CHUNK_BYTES = 64 * 1024;
+    // Thời gian tối đa chờ lệnh dump trả mã thoát sau khi stdout đã đóng
+    private static final long EXIT_TIMEOUT_SECONDS = 60;
+
+    private final KubernetesClientRegistry clientRegistry;
+
+    public PodDumpExporter(KubernetesClientRegistry clientRegistry) {
+        this.clientRegistry = clientRegistry;
+    }
+
+    /**
+     * @param bytes           số byte dump (chưa nén) đọc từ pod
+     * @param compressedBytes số byte đã ghi vào đích
+     */
+    public record ExportResult(long bytes, long compressedBytes, long durationMs) {
+    }
+
+    /**
+     * Dump database trong pod ra đích dưới dạng gzip. Đích không bị đóng.
+     * Trailer gzip chỉ được ghi sau khi lệnh dump thoát với mã 0; khi lỗi, bên gọi phải hủy đích
+     * (xóa file .part, hủy HTTP response) thay vì hoàn tất nó.
+     *
+     * @param command lệnh ghi dump ra stdout (chạy bằng sh -c trong container)
+     * @throws RuntimeException lỗi kết nối hoặc lệnh dump thoát với mã khác 0 (đích có thể đã nhận một phần dữ liệu)
+     */
+    public ExportResult exportDump(String namespace, String pod, String container, String command, OutputStream sink) {
+        long startedAt = System.currentTimeMillis();
+        Process process;
+        try {
+            Exec.ExecutionBuilder builder = new Exec(clientRegistry.getWatchClient())
+                    .newExecutionBuilder(namespace, pod, new String[]{"sh", "-c", command})
+                    .setStdin(false)
+                    .setStdout(true)
+                    .setStderr(true)
+                    .setTty(false);
+            if (container != null && !container.isBlank()) {
+                builder.setContainer(container);
+            }
+            process = builder.execute();
+        } catch (Exception e) {
+            throw new RuntimeException("Không mở được exec vào pod " + namespace + "/" + pod + ": " + e.getMessage(), e);
+        }
+
+        StringBuffer errors = new StringBuffer();
+        Thread stderrReader = Thread.ofVirtual().name("export-stderr-" + pod)
+                .start(() -> PodStreamImporter.drainTail(process.getErrorStream(), errors));
+        CountingOutputStream counted = new CountingOutputStream(sink);
+        long bytes = 0;
+        try {
+            // Không close GZIPOutputStream (sẽ đóng luôn đích của bên gọi), chỉ finish khi dump thành công
+            GZIPOutputStream gzip = new GZIPOutputStream(counted, CHUNK_BYTES);
+            try (InputStream stdout = process.getInputStream()) {
+                byte[] buffer = new byte[CHUNK_BYTES];
+                int read;
+                while ((read = stdout.read(buffer)) != -1) {
+                    gzip.write(buffer, 0, read);
+                    bytes += read;
+                }
+            }
+
+            // Kiểm tra mã thoát TRƯỚC khi ghi trailer gzip: dump lỗi giữa chừng phải để lại file gzip hỏng
+            // (gunzip báo lỗi) chứ không phải một file gzip hợp lệ nhưng thiếu dữ liệu
+            if (!process.waitFor(EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new RuntimeException("Lệnh dump chưa kết thúc sau khi stdout đã đóng");
+            }
+            stderrReader.join(TimeUnit.SECONDS.toMillis(5));
+            int exitCode = process.exitValue();
+            if (exitCode != 0) {
+                throw new RuntimeException("Lệnh dump thoát với mã " + exitCode + ": " + errors.toString().trim());
+            }
+            gzip.finish();
+            gzip.flush();
+            return new ExportResult(bytes, counted.count, System.currentTimeMillis() - startedAt);
+        } catch (IOException e) {
+            throw new RuntimeException("Export bị gián đoạn sau " + bytes + " byte: " + e.getMessage()
+                    + (errors.isEmpty() ? "" : " - " + errors.toString().trim()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Export bị hủy", e);
+        } finally {
+            process.destroy();
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream target;
+        long count;
+
+        CountingOutputStream(OutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] data, int off, int len) throws IOException {
+            target.write(data, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package my_spring_app.my_spring_app.k8s;
+
+import io.kubernetes.client.openapi.apis.CoreV1Api;
+import io.kubernetes.client.openapi.models.V1Pod;
+import my_spring_app.my_spring_app.dto.reponse.PodLogChunkResponse;
+import okhttp3.Call;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stream log của pod qua SSE bằng API pods/log của Kubernetes, thay cho chạy kubectl logs qua SSH
+ * rồi trả cả khối log trong một String.
+ *
+ * Body HTTP của API log được đọc dần trên virtual thread và đẩy ngay ra client thành các sự kiện "log"
+ * ({@link PodLogChunkResponse}), nên bộ nhớ chỉ phụ thuộc kích thước buffer chứ không phụ thuộc độ dài log.
+ * follow=true giữ kết nối tới khi client đóng hoặc container dừng; limitBytes/sinceSeconds/tailLines/timestamps
+ * được chuyển nguyên cho API server. Kết thúc luôn có sự kiện "end" với lý do (eof, limit, error).
+ * Client ngắt kết nối thì request tới API server bị cancel ngay.
+ *
+ * Chế độ gộp: đọc song song mọi pod có label app=&lt;app&gt; trong namespace, luôn xin timestamps từ API server
+ * và trộn các dòng theo timestamp. Mỗi pod có một hàng đợi giới hạn nên pod ghi nhanh bị chặn lại
+ * (backpressure qua TCP) thay vì làm tăng bộ nhớ. Thread trộn chỉ thức dậy khi có dòng mới, khi một pod
+ * kết thúc hoặc khi dòng đang chờ hết cửa sổ gộp (không poll định kỳ). Khi follow, pod mới của app
+ * (scale up, rollout) được phát hiện từ {@link ClusterStateCache} và thêm vào stream đang mở.
+ */
+@Component
+public class PodLogStreamer {
+
+    private static final long SSE_TIMEOUT_MS = 60 * 60 * 1000L;
+    private static final int READ_BUFFER_CHARS = 16 * 1024;
+    // Dòng dài hơn bị cắt, phần còn lại của dòng bị bỏ
+    private static final int MAX_LINE_CHARS = 16 * 1024;
+    // Số dòng đợi gộp tối đa của mỗi pod
+    private static final int MERGE_QUEUE_LINES = 256;
+    // Dòng đã chờ quá lâu thì gửi luôn dù pod khác chưa có dòng để so sánh (pod im lặng khi follow)
+    private static final long MERGE_WINDOW_MS = 1000;
+    // Khi không có dòng nào đang chờ: thời gian ngủ tối đa trước khi kiểm tra lại (client đóng, pod mới)
+    private static final long MERGE_IDLE_WAIT_MS = 1000;
+    // Chu kỳ tìm pod mới của app khi follow (tra store local của informer, không gọi API)
+    private static final long POD_DISCOVERY_INTERVAL_MS = 5000;
+    // follow mà mọi pod đã dừng: chờ pod thay thế trong khoảng này rồi mới kết thúc
+    private static final long REPLACEMENT_POD_WAIT_MS = 30_000;
+    private static final int MAX_EVENT_CHARS = 64 * 1024;
+
+    private final KubernetesClientRegistry clientRegistry;
+    private final ClusterStateCache clusterStateCache;
+
+    public PodLogStreamer(KubernetesClientRegistry clientRegistry, ClusterStateCache clusterStateCache) {
+        this.clientRegistry = clientRegistry;
+        this.clusterStateCache = clusterStateCache;
+    }
+
+    /**
+     * Tham số đọc log, null = mặc định của API server
+     */
+    public record LogOptions(String container, boolean follow, Integer sinceSeconds, Integer tailLines,
+                             Integer limitBytes, boolean timestamps) {
+    }
+
+    /**
+     * Stream log của một pod
+     */
+    public SseEmitter streamPod(String namespace, String podName, LogOptions options) {
+        Stream stream = new Stream();
+        Thread.ofVirtual().name("pod-log-" + podName).start(() -> {
+            String reason;
+            try {
+                Source source = openSource(namespace, podName, options, options.timestamps(), options.limitBytes());
+                stream.calls.add(source.call);
+                reason = pumpSingle(stream, source, options.limitBytes());
+            } catch (Exception e) {
+                reason = stream.closed ? "closed" : "error: " + e.getMessage();
+            }
+            stream.end(reason);
+        });
+        return stream.emitter;
+    }
+
+    /**
+     * Stream log gộp của mọi pod có label app=&lt;app&gt; trong namespace, sắp theo timestamp
+     */
+    public SseEmitter streamApp(String namespace, String app, LogOptions options) {
+        List<V1Pod> pods;
+        try {
+            pods = listAppPods(namespace, app);
+        } catch (Exception e) {
+            throw new RuntimeException("Không lấy được danh sách pod của app " + app + ": " + e.getMessage(), e);
+        }
+        if (pods.isEmpty()) {
+            throw new RuntimeException("Không có pod nào có label app=" + app + " trong namespace " + namespace);
+        }
+
+        Stream stream = new Stream();
+        Thread.ofVirtual().name("pod-log-merge-" + app).start(() -> {
+            String reason;
+            try {
+                Merge merge = new Merge(stream, namespace, app, options);
+                for (V1Pod pod : pods) {
+                    merge.open(pod.getMetadata().getName(), options);
+                }
+                try {
+                    reason = pumpMerged(merge);
+                } finally {
+                    merge.close();
+                }
+            } catch (Exception e) {
+                reason = stream.closed ? "closed" : "error: " + e.getMessage();
+            }
+            stream.end(reason);
+        });
+        return stream.emitter;
+    }
+
+    /**
+     * Một kết nối SSE và các request log đang mở cho nó
+     */
+    private static final class Stream {
+        final SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+        final List<Call> calls = new CopyOnWriteArrayList<>();
+        volatile boolean closed;
+
+        Stream() {
+            Runnable close = () -> {
+                closed = true;
+                calls.forEach(Call::cancel);
+            };
+            emitter.onCompletion(close);
+            emitter.onTimeout(close);
+            emitter.onError(e -> close.run());
+        }
+
+        void send(String pod, String text) throws IOException {
+            emitter.send(SseEmitter.event().name("log").data(new PodLogChunkResponse(pod, text)));
+        }
+
+        void end(String reason) {
+            // Đánh dấu đóng trước để reader đang chờ chỗ trong hàng đợi dừng lại
+            boolean alreadyClosed = closed;
+            closed = true;
+            calls.forEach(Call::cancel);
+            if (alreadyClosed) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name("end").data(Map.of("reason", reason)));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    /**
+     * Log của một pod đang đọc
+     */
+    private static final class Source {
+        final String pod;
+        final Call call;
+        final CountingInputStream bytes;
+        final Reader reader;
+        final BlockingQueue<Line> queue = new ArrayBlockingQueue<>(MERGE_QUEUE_LINES);
+        volatile boolean done;
+
+        Source(String pod, Call call, CountingInputStream bytes) {
+            this.pod = pod;
+            this.call = call;
+            this.bytes = bytes;
+            this.reader = new InputStreamReader(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Đếm số byte đã nhận từ API server (để biết log có bị limitBytes cắt hay không)
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Trạng thái của một stream gộp: các pod đang đọc và tín hiệu đánh thức thread trộn.
+     * Danh sách source chỉ được sửa trên thread trộn.
+     */
+    private final class Merge {
+        final Stream stream;
+        final String namespace;
+        final String app;
+        final LogOptions options;
+        final List<Source> sources = new ArrayList<>();
+        final Set<String> openedPods = new HashSet<>();
+        // Reader báo có dòng mới / pod kết thúc; dung lượng 1 vì chỉ cần biết "có việc"
+        final BlockingQueue<Boolean> wakeups = new ArrayBlockingQueue<>(1);
+        long lastDiscoveryAt = System.currentTimeMillis();
+
+        Merge(Stream stream, String namespace, String app, LogOptions options) {
+            this.stream = stream;
+            this.namespace = namespace;
+            this.app = app;
+            this.options = options;
+        }
+
+        void open(String podName, LogOptions podOptions) throws Exception {
+            Source source = openSource(namespace, podName, podOptions, true, podOptions.limitBytes());
+            stream.calls.add(source.call);
+            sources.add(source);
+            openedPods.add(podName);
+            Thread.ofVirtual().name("pod-log-" + podName).start(() -> readLines(stream, source, this::wakeUp));
+        }
+
+        /**
+         * Bỏ các pod đã đọc hết (stream follow lâu với pod bị thay liên tục không giữ mãi source cũ)
+         */
+        void dropFinishedSources() {
+            sources.removeIf(source -> {
+                // Đọc done trước isEmpty: done mà hàng đợi rỗng thì pod không còn dòng nào
+                if (source.done && source.queue.isEmpty()) {
+                    stream.calls.remove(source.call);
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        /**
+         * Giải phóng các dòng còn trong hàng đợi khi stream kết thúc
+         */
+        void close() {
+            sources.forEach(source -> source.queue.clear());
+        }
+
+        void wakeUp() {
+            wakeups.offer(Boolean.TRUE);
+        }
+
+        void await(long timeoutMs) throws InterruptedException {
+            if (timeoutMs > 0) {
+                wakeups.poll(timeoutMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Khi follow: mở log cho pod mới của app đã chạy (pod Pending chưa có log, thử lại ở chu kỳ sau).
+         * Pod mới đọc từ đầu (bỏ tailLines) để không mất các dòng đầu tiên.
+         */
+        void discoverNewPods() {
+            long now = System.currentTimeMillis();
+            if (!options.follow() || now - lastDiscoveryAt < POD_DISCOVERY_INTERVAL_MS) {
+                return;
+            }
+            lastDiscoveryAt = now;
+            LogOptions newPodOptions = new LogOptions(options.container(), true, options.sinceSeconds(), null,
+                    options.limitBytes(), options.timestamps());
+            try {
+                Set<String> listed = new HashSet<>();
+                for (V1Pod pod : listAppPods(namespace, app)) {
+                    String name = pod.getMetadata().getName();
+                    listed.add(name);
+                    String phase = pod.getStatus() != null ? pod.getStatus().getPhase() : null;
+                    if (openedPods.contains(name) || phase == null || "Pending".equals(phase) || "Unknown".equals(phase)) {
+                        continue;
+                    }
+                    try {
+                        open(name, newPodOptions);
+                    } catch (Exception e) {
+                        // Container chưa sẵn sàng hoặc pod vừa bị xóa: thử lại ở chu kỳ sau
+                    }
+                }
+                // Pod đã bị xóa không quay lại với cùng tên: không giữ tên của chúng suốt phiên follow
+                openedPods.retainAll(listed);
+            } catch (Exception e) {
+                // Không tra được store của informer: giữ các pod hiện có
+            }
+        }
+    }
+
+    private List<V1Pod> listAppPods(String namespace, String app) throws Exception {
+        List<V1Pod> pods = new ArrayList<>();
+        for (V1Pod pod : clusterStateCache.pods().listByApp(app)) {
+            if (pod.getMetadata() != null && Objects.equals(namespace, pod.getMetadata().getNamespace())) {
+                pods.add(pod);
+            }
+        }
+        return pods;
+    }
+
+    /**
+     * @param body nội dung dòng sau timestamp (bằng text nếu dòng không có timestamp)
+     */
+    private record Line(Instant timestamp, String text, String body, long receivedAt) {
+    }
+
+    private Source openSource(String namespace, String podName, LogOptions options, boolean timestamps,
+                              Integer limitBytes) throws Exception {
+        // follow giữ kết nối lâu hơn read timeout của client thường nên dùng client của watch
+        CoreV1Api api = new CoreV1Api(options.follow() ? clientRegistry.getWatchClient() : clientRegistry.getClient());
+        Call call = api.readNamespacedPodLogCall(podName, namespace, options.container(), options.follow(),
+                null, limitBytes, null, null, options.sinceSeconds(), options.tailLines(), timestamps, null);
+        Response response = call.execute();
+        ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            String detail = body != null ? body.string() : "";
+            response.close();
+            throw new RuntimeException("Không đọc được log của pod " + podName + " (HTTP " + response.code() + "): " + detail);
+        }
+        return new Source(podName, call, new CountingInputStream(body.byteStream()));
+    }
+
+    /**
+     * @return "limit" nếu API server đã cắt log ở limitBytes, ngược lại "eof"
+     */
+    private String pumpSingle(Stream stream, Source source, Integer limitBytes) throws IOException {
+        char[] buffer = new char[READ_BUFFER_CHARS];
+        try (Reader reader = source.reader) {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                stream.send(source.pod, new String(buffer, 0, read));
+            }
+        }
+        // API server không báo bị cắt: nhận đủ limitBytes byte thì coi như đã chạm giới hạn
+        return limitBytes != null && source.bytes.count >= limitBytes ? "limit" : "eof";
+    }
+
+    /**
+     * Đọc log của pod thành từng dòng vào hàng đợi (chặn khi hàng đợi đầy), báo onProgress sau mỗi dòng
+     * và khi kết thúc. Dừng khi stream đóng kể cả lúc đang chờ chỗ trong hàng đợi (không còn ai lấy dòng ra,
+     * cancel request cũng không đánh thức được vì thread không nằm trong I/O).
+     */
+    private void readLines(Stream stream, Source source, Runnable onProgress) {
+        StringBuilder line = new StringBuilder();
+        boolean truncated = false;
+        char[] buffer = new char[READ_BUFFER_CHARS];
+        try (Reader reader = source.reader) {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    char c = buffer[i];
+                    if (c == '\n') {
+                        if (!enqueue(stream, source, toLine(line.toString()))) {
+                            return;
+                        }
+                        onProgress.run();
+                        line.setLength(0);
+                        truncated = false;
+                    } else if (line.length() < MAX_LINE_CHARS) {
+                        line.append(c);
+                    } else if (!truncated) {
+                        line.append("…");
+                        truncated = true;
+                    }
+                }
+            }
+            if (!line.isEmpty()) {
+                enqueue(stream, source, toLine(line.toString()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Request bị cancel khi client ngắt kết nối, hoặc mất kết nối tới API server
+        } finally {
+            source.done = true;
+            onProgress.run();
+        }
+    }
+
+    /**
+     * @return false nếu stream đã đóng trong lúc chờ chỗ trong hàng đợi
+     */
+    private static boolean enqueue(Stream stream, Source source, Line line) throws InterruptedException {
+        while (!source.queue.offer(line, MERGE_IDLE_WAIT_MS, TimeUnit.MILLISECONDS)) {
+            if (stream.closed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Dòng có timestamps=true có dạng "<RFC3339Nano> <nội dung>"
+    private static Line toLine(String raw) {
+        long now = System.currentTimeMillis();
+        int space = raw.indexOf(' ');
+        if (space > 0) {
+            try {
+                return new Line(Instant.parse(raw.substring(0, space)), raw, raw.substring(space + 1), now);
+            } catch (DateTimeParseException ignored) {
+                // Dòng không có timestamp: dùng thời điểm nhận
+            }
+        }
+        return new Line(Instant.ofEpochMilli(now), raw, raw, now);
+    }
+
+    /**
+     * Trộn dòng của các pod theo timestamp. Dòng nhỏ nhất được gửi khi mọi pod còn mở đều đã có dòng để so sánh,
+     * hoặc khi nó đã chờ quá MERGE_WINDOW_MS. Timestamp do API server thêm vào chỉ được giữ nếu client yêu cầu.
+     */
+    private String pumpMerged(Merge merge) throws Exception {
+        Stream stream = merge.stream;
+        LogOptions options = merge.options;
+        // limitBytes của API server tính theo từng pod, ở chế độ gộp còn giới hạn tổng
+        long remaining = options.limitBytes() != null ? options.limitBytes() : Long.MAX_VALUE;
+        StringBuilder batch = new StringBuilder();
+        long allDoneSince = 0;
+        while (!stream.closed) {
+            merge.discoverNewPods();
+            merge.dropFinishedSources();
+            Source next = null;
+            boolean waitingForPod = false;
+            boolean allDone = true;
+            for (Source source : merge.sources) {
+                // Đọc done trước peek: nếu done mà hàng đợi rỗng thì pod đã hết dòng
+                boolean done = source.done;
+                Line head = source.queue.peek();
+                if (head == null) {
+                    if (!done) {
+                        waitingForPod = true;
+                        allDone = false;
+                    }
+                    continue;
+                }
+                allDone = false;
+                if (next == null || head.timestamp().isBefore(next.queue.peek().timestamp())) {
+                    next = source;
+                }
+            }
+            long now = System.currentTimeMillis();
+            if (allDone) {
+                flushBatch(stream, batch);
+                // follow: mọi pod đã dừng (ví dụ rollout thay pod), chờ pod thay thế một lúc rồi mới kết thúc
+                if (!options.follow()) {
+                    return "eof";
+                }
+                if (allDoneSince == 0) {
+                    allDoneSince = now;
+                } else if (now - allDoneSince > REPLACEMENT_POD_WAIT_MS) {
+                    return "eof";
+                }
+                merge.await(Math.min(MERGE_IDLE_WAIT_MS, POD_DISCOVERY_INTERVAL_MS));
+                continue;
+            }
+            allDoneSince = 0;
+            if (next == null) {
+                flushBatch(stream, batch);
+                merge.await(MERGE_IDLE_WAIT_MS);
+                continue;
+            }
+            long waited = now - next.queue.peek().receivedAt();
+            if (waitingForPod && waited < MERGE_WINDOW_MS) {
+                // Chờ tới khi có dòng mới hoặc dòng đang giữ hết cửa sổ gộp
+                flushBatch(stream, batch);
+                merge.await(MERGE_WINDOW_MS - waited);
+                continue;
+            }
+
+            Line line = next.queue.poll();
+            String text = options.timestamps() ? line.text() : line.body();
+            String out = "[" + next.pod + "] " + text + "\n";
+            long bytes = out.getBytes(StandardCharsets.UTF_8).length;
+            if (bytes > remaining) {
+                flushBatch(stream, batch);
+                return "limit";
+            }
+            remaining -= bytes;
+            batch.append(out);
+            if (batch.length() >= MAX_EVENT_CHARS) {
+                flushBatch(stream, batch);
+            }
+        }
+        return "closed";
+    }
+
+    private static void flushBatch(Stream stream, StringBuilder batch) throws IOException {
+        if (!batch.isEmpty()) {
+            stream.send(null, batch.toString());
+            batch.setLength(0);
+        }
+    }
+}
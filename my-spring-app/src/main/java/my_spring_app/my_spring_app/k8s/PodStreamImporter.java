@@ -0,0 +1,246 @@
+package my_spring_app.my_spring_app.k8s;
+
+import io.kubernetes.client.Exec;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Đẩy file dump (SQL, archive của mongorestore) thẳng vào stdin của lệnh import chạy trong pod qua API exec,
+ * thay cho upload file lên MASTER bằng SFTP, kubectl cp vào pod rồi mới chạy mysql &lt; file.
+ *
+ * File upload được giải nén trong lúc đọc (gzip, zstd, zip chứa file dump; nhận dạng theo magic bytes)
+ * và ghi từng khối vào WebSocket của exec. Không có bản sao nào trên đĩa của MASTER hay của pod;
+ * khi lệnh import xử lý chậm, write bị chặn theo hàng đợi của WebSocket nên bộ nhớ không tăng theo kích thước dump.
+ *
+ * Giao thức exec (v4.channel.k8s.io) không có cách báo EOF cho stdin, nên lệnh trong pod được bọc bằng
+ * head -c &lt;số byte&gt;: head đọc đủ số byte rồi thoát, lệnh import nhận EOF và kết thúc. Số byte sau giải nén
+ * được đếm bằng một lượt đọc trước (chỉ tốn CPU, không ghi đĩa).
+ */
+@Component
+public class PodStreamImporter {
+
+    private static final int CHUNK_BYTES = 64 * 1024;
+    // Sau mỗi chừng này byte thì chờ WebSocket gửi hết hàng đợi (giới hạn của okhttp là 16MB)
+    private static final long FLUSH_EVERY_BYTES = 4L * 1024 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 2000;
+    // Thời gian tối đa chờ lệnh import kết thúc sau khi đã gửi hết dữ liệu
+    private static final long EXIT_TIMEOUT_MINUTES = 30;
+    // Giữ phần đuôi output của lệnh import để báo lỗi
+    private static final int OUTPUT_TAIL_CHARS = 8 * 1024;
+
+    private final KubernetesClientRegistry clientRegistry;
+
+    public PodStreamImporter(KubernetesClientRegistry clientRegistry) {
+        this.clientRegistry = clientRegistry;
+    }
+
+    /**
+     * Nguồn dữ liệu có thể mở lại nhiều lần (ví dụ MultipartFile::getInputStream)
+     */
+    @FunctionalInterface
+    public interface DumpSource {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Tiến độ import
+     *
+     * @param bytes      số byte (sau giải nén) đã gửi vào pod
+     * @param totalBytes tổng số byte cần gửi
+     * @param statements số câu lệnh SQL đã gửi (đếm theo ";" cuối dòng), -1 nếu không đếm
+     */
+    public record ImportProgress(long bytes, long totalBytes, long statements) {
+    }
+
+    /**
+     * @param output phần đuôi stdout/stderr của lệnh import
+     */
+    public record ImportResult(int exitCode, long bytes, long statements, String output, long durationMs) {
+    }
+
+    /**
+     * Import dump vào pod
+     *
+     * @param command         lệnh đọc dump từ stdin (chạy bằng sh -c trong container)
+     * @param entryFilter     chọn file dump trong file zip theo tên
+     * @param countStatements đếm câu lệnh SQL cho tiến độ
+     * @param onProgress      nhận tiến độ định kỳ và khi kết thúc, có thể null
+     * @throws RuntimeException không tìm thấy file dump, lỗi kết nối hoặc lệnh import thoát với mã khác 0
+     */
+    public ImportResult importDump(String namespace, String pod, String container, String command, DumpSource source,
+                                   Predicate<String> entryFilter, boolean countStatements,
+                                   Consumer<ImportProgress> onProgress) {
+        long startedAt = System.currentTimeMillis();
+        long totalBytes;
+        try (InputStream payload = openPayload(source.open(), entryFilter)) {
+            totalBytes = payload.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new RuntimeException("Không đọc được file dump: " + e.getMessage(), e);
+        }
+
+        String script = "head -c " + totalBytes + " | " + command;
+        Process process;
+        try {
+            Exec.ExecutionBuilder builder = new Exec(clientRegistry.getWatchClient())
+                    .newExecutionBuilder(namespace, pod, new String[]{"sh", "-c", script})
+                    .setStdin(true)
+                    .setStdout(true)
+                    .setStderr(true)
+                    .setTty(false);
+            if (container != null && !container.isBlank()) {
+                builder.setContainer(container);
+            }
+            process = builder.execute();
+        } catch (Exception e) {
+            throw new RuntimeException("Không mở được exec vào pod " + namespace + "/" + pod + ": " + e.getMessage(), e);
+        }
+
+        StringBuffer output = new StringBuffer();
+        Thread stdoutReader = Thread.ofVirtual().name("import-stdout-" + pod).start(() -> drainTail(process.getInputStream(), output));
+        Thread stderrReader = Thread.ofVirtual().name("import-stderr-" + pod).start(() -> drainTail(process.getErrorStream(), output));
+
+        long sent = 0;
+        long statements = 0;
+        try (InputStream payload = openPayload(source.open(), entryFilter)) {
+            OutputStream stdin = process.getOutputStream();
+            byte[] buffer = new byte[CHUNK_BYTES];
+            byte previous = 0;
+            long sinceFlush = 0;
+            long lastProgressAt = System.currentTimeMillis();
+            int read;
+            while (sent < totalBytes && (read = payload.read(buffer, 0, (int) Math.min(buffer.length, totalBytes - sent))) != -1) {
+                stdin.write(buffer, 0, read);
+                if (countStatements) {
+                    for (int i = 0; i < read; i++) {
+                        byte b = buffer[i];
+                        if (b == '\n' && previous == ';') {
+                            statements++;
+                        }
+                        if (b != '\r') {
+                            previous = b;
+                        }
+                    }
+                }
+                sent += read;
+                sinceFlush += read;
+                if (sinceFlush >= FLUSH_EVERY_BYTES) {
+                    awaitDrained(stdin, process);
+                    sinceFlush = 0;
+                }
+                if (onProgress != null && System.currentTimeMillis() - lastProgressAt >= PROGRESS_INTERVAL_MS) {
+                    onProgress.accept(new ImportProgress(sent, totalBytes, countStatements ? statements : -1));
+                    lastProgressAt = System.currentTimeMillis();
+                }
+            }
+            awaitDrained(stdin, process);
+
+            if (!process.waitFor(EXIT_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                throw new RuntimeException("Lệnh import chưa kết thúc sau " + EXIT_TIMEOUT_MINUTES + " phút");
+            }
+            stdoutReader.join(TimeUnit.SECONDS.toMillis(5));
+            stderrReader.join(TimeUnit.SECONDS.toMillis(5));
+            if (onProgress != null) {
+                onProgress.accept(new ImportProgress(sent, totalBytes, countStatements ? statements : -1));
+            }
+            int exitCode = process.exitValue();
+            if (exitCode != 0) {
+                throw new RuntimeException("Lệnh import thoát với mã " + exitCode + ": " + output.toString().trim());
+            }
+            return new ImportResult(exitCode, sent, countStatements ? statements : -1, output.toString(),
+                    System.currentTimeMillis() - startedAt);
+        } catch (IOException e) {
+            // Lệnh import thoát sớm (lỗi SQL...) thì WebSocket đóng và write lỗi: báo kèm output của lệnh
+            throw new RuntimeException("Import bị gián đoạn sau " + sent + " byte: " + e.getMessage()
+                    + (output.isEmpty() ? "" : " - " + output.toString().trim()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Import bị hủy", e);
+        } finally {
+            process.destroy();
+        }
+    }
+
+    /**
+     * Mở nội dung dump từ file upload: giải nén gzip/zstd, hoặc lấy file đầu tiên khớp entryFilter trong file zip
+     */
+    static InputStream openPayload(InputStream raw, Predicate<String> entryFilter) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(raw, CHUNK_BYTES);
+        in.mark(4);
+        byte[] magic = in.readNBytes(4);
+        in.reset();
+        if (magic.length >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            return new GZIPInputStream(in, CHUNK_BYTES);
+        }
+        if (magic.length == 4 && (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5
+                && (magic[2] & 0xff) == 0x2f && (magic[3] & 0xff) == 0xfd) {
+            if (!ZstdUtils.isZstdCompressionAvailable()) {
+                in.close();
+                throw new IOException("Server chưa có thư viện zstd-jni để giải nén file .zst, hãy dùng gzip hoặc zip");
+            }
+            return new ZstdCompressorInputStream(in);
+        }
+        if (magic.length == 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4) {
+            ZipInputStream zip = new ZipInputStream(in);
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                String baseName = name.substring(name.lastIndexOf('/') + 1);
+                // Bỏ qua thư mục/mac metadata (__MACOSX, ._*)
+                if (!entry.isDirectory() && !name.startsWith("__MACOSX/") && !baseName.startsWith("._")
+                        && entryFilter.test(name)) {
+                    return zip;
+                }
+            }
+            zip.close();
+            throw new IOException("Không tìm thấy file dump phù hợp trong file zip");
+        }
+        return in;
+    }
+
+    // Chờ hàng đợi WebSocket gửi hết; flush() của client chỉ chờ 10 giây nên thử lại khi lệnh import còn chạy
+    private static void awaitDrained(OutputStream stdin, Process process) throws IOException {
+        while (true) {
+            try {
+                stdin.flush();
+                return;
+            } catch (IOException e) {
+                if (!process.isAlive() || !String.valueOf(e.getMessage()).startsWith("Timed out")) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Đọc hết stream, chỉ giữ OUTPUT_TAIL_CHARS ký tự cuối (output của lệnh import/export để báo lỗi)
+     */
+    static void drainTail(InputStream stream, StringBuffer tail) {
+        byte[] buffer = new byte[4096];
+        try (stream) {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                synchronized (tail) {
+                    tail.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+                    if (tail.length() > OUTPUT_TAIL_CHARS) {
+                        tail.delete(0, tail.length() - OUTPUT_TAIL_CHARS);
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // Kết nối exec đã đóng
+        }
+    }
+}
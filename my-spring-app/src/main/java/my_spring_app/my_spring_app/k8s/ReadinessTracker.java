@@ -0,0 +1,308 @@
+package my_spring_app.my_spring_app.k8s;
+
+import io.kubernetes.client.common.KubernetesObject;
+import io.kubernetes.client.informer.ResourceEventHandler;
+import io.kubernetes.client.openapi.models.V1Deployment;
+import io.kubernetes.client.openapi.models.V1DeploymentCondition;
+import io.kubernetes.client.openapi.models.V1LoadBalancerIngress;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1PersistentVolumeClaim;
+import io.kubernetes.client.openapi.models.V1Service;
+import io.kubernetes.client.openapi.models.V1StatefulSet;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Theo dõi rollout/readiness của resource bằng watch thay cho kubectl wait và vòng lặp sleep qua SSH.
+ *
+ * Mỗi lời chờ là một CompletableFuture được hoàn tất ngay trên thread sự kiện của informer khi resource
+ * đạt điều kiện, nên không có thread nào bị giữ để poll. Tất cả lời chờ dùng chung watch của
+ * {@link ClusterStateCache} (một watch cho mỗi loại resource, không mở thêm watch theo từng deploy).
+ * Điều kiện được kiểm tra ngay khi đăng ký (resource có thể đã sẵn sàng) và sau mỗi sự kiện add/update.
+ */
+@Component
+public class ReadinessTracker {
+
+    private final ClusterStateCache clusterStateCache;
+
+    private final Waiters<V1Deployment> deploymentWaiters = new Waiters<>("Deployment");
+    private final Waiters<V1StatefulSet> statefulSetWaiters = new Waiters<>("StatefulSet");
+    private final Waiters<V1PersistentVolumeClaim> pvcWaiters = new Waiters<>("PersistentVolumeClaim");
+    private final Waiters<V1Service> serviceWaiters = new Waiters<>("Service");
+
+    private final ScheduledExecutorService timeouts = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "readiness-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean handlersRegistered;
+
+    public ReadinessTracker(ClusterStateCache clusterStateCache) {
+        this.clusterStateCache = clusterStateCache;
+    }
+
+    /**
+     * Trạng thái chưa đạt điều kiện: tiếp tục chờ
+     */
+    private static final Object PENDING = new Object();
+
+    /**
+     * Điều kiện trên một resource: trả về resource khi đạt, PENDING khi chưa đạt,
+     * ném RuntimeException khi chắc chắn không thể đạt (ví dụ rollout vượt progressDeadlineSeconds).
+     */
+    @FunctionalInterface
+    private interface Condition<T> extends Function<T, Object> {
+    }
+
+    private static final class Waiter<T extends KubernetesObject> {
+        final Condition<T> condition;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Waiter(Condition<T> condition) {
+            this.condition = condition;
+        }
+
+        @SuppressWarnings("unchecked")
+        void evaluate(T obj) {
+            if (future.isDone() || obj == null) {
+                return;
+            }
+            try {
+                Object result = condition.apply(obj);
+                if (result != PENDING) {
+                    future.complete((T) result);
+                }
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Danh sách lời chờ của một loại resource, theo khóa namespace/name
+     */
+    private final class Waiters<T extends KubernetesObject> implements ResourceEventHandler<T> {
+        private final String kind;
+        private final Map<String, Set<Waiter<T>>> byKey = new ConcurrentHashMap<>();
+
+        Waiters(String kind) {
+            this.kind = kind;
+        }
+
+        CompletableFuture<T> await(ClusterStateCache.ResourceCache<T, ?> cache, String namespace, String name,
+                                   Duration timeout, String description, Condition<T> condition) {
+            Waiter<T> waiter = new Waiter<>(condition);
+            String key = namespace + "/" + name;
+            // Đăng ký trước rồi mới đọc trạng thái hiện tại để không bỏ lỡ sự kiện xảy ra ở giữa
+            byKey.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(waiter);
+            ScheduledFuture<?> timer = timeouts.schedule(() -> waiter.future.completeExceptionally(
+                    new RuntimeException("Hết thời gian chờ " + description + " sau " + timeout.toSeconds() + " giây")),
+                    timeout.toMillis(), TimeUnit.MILLISECONDS);
+            waiter.future.whenComplete((result, error) -> {
+                timer.cancel(false);
+                byKey.computeIfPresent(key, (k, set) -> {
+                    set.remove(waiter);
+                    return set.isEmpty() ? null : set;
+                });
+            });
+            try {
+                ensureHandlersRegistered();
+                waiter.evaluate(cache.get(namespace, name));
+            } catch (Exception e) {
+                // Watch chưa sẵn sàng hoặc GET lỗi: vẫn chờ sự kiện tiếp theo cho tới khi hết thời gian
+                System.err.println("[ReadinessTracker] Không đọc được " + kind + " " + key + ": " + e.getMessage());
+            }
+            return waiter.future;
+        }
+
+        @Override
+        public void onAdd(T obj) {
+            dispatch(obj);
+        }
+
+        @Override
+        public void onUpdate(T oldObj, T newObj) {
+            dispatch(newObj);
+        }
+
+        @Override
+        public void onDelete(T obj, boolean deletedFinalStateUnknown) {
+            Set<Waiter<T>> waiters = byKey.get(keyOf(obj));
+            if (waiters != null) {
+                for (Waiter<T> waiter : waiters) {
+                    waiter.future.completeExceptionally(new RuntimeException(kind + " " + keyOf(obj) + " đã bị xóa trong lúc chờ"));
+                }
+            }
+        }
+
+        private void dispatch(T obj) {
+            Set<Waiter<T>> waiters = byKey.get(keyOf(obj));
+            if (waiters != null) {
+                for (Waiter<T> waiter : waiters) {
+                    waiter.evaluate(obj);
+                }
+            }
+        }
+
+        private String keyOf(T obj) {
+            V1ObjectMeta metadata = obj.getMetadata();
+            return metadata == null ? "" : metadata.getNamespace() + "/" + metadata.getName();
+        }
+    }
+
+    /**
+     * Chờ Deployment rollout xong (tương đương kubectl rollout status): controller đã xử lý generation mới nhất,
+     * toàn bộ replica đã được cập nhật và available, không còn replica cũ.
+     *
+     * @param minGeneration generation trả về khi apply; bản ghi cũ hơn (cache chưa kịp cập nhật) bị bỏ qua
+     */
+    public CompletableFuture<V1Deployment> awaitDeploymentRollout(String namespace, String name, long minGeneration, Duration timeout) {
+        return deploymentWaiters.await(clusterStateCache.deployments(), namespace, name, timeout,
+                "rollout Deployment " + name,
+                deployment -> isRolloutComplete(deployment, minGeneration) ? deployment : PENDING);
+    }
+
+    /**
+     * Điều kiện rollout của {@link #awaitDeploymentRollout}, theo thứ tự của kubectl rollout status:
+     * chỉ đọc conditions khi controller đã xử lý generation hiện tại, vì condition ProgressDeadlineExceeded
+     * của lần rollout trước còn nằm trong status cho tới khi controller cập nhật lại.
+     *
+     * @throws RuntimeException rollout của generation hiện tại đã vượt progressDeadlineSeconds
+     */
+    static boolean isRolloutComplete(V1Deployment deployment, long minGeneration) {
+        if (deployment.getMetadata() == null || deployment.getStatus() == null || deployment.getSpec() == null) {
+            return false;
+        }
+        var status = deployment.getStatus();
+        long generation = orZero(deployment.getMetadata().getGeneration());
+        if (generation < minGeneration || orZero(status.getObservedGeneration()) < generation) {
+            return false;
+        }
+        if (status.getConditions() != null) {
+            for (V1DeploymentCondition condition : status.getConditions()) {
+                if ("Progressing".equals(condition.getType()) && "ProgressDeadlineExceeded".equals(condition.getReason())) {
+                    throw new RuntimeException("Rollout Deployment " + deployment.getMetadata().getName() + " thất bại: "
+                            + condition.getMessage());
+                }
+            }
+        }
+        int desired = deployment.getSpec().getReplicas() == null ? 1 : deployment.getSpec().getReplicas();
+        return orZero(status.getUpdatedReplicas()) >= desired
+                && orZero(status.getReplicas()) <= orZero(status.getUpdatedReplicas())
+                && orZero(status.getAvailableReplicas()) >= orZero(status.getUpdatedReplicas());
+    }
+
+    /**
+     * Chờ StatefulSet sẵn sàng: đủ replica Ready và revision hiện tại đã là revision mới nhất
+     *
+     * @param minGeneration generation trả về khi apply; bản ghi cũ hơn (cache chưa kịp cập nhật) bị bỏ qua
+     */
+    public CompletableFuture<V1StatefulSet> awaitStatefulSetReady(String namespace, String name, long minGeneration, Duration timeout) {
+        return statefulSetWaiters.await(clusterStateCache.statefulSets(), namespace, name, timeout,
+                "StatefulSet " + name + " sẵn sàng",
+                statefulSet -> isStatefulSetReady(statefulSet, minGeneration) ? statefulSet : PENDING);
+    }
+
+    /**
+     * Điều kiện của {@link #awaitStatefulSetReady}
+     */
+    static boolean isStatefulSetReady(V1StatefulSet statefulSet, long minGeneration) {
+        if (statefulSet.getMetadata() == null || statefulSet.getStatus() == null || statefulSet.getSpec() == null) {
+            return false;
+        }
+        var status = statefulSet.getStatus();
+        long generation = orZero(statefulSet.getMetadata().getGeneration());
+        if (generation < minGeneration) {
+            return false;
+        }
+        int desired = statefulSet.getSpec().getReplicas() == null ? 1 : statefulSet.getSpec().getReplicas();
+        return orZero(status.getObservedGeneration()) >= generation
+                && orZero(status.getReadyReplicas()) >= desired
+                && (status.getUpdateRevision() == null || Objects.equals(status.getUpdateRevision(), status.getCurrentRevision()));
+    }
+
+    /**
+     * Chờ PVC chuyển sang Bound
+     */
+    public CompletableFuture<V1PersistentVolumeClaim> awaitPvcBound(String namespace, String name, Duration timeout) {
+        return pvcWaiters.await(clusterStateCache.persistentVolumeClaims(), namespace, name, timeout,
+                "PVC " + name + " Bound", pvc -> pvc.getStatus() != null && "Bound".equals(pvc.getStatus().getPhase())
+                        ? pvc : PENDING);
+    }
+
+    /**
+     * Chờ Service LoadBalancer được cấp IP
+     */
+    public CompletableFuture<V1Service> awaitLoadBalancerIp(String namespace, String name, Duration timeout) {
+        return serviceWaiters.await(clusterStateCache.services(), namespace, name, timeout,
+                "EXTERNAL-IP của Service " + name, service -> {
+                    if (service.getStatus() == null || service.getStatus().getLoadBalancer() == null) {
+                        return PENDING;
+                    }
+                    List<V1LoadBalancerIngress> ingress = service.getStatus().getLoadBalancer().getIngress();
+                    return ingress != null && !ingress.isEmpty() && ingress.get(0).getIp() != null ? service : PENDING;
+                });
+    }
+
+    /**
+     * Đợi future hoàn tất (dành cho luồng gọi đồng bộ), ném lại lỗi gốc thay vì CompletionException
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Thông báo lỗi của một lời chờ đã thất bại (bỏ lớp CompletionException), dùng trong callback whenComplete
+     */
+    public static String failureMessage(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause.getMessage();
+    }
+
+    private void ensureHandlersRegistered() throws Exception {
+        if (handlersRegistered) {
+            return;
+        }
+        synchronized (this) {
+            if (handlersRegistered) {
+                return;
+            }
+            clusterStateCache.deployments().addEventHandler(deploymentWaiters);
+            clusterStateCache.statefulSets().addEventHandler(statefulSetWaiters);
+            clusterStateCache.persistentVolumeClaims().addEventHandler(pvcWaiters);
+            clusterStateCache.services().addEventHandler(serviceWaiters);
+            handlersRegistered = true;
+        }
+    }
+
+    private static long orZero(Number value) {
+        return value == null ? 0 : value.longValue();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timeouts.shutdownNow();
+    }
+}
@@ -0,0 +1,123 @@
+package my_spring_app.my_spring_app.metrics;
+
+import my_spring_app.my_spring_app.dto.reponse.MetricSeriesResponse;
+
+/**
+ * Ring buffer time-series kích thước cố định, lưu bằng mảng primitive (không boxing,
+ * không tạo object cho mỗi sample). Mỗi sample gồm timestamp, CPU (cores), Memory (bytes) và Disk (bytes).
+ *
+ * Khi đầy, sample cũ nhất bị ghi đè. Các hàm đều synchronized vì collector ghi từ thread
+ * scheduler còn API đọc từ request thread.
+ */
+public class MetricRingBuffer {
+
+    private final long[] timestamps;
+    private final double[] cpu;
+    private final long[] memory;
+    private final long[] disk;
+
+    // Vị trí sẽ ghi sample tiếp theo
+    private int head;
+    private int size;
+
+    // Dung lượng (capacity) gần nhất của đối tượng, dùng để vẽ đường giới hạn trên biểu đồ
+    private double cpuCapacity;
+    private long memoryCapacity;
+    private long diskCapacity;
+
+    public MetricRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity phải > 0");
+        }
+        this.timestamps = new long[capacity];
+        this.cpu = new double[capacity];
+        this.memory = new long[capacity];
+        this.disk = new long[capacity];
+    }
+
+    public synchronized void append(long timestamp, double cpuValue, long memoryValue, long diskValue) {
+        timestamps[head] = timestamp;
+        cpu[head] = cpuValue;
+        memory[head] = memoryValue;
+        disk[head] = diskValue;
+        head = (head + 1) % timestamps.length;
+        if (size < timestamps.length) {
+            size++;
+        }
+    }
+
+    public synchronized void setCapacity(double cpuCapacity, long memoryCapacity, long diskCapacity) {
+        this.cpuCapacity = cpuCapacity;
+        this.memoryCapacity = memoryCapacity;
+        this.diskCapacity = diskCapacity;
+    }
+
+    /**
+     * Timestamp của sample mới nhất, 0 nếu chưa có sample.
+     */
+    public synchronized long lastTimestamp() {
+        return size == 0 ? 0L : timestamps[index(size - 1)];
+    }
+
+    /**
+     * Lấy các sample trong khoảng [fromMs, toMs]. Nếu số sample vượt quá maxPoints,
+     * các sample được gộp thành maxPoints bucket (lấy trung bình) để biểu đồ không phải tải quá nhiều điểm.
+     */
+    public synchronized MetricSeriesResponse query(long fromMs, long toMs, int maxPoints) {
+        // Sample được ghi theo thứ tự thời gian nên tìm đoạn liên tiếp [first, last] nằm trong khoảng
+        int first = 0;
+        while (first < size && timestamps[index(first)] < fromMs) {
+            first++;
+        }
+        int last = size - 1;
+        while (last >= first && timestamps[index(last)] > toMs) {
+            last--;
+        }
+        int count = Math.max(0, last - first + 1);
+        int points = (maxPoints > 0 && count > maxPoints) ? maxPoints : count;
+
+        long[] outTimestamps = new long[points];
+        double[] outCpu = new double[points];
+        long[] outMemory = new long[points];
+        long[] outDisk = new long[points];
+
+        for (int p = 0; p < points; p++) {
+            int from = first + (int) ((long) p * count / points);
+            int to = first + (int) ((long) (p + 1) * count / points);
+            double cpuSum = 0.0;
+            int cpuCount = 0;
+            long memorySum = 0L;
+            long diskSum = 0L;
+            for (int i = from; i < to; i++) {
+                int idx = index(i);
+                if (!Double.isNaN(cpu[idx])) {
+                    cpuSum += cpu[idx];
+                    cpuCount++;
+                }
+                memorySum += memory[idx];
+                diskSum += disk[idx];
+            }
+            int n = to - from;
+            outTimestamps[p] = timestamps[index(to - 1)];
+            outCpu[p] = cpuCount > 0 ? cpuSum / cpuCount : 0.0;
+            outMemory[p] = memorySum / n;
+            outDisk[p] = diskSum / n;
+        }
+
+        MetricSeriesResponse response = new MetricSeriesResponse();
+        response.setTimestamps(outTimestamps);
+        response.setCpu(outCpu);
+        response.setMemory(outMemory);
+        response.setDisk(outDisk);
+        response.setCpuCapacity(cpuCapacity);
+        response.setMemoryCapacity(memoryCapacity);
+        response.setDiskCapacity(diskCapacity);
+        return response;
+    }
+
+    // Chuyển vị trí logic (0 = cũ nhất) sang vị trí trong mảng
+    private int index(int logical) {
+        int start = size < timestamps.length ? 0 : head;
+        return (start + logical) % timestamps.length;
+    }
+}
@@ -0,0 +1,278 @@
+package my_spring_app.my_spring_app.metrics;
+
+import io.kubernetes.client.custom.Quantity;
+import io.kubernetes.client.openapi.models.V1Node;
+import jakarta.annotation.PreDestroy;
+import my_spring_app.my_spring_app.dto.reponse.MetricSeriesResponse;
+import my_spring_app.my_spring_app.entity.ProjectEntity;
+import my_spring_app.my_spring_app.entity.ServerEntity;
+import my_spring_app.my_spring_app.k8s.ClusterStateCache;
+import my_spring_app.my_spring_app.k8s.KubernetesMetricsClient;
+import my_spring_app.my_spring_app.k8s.MetricsSnapshotService;
+import my_spring_app.my_spring_app.repository.ProjectRepository;
+import my_spring_app.my_spring_app.repository.ServerRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collector chạy nền lấy mẫu CPU/Memory/Disk theo chu kỳ cố định cho:
+ * - server (SSH: stream liên tục qua {@link ServerMetricsStream}, {@link ServerMetricsProbe} khi chưa có stream)
+ * - node Kubernetes (metrics.k8s.io NodeMetrics)
+ * - namespace của các project (tổng PodMetrics theo namespace)
+ *
+ * Mỗi đối tượng có một {@link MetricRingBuffer} giữ {@value #RETENTION_HOURS} giờ gần nhất.
+ * Sample của server còn được ghi vào {@link ServerMetricsHistory} để giữ lâu dài (có rollup).
+ * Dashboard đọc series đã tính sẵn qua {@link #query} thay vì SSH/gọi metrics mỗi lần mở trang.
+ */
+@Component
+public class MetricsCollector {
+
+    public static final String KIND_SERVER = "server";
+    public static final String KIND_NODE = "node";
+    public static final String KIND_NAMESPACE = "namespace";
+
+    public static final long INTERVAL_MS = 30_000L;
+    public static final int RETENTION_HOURS = 6;
+    private static final int CAPACITY = (int) (RETENTION_HOURS * 3_600_000L / INTERVAL_MS);
+
+    private static final int MAX_PARALLEL_PROBES = 16;
+    private static final long PROBE_TIMEOUT_SECONDS = 20;
+
+    private final ServerRepository serverRepository;
+    private final ProjectRepository projectRepository;
+    private final ServerMetricsProbe serverMetricsProbe;
+    private final ServerMetricsStream serverMetricsStream;
+    private final ServerMetricsHistory serverMetricsHistory;
+    private final KubernetesMetricsClient metricsClient;
+    private final MetricsSnapshotService metricsSnapshotService;
+    private final ClusterStateCache clusterStateCache;
+
+    // key = kind + ":" + id
+    private final Map<String, MetricRingBuffer> series = new ConcurrentHashMap<>();
+    // Sample mới nhất của từng server (giữ nguyên giá trị total để cập nhật ServerEntity)
+    private final Map<Long, ServerMetricsProbe.ServerSample> latestServerSamples = new ConcurrentHashMap<>();
+
+    private final ExecutorService probeExecutor = Executors.newFixedThreadPool(MAX_PARALLEL_PROBES, r -> {
+        Thread thread = new Thread(r, "metrics-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MetricsCollector(ServerRepository serverRepository,
+                            ProjectRepository projectRepository,
+                            ServerMetricsProbe serverMetricsProbe,
+                            ServerMetricsStream serverMetricsStream,
+                            ServerMetricsHistory serverMetricsHistory,
+                            KubernetesMetricsClient metricsClient,
+                            MetricsSnapshotService metricsSnapshotService,
+                            ClusterStateCache clusterStateCache) {
+        this.serverRepository = serverRepository;
+        this.projectRepository = projectRepository;
+        this.serverMetricsProbe = serverMetricsProbe;
+        this.serverMetricsStream = serverMetricsStream;
+        this.serverMetricsHistory = serverMetricsHistory;
+        this.metricsClient = metricsClient;
+        this.metricsSnapshotService = metricsSnapshotService;
+        this.clusterStateCache = clusterStateCache;
+    }
+
+    @Scheduled(fixedDelay = INTERVAL_MS, initialDelay = INTERVAL_MS)
+    public void collect() {
+        long start = System.currentTimeMillis();
+        collectServers();
+        collectNodes();
+        collectNamespaces();
+        evictStaleSeries(start);
+        long elapsed = System.currentTimeMillis() - start;
+        if (elapsed > INTERVAL_MS / 2) {
+            System.err.println("[MetricsCollector] Lan lay mau mat " + elapsed + " ms (chu ky " + INTERVAL_MS + " ms)");
+        }
+    }
+
+    /**
+     * Lấy series của một đối tượng trong khoảng [fromMs, toMs].
+     *
+     * @param maxPoints số điểm tối đa trả về (0 = không giới hạn)
+     * @return series hoặc null nếu chưa có dữ liệu cho đối tượng
+     */
+    public MetricSeriesResponse query(String kind, String id, long fromMs, long toMs, int maxPoints) {
+        MetricRingBuffer buffer = series.get(key(kind, id));
+        if (buffer == null) {
+            return null;
+        }
+        MetricSeriesResponse response = buffer.query(fromMs, toMs, maxPoints);
+        response.setKind(kind);
+        response.setId(id);
+        response.setIntervalMs(INTERVAL_MS);
+        return response;
+    }
+
+    /**
+     * Danh sách id đang có series theo loại (server/node/namespace).
+     */
+    public List<String> listIds(String kind) {
+        String prefix = kind + ":";
+        List<String> ids = new ArrayList<>();
+        for (String key : series.keySet()) {
+            if (key.startsWith(prefix)) {
+                ids.add(key.substring(prefix.length()));
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    /**
+     * Sample mới nhất của server nếu còn mới hơn maxAgeMs, ngược lại null.
+     */
+    public ServerMetricsProbe.ServerSample latestServerSample(Long serverId, long maxAgeMs) {
+        ServerMetricsProbe.ServerSample sample = latestServerSamples.get(serverId);
+        if (sample == null || System.currentTimeMillis() - sample.timestamp() > maxAgeMs) {
+            return null;
+        }
+        return sample;
+    }
+
+    /**
+     * Ghi nhận sample của server (từ collector hoặc từ lần đo on-demand).
+     */
+    public void recordServerSample(Long serverId, ServerMetricsProbe.ServerSample sample) {
+        if (serverId == null || sample == null || !sample.hasData()) {
+            return;
+        }
+        latestServerSamples.put(serverId, sample);
+        MetricRingBuffer buffer = buffer(KIND_SERVER, String.valueOf(serverId));
+        buffer.setCapacity(sample.cpuCores(), sample.ramTotalBytes(), sample.diskTotalBytes());
+        buffer.append(sample.timestamp(), sample.cpuLoad(), sample.ramUsedBytes(), sample.diskUsedBytes());
+        serverMetricsHistory.record(serverId, sample);
+    }
+
+    private void collectServers() {
+        List<ServerEntity> servers;
+        try {
+            servers = serverRepository.findAllWithSshKeys();
+        } catch (Exception e) {
+            System.err.println("[MetricsCollector] Khong the doc danh sach server: " + e.getMessage());
+            return;
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        Set<Long> activeIds = new HashSet<>();
+        for (ServerEntity server : servers) {
+            if (server.getStatus() == ServerEntity.ServerStatus.DISABLED) {
+                continue;
+            }
+            final Long serverId = server.getId();
+            final String ip = server.getIp();
+            final Integer port = server.getPort();
+            final String username = server.getUsername();
+            final String password = server.getPassword();
+            final String privateKeyPem = server.getSshKey() != null ? server.getSshKey().getEncryptedPrivateKey() : null;
+            activeIds.add(serverId);
+            // Stream tự đẩy sample vào time-series; chỉ đo một lần khi stream chưa chạy hoặc đã ngừng gửi
+            serverMetricsStream.ensureStarted(serverId, ip, port, username, privateKeyPem, password,
+                    sample -> recordServerSample(serverId, sample));
+            if (serverMetricsStream.isStreaming(serverId) && latestServerSample(serverId, 2 * INTERVAL_MS) != null) {
+                continue;
+            }
+            futures.add(CompletableFuture.runAsync(() -> recordServerSample(serverId,
+                    serverMetricsProbe.probe(serverId, ip, port, username, privateKeyPem, password)), probeExecutor));
+        }
+        serverMetricsStream.retainOnly(activeIds);
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.err.println("[MetricsCollector] Mot so server khong tra metrics trong " + PROBE_TIMEOUT_SECONDS + "s");
+        }
+    }
+
+    private void collectNodes() {
+        Map<String, KubernetesMetricsClient.NodeUsage> usages;
+        try {
+            usages = metricsClient.listNodeUsage();
+        } catch (Exception e) {
+            // Cluster chưa cài hoặc metrics-server chưa sẵn sàng
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Map<String, V1Node> nodes = new HashMap<>();
+        try {
+            for (V1Node node : clusterStateCache.nodes().list()) {
+                if (node.getMetadata() != null && node.getMetadata().getName() != null) {
+                    nodes.put(node.getMetadata().getName(), node);
+                }
+            }
+        } catch (Exception ignored) {
+            // Thiếu capacity thì vẫn lưu usage
+        }
+        for (KubernetesMetricsClient.NodeUsage usage : usages.values()) {
+            MetricRingBuffer buffer = buffer(KIND_NODE, usage.name());
+            V1Node node = nodes.get(usage.name());
+            if (node != null && node.getStatus() != null && node.getStatus().getCapacity() != null) {
+                Map<String, Quantity> capacity = node.getStatus().getCapacity();
+                buffer.setCapacity(number(capacity.get("cpu")), (long) number(capacity.get("memory")),
+                        (long) number(capacity.get("ephemeral-storage")));
+            }
+            buffer.append(now, usage.cpuCores(), usage.memoryBytes(), 0L);
+        }
+    }
+
+    private void collectNamespaces() {
+        Set<String> projectNamespaces = new HashSet<>();
+        Map<String, MetricsSnapshotService.Usage> usageByNamespace;
+        try {
+            for (ProjectEntity project : projectRepository.findAll()) {
+                if (project.getNamespace() != null && !project.getNamespace().isBlank()) {
+                    projectNamespaces.add(project.getNamespace());
+                }
+            }
+            if (projectNamespaces.isEmpty()) {
+                return;
+            }
+            usageByNamespace = metricsSnapshotService.usageByNamespace();
+        } catch (Exception e) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (String namespace : projectNamespaces) {
+            MetricsSnapshotService.Usage usage = usageByNamespace.getOrDefault(namespace, MetricsSnapshotService.Usage.ZERO);
+            buffer(KIND_NAMESPACE, namespace).append(now, usage.cpuCores(), usage.memoryBytes(), 0L);
+        }
+    }
+
+    // Bỏ series của đối tượng không còn được lấy mẫu trong toàn bộ khoảng lưu giữ (server/project đã xóa...)
+    private void evictStaleSeries(long now) {
+        long retentionMs = RETENTION_HOURS * 3_600_000L;
+        series.entrySet().removeIf(entry -> now - entry.getValue().lastTimestamp() > retentionMs);
+        latestServerSamples.entrySet().removeIf(entry -> now - entry.getValue().timestamp() > retentionMs);
+    }
+
+    private MetricRingBuffer buffer(String kind, String id) {
+        return series.computeIfAbsent(key(kind, id), k -> new MetricRingBuffer(CAPACITY));
+    }
+
+    private static String key(String kind, String id) {
+        return kind + ":" + id;
+    }
+
+    private static double number(Quantity quantity) {
+        return quantity != null && quantity.getNumber() != null ? quantity.getNumber().doubleValue() : 0.0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        probeExecutor.shutdownNow();
+    }
+}
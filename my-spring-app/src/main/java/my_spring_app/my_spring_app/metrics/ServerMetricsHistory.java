@@ -0,0 +1,245 @@
+package my_spring_app.my_spring_app.metrics;
+
+import jakarta.annotation.PreDestroy;
+import my_spring_app.my_spring_app.dto.reponse.MetricSeriesResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lịch sử metrics của server lưu trong bảng server_metrics_sample (xem ServerMetricsSampleEntity).
+ *
+ * - Sample từ collector được gom trong bộ nhớ rồi ghi bằng một JDBC batch mỗi FLUSH_INTERVAL_MS
+ * - Rollup 1m/5m/1h được tính bằng INSERT ... SELECT ... GROUP BY ngay trong MySQL, mỗi mức tính từ mức nhỏ hơn
+ * - Mỗi mức có thời gian giữ riêng, dữ liệu cũ được xóa theo từng lô để không khóa bảng lâu
+ *
+ * Khác {@link MetricRingBuffer} (chỉ giữ vài giờ trong bộ nhớ), bảng này giữ tới một năm để truy vấn
+ * capacity bằng SQL mà không phải parse chuỗi "8.0Gi" trên ServerEntity.
+ */
+@Component
+public class ServerMetricsHistory {
+
+    public static final String RAW = "raw";
+
+    private static final long FLUSH_INTERVAL_MS = 60_000L;
+    // Bucket chỉ được rollup khi đã kết thúc quá khoảng này (chờ sample của bucket được flush hết)
+    private static final long ROLLUP_LAG_MS = 2 * FLUSH_INTERVAL_MS;
+    // Sample chờ ghi tối đa (DB lỗi lâu thì bỏ sample cũ nhất thay vì giữ mãi trong bộ nhớ)
+    private static final int MAX_PENDING = 50_000;
+    private static final int DELETE_BATCH = 10_000;
+
+    /**
+     * Một mức lưu trữ: kích thước bucket, mức nguồn để rollup và thời gian giữ
+     */
+    private record Level(String resolution, long bucketMs, String source, long retentionMs) {
+    }
+
+    // Theo thứ tự rollup: mức sau tính từ mức trước
+    private static final List<Level> LEVELS = List.of(
+            new Level(RAW, MetricsCollector.INTERVAL_MS, null, 24 * 3_600_000L),
+            new Level("1m", 60_000L, RAW, 7 * 24 * 3_600_000L),
+            new Level("5m", 5 * 60_000L, "1m", 30 * 24 * 3_600_000L),
+            new Level("1h", 3_600_000L, "5m", 365 * 24 * 3_600_000L));
+
+    private static final String INSERT_SQL = "INSERT INTO server_metrics_sample (server_id, resolution, sampled_at, sample_count, "
+            + "cpu_millicores, cpu_used_millicores, cpu_used_max_millicores, ram_total_bytes, ram_used_bytes, ram_used_max_bytes, "
+            + "disk_total_bytes, disk_used_bytes) VALUES (?, ?, ?, 1, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String ROLLUP_SQL = "INSERT INTO server_metrics_sample (server_id, resolution, sampled_at, sample_count, "
+            + "cpu_millicores, cpu_used_millicores, cpu_used_max_millicores, ram_total_bytes, ram_used_bytes, ram_used_max_bytes, "
+            + "disk_total_bytes, disk_used_bytes) "
+            + "SELECT server_id, ?, sampled_at - MOD(sampled_at, ?) AS bucket, SUM(sample_count), "
+            + "MAX(cpu_millicores), ROUND(AVG(cpu_used_millicores)), MAX(cpu_used_max_millicores), "
+            + "MAX(ram_total_bytes), ROUND(AVG(ram_used_bytes)), MAX(ram_used_max_bytes), "
+            + "MAX(disk_total_bytes), ROUND(AVG(disk_used_bytes)) "
+            + "FROM server_metrics_sample WHERE resolution = ? AND sampled_at >= ? AND sampled_at < ? "
+            + "GROUP BY server_id, bucket";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ConcurrentLinkedQueue<Object[]> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // Mốc đã rollup tới (không gồm) của từng mức, nạp từ DB ở lần rollup đầu tiên
+    private final Map<String, Long> rolledUpTo = new ConcurrentHashMap<>();
+
+    public ServerMetricsHistory(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Ghi nhận sample của server, sẽ được ghi xuống DB ở lần flush kế tiếp
+     */
+    public void record(Long serverId, ServerMetricsProbe.ServerSample sample) {
+        if (serverId == null || sample == null || !sample.hasData()) {
+            return;
+        }
+        Long cpuUsed = Double.isNaN(sample.cpuLoad()) ? null : Math.round(sample.cpuLoad() * 1000);
+        pending.add(new Object[]{
+                serverId, RAW, sample.timestamp(),
+                positiveOrNull(sample.cpuCores() * 1000L), cpuUsed, cpuUsed,
+                positiveOrNull(sample.ramTotalBytes()), positiveOrNull(sample.ramUsedBytes()), positiveOrNull(sample.ramUsedBytes()),
+                positiveOrNull(sample.diskTotalBytes()), positiveOrNull(sample.diskUsedBytes())});
+        if (pendingCount.incrementAndGet() > MAX_PENDING && pending.poll() != null) {
+            pendingCount.decrementAndGet();
+        }
+    }
+
+    @Scheduled(fixedDelay = FLUSH_INTERVAL_MS, initialDelay = FLUSH_INTERVAL_MS)
+    public void flush() {
+        List<Object[]> batch = new ArrayList<>();
+        Object[] row;
+        while ((row = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            batch.add(row);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        int[] types = {Types.BIGINT, Types.VARCHAR, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT,
+                Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT};
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, types);
+        } catch (Exception e) {
+            System.err.println("[ServerMetricsHistory] Khong ghi duoc " + batch.size() + " sample: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tính rollup cho các bucket đã kết thúc của từng mức, theo thứ tự 1m → 5m → 1h
+     */
+    @Scheduled(fixedDelay = FLUSH_INTERVAL_MS, initialDelay = 2 * FLUSH_INTERVAL_MS)
+    public void rollup() {
+        long horizon = System.currentTimeMillis() - ROLLUP_LAG_MS;
+        for (Level level : LEVELS) {
+            if (level.source() == null) {
+                continue;
+            }
+            try {
+                rollup(level, horizon - horizon % level.bucketMs());
+            } catch (Exception e) {
+                System.err.println("[ServerMetricsHistory] Loi khi rollup " + level.resolution() + ": " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void rollup(Level level, long end) {
+        Long start = rolledUpTo.get(level.resolution());
+        if (start == null) {
+            // Tiếp tục sau bucket cuối đã có, chưa có thì bắt đầu từ sample cũ nhất của mức nguồn
+            Long last = jdbcTemplate.queryForObject(
+                    "SELECT MAX(sampled_at) FROM server_metrics_sample WHERE resolution = ?", Long.class, level.resolution());
+            if (last != null) {
+                start = last + level.bucketMs();
+            } else {
+                Long first = jdbcTemplate.queryForObject(
+                        "SELECT MIN(sampled_at) FROM server_metrics_sample WHERE resolution = ?", Long.class, level.source());
+                if (first == null) {
+                    return;
+                }
+                start = first - first % level.bucketMs();
+            }
+        }
+        if (start >= end) {
+            rolledUpTo.put(level.resolution(), start);
+            return;
+        }
+        int rows = jdbcTemplate.update(ROLLUP_SQL, level.resolution(), level.bucketMs(), level.source(), start, end);
+        rolledUpTo.put(level.resolution(), end);
+        if (rows > 0) {
+            System.out.println("[ServerMetricsHistory] Rollup " + level.resolution() + ": " + rows + " diem");
+        }
+    }
+
+    /**
+     * Xóa dữ liệu quá thời gian giữ của từng mức
+     */
+    @Scheduled(fixedDelay = 60 * 60 * 1000L, initialDelay = 10 * 60 * 1000L)
+    public void applyRetention() {
+        long now = System.currentTimeMillis();
+        for (Level level : LEVELS) {
+            try {
+                int deleted;
+                int total = 0;
+                do {
+                    deleted = jdbcTemplate.update(
+                            "DELETE FROM server_metrics_sample WHERE resolution = ? AND sampled_at < ? LIMIT " + DELETE_BATCH,
+                            level.resolution(), now - level.retentionMs());
+                    total += deleted;
+                } while (deleted == DELETE_BATCH);
+                if (total > 0) {
+                    System.out.println("[ServerMetricsHistory] Da xoa " + total + " diem " + level.resolution() + " qua han");
+                }
+            } catch (Exception e) {
+                System.err.println("[ServerMetricsHistory] Loi khi xoa du lieu " + level.resolution() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Các mức hợp lệ cho {@link #query}
+     */
+    public static List<String> resolutions() {
+        return LEVELS.stream().map(Level::resolution).toList();
+    }
+
+    /**
+     * Lịch sử của server ở một mức trong khoảng [fromMs, toMs]. CPU trả về theo cores, dùng giá trị trung bình.
+     *
+     * @return series hoặc null nếu resolution không hợp lệ
+     */
+    public MetricSeriesResponse query(Long serverId, String resolution, long fromMs, long toMs) {
+        Level level = LEVELS.stream().filter(l -> l.resolution().equals(resolution)).findFirst().orElse(null);
+        if (level == null) {
+            return null;
+        }
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT sampled_at, cpu_millicores, cpu_used_millicores, ram_total_bytes, ram_used_bytes, "
+                        + "disk_total_bytes, disk_used_bytes FROM server_metrics_sample "
+                        + "WHERE resolution = ? AND server_id = ? AND sampled_at >= ? AND sampled_at <= ? ORDER BY sampled_at",
+                resolution, serverId, fromMs, toMs);
+        int n = rows.size();
+        long[] timestamps = new long[n];
+        double[] cpu = new double[n];
+        long[] memory = new long[n];
+        long[] disk = new long[n];
+        Long cpuCapacity = null;
+        Long memoryCapacity = null;
+        Long diskCapacity = null;
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> row = rows.get(i);
+            timestamps[i] = number(row.get("sampled_at"));
+            cpu[i] = row.get("cpu_used_millicores") != null ? number(row.get("cpu_used_millicores")) / 1000.0 : Double.NaN;
+            memory[i] = number(row.get("ram_used_bytes"));
+            disk[i] = number(row.get("disk_used_bytes"));
+            // Capacity lấy theo điểm mới nhất có giá trị
+            cpuCapacity = row.get("cpu_millicores") != null ? Long.valueOf(number(row.get("cpu_millicores"))) : cpuCapacity;
+            memoryCapacity = row.get("ram_total_bytes") != null ? Long.valueOf(number(row.get("ram_total_bytes"))) : memoryCapacity;
+            diskCapacity = row.get("disk_total_bytes") != null ? Long.valueOf(number(row.get("disk_total_bytes"))) : diskCapacity;
+        }
+        return new MetricSeriesResponse(MetricsCollector.KIND_SERVER, String.valueOf(serverId), level.bucketMs(),
+                timestamps, cpu, memory, disk,
+                cpuCapacity != null ? cpuCapacity / 1000.0 : null, memoryCapacity, diskCapacity);
+    }
+
+    private static long number(Object value) {
+        return value instanceof Number number ? number.longValue() : 0L;
+    }
+
+    private static Long positiveOrNull(long value) {
+        return value > 0 ? value : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,157 @@
+package my_spring_app.my_spring_app.metrics;
+
+import com.jcraft.jsch.Session;
+import my_spring_app.my_spring_app.ssh.SshCommandExecutor;
+import my_spring_app.my_spring_app.ssh.SshSessionPool;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lấy CPU/RAM/Disk của một server qua SSH (session mượn từ pool) và trả về giá trị số
+ * (cores, bytes) thay vì chuỗi đã format, để collector có thể lưu vào time-series.
+ *
+ * CPU dùng cùng định nghĩa với {@link ServerMetricsStream}: số core đang bận tính từ chênh lệch jiffies
+ * của /proc/stat (đọc hai lần cách nhau 1 giây), để series cpu_used_millicores không đổi ý nghĩa khi
+ * collector chuyển giữa stream và probe.
+ */
+@Component
+public class ServerMetricsProbe {
+
+    private static final String METRICS_COMMAND = "echo \"CPU_STAT:$(head -1 /proc/stat)\"; " +
+            "echo \"CPU_CORES:$(nproc || echo '0')\"; " +
+            "echo \"RAM_TOTAL_BYTES:$(free -b 2>/dev/null | awk 'NR==2{print $2}' || echo '0')\"; " +
+            "echo \"RAM_USED_BYTES:$(free -b 2>/dev/null | awk 'NR==2{print $3}' || echo '0')\"; " +
+            "echo \"DISK_TOTAL_KB:$(df / 2>/dev/null | awk 'NR==2{print $2}' || echo '0')\"; " +
+            "echo \"DISK_USED_KB:$(df / 2>/dev/null | awk 'NR==2{print $3}' || echo '0')\"; " +
+            "sleep 1; echo \"CPU_STAT:$(head -1 /proc/stat)\"";
+
+    private static final long PROBE_TIMEOUT_MS = 15_000L;
+
+    private final SshSessionPool sshSessionPool;
+    private final SshCommandExecutor sshCommandExecutor;
+
+    public ServerMetricsProbe(SshSessionPool sshSessionPool, SshCommandExecutor sshCommandExecutor) {
+        this.sshSessionPool = sshSessionPool;
+        this.sshCommandExecutor = sshCommandExecutor;
+    }
+
+    /**
+     * Một lần đo của server. Giá trị 0 (hoặc NaN với cpuLoad) nghĩa là không đọc được.
+     */
+    public record ServerSample(long timestamp, int cpuCores, double cpuLoad,
+                               long ramTotalBytes, long ramUsedBytes,
+                               long diskTotalBytes, long diskUsedBytes) {
+
+        public boolean hasData() {
+            return cpuCores > 0 || ramTotalBytes > 0 || diskTotalBytes > 0;
+        }
+    }
+
+    /**
+     * Đo metrics của server (ưu tiên SSH key, fallback password).
+     *
+     * @return ServerSample hoặc null nếu không SSH được
+     */
+    public ServerSample probe(Long serverId, String ip, Integer port, String username,
+                              String privateKeyPem, String password) {
+        Session session = null;
+        try {
+            session = sshSessionPool.acquire(serverId, ip, port, username, privateKeyPem, password);
+            SshCommandExecutor.CommandResult result = sshCommandExecutor.execute(session, METRICS_COMMAND, PROBE_TIMEOUT_MS);
+            return result.timedOut() ? null : parse(result.stdout());
+        } catch (Exception e) {
+            return null;
+        } finally {
+            if (session != null) {
+                sshSessionPool.release(session);
+            }
+        }
+    }
+
+    /**
+     * Số core đang bận giữa hai lần đọc /proc/stat (busy fraction × cores), NaN nếu không tính được.
+     * Dùng chung cho probe và stream.
+     */
+    static double busyCores(int cores, long previousTotal, long previousIdle, long total, long idle) {
+        long deltaTotal = total - previousTotal;
+        if (previousTotal < 0 || deltaTotal <= 0) {
+            return Double.NaN;
+        }
+        double busy = 1.0 - (double) (idle - previousIdle) / deltaTotal;
+        return Math.max(0.0, Math.min(1.0, busy)) * cores;
+    }
+
+    /**
+     * Parse dòng "cpu user nice system idle iowait irq softirq steal ..." của /proc/stat.
+     *
+     * @return {total, idle} theo jiffies (idle gồm cả iowait, giống STREAM_SCRIPT), null nếu sai format
+     */
+    static long[] parseCpuStat(String line) {
+        String[] fields = line.trim().split("\\s+");
+        if (fields.length < 9 || !"cpu".equals(fields[0])) {
+            return null;
+        }
+        try {
+            long total = 0;
+            for (int i = 1; i <= 8; i++) {
+                total += Long.parseLong(fields[i]);
+            }
+            return new long[]{total, Long.parseLong(fields[4]) + Long.parseLong(fields[5])};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse output của METRICS_COMMAND.
+     * Format: CPU_STAT:cpu 100 0 50 800 ...\nCPU_CORES:4\nRAM_TOTAL_BYTES:8589934592\nRAM_USED_BYTES:3435973836\n
+     * DISK_TOTAL_KB:52428800\nDISK_USED_KB:26214400\nCPU_STAT:cpu 120 0 60 860 ...
+     */
+    static ServerSample parse(String output) {
+        int cpuCores = 0;
+        long[] firstCpuStat = null;
+        long[] lastCpuStat = null;
+        long ramTotal = 0L;
+        long ramUsed = 0L;
+        long diskTotalKb = 0L;
+        long diskUsedKb = 0L;
+        for (String line : output.split("\n")) {
+            line = line.trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String key = line.substring(0, colon);
+            String value = line.substring(colon + 1).trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            try {
+                switch (key) {
+                    case "CPU_CORES" -> cpuCores = Integer.parseInt(value);
+                    case "CPU_STAT" -> {
+                        long[] stat = parseCpuStat(value);
+                        if (firstCpuStat == null) {
+                            firstCpuStat = stat;
+                        } else {
+                            lastCpuStat = stat;
+                        }
+                    }
+                    case "RAM_TOTAL_BYTES" -> ramTotal = Long.parseLong(value);
+                    case "RAM_USED_BYTES" -> ramUsed = Long.parseLong(value);
+                    case "DISK_TOTAL_KB" -> diskTotalKb = Long.parseLong(value);
+                    case "DISK_USED_KB" -> diskUsedKb = Long.parseLong(value);
+                    default -> {
+                    }
+                }
+            } catch (NumberFormatException ignored) {
+                // Giữ giá trị mặc định khi không parse được
+            }
+        }
+        double cpuLoad = firstCpuStat != null && lastCpuStat != null
+                ? busyCores(cpuCores, firstCpuStat[0], firstCpuStat[1], lastCpuStat[0], lastCpuStat[1])
+                : Double.NaN;
+        // df trả về block 1KB (1024 bytes)
+        return new ServerSample(System.currentTimeMillis(), cpuCores, cpuLoad,
+                ramTotal, ramUsed, diskTotalKb * 1024L, diskUsedKb * 1024L);
+    }
+}
@@ -0,0 +1,229 @@
+package my_spring_app.my_spring_app.metrics;
+
+import com.jcraft.jsch.Session;
+import jakarta.annotation.PreDestroy;
+import my_spring_app.my_spring_app.ssh.SshCommandExecutor;
+import my_spring_app.my_spring_app.ssh.SshSessionPool;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Stream metrics liên tục từ mỗi server qua một channel exec giữ suốt vòng đời ứng dụng,
+ * thay cho mở SSH và chạy nproc/uptime/free/df (mỗi lệnh fork vài tiến trình) sau mỗi chu kỳ.
+ *
+ * Phía server chạy một vòng lặp bash chỉ dùng builtin để đọc /proc/stat và /proc/meminfo,
+ * statvfs của / qua một lệnh stat -f, rồi in một dòng mỗi {@link #STREAM_INTERVAL_SECONDS} giây:
+ * <pre>M &lt;cores&gt; &lt;cpuTotalJiffies&gt; &lt;cpuIdleJiffies&gt; &lt;memTotalKb&gt; &lt;memAvailableKb&gt; &lt;blockSize&gt; &lt;blocks&gt; &lt;blocksFree&gt;</pre>
+ * JVM parse từng dòng ngay khi tới. CPU là số core đang bận tính từ chênh lệch jiffies giữa hai dòng
+ * liên tiếp (utilisation thật thay vì load average), cùng định nghĩa với {@link ServerMetricsProbe}.
+ *
+ * Mỗi stream dùng một SSH session riêng ngoài {@link SshSessionPool}: channel giữ suốt vòng đời ứng dụng
+ * nên nếu mượn từ pool sẽ chiếm vĩnh viễn một permit của server đó.
+ *
+ * Channel đóng (mất kết nối, server reboot...) thì stream bị bỏ, {@link MetricsCollector} mở lại ở chu kỳ sau
+ * và dùng {@link ServerMetricsProbe} đo một lần trong lúc chờ.
+ */
+@Component
+public class ServerMetricsStream {
+
+    static final int STREAM_INTERVAL_SECONDS = (int) (MetricsCollector.INTERVAL_MS / 1000);
+    // Không thử mở lại stream của server vừa lỗi trong khoảng này
+    private static final long RETRY_AFTER_MS = 5 * 60_000L;
+
+    // Không dùng dấu nháy đơn: script được bọc trong bash -c '...'
+    private static final String STREAM_SCRIPT = "while :; do "
+            + "c=0; while read -r k u n s i w q sq st rest; do case $k in "
+            + "cpu) t=$((u+n+s+i+w+q+sq+st)); id=$((i+w));; cpu[0-9]*) c=$((c+1));; *) break;; esac; done < /proc/stat; "
+            + "while read -r k v rest; do case $k in MemTotal:) mt=$v;; MemAvailable:) ma=$v;; esac; done < /proc/meminfo; "
+            + "echo \"M $c $t $id $mt $ma $(stat -f -c \"%S %b %f\" / 2>/dev/null || echo 0 0 0)\"; "
+            + "sleep " + STREAM_INTERVAL_SECONDS + " || exit; "
+            + "done";
+    private static final String STREAM_COMMAND = "bash -c '" + STREAM_SCRIPT + "'";
+
+    private final SshSessionPool sshSessionPool;
+    private final SshCommandExecutor sshCommandExecutor;
+
+    private final Map<Long, Stream> streams = new ConcurrentHashMap<>();
+    // Thời điểm stream của server lỗi gần nhất
+    private final Map<Long, Long> failedAt = new ConcurrentHashMap<>();
+
+    public ServerMetricsStream(SshSessionPool sshSessionPool, SshCommandExecutor sshCommandExecutor) {
+        this.sshSessionPool = sshSessionPool;
+        this.sshCommandExecutor = sshCommandExecutor;
+    }
+
+    private static final class Stream {
+        final StringBuilder pending = new StringBuilder();
+        volatile CompletableFuture<SshCommandExecutor.CommandResult> channel;
+        volatile boolean stopped;
+        volatile boolean received;
+        long lastTotal = -1;
+        long lastIdle = -1;
+    }
+
+    /**
+     * Mở stream cho server nếu chưa có (kết nối chạy trên virtual thread, không chặn thread gọi).
+     *
+     * @param onSample nhận từng sample parse được
+     */
+    public void ensureStarted(Long serverId, String ip, Integer port, String username,
+                              String privateKeyPem, String password, Consumer<ServerMetricsProbe.ServerSample> onSample) {
+        Long lastFailure = failedAt.get(serverId);
+        if (lastFailure != null && System.currentTimeMillis() - lastFailure < RETRY_AFTER_MS) {
+            return;
+        }
+        Stream stream = new Stream();
+        if (streams.putIfAbsent(serverId, stream) != null) {
+            return;
+        }
+        Thread.ofVirtual().name("metrics-stream-" + serverId).start(() ->
+                open(serverId, stream, ip, port, username, privateKeyPem, password, onSample));
+    }
+
+    /**
+     * Đóng stream của server (server bị sửa thông tin kết nối, xóa, disable hoặc reboot)
+     */
+    public void stop(Long serverId) {
+        if (serverId == null) {
+            return;
+        }
+        failedAt.remove(serverId);
+        Stream stream = streams.remove(serverId);
+        if (stream != null) {
+            close(stream);
+        }
+    }
+
+    /**
+     * Đóng stream của các server không còn trong danh sách cần theo dõi
+     */
+    public void retainOnly(Set<Long> serverIds) {
+        for (Long serverId : streams.keySet()) {
+            if (!serverIds.contains(serverId)) {
+                stop(serverId);
+            }
+        }
+        failedAt.keySet().retainAll(serverIds);
+    }
+
+    /**
+     * Stream của server đang mở và đã nhận được dữ liệu
+     */
+    public boolean isStreaming(Long serverId) {
+        Stream stream = streams.get(serverId);
+        return stream != null && stream.received;
+    }
+
+    private void open(Long serverId, Stream stream, String ip, Integer port, String username,
+                      String privateKeyPem, String password, Consumer<ServerMetricsProbe.ServerSample> onSample) {
+        Session session;
+        try {
+            session = sshSessionPool.connectDedicated(ip, port, username, privateKeyPem, password);
+        } catch (Exception e) {
+            fail(serverId, stream, "khong ket noi duoc: " + e.getMessage());
+            return;
+        }
+        // Session riêng của stream, đóng khi channel đóng; output chỉ đi qua handler, không tích lũy trong buffer
+        CompletableFuture<SshCommandExecutor.CommandResult> channel = sshCommandExecutor.executeAsync(session, STREAM_COMMAND,
+                SshCommandExecutor.CommandOptions.of(0).withMaxOutputBytes(0)
+                        .withOutputHandler(chunk -> onChunk(serverId, stream, chunk, onSample)));
+        stream.channel = channel;
+        channel.whenComplete((result, error) -> {
+            session.disconnect();
+            if (stream.stopped) {
+                return;
+            }
+            String reason = error != null ? error.getMessage() : "channel dong (exit " + result.exitStatus() + ")";
+            if (stream.received) {
+                // Đã chạy được: mất kết nối thì cho mở lại ngay ở chu kỳ sau
+                streams.remove(serverId, stream);
+                System.out.println("[ServerMetricsStream] Stream cua server " + serverId + " da dong: " + reason);
+            } else {
+                fail(serverId, stream, reason);
+            }
+        });
+        if (stream.stopped) {
+            close(stream);
+        }
+    }
+
+    // Ghép chunk thành dòng, parse từng dòng hoàn chỉnh (stdout và stderr gọi từ hai sink khác nhau nên khóa theo stream)
+    private void onChunk(Long serverId, Stream stream, String chunk, Consumer<ServerMetricsProbe.ServerSample> onSample) {
+        synchronized (stream) {
+            stream.pending.append(chunk);
+            int newline;
+            while ((newline = stream.pending.indexOf("\n")) >= 0) {
+                String line = stream.pending.substring(0, newline).trim();
+                stream.pending.delete(0, newline + 1);
+                ServerMetricsProbe.ServerSample sample = parseLine(stream, line);
+                if (sample != null) {
+                    stream.received = true;
+                    failedAt.remove(serverId);
+                    onSample.accept(sample);
+                }
+            }
+            // Dòng rác không có newline: không để buffer tăng mãi
+            if (stream.pending.length() > 4096) {
+                stream.pending.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Parse một dòng "M ..." của STREAM_SCRIPT. Dòng đầu tiên chưa có mốc jiffies trước đó nên cpuLoad = NaN.
+     */
+    private static ServerMetricsProbe.ServerSample parseLine(Stream stream, String line) {
+        String[] fields = line.split("\\s+");
+        if (fields.length != 9 || !"M".equals(fields[0])) {
+            return null;
+        }
+        try {
+            int cores = Integer.parseInt(fields[1]);
+            long total = Long.parseLong(fields[2]);
+            long idle = Long.parseLong(fields[3]);
+            long memTotalKb = Long.parseLong(fields[4]);
+            long memAvailableKb = Long.parseLong(fields[5]);
+            long blockSize = Long.parseLong(fields[6]);
+            long blocks = Long.parseLong(fields[7]);
+            long blocksFree = Long.parseLong(fields[8]);
+
+            double cpuLoad = ServerMetricsProbe.busyCores(cores, stream.lastTotal, stream.lastIdle, total, idle);
+            stream.lastTotal = total;
+            stream.lastIdle = idle;
+
+            // used = total - available (giống cột "used" của free bản mới), disk used = (blocks - free) * size (giống df)
+            return new ServerMetricsProbe.ServerSample(System.currentTimeMillis(), cores, cpuLoad,
+                    memTotalKb * 1024L, (memTotalKb - memAvailableKb) * 1024L,
+                    blocks * blockSize, (blocks - blocksFree) * blockSize);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void fail(Long serverId, Stream stream, String reason) {
+        streams.remove(serverId, stream);
+        failedAt.put(serverId, System.currentTimeMillis());
+        System.err.println("[ServerMetricsStream] Khong mo duoc stream cho server " + serverId + ", dung probe tung lan: " + reason);
+    }
+
+    private static void close(Stream stream) {
+        stream.stopped = true;
+        CompletableFuture<SshCommandExecutor.CommandResult> channel = stream.channel;
+        if (channel != null) {
+            // cancel future sẽ ngắt channel, session riêng của stream được đóng trong whenComplete
+            channel.cancel(true);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Long serverId : streams.keySet()) {
+            stop(serverId);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package my_spring_app.my_spring_app.repository;
+
+import my_spring_app.my_spring_app.entity.BuildCacheEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BuildCacheRepository extends JpaRepository<BuildCacheEntity, Long> {
+
+    Optional<BuildCacheEntity> findByCacheKey(String cacheKey);
+
+    List<BuildCacheEntity> findAllByOrderByLastUsedAtAsc(Pageable pageable);
+}
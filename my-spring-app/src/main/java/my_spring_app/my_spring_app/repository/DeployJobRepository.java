@@ -0,0 +1,17 @@
+package my_spring_app.my_spring_app.repository;
+
+import my_spring_app.my_spring_app.entity.DeployJobEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DeployJobRepository extends JpaRepository<DeployJobEntity, Long> {
+
+    Optional<DeployJobEntity> findByJobId(String jobId);
+
+    List<DeployJobEntity> findAllByStatusIn(Collection<String> statuses);
+}
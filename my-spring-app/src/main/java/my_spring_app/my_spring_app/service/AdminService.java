@@ -12,6 +12,7 @@ import my_spring_app.my_spring_app.dto.reponse.AdminDatabaseDetailResponse;
 import my_spring_app.my_spring_app.dto.reponse.AdminBackendDetailResponse;
 import my_spring_app.my_spring_app.dto.reponse.AdminFrontendDetailResponse;
 import my_spring_app.my_spring_app.dto.reponse.DashboardMetricsResponse;
+import my_spring_app.my_spring_app.dto.reponse.JoinNodesResponse;
 import my_spring_app.my_spring_app.dto.reponse.NodeListResponse;
 import my_spring_app.my_spring_app.dto.reponse.NamespaceListResponse;
 import my_spring_app.my_spring_app.dto.reponse.NamespaceDetailResponse;
@@ -29,6 +30,8 @@ import my_spring_app.my_spring_app.dto.reponse.StatefulsetResponse;
 import my_spring_app.my_spring_app.dto.request.NamespaceRequest;
 import my_spring_app.my_spring_app.dto.request.NamespaceUpdateRequest;
 
+import java.util.List;
+
 public interface AdminService {
 
     AdminOverviewResponse getOverview();
@@ -61,6 +64,8 @@ public interface AdminService {
 
     void joinNodeToK8s(Long serverId);
 
+    JoinNodesResponse joinNodesToK8s(List<Long> serverIds);
+
     void removeNodeFromK8s(String nodeName, String nodeIp);
 
     void cordonNode(String nodeName);
@@ -76,16 +76,18 @@ public interface AnsibleService {
     /**
      * Lấy trạng thái thực thi của một task init Ansible
      * @param taskId Task ID được trả về khi bắt đầu bước init
-     * @return Trạng thái task bao gồm logs realtime
+     * @param since Offset log client đã có (0 = toàn bộ log)
+     * @return Trạng thái task bao gồm phần logs từ offset since
      */
-    AnsibleTaskStatusResponse getInitTaskStatus(String taskId);
+    AnsibleTaskStatusResponse getInitTaskStatus(String taskId, long since);
     
     /**
      * Lấy trạng thái thực thi của playbook
      * @param taskId Task ID nhận được khi bắt đầu thực thi playbook
-     * @return Trạng thái task bao gồm logs realtime
+     * @param since Offset log client đã có (0 = toàn bộ log)
+     * @return Trạng thái task bao gồm phần logs từ offset since
      */
-    AnsibleTaskStatusResponse getPlaybookTaskStatus(String taskId);
+    AnsibleTaskStatusResponse getPlaybookTaskStatus(String taskId, long since);
     
     // ==================== Config Ansible ====================
     
@@ -0,0 +1,12 @@
+package my_spring_app.my_spring_app.service;
+
+import my_spring_app.my_spring_app.artifact.ArtifactStore;
+
+public interface BuildCacheService {
+
+    String computeKey(ArtifactStore.Artifact artifact, String projectDir, String frameworkType);
+
+    String findImage(String cacheKey);
+
+    void recordBuild(String cacheKey, ArtifactStore.Artifact artifact, String frameworkType, String imageRef);
+}
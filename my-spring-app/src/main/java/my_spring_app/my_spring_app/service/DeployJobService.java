@@ -0,0 +1,41 @@
+package my_spring_app.my_spring_app.service;
+
+import my_spring_app.my_spring_app.dto.reponse.DeployJobResponse;
+import my_spring_app.my_spring_app.entity.DeployJobEntity;
+import my_spring_app.my_spring_app.entity.ProjectBackendEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+public interface DeployJobService {
+
+    String STAGE_UPLOAD = "UPLOAD";
+    String STAGE_BUILD = "BUILD";
+    String STAGE_PUSH = "PUSH";
+    String STAGE_APPLY = "APPLY";
+    String STAGE_ROLLOUT_WAIT = "ROLLOUT_WAIT";
+
+    /**
+     * Một bước của pipeline, được phép ném checked exception (SSH/SFTP)
+     */
+    @FunctionalInterface
+    interface StageAction {
+        void run() throws Exception;
+    }
+
+    DeployJobEntity createJob(ProjectBackendEntity backend, List<String> stages);
+
+    void submit(String jobId, Runnable pipeline);
+
+    void runStage(String jobId, String stage, StageAction action) throws Exception;
+
+    void skipStage(String jobId, String stage, String reason);
+
+    void completeJob(String jobId);
+
+    void failJob(String jobId, String errorMessage);
+
+    DeployJobResponse getJob(String jobId);
+
+    SseEmitter streamJob(String jobId);
+}
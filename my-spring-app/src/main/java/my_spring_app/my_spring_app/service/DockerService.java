@@ -38,9 +38,10 @@ public interface DockerService {
     /**
      * Lấy trạng thái task Docker
      * @param taskId ID của task
-     * @return AnsibleTaskStatusResponse chứa trạng thái và logs
+     * @param since Offset log client đã có (0 = toàn bộ log)
+     * @return AnsibleTaskStatusResponse chứa trạng thái và phần logs từ offset since
      */
-    AnsibleTaskStatusResponse getDockerTaskStatus(String taskId);
+    AnsibleTaskStatusResponse getDockerTaskStatus(String taskId, long since);
 
     /**
      * Test Docker container bằng hello-world
@@ -7,19 +7,7 @@ import my_spring_app.my_spring_app.dto.reponse.DockerStatusResponse;
 import my_spring_app.my_spring_app.dto.request.SaveAnsibleConfigRequest;
 
 public interface InstallService {
-    // Methods cũ (backward compatibility)
-    java.util.List<String> setupAnsibleOnK8sNodes();
-    java.util.List<String> uninstallAnsibleFromK8sNodes();
-    java.util.List<String> installKubernetesWithKubespray();
-    java.util.List<String> uninstallKubernetesFromK8sNodes();
-    java.util.List<String> installK8sAddons();
-    java.util.List<String> uninstallK8sAddons();
-    java.util.List<String> installMetricsServer();
-    java.util.List<String> uninstallMetricsServer();
-    java.util.List<String> installDocker();
-    java.util.List<String> uninstallDocker();
-    
-    // Methods mới với taskId để hỗ trợ polling
+    // Các task install/uninstall: bắt đầu task nền rồi trả về ngay, client poll status theo taskId
     void setupAnsibleOnK8sNodes(String taskId);
     void uninstallAnsibleFromK8sNodes(String taskId);
     void installKubernetesWithKubespray(String taskId);
@@ -31,8 +19,14 @@ public interface InstallService {
     void installDocker(String taskId);
     void uninstallDocker(String taskId);
     
-    // Method để poll status
-    InstallStatusResponse getInstallStatus(String taskId);
+    // Method để poll status, chỉ trả phần logs từ offset since (0 = toàn bộ)
+    InstallStatusResponse getInstallStatus(String taskId, long since);
+
+    /**
+     * Hủy task đang chạy: kill tiến trình của task trên server đích và dừng các bước còn lại
+     * @return false nếu task không tồn tại hoặc đã kết thúc
+     */
+    boolean cancelInstallTask(String taskId);
     
     // Methods để xem và chỉnh sửa cấu hình Ansible
     /**
@@ -1,8 +1,14 @@
 package my_spring_app.my_spring_app.service;
 
+import my_spring_app.my_spring_app.dto.reponse.DatabaseBackupResponse;
 import my_spring_app.my_spring_app.dto.reponse.DeployDatabaseResponse;
+import my_spring_app.my_spring_app.dto.reponse.InstallTaskResponse;
 import my_spring_app.my_spring_app.dto.request.DeployDatabaseRequest;
 
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+
 public interface ProjectDatabaseService {
 
     DeployDatabaseResponse deploy(DeployDatabaseRequest request);
@@ -12,5 +18,15 @@ public interface ProjectDatabaseService {
     void startDatabase(Long projectId, Long databaseId);
 
     void deleteDatabase(Long projectId, Long databaseId);
+
+    String getExportFileName(Long projectId, Long databaseId);
+
+    void exportDatabase(Long projectId, Long databaseId, OutputStream out);
+
+    InstallTaskResponse createBackup(Long projectId, Long databaseId);
+
+    List<DatabaseBackupResponse> listBackups(Long projectId, Long databaseId);
+
+    Path getBackupFile(Long projectId, Long databaseId, String fileName);
 }
 
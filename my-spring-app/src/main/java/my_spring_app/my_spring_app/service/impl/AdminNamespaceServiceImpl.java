@@ -7,6 +7,7 @@ import my_spring_app.my_spring_app.dto.reponse.NamespaceResponse;
 import my_spring_app.my_spring_app.dto.request.NamespaceRequest;
 import my_spring_app.my_spring_app.dto.request.NamespaceUpdateRequest;
 import my_spring_app.my_spring_app.entity.ServerEntity;
+import my_spring_app.my_spring_app.k8s.KubernetesMetricsClient;
 import my_spring_app.my_spring_app.repository.ServerRepository;
 import my_spring_app.my_spring_app.service.AdminNamespaceService;
 import org.springframework.stereotype.Service;
@@ -21,16 +22,11 @@ import io.kubernetes.client.openapi.models.V1ObjectMeta;
 import io.kubernetes.client.openapi.models.V1NamespaceStatus;
 import io.kubernetes.client.openapi.models.V1DeleteOptions;
 import io.kubernetes.client.util.Yaml;
-import io.kubernetes.client.util.Config;
-import io.kubernetes.client.openapi.Configuration;
-import java.io.File;
-import java.io.FileWriter;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 /**
  * Service xử lý các operations liên quan đến Kubernetes Namespaces.
@@ -46,44 +42,27 @@ public class AdminNamespaceServiceImpl extends BaseKubernetesService implements
 
     @Override
     public NamespaceListResponse getNamespaces() {
-        // Lấy thông tin server MASTER
-        ServerEntity masterServer = serverRepository.findByRole("MASTER")
-                .orElseThrow(() -> new RuntimeException(
-                        "Không tìm thấy server MASTER. Vui lòng cấu hình server MASTER trong hệ thống."));
-
-        Session session = null;
         try {
-            // Kết nối SSH đến MASTER server để lấy kubeconfig
-            session = createSession(masterServer);
-            
-            // Tạo Kubernetes client từ kubeconfig
-            ApiClient client = createKubernetesClient(session);
-            CoreV1Api api = new CoreV1Api(client);
-            
             List<NamespaceResponse> namespaces = new ArrayList<>();
             
-            // Lấy danh sách namespaces
+            // Lấy danh sách namespaces từ cache informer
             try {
-                io.kubernetes.client.openapi.models.V1NamespaceList namespaceList = api.listNamespace(
-                        null, // allowWatchBookmarks
-                        null, // _continue
-                        null, // fieldSelector
-                        null, // labelSelector
-                        null, // limit
-                        null, // pretty
-                        null, // resourceVersion
-                        null, // resourceVersionMatch
-                        null, // sendInitialEvents
-                        null, // timeoutSeconds
-                        null // watch
-                );
+                List<V1Namespace> namespaceList = clusterStateCache.namespaces().list();
                 
-                if (namespaceList.getItems() == null) {
-                    return new NamespaceListResponse(new ArrayList<>());
+                // Lấy CPU/Memory của tất cả pod trong cluster một lần (metrics.k8s.io), gom theo namespace
+                Map<String, ResourceUsage> usageByNamespace = new HashMap<>();
+                try {
+                    for (KubernetesMetricsClient.PodUsage usage : metricsSnapshotService.allPods()) {
+                        usageByNamespace.computeIfAbsent(usage.namespace(), key -> new ResourceUsage())
+                                .addCpu(usage.cpuCores())
+                                .addMemory(usage.memoryBytes());
+                    }
+                } catch (Exception e) {
+                    // Metrics Server không khả dụng, CPU/Memory để mặc định 0
                 }
-                
+
                 // Parse từng namespace
-                for (V1Namespace v1Namespace : namespaceList.getItems()) {
+                for (V1Namespace v1Namespace : namespaceList) {
                     try {
                         NamespaceResponse namespace = new NamespaceResponse();
                         
@@ -120,28 +99,9 @@ public class AdminNamespaceServiceImpl extends BaseKubernetesService implements
                         // Labels không cần thiết cho danh sách, chỉ cần trong chi tiết
                         namespace.setLabels(new HashMap<>());
                         
-                        // Đếm số pods trong namespace này
+                        // Đếm số pods trong namespace này (index theo namespace của cache)
                         try {
-                            io.kubernetes.client.openapi.models.V1PodList podList = api.listNamespacedPod(
-                                    name, // namespace
-                                    null, // pretty
-                                    null, // allowWatchBookmarks
-                                    null, // _continue
-                                    null, // fieldSelector
-                                    null, // labelSelector
-                                    null, // limit
-                                    null, // resourceVersion
-                                    null, // resourceVersionMatch
-                                    null, // sendInitialEvents
-                                    null, // timeoutSeconds
-                                    null // watch
-                            );
-                            
-                            int podCount = 0;
-                            if (podList != null && podList.getItems() != null) {
-                                podCount = podList.getItems().size();
-                            }
-                            namespace.setPodCount(podCount);
+                            namespace.setPodCount(clusterStateCache.pods().listByNamespace(name).size());
                         } catch (Exception e) {
                             // Nếu không lấy được pods, để giá trị mặc định
                             namespace.setPodCount(0);
@@ -149,33 +109,9 @@ public class AdminNamespaceServiceImpl extends BaseKubernetesService implements
                         
                         // Tính CPU và Memory usage cho namespace này
                         try {
-                            String cmd = String.format("kubectl top pods -n %s --no-headers", name);
-                            String output = executeCommand(session, cmd, true);
-                            
-                            double totalCpu = 0.0;
-                            long totalMemory = 0L;
-                            
-                            if (output != null && !output.trim().isEmpty()) {
-                                String[] lines = output.split("\\r?\\n");
-                                for (String line : lines) {
-                                    line = line.trim();
-                                    if (line.isEmpty()) {
-                                        continue;
-                                    }
-                                    
-                                    String[] parts = line.split("\\s+");
-                                    if (parts.length >= 3) {
-                                        try {
-                                            double cpu = parseCpuCores(parts[1]);
-                                            long memory = parseMemoryBytes(parts[2]);
-                                            totalCpu += cpu;
-                                            totalMemory += memory;
-                                        } catch (NumberFormatException ex) {
-                                            // Bỏ qua dòng không parse được
-                                        }
-                                    }
-                                }
-                            }
+                            ResourceUsage usage = usageByNamespace.getOrDefault(name, new ResourceUsage());
+                            double totalCpu = usage.getCpuCores();
+                            long totalMemory = usage.getMemoryBytes();
                             
                             String cpuFormatted = formatCpu(totalCpu);
                             String memoryFormatted = formatMemory(totalMemory);
@@ -207,11 +143,6 @@ public class AdminNamespaceServiceImpl extends BaseKubernetesService implements
             
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy danh sách namespaces: " + e.getMessage(), e);
-        } finally {
-            // Đảm bảo đóng SSH session
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
@@ -338,32 +269,11 @@ public class AdminNamespaceServiceImpl extends BaseKubernetesService implements
             
             // Tính CPU và Memory usage
             try {
-                String cmd = String.format("kubectl top pods -n %s --no-headers", name);
-                String output = executeCommand(session, cmd, true);
-                
                 double totalCpu = 0.0;
                 long totalMemory = 0L;
-                
-                if (output != null && !output.trim().isEmpty()) {
-                    String[] lines = output.split("\\r?\\n");
-                    for (String line : lines) {
-                        line = line.trim();
-                        if (line.isEmpty()) {
-                            continue;
-                        }
-                        
-                        String[] parts = line.split("\\s+");
-                        if (parts.length >= 3) {
-                            try {
-                                double cpu = parseCpuCores(parts[1]);
-                                long memory = parseMemoryBytes(parts[2]);
-                                totalCpu += cpu;
-                                totalMemory += memory;
-                            } catch (NumberFormatException ex) {
-                                // Bỏ qua dòng không parse được
-                            }
-                        }
-                    }
+                for (KubernetesMetricsClient.PodUsage usage : metricsSnapshotService.podsInNamespace(name)) {
+                    totalCpu += usage.cpuCores();
+                    totalMemory += usage.memoryBytes();
                 }
                 
                 response.setCpu(formatCpu(totalCpu));
@@ -387,8 +297,8 @@ public class AdminNamespaceServiceImpl extends BaseKubernetesService implements
             throw new RuntimeException("Không thể lấy chi tiết namespace: " + e.getMessage(), e);
         } finally {
             // Đảm bảo đóng SSH session
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -427,8 +337,8 @@ public class AdminNamespaceServiceImpl extends BaseKubernetesService implements
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo namespace: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -461,8 +371,8 @@ public class AdminNamespaceServiceImpl extends BaseKubernetesService implements
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo namespace từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -510,8 +420,8 @@ public class AdminNamespaceServiceImpl extends BaseKubernetesService implements
         } catch (Exception e) {
             throw new RuntimeException("Không thể cập nhật namespace từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -564,8 +474,8 @@ public class AdminNamespaceServiceImpl extends BaseKubernetesService implements
         } catch (Exception e) {
             throw new RuntimeException("Không thể cập nhật namespace: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -592,64 +502,8 @@ public class AdminNamespaceServiceImpl extends BaseKubernetesService implements
         } catch (Exception e) {
             throw new RuntimeException("Không thể xóa namespace: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
-        }
-    }
-
-    /**
-     * Override method createKubernetesClient để thay thế server URL trong kubeconfig
-     * trước khi feed cho Java Kubernetes client
-     */
-    @Override
-    protected ApiClient createKubernetesClient(Session session) throws Exception {
-        String kubeconfigPath = "~/.kube/config";
-        File tempKubeconfig = null;
-        try {
-            String kubeconfigContent = executeCommand(session, "cat " + kubeconfigPath, false);
-            if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                String[] alternativePaths = {
-                        "/etc/kubernetes/admin.conf",
-                        "/root/.kube/config",
-                        "$HOME/.kube/config"
-                };
-                for (String altPath : alternativePaths) {
-                    try {
-                        kubeconfigContent = executeCommand(session, "cat " + altPath, true);
-                        if (kubeconfigContent != null && !kubeconfigContent.trim().isEmpty()) {
-                            break;
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-                if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                    throw new RuntimeException("Không thể đọc kubeconfig từ master server.");
-                }
-            }
-
-            // Lấy IP MASTER và thay thế server URL trong kubeconfig trước khi sử dụng
-            Optional<ServerEntity> masterOpt = serverRepository.findByRole("MASTER");
-            if (masterOpt.isPresent()) {
-                String masterIp = masterOpt.get().getIp();
-                kubeconfigContent = replaceKubeconfigServer(kubeconfigContent, masterIp);
-            } else {
-                System.err.println("[createKubernetesClient] WARNING: Không tìm thấy server MASTER để thay server URL trong kubeconfig");
-            }
-
-            tempKubeconfig = File.createTempFile("kubeconfig-", ".yaml");
-            try (FileWriter writer = new FileWriter(tempKubeconfig)) {
-                writer.write(kubeconfigContent);
-            }
-
-            ApiClient client = Config.fromConfig(tempKubeconfig.getAbsolutePath());
-            Configuration.setDefaultApiClient(client);
-            return client;
-        } finally {
-            if (tempKubeconfig != null && tempKubeconfig.exists()) {
-                if (!tempKubeconfig.delete()) {
-                    tempKubeconfig.deleteOnExit();
-                }
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -25,8 +25,6 @@ import io.kubernetes.client.openapi.models.V1ServicePort;
 import io.kubernetes.client.openapi.models.V1ServiceSpec;
 import io.kubernetes.client.openapi.models.V1ServiceStatus;
 import io.kubernetes.client.util.Yaml;
-import io.kubernetes.client.util.Config;
-import io.kubernetes.client.openapi.Configuration;
 import my_spring_app.my_spring_app.dto.reponse.IngressDetailResponse;
 import my_spring_app.my_spring_app.dto.reponse.IngressListResponse;
 import my_spring_app.my_spring_app.dto.reponse.IngressResponse;
@@ -40,14 +38,11 @@ import my_spring_app.my_spring_app.repository.ServerRepository;
 import my_spring_app.my_spring_app.service.AdminServiceDiscoveryService;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 
 @Service
@@ -66,23 +61,13 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
 
     @Override
     public ServiceListResponse getServices() {
-        ServerEntity masterServer = getMasterServer();
-        Session session = null;
         try {
-            session = createSession(masterServer);
-            ApiClient client = createKubernetesClient(session);
-            CoreV1Api api = new CoreV1Api(client);
-
-            io.kubernetes.client.openapi.models.V1ServiceList serviceList = api.listServiceForAllNamespaces(
-                    null, null, null, null, null, null, null, null, null, null, null);
-
+            // Đọc từ cache informer (không gọi list*ForAllNamespaces cho mỗi request)
             List<ServiceResponse> services = new ArrayList<>();
-            if (serviceList.getItems() != null) {
-                for (V1Service v1Service : serviceList.getItems()) {
-                    try {
-                        services.add(buildServiceResponse(v1Service));
-                    } catch (Exception ignored) {
-                    }
+            for (V1Service v1Service : clusterStateCache.services().list()) {
+                try {
+                    services.add(buildServiceResponse(v1Service));
+                } catch (Exception ignored) {
                 }
             }
             return new ServiceListResponse(services);
@@ -90,22 +75,13 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
             throw new RuntimeException("Không thể lấy danh sách services từ Kubernetes API: " + e.getMessage(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy danh sách services: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
     @Override
     public ServiceResponse getService(String namespace, String name) {
-        ServerEntity masterServer = getMasterServer();
-        Session session = null;
         try {
-            session = createSession(masterServer);
-            ApiClient client = createKubernetesClient(session);
-            CoreV1Api api = new CoreV1Api(client);
-            V1Service v1Service = api.readNamespacedService(name, namespace, null);
+            V1Service v1Service = clusterStateCache.services().get(namespace, name);
             if (v1Service == null) {
                 throw new RuntimeException("Service không tồn tại");
             }
@@ -114,10 +90,6 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
             throw new RuntimeException("Không thể lấy service: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy service: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
@@ -298,8 +270,8 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy chi tiết service: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -345,8 +317,8 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
         } catch (Exception e) {
             throw new RuntimeException("Không thể cập nhật service từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -374,8 +346,8 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo service: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -409,8 +381,8 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo service từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -429,31 +401,21 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
         } catch (Exception e) {
             throw new RuntimeException("Không thể xóa service: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
 
     @Override
     public IngressListResponse getIngress() {
-        ServerEntity masterServer = getMasterServer();
-        Session session = null;
         try {
-            session = createSession(masterServer);
-            ApiClient client = createKubernetesClient(session);
-            NetworkingV1Api api = new NetworkingV1Api(client);
-
-            io.kubernetes.client.openapi.models.V1IngressList ingressListResponse = api.listIngressForAllNamespaces(
-                    null, null, null, null, null, null, null, null, null, null, null);
-
+            // Đọc từ cache informer
             List<IngressResponse> ingressList = new ArrayList<>();
-            if (ingressListResponse.getItems() != null) {
-                for (V1Ingress v1Ingress : ingressListResponse.getItems()) {
-                    try {
-                        ingressList.add(buildIngressResponse(v1Ingress));
-                    } catch (Exception ignored) {
-                    }
+            for (V1Ingress v1Ingress : clusterStateCache.ingresses().list()) {
+                try {
+                    ingressList.add(buildIngressResponse(v1Ingress));
+                } catch (Exception ignored) {
                 }
             }
             return new IngressListResponse(ingressList);
@@ -461,22 +423,13 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
             throw new RuntimeException("Không thể lấy danh sách ingress từ Kubernetes API: " + e.getMessage(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy danh sách ingress: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
     @Override
     public IngressResponse getIngress(String namespace, String name) {
-        ServerEntity masterServer = getMasterServer();
-        Session session = null;
         try {
-            session = createSession(masterServer);
-            ApiClient client = createKubernetesClient(session);
-            NetworkingV1Api api = new NetworkingV1Api(client);
-            V1Ingress v1Ingress = api.readNamespacedIngress(name, namespace, null);
+            V1Ingress v1Ingress = clusterStateCache.ingresses().get(namespace, name);
             if (v1Ingress == null) {
                 throw new RuntimeException("Ingress không tồn tại");
             }
@@ -485,10 +438,6 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
             throw new RuntimeException("Không thể lấy ingress: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy ingress: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
@@ -617,8 +566,8 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy chi tiết ingress: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -637,8 +586,8 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
         } catch (Exception e) {
             throw new RuntimeException("Không thể xóa ingress: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -683,8 +632,8 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
         } catch (Exception e) {
             throw new RuntimeException("Không thể cập nhật ingress từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -712,8 +661,8 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo ingress: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -748,8 +697,8 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
         } catch (Exception e) {
             throw new RuntimeException("Không thể cập nhật ingress: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -869,64 +818,8 @@ public class AdminServiceDiscoveryServiceImpl extends BaseKubernetesService impl
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo ingress từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
-        }
-    }
-
-    /**
-     * Override method createKubernetesClient để thay thế server URL trong kubeconfig
-     * trước khi feed cho Java Kubernetes client
-     */
-    @Override
-    protected ApiClient createKubernetesClient(Session session) throws Exception {
-        String kubeconfigPath = "~/.kube/config";
-        File tempKubeconfig = null;
-        try {
-            String kubeconfigContent = executeCommand(session, "cat " + kubeconfigPath, false);
-            if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                String[] alternativePaths = {
-                        "/etc/kubernetes/admin.conf",
-                        "/root/.kube/config",
-                        "$HOME/.kube/config"
-                };
-                for (String altPath : alternativePaths) {
-                    try {
-                        kubeconfigContent = executeCommand(session, "cat " + altPath, true);
-                        if (kubeconfigContent != null && !kubeconfigContent.trim().isEmpty()) {
-                            break;
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-                if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                    throw new RuntimeException("Không thể đọc kubeconfig từ master server.");
-                }
-            }
-
-            // Lấy IP MASTER và thay thế server URL trong kubeconfig trước khi sử dụng
-            Optional<ServerEntity> masterOpt = serverRepository.findByRole("MASTER");
-            if (masterOpt.isPresent()) {
-                String masterIp = masterOpt.get().getIp();
-                kubeconfigContent = replaceKubeconfigServer(kubeconfigContent, masterIp);
-            } else {
-                System.err.println("[createKubernetesClient] WARNING: Không tìm thấy server MASTER để thay server URL trong kubeconfig");
-            }
-
-            tempKubeconfig = File.createTempFile("kubeconfig-", ".yaml");
-            try (FileWriter writer = new FileWriter(tempKubeconfig)) {
-                writer.write(kubeconfigContent);
-            }
-
-            ApiClient client = Config.fromConfig(tempKubeconfig.getAbsolutePath());
-            Configuration.setDefaultApiClient(client);
-            return client;
-        } finally {
-            if (tempKubeconfig != null && tempKubeconfig.exists()) {
-                if (!tempKubeconfig.delete()) {
-                    tempKubeconfig.deleteOnExit();
-                }
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -13,6 +13,7 @@ import my_spring_app.my_spring_app.dto.reponse.AdminDatabaseDetailResponse;
 import my_spring_app.my_spring_app.dto.reponse.AdminBackendDetailResponse;
 import my_spring_app.my_spring_app.dto.reponse.AdminFrontendDetailResponse;
 import my_spring_app.my_spring_app.dto.reponse.DashboardMetricsResponse;
+import my_spring_app.my_spring_app.dto.reponse.JoinNodesResponse;
 import my_spring_app.my_spring_app.dto.reponse.NodeListResponse;
 import my_spring_app.my_spring_app.dto.reponse.NodeResponse;
 import my_spring_app.my_spring_app.dto.reponse.NamespaceListResponse;
@@ -36,6 +37,8 @@ import my_spring_app.my_spring_app.entity.ProjectDatabaseEntity;
 import my_spring_app.my_spring_app.entity.ProjectFrontendEntity;
 import my_spring_app.my_spring_app.entity.ServerEntity;
 import my_spring_app.my_spring_app.entity.UserEntity;
+import my_spring_app.my_spring_app.k8s.KubernetesMetricsClient;
+import my_spring_app.my_spring_app.ssh.SshFanOutExecutor;
 import my_spring_app.my_spring_app.repository.ProjectRepository;
 import my_spring_app.my_spring_app.repository.ProjectDatabaseRepository;
 import my_spring_app.my_spring_app.repository.ProjectBackendRepository;
@@ -80,18 +83,15 @@ import io.kubernetes.client.openapi.models.V1NodeStatus;
 import io.kubernetes.client.openapi.models.V1NodeCondition;
 import io.kubernetes.client.openapi.models.V1NodeSystemInfo;
 import io.kubernetes.client.util.Yaml;
-import io.kubernetes.client.util.Config;
-import io.kubernetes.client.openapi.Configuration;
-import java.io.File;
-import java.io.FileWriter;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -116,6 +116,9 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
      * Chỉ các user có role "USER" mới được tính vào thống kê.
      */
     private static final String ROLE_USER = "USER";
+
+    // Thời gian tối đa chuẩn bị + join một node (gồm cả apt-get cài containerd/kubelet)
+    private static final Duration NODE_JOIN_TIMEOUT = Duration.ofMinutes(30);
     
     public AdminServiceImpl(
             UserRepository userRepository,
@@ -127,7 +130,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
             AdminNamespaceService adminNamespaceService,
             AdminWorkloadService adminWorkloadService,
             AdminServiceDiscoveryService adminServiceDiscoveryService,
-            AdminStorageService adminStorageService) {
+            AdminStorageService adminStorageService,
+            SshFanOutExecutor sshFanOutExecutor) {
         this.userRepository = userRepository;
         this.projectRepository = projectRepository;
         this.projectDatabaseRepository = projectDatabaseRepository;
@@ -138,6 +142,7 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
         this.adminWorkloadService = adminWorkloadService;
         this.adminServiceDiscoveryService = adminServiceDiscoveryService;
         this.adminStorageService = adminStorageService;
+        this.sshFanOutExecutor = sshFanOutExecutor;
     }
 
     private final UserRepository userRepository;
@@ -150,62 +155,7 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
     private final AdminWorkloadService adminWorkloadService;
     private final AdminServiceDiscoveryService adminServiceDiscoveryService;
     private final AdminStorageService adminStorageService;
-
-    /**
-     * Override method createKubernetesClient để thay thế server URL trong kubeconfig
-     * trước khi feed cho Java Kubernetes client
-     */
-    @Override
-    protected ApiClient createKubernetesClient(Session session) throws Exception {
-        String kubeconfigPath = "~/.kube/config";
-        File tempKubeconfig = null;
-        try {
-            String kubeconfigContent = executeCommand(session, "cat " + kubeconfigPath, false);
-            if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                String[] alternativePaths = {
-                        "/etc/kubernetes/admin.conf",
-                        "/root/.kube/config",
-                        "$HOME/.kube/config"
-                };
-                for (String altPath : alternativePaths) {
-                    try {
-                        kubeconfigContent = executeCommand(session, "cat " + altPath, true);
-                        if (kubeconfigContent != null && !kubeconfigContent.trim().isEmpty()) {
-                            break;
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-                if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                    throw new RuntimeException("Không thể đọc kubeconfig từ master server.");
-                }
-            }
-
-            // Lấy IP MASTER và thay thế server URL trong kubeconfig trước khi sử dụng
-            Optional<ServerEntity> masterOpt = serverRepository.findByRole("MASTER");
-            if (masterOpt.isPresent()) {
-                String masterIp = masterOpt.get().getIp();
-                kubeconfigContent = replaceKubeconfigServer(kubeconfigContent, masterIp);
-            } else {
-                System.err.println("[createKubernetesClient] WARNING: Không tìm thấy server MASTER để thay server URL trong kubeconfig");
-            }
-
-            tempKubeconfig = File.createTempFile("kubeconfig-", ".yaml");
-            try (FileWriter writer = new FileWriter(tempKubeconfig)) {
-                writer.write(kubeconfigContent);
-            }
-
-            ApiClient client = Config.fromConfig(tempKubeconfig.getAbsolutePath());
-            Configuration.setDefaultApiClient(client);
-            return client;
-        } finally {
-            if (tempKubeconfig != null && tempKubeconfig.exists()) {
-                if (!tempKubeconfig.delete()) {
-                    tempKubeconfig.deleteOnExit();
-                }
-            }
-        }
-    }
+    private final SshFanOutExecutor sshFanOutExecutor;
 
     /**
      * Tổng hợp số lượng user, project và tài nguyên CPU/Memory đang sử dụng trên
@@ -215,7 +165,7 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
      * 1. Đếm tổng số user có role USER (loại trừ admin/devops)
      * 2. Lấy toàn bộ project từ database và đếm tổng số
      * 3. Gom các namespace đang được sử dụng (tránh trùng lặp)
-     * 4. Chạy kubectl top pods để lấy tổng CPU/Memory đang sử dụng
+     * 4. Lấy tổng CPU/Memory đang sử dụng từ metrics.k8s.io
      * 5. Chuyển đổi và làm tròn dữ liệu để trả về
      * 
      * @return AdminOverviewResponse chứa tổng số user, project, CPU cores và Memory
@@ -233,9 +183,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
         // Bước 3: Gom các namespace đang được sử dụng (loại bỏ trùng lặp)
         Set<String> namespaces = collectNamespaces(projects);
 
-        // Bước 4: Chạy kubectl top pods để lấy tổng CPU/Memory đang sử dụng
-        // Hàm này sẽ SSH đến MASTER server và thực thi lệnh kubectl top pods cho từng
-        // namespace
+        // Bước 4: Lấy tổng CPU/Memory đang sử dụng của các namespace
+        // (một request PodMetrics cho cả cluster)
         ResourceUsageMap usageMap = calculateUsagePerNamespace(namespaces);
 
         // Bước 5: Mapping dữ liệu vào response object
@@ -384,10 +333,10 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
      * 
      * Quy trình xử lý:
      * 1. Kiểm tra project có tồn tại và có namespace không
-     * 2. Kết nối SSH đến MASTER server
+     * 2. Lấy metrics của toàn bộ pod trong namespace (một request metrics.k8s.io), gom theo label "app"
      * 3. Với mỗi Database/Backend/Frontend trong project:
      * - Lấy uuid_k8s để tạo app label
-     * - Chạy kubectl top pods với label selector để lấy CPU/Memory
+     * - Lấy CPU/Memory của app label tương ứng
      * - Cộng dồn vào tổng
      * 4. Trả về chi tiết usage cho từng thành phần và tổng
      * 
@@ -411,11 +360,6 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
         }
         namespace = namespace.trim();
 
-        // Bước 3: Lấy thông tin server MASTER để kết nối SSH
-        ServerEntity masterServer = serverRepository.findByRole("MASTER")
-                .orElseThrow(() -> new RuntimeException(
-                        "Không tìm thấy server MASTER. Vui lòng cấu hình server MASTER trong hệ thống."));
-
         // Bước 4: Khởi tạo response object
         AdminProjectResourceDetailResponse response = new AdminProjectResourceDetailResponse();
         response.setProjectId(project.getId()); // Lưu lại id để FE biết project nào
@@ -431,11 +375,9 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
         double totalCpu = 0.0; // Tổng CPU cộng dồn (đơn vị: cores)
         double totalMemoryGb = 0.0; // Tổng Memory cộng dồn (đơn vị: GB)
 
-        // Session SSH tới MASTER server để chạy các lệnh kubectl
-        Session session = null;
         try {
-            // Bước 5: Tạo SSH session và kết nối đến MASTER server
-            session = createSession(masterServer);
+            // Bước 5: Lấy metrics của tất cả pod trong namespace, gom theo label "app"
+            Map<String, BaseKubernetesService.ResourceUsage> usageByApp = fetchUsageByApp(namespace);
 
             // Bước 6: Xử lý các Database trong project
             if (project.getDatabases() != null) {
@@ -448,9 +390,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                     // Tạo app label theo format: "db-{uuid_k8s}" (format chuẩn khi deploy database)
                     String appLabel = "db-" + database.getUuid_k8s().trim();
                     
-                    // Gọi kubectl top pods với label selector để lấy CPU/Memory của các pod có
-                    // label này
-                    BaseKubernetesService.ResourceUsage usage = fetchUsageForApp(session, namespace, appLabel);
+                    // Lấy CPU/Memory của các pod có label này
+                    BaseKubernetesService.ResourceUsage usage = usageByApp.getOrDefault(appLabel, new BaseKubernetesService.ResourceUsage());
                     double cpu = usage.getCpuCores();
                     double memoryGb = bytesToGb(usage.getMemoryBytes());
 
@@ -480,8 +421,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                     // Tạo app label theo format: "app-{uuid_k8s}" (format chuẩn khi deploy backend)
                     String appLabel = "app-" + backend.getUuid_k8s().trim();
                     
-                    // Gọi kubectl top pods với label selector để lấy CPU/Memory
-                    ResourceUsage usage = fetchUsageForApp(session, namespace, appLabel);
+                    // Lấy CPU/Memory của các pod có label này
+                    ResourceUsage usage = usageByApp.getOrDefault(appLabel, new ResourceUsage());
                     double cpu = usage.getCpuCores();
                     double memoryGb = bytesToGb(usage.getMemoryBytes());
 
@@ -511,8 +452,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                     // frontend, giống backend)
                     String appLabel = "app-" + frontend.getUuid_k8s().trim();
                     
-                    // Gọi kubectl top pods với label selector để lấy CPU/Memory
-                    ResourceUsage usage = fetchUsageForApp(session, namespace, appLabel);
+                    // Lấy CPU/Memory của các pod có label này
+                    ResourceUsage usage = usageByApp.getOrDefault(appLabel, new ResourceUsage());
                     double cpu = usage.getCpuCores();
                     double memoryGb = bytesToGb(usage.getMemoryBytes());
 
@@ -531,10 +472,6 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
             }
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy metrics cho project: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
 
         // 4. Tổng hợp dữ liệu trả về
@@ -679,16 +616,13 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
     }
 
     /**
-     * Chạy kubectl top pods cho danh sách namespace để thu thập CPU/Memory.
+     * Lấy CPU/Memory của các namespace từ metrics.k8s.io.
      * Kết quả trả về cả tổng usage và usage theo từng namespace.
      * 
      * Quy trình xử lý:
      * 1. Kiểm tra danh sách namespace có rỗng không
-     * 2. Kết nối SSH đến MASTER server
-     * 3. Với mỗi namespace:
-     * - Chạy lệnh: kubectl top pods -n {namespace} --no-headers
-     * - Parse output để lấy CPU và Memory của từng pod
-     * - Cộng dồn vào tổng và vào namespace tương ứng
+     * 2. Lấy PodMetrics của toàn cluster bằng một request (không SSH, không parse output kubectl)
+     * 3. Với mỗi pod thuộc namespace cần truy vấn: cộng dồn vào tổng và vào namespace tương ứng
      * 4. Trả về ResourceUsageMap chứa tổng usage và usage theo namespace
      * 
      * @param namespaces Set các namespace cần truy vấn metrics
@@ -704,154 +638,57 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
             return new ResourceUsageMap(totalUsage, namespaceUsage);
         }
 
-        // Lấy thông tin server MASTER để kết nối SSH
-        ServerEntity masterServer = serverRepository.findByRole("MASTER")
-                .orElseThrow(() -> new RuntimeException(
-                        "Không tìm thấy server MASTER. Vui lòng cấu hình server MASTER trong hệ thống."));
-
-        Session clusterSession = null;
         try {
-            // Tạo SSH session và kết nối đến MASTER server
-            clusterSession = createSession(masterServer);
-            
-            // Bước 1: Lặp qua từng namespace để gọi kubectl top pods
-            for (String namespace : namespaces) {
-                try {
-                    // Tạo lệnh kubectl top pods cho namespace này (--no-headers để bỏ dòng header)
-                    String cmd = String.format("kubectl top pods -n %s --no-headers", namespace);
-                    
-                    // Thực thi lệnh (ignoreNonZeroExit=true để không throw exception nếu lệnh fail)
-                    String output = executeCommand(clusterSession, cmd, true);
-                    
-                    // Nếu không có output (namespace không có pod hoặc lỗi), bỏ qua
-                    if (output == null || output.trim().isEmpty()) {
-                        continue;
-                    }
-                    
-                    // Chia output thành các dòng (mỗi dòng là một pod)
-                    String[] lines = output.split("\\r?\\n");
-                    
-                    // Bước 2: Parse từng dòng output để lấy CPU và Memory
-                    for (String line : lines) {
-                        line = line.trim();
-                        // Bỏ qua dòng rỗng
-                        if (line.isEmpty()) {
-                            continue;
-                        }
-                        
-                        // Chia dòng thành các phần: [pod-name] [CPU] [Memory]
-                        String[] parts = line.split("\\s+");
-                        if (parts.length < 3) {
-                            continue;
-                        }
-                        
-                        try {
-                            // Parse CPU từ phần thứ 2 (có thể là "15m", "0.2", etc.)
-                            double cpu = parseCpuCores(parts[1]);
-                            // Parse Memory từ phần thứ 3 (có thể là "100Mi", "2Gi", etc.)
-                            long memory = parseMemoryBytes(parts[2]);
-
-                            // Cộng dồn vào tổng usage
-                            totalUsage.addCpu(cpu).addMemory(memory);
-                            
-                            // Cộng dồn vào usage của namespace này
-                            // computeIfAbsent: nếu namespace chưa có trong map, tạo mới ResourceUsage
-                            namespaceUsage
-                                    .computeIfAbsent(namespace, key -> new BaseKubernetesService.ResourceUsage())
-                                    .addCpu(cpu)
-                                    .addMemory(memory);
-                        } catch (NumberFormatException ex) {
-                            // Nếu không parse được, log lỗi nhưng tiếp tục xử lý pod khác
-                        }
-                    }
-                } catch (Exception e) {
-                    // Nếu lỗi khi xử lý một namespace, log nhưng tiếp tục xử lý namespace khác
+            // Một request cho cả cluster thay vì một lệnh kubectl top cho mỗi namespace
+            for (KubernetesMetricsClient.PodUsage pod : metricsSnapshotService.allPods()) {
+                if (pod.namespace() == null || !namespaces.contains(pod.namespace())) {
+                    continue;
                 }
+                // Cộng dồn vào tổng usage
+                totalUsage.addCpu(pod.cpuCores()).addMemory(pod.memoryBytes());
+                // Cộng dồn vào usage của namespace này
+                namespaceUsage
+                        .computeIfAbsent(pod.namespace(), key -> new BaseKubernetesService.ResourceUsage())
+                        .addCpu(pod.cpuCores())
+                        .addMemory(pod.memoryBytes());
             }
         } catch (Exception e) {
-            // Lỗi khi kết nối SSH hoặc lỗi chung
-        } finally {
-            // Đảm bảo đóng SSH session
-            if (clusterSession != null && clusterSession.isConnected()) {
-                clusterSession.disconnect();
-            }
+            // Metrics Server không khả dụng, trả về usage rỗng
         }
 
         return new ResourceUsageMap(totalUsage, namespaceUsage);
     }
 
     /**
-     * Lấy metrics CPU/Memory cho một nhóm pod theo label "app".
-     * Hàm này giúp tái sử dụng logic kubectl top pods -l app=<label>.
+     * Lấy metrics CPU/Memory của tất cả pod trong namespace, gom theo label "app".
      * 
-     * Mục đích: Lấy tổng CPU và Memory của tất cả pod có label app={appLabel} trong
-     * namespace.
-     * Được sử dụng để lấy metrics cho một Database/Backend/Frontend cụ thể.
+     * Mục đích: Lấy tổng CPU và Memory cho từng Database/Backend/Frontend
+     * (label app = "db-{uuid}" / "app-{uuid}") bằng một request thay vì một lệnh
+     * kubectl top cho mỗi thành phần.
      * 
-     * Quy trình xử lý:
-     * 1. Kiểm tra tham số đầu vào hợp lệ
-     * 2. Chạy lệnh: kubectl top pods -n {namespace} -l app={appLabel} --no-headers
-     * 3. Parse output để lấy CPU và Memory của từng pod
-     * 4. Cộng dồn vào ResourceUsage và trả về
-     * 
-     * @param session   SSH session đã kết nối đến MASTER server
      * @param namespace Namespace chứa các pod cần truy vấn
-     * @param appLabel  Label "app" để filter pod (ví dụ: "db-abc123", "app-xyz789")
-     * @return ResourceUsage chứa tổng CPU (cores) và Memory (bytes) của các pod
-     *         thỏa label
+     * @return Map app label -> ResourceUsage chứa tổng CPU (cores) và Memory (bytes)
+     *         của các pod có label đó
      */
-    private BaseKubernetesService.ResourceUsage fetchUsageForApp(Session session, String namespace, String appLabel) {
-        // Khởi tạo ResourceUsage rỗng (CPU=0, Memory=0)
-        BaseKubernetesService.ResourceUsage usage = new BaseKubernetesService.ResourceUsage();
-        
-        // Kiểm tra tham số đầu vào hợp lệ
-        if (session == null || namespace == null || namespace.isBlank() || appLabel == null || appLabel.isBlank()) {
-            return usage;
+    private Map<String, BaseKubernetesService.ResourceUsage> fetchUsageByApp(String namespace) {
+        Map<String, BaseKubernetesService.ResourceUsage> usageByApp = new HashMap<>();
+        if (namespace == null || namespace.isBlank()) {
+            return usageByApp;
         }
-        
         try {
-            // Tạo lệnh kubectl top pods với label selector
-            // -l app={appLabel}: chỉ lấy pod có label app={appLabel}
-            // --no-headers: bỏ dòng header để dễ parse
-            String cmd = String.format("kubectl top pods -n %s -l app=%s --no-headers", namespace, appLabel);
-            
-            // Thực thi lệnh (ignoreNonZeroExit=true để không throw exception nếu không có
-            // pod)
-            String output = executeCommand(session, cmd, true);
-            
-            // Nếu không có output (không có pod thỏa label), trả về usage rỗng
-            if (output == null || output.trim().isEmpty()) {
-                return usage;
-            }
-            
-            // Chia output thành các dòng (mỗi dòng là một pod)
-            String[] lines = output.split("\\r?\\n");
-            
-            // Bước 1: Lặp qua từng pod thỏa label để parse CPU và Memory
-            for (String line : lines) {
-                line = line.trim();
-                // Bỏ qua dòng rỗng
-                if (line.isEmpty()) {
+            for (KubernetesMetricsClient.PodUsage pod : metricsSnapshotService.podsInNamespace(namespace)) {
+                String app = pod.labels().get("app");
+                if (app == null) {
                     continue;
                 }
-                
-                // Chia dòng thành các phần: [pod-name] [CPU] [Memory]
-                String[] parts = line.split("\\s+");
-                if (parts.length < 3) {
-                    continue;
-                }
-                
-                // Parse CPU và Memory từ output
-                double cpu = parseCpuCores(parts[1]);
-                long memory = parseMemoryBytes(parts[2]);
-                
-                // Cộng dồn vào usage
-                usage.addCpu(cpu).addMemory(memory);
+                usageByApp.computeIfAbsent(app, key -> new BaseKubernetesService.ResourceUsage())
+                        .addCpu(pod.cpuCores())
+                        .addMemory(pod.memoryBytes());
             }
         } catch (Exception e) {
-            // Nếu có lỗi, log nhưng vẫn trả về usage (có thể là 0 nếu chưa parse được gì)
+            // Nếu có lỗi, trả về map rỗng (usage = 0)
         }
-        return usage;
+        return usageByApp;
     }
 
     /**
@@ -1279,8 +1116,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
             throw new RuntimeException("Không thể lấy cluster capacity: " + e.getMessage(), e);
         } finally {
             // Đảm bảo đóng SSH session
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -1371,8 +1208,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy cluster allocatable: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -1454,8 +1291,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                     // Nếu không lấy được version, giữ giá trị mặc định "Unknown"
                     System.err.println("Không thể lấy Kubernetes version: " + e.getMessage());
                 } finally {
-                    if (session != null && session.isConnected()) {
-                        session.disconnect();
+                    if (session != null) {
+                        releaseSession(session);
                     }
                 }
             }
@@ -1726,8 +1563,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy chi tiết database: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -2073,8 +1910,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy chi tiết backend: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -2410,8 +2247,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
             throw new RuntimeException("Không thể lấy chi tiết frontend: " + e.getMessage(), e);
         } finally {
             // Đảm bảo đóng SSH session
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -2430,8 +2267,7 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
      * 4. Lấy thông tin Pods từ CoreV1Api - đếm total, running, pending, failed
      * 5. Lấy thông tin Deployments từ AppsV1Api - đếm total, active (ready > 0),
      * error (ready = 0)
-     * 6. Lấy CPU/Memory usage từ kubectl top (vẫn cần SSH vì không có trong
-     * standard API)
+     * 6. Lấy CPU/Memory usage từ metrics.k8s.io (PodMetrics của toàn cluster)
      * 7. Tổng hợp và trả về DashboardMetricsResponse
      * 
      * @return DashboardMetricsResponse chứa thông tin nodes, pods, deployments,
@@ -2667,36 +2503,12 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                 // Lấy allocatable để làm total
                 ClusterAllocatableResponse allocatable = getClusterAllocatable();
                 
-                // Tính tổng CPU/Memory từ tất cả pods trong cluster
-                String topPodsCmd = "kubectl top pods --all-namespaces --no-headers";
-                String topPodsOutput = executeCommand(session, topPodsCmd, true);
-                
+                // Tính tổng CPU/Memory từ tất cả pods trong cluster (một request metrics.k8s.io)
                 double totalCpuUsed = 0.0;
                 long totalMemoryBytes = 0L;
-                
-                if (topPodsOutput != null && !topPodsOutput.trim().isEmpty()) {
-                    String[] lines = topPodsOutput.trim().split("\n");
-                    for (String line : lines) {
-                        if (line.trim().isEmpty())
-                            continue;
-                        
-                        // Format: NAMESPACE POD_NAME CPU MEMORY
-                        // Ví dụ: default nginx-pod 15m 100Mi
-                        String[] parts = line.trim().split("\\s+");
-                        if (parts.length >= 4) {
-                            try {
-                                // Parse CPU từ cột thứ 3 (index 2)
-                                double cpu = parseCpuCores(parts[2]);
-                                // Parse Memory từ cột thứ 4 (index 3)
-                                long memory = parseMemoryBytes(parts[3]);
-                                
-                                totalCpuUsed += cpu;
-                                totalMemoryBytes += memory;
-                            } catch (NumberFormatException e) {
-                                // Bỏ qua dòng không parse được
-                            }
-                        }
-                    }
+                for (KubernetesMetricsClient.PodUsage pod : metricsSnapshotService.allPods()) {
+                    totalCpuUsed += pod.cpuCores();
+                    totalMemoryBytes += pod.memoryBytes();
                 }
                 
                 // Chuyển đổi Memory từ bytes sang GB
@@ -2721,8 +2533,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
             throw new RuntimeException("Không thể lấy dashboard metrics: " + e.getMessage(), e);
         } finally {
             // Đảm bảo đóng SSH session
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -2743,7 +2555,7 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
      * - Role từ labels (master/worker)
      * - OS và Kernel từ nodeInfo
      * - CPU/Memory capacity và allocatable từ status
-     * - CPU/Memory usage từ kubectl top (vẫn cần SSH)
+     * - CPU/Memory usage từ metrics.k8s.io
      * - Pod count từ kubectl (vẫn cần SSH)
      * - Disk info từ SSH vào từng node server
      * 6. Tổng hợp và trả về NodeListResponse
@@ -2796,22 +2608,10 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
             Set<String> k8sNodeNames = new HashSet<>(); // Set để track các node đã có trong K8s
             Set<String> k8sServerIps = new HashSet<>(); // Set để track các IP của servers đã có trong K8s
             
-            // Bước 6: Lấy danh sách nodes từ Kubernetes API
+            // Bước 6: Lấy danh sách nodes từ cache informer (watch nodes thay vì list mỗi request)
             try {
-                System.out.println("[AdminService] getNodes() - Dang goi Kubernetes API de lay danh sach nodes...");
-                V1NodeList nodeList = api.listNode(
-                        null, // allowWatchBookmarks
-                        null, // _continue
-                        null, // fieldSelector
-                        null, // labelSelector
-                        null, // limit
-                        null, // pretty
-                        null, // resourceVersion
-                        null, // resourceVersionMatch
-                        null, // sendInitialEvents
-                        null, // timeoutSeconds
-                        null // watch
-                );
+                System.out.println("[AdminService] getNodes() - Dang lay danh sach nodes tu cache...");
+                V1NodeList nodeList = new V1NodeList().items(clusterStateCache.nodes().list());
 
                 System.out.println("[AdminService] getNodes() - Kubernetes API tra ve nodeList: "
                         + (nodeList != null ? "not null" : "null"));
@@ -2828,8 +2628,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                 Map<String, ServerEntity> serverByName = serverMaps.get("byName");
                 Map<String, ServerEntity> serverByIp = serverMaps.get("byIp");
 
-                // Bước 8: Lấy CPU/Memory usage từ kubectl top nodes (vẫn cần SSH) - sử dụng helper method
-                Map<String, BaseKubernetesService.ResourceUsage> nodeUsageMap = getAllNodesUsageFromKubectlTop(session);
+                // Bước 8: Lấy CPU/Memory usage của tất cả nodes từ metrics.k8s.io - sử dụng helper method
+                Map<String, BaseKubernetesService.ResourceUsage> nodeUsageMap = getAllNodesUsage();
 
                 // Bước 9: Parse từng node từ K8s và map với servers
                 if (nodeList != null && nodeList.getItems() != null && !nodeList.getItems().isEmpty()) {
@@ -2992,64 +2792,156 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
             throw new RuntimeException("Không thể lấy danh sách nodes: " + e.getMessage(), e);
         } finally {
             // Đảm bảo đóng SSH session
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
 
     /**
-     * Join node vào K8s cluster bằng cách:
-     * 1. Kiểm tra server có clusterStatus=AVAILABLE và ONLINE
-     * 2. Kết nối SSH vào server cần join
-     * 3. Reset worker node (stop kubelet, kubeadm reset, clean up CNI/iptables/kubelet config)
-     * 4. Cấu hình kernel và sysctl
-     * 5. Kiểm tra và cài đặt các dependencies (kubelet, kubeadm, kubectl, container runtime)
-     * 6. Kết nối đến master để lấy join command
-     * 7. Thực thi join command trên server
-     * 8. Restart và enable kubelet
-     * 
+     * Join một node vào K8s cluster (xem {@link #joinNodesToK8s(List)})
+     *
      * @param serverId ID của server cần join vào K8s cluster
      * @throws RuntimeException nếu không tìm thấy server, không thể kết nối, hoặc lỗi khi join
      */
     @Override
     public void joinNodeToK8s(Long serverId) {
-        System.out.println("[AdminService] joinNodeToK8s() - Bat dau join server: id=" + serverId);
-        
-        // Bước 1: Lấy thông tin server cần join
-        ServerEntity workerServer = serverRepository.findById(serverId)
-                .orElseThrow(() -> new RuntimeException("Khong tim thay server voi ID: " + serverId));
-        
-        String username = workerServer.getUsername() != null ? workerServer.getUsername() : (workerServer.getName() != null ? workerServer.getName() : "server-" + serverId);
+        JoinNodesResponse response = joinNodesToK8s(List.of(serverId));
+        JoinNodesResponse.NodeResult result = response.getResults().get(0);
+        if (!result.isSuccess()) {
+            throw new RuntimeException("Khong the join server " + result.getHost() + " vao K8s cluster: " + result.getError());
+        }
+    }
+
+    /**
+     * Join nhiều node vào K8s cluster song song:
+     * 1. Kiểm tra tất cả server có clusterStatus=AVAILABLE và ONLINE
+     * 2. Kết nối đến master một lần để lấy join command dùng chung cho mọi node
+     * 3. Trên từng node (song song, tối đa SshFanOutExecutor.DEFAULT_PARALLELISM node cùng lúc):
+     *    reset node, cấu hình kernel/sysctl, cài dependencies, thực thi join command, restart kubelet
+     *
+     * Lỗi của một node không làm dừng các node khác; kết quả trả về theo từng node.
+     *
+     * @param serverIds ID của các server cần join
+     * @throws RuntimeException nếu có server không hợp lệ hoặc không lấy được join command
+     */
+    @Override
+    public JoinNodesResponse joinNodesToK8s(List<Long> serverIds) {
+        System.out.println("[AdminService] joinNodesToK8s() - Bat dau join " + serverIds.size() + " server: " + serverIds);
+
+        // Bước 1: Kiểm tra toàn bộ server trước khi động vào node nào
+        List<ServerEntity> workerServers = new ArrayList<>();
+        for (Long serverId : new LinkedHashSet<>(serverIds)) {
+            ServerEntity workerServer = serverRepository.findById(serverId)
+                    .orElseThrow(() -> new RuntimeException("Khong tim thay server voi ID: " + serverId));
+            validateJoinTarget(workerServer);
+            workerServers.add(workerServer);
+        }
+
+        // Bước 2: Lấy join command một lần từ MASTER
+        ServerEntity masterServer = serverRepository.findByRole("MASTER")
+                .orElseThrow(() -> new RuntimeException("Khong tim thay server MASTER. Vui long cau hinh server MASTER trong he thong."));
+
+        if (masterServer.getStatus() != ServerEntity.ServerStatus.ONLINE) {
+            throw new RuntimeException("MASTER server (" + masterServer.getIp() + ") dang offline. Khong the lay join command.");
+        }
+        String joinCommand = fetchJoinCommand(masterServer);
+
+        // Bước 3: Chuẩn bị và join các node song song
+        SshFanOutExecutor.Report<Void> report = sshFanOutExecutor.run("Join node vào K8s", workerServers,
+                SshFanOutExecutor.DEFAULT_PARALLELISM, NODE_JOIN_TIMEOUT, workerServer -> {
+                    joinWorker(workerServer, joinCommand);
+                    return null;
+                }, null);
+        System.out.print("[AdminService] joinNodesToK8s() - " + report.summary());
+
+        List<JoinNodesResponse.NodeResult> results = new ArrayList<>();
+        for (SshFanOutExecutor.HostResult<Void> result : report.results()) {
+            results.add(new JoinNodesResponse.NodeResult(result.server().getId(), result.host(), result.success(),
+                    result.timedOut(), result.error(), result.durationMs()));
+        }
+        return new JoinNodesResponse(results.size(), report.succeeded().size(), report.failed().size(),
+                report.durationMs(), results);
+    }
+
+    /**
+     * Kiểm tra server có thể join: đã được gán vào cluster (clusterStatus=AVAILABLE) và đang ONLINE
+     */
+    private void validateJoinTarget(ServerEntity workerServer) {
+        String username = workerServer.getUsername() != null ? workerServer.getUsername() : (workerServer.getName() != null ? workerServer.getName() : "server-" + workerServer.getId());
         String ip = workerServer.getIp() != null ? workerServer.getIp() : "unknown";
-        System.out.println("[AdminService] joinNodeToK8s() - Server: " + username + " (IP: " + ip + ")");
-        
+
         // Kiểm tra server có clusterStatus=AVAILABLE không
         if (!"AVAILABLE".equals(workerServer.getClusterStatus())) {
             throw new RuntimeException("Server " + username + " (IP: " + ip + ") chua duoc gan vao cluster (clusterStatus=" + workerServer.getClusterStatus() + "). Vui long assign server vao cluster truoc.");
         }
-        
+
         // Kiểm tra server có ONLINE không
         if (workerServer.getStatus() != ServerEntity.ServerStatus.ONLINE) {
             throw new RuntimeException("Server " + username + " (IP: " + ip + ") dang offline. Vui long kiem tra ket noi server.");
         }
-        
-        // Bước 2: Lấy thông tin MASTER server
-        ServerEntity masterServer = serverRepository.findByRole("MASTER")
-                .orElseThrow(() -> new RuntimeException("Khong tim thay server MASTER. Vui long cau hinh server MASTER trong he thong."));
-        
-        if (masterServer.getStatus() != ServerEntity.ServerStatus.ONLINE) {
-            throw new RuntimeException("MASTER server (" + masterServer.getIp() + ") dang offline. Khong the lay join command.");
+    }
+
+    /**
+     * Tạo token mới trên master và lấy dòng "kubeadm join ..." để các worker dùng chung
+     */
+    private String fetchJoinCommand(ServerEntity masterServer) {
+        System.out.println("[AdminService] joinNodesToK8s() - Ket noi SSH den master server de lay join command...");
+        Session masterSession = null;
+        try {
+            masterSession = createSession(masterServer);
+
+            // Lấy join command từ master
+            String getJoinCommand = "sudo kubeadm token create --print-join-command";
+            String joinCommandOutput = executeCommand(masterSession, getJoinCommand, false);
+
+            if (joinCommandOutput == null || joinCommandOutput.trim().isEmpty()) {
+                throw new RuntimeException("Khong the lay join command tu master server");
+            }
+
+            // Parse join command (có thể có nhiều dòng, lấy dòng chứa "kubeadm join")
+            String[] lines = joinCommandOutput.split("\\r?\\n");
+            String joinCommand = null;
+            for (String line : lines) {
+                if (line.trim().startsWith("kubeadm join")) {
+                    joinCommand = line.trim();
+                    break;
+                }
+            }
+
+            if (joinCommand == null) {
+                throw new RuntimeException("Khong tim thay join command trong output: " + joinCommandOutput);
+            }
+
+            System.out.println("[AdminService] joinNodesToK8s() - Join command: " + joinCommand);
+            return joinCommand;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Khong the lay join command tu master server: " + e.getMessage(), e);
+        } finally {
+            if (masterSession != null) {
+                releaseSession(masterSession);
+            }
         }
-        
+    }
+
+    /**
+     * Chuẩn bị một worker rồi join vào cluster bằng join command đã lấy từ master:
+     * reset node, đặt hostname, cấu hình kernel/sysctl, cài dependencies, join, restart kubelet
+     */
+    private void joinWorker(ServerEntity workerServer, String joinCommand) throws Exception {
+        Long serverId = workerServer.getId();
+        String username = workerServer.getUsername() != null ? workerServer.getUsername() : (workerServer.getName() != null ? workerServer.getName() : "server-" + serverId);
+        String ip = workerServer.getIp() != null ? workerServer.getIp() : "unknown";
+
         Session workerSession = null;
-        Session masterSession = null;
         try {
-            // Bước 3: Kết nối SSH đến worker server
+            // Kết nối SSH đến worker server
             System.out.println("[AdminService] joinNodeToK8s() - Ket noi SSH den worker server: " + username + " (IP: " + ip + ")");
             workerSession = createSession(workerServer);
             
-            // Bước 3.5: Reset worker node trước khi join (nếu đã từng join cluster trước đó)
+            // Reset worker node trước khi join (nếu đã từng join cluster trước đó)
             System.out.println("[AdminService] joinNodeToK8s() - Reset worker node truoc khi join...");
             
             // Stop kubelet service (nếu đang chạy)
@@ -3084,7 +2976,7 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                 System.out.println("[AdminService] joinNodeToK8s() - Warning: Khong the clean up hoan toan (co the khong co quyen): " + e.getMessage());
             }
             
-            // Bước 3.6: Đặt lại hostname theo CSDL
+            // Đặt lại hostname theo CSDL
             System.out.println("[AdminService] joinNodeToK8s() - Dat lai hostname theo CSDL...");
             String hostname = workerServer.getName() != null ? workerServer.getName() : ("server-" + serverId);
             try {
@@ -3105,7 +2997,7 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                 System.out.println("[AdminService] joinNodeToK8s() - Warning: Khong the dat hostname (co the khong co quyen): " + e.getMessage());
             }
             
-            // Bước 4: Cấu hình kernel và sysctl (theo playbook)
+            // Cấu hình kernel và sysctl (theo playbook)
             System.out.println("[AdminService] joinNodeToK8s() - Cau hinh kernel va sysctl...");
             
             // Disable swap
@@ -3129,7 +3021,7 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
             executeCommand(workerSession, "printf '" + sysctlConfig + "\\n' | sudo tee /etc/sysctl.d/99-kubernetes-cri.conf", false);
             executeCommand(workerSession, "sudo sysctl --system", false);
             
-            // Bước 5: Kiểm tra và cài đặt dependencies
+            // Kiểm tra và cài đặt dependencies
             System.out.println("[AdminService] joinNodeToK8s() - Kiem tra va cai dat dependencies...");
             
             // Kiểm tra container runtime (containerd hoặc docker)
@@ -3164,57 +3056,21 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                 executeCommand(workerSession, installK8s, false);
             }
             
-            // Bước 6: Kết nối SSH đến master server để lấy join command
-            System.out.println("[AdminService] joinNodeToK8s() - Ket noi SSH den master server de lay join command...");
-            masterSession = createSession(masterServer);
-            
-            // Lấy join command từ master
-            String getJoinCommand = "sudo kubeadm token create --print-join-command";
-            String joinCommandOutput = executeCommand(masterSession, getJoinCommand, false);
-            
-            if (joinCommandOutput == null || joinCommandOutput.trim().isEmpty()) {
-                throw new RuntimeException("Khong the lay join command tu master server");
-            }
-            
-            // Parse join command (có thể có nhiều dòng, lấy dòng chứa "kubeadm join")
-            String[] lines = joinCommandOutput.split("\\r?\\n");
-            String joinCommand = null;
-            for (String line : lines) {
-                if (line.trim().startsWith("kubeadm join")) {
-                    joinCommand = line.trim();
-                    break;
-                }
-            }
-            
-            if (joinCommand == null) {
-                throw new RuntimeException("Khong tim thay join command trong output: " + joinCommandOutput);
-            }
-            
-            System.out.println("[AdminService] joinNodeToK8s() - Join command: " + joinCommand);
-            
-            // Bước 7: Thực thi join command trên worker server với --ignore-preflight-errors=all
-            System.out.println("[AdminService] joinNodeToK8s() - Thuc thi join command tren worker server...");
+            // Thực thi join command trên worker server với --ignore-preflight-errors=all
+            System.out.println("[AdminService] joinNodeToK8s() - Thuc thi join command tren worker server " + username + "...");
             String joinCommandWithFlags = joinCommand + " --ignore-preflight-errors=all";
             String joinResult = executeCommand(workerSession, "sudo " + joinCommandWithFlags, true);
             
             System.out.println("[AdminService] joinNodeToK8s() - Join command output: " + joinResult);
             
-            // Bước 8: Restart và enable kubelet
+            // Restart và enable kubelet
             System.out.println("[AdminService] joinNodeToK8s() - Restart kubelet...");
             executeCommand(workerSession, "sudo systemctl restart kubelet && sudo systemctl enable kubelet", false);
             
             System.out.println("[AdminService] joinNodeToK8s() - Da join thanh cong server: " + username + " (IP: " + ip + ") vao K8s cluster");
-            
-        } catch (Exception e) {
-            System.out.println("[AdminService] joinNodeToK8s() - Loi: " + e.getMessage());
-            throw new RuntimeException("Khong the join server " + username + " (IP: " + ip + ") vao K8s cluster: " + e.getMessage(), e);
         } finally {
-            // Đảm bảo đóng SSH sessions
-            if (workerSession != null && workerSession.isConnected()) {
-                workerSession.disconnect();
-            }
-            if (masterSession != null && masterSession.isConnected()) {
-                masterSession.disconnect();
+            if (workerSession != null) {
+                releaseSession(workerSession);
             }
         }
     }
@@ -3450,8 +3306,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                     System.out.println("[AdminService] removeNodeFromK8s() - Warning: Không thể kết nối đến worker để stop dịch vụ: " + e.getMessage());
                     // Không throw exception, tiếp tục với việc unassign server
                 } finally {
-                    if (workerSession != null && workerSession.isConnected()) {
-                        workerSession.disconnect();
+                    if (workerSession != null) {
+                        releaseSession(workerSession);
                     }
                 }
             }
@@ -3470,8 +3326,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
             throw new RuntimeException("Không thể xóa node '" + nodeName + "' khỏi K8s cluster: " + e.getMessage(), e);
         } finally {
             // Đảm bảo đóng SSH session
-            if (masterSession != null && masterSession.isConnected()) {
-                masterSession.disconnect();
+            if (masterSession != null) {
+                releaseSession(masterSession);
             }
         }
     }
@@ -3523,8 +3379,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
             System.out.println("[AdminService] cordonNode() - Lỗi: " + e.getMessage());
             throw new RuntimeException("Không thể cordon node '" + nodeName + "': " + e.getMessage(), e);
         } finally {
-            if (masterSession != null && masterSession.isConnected()) {
-                masterSession.disconnect();
+            if (masterSession != null) {
+                releaseSession(masterSession);
             }
         }
     }
@@ -3576,8 +3432,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
             System.out.println("[AdminService] uncordonNode() - Lỗi: " + e.getMessage());
             throw new RuntimeException("Không thể uncordon node '" + nodeName + "': " + e.getMessage(), e);
         } finally {
-            if (masterSession != null && masterSession.isConnected()) {
-                masterSession.disconnect();
+            if (masterSession != null) {
+                releaseSession(masterSession);
             }
         }
     }
@@ -3635,7 +3491,7 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                     api, 
                     session, 
                     true, // includeDetails = true cho API chi tiết
-                    null, // nodeUsageMap = null (sẽ gọi kubectl top riêng)
+                    null, // nodeUsageMap = null (sẽ lấy metrics riêng cho node)
                     null, // serverByName = null (sẽ tạo mới)
                     null  // serverByIp = null (sẽ tạo mới)
             );
@@ -3646,8 +3502,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
             throw new RuntimeException("Không thể lấy chi tiết node: " + e.getMessage(), e);
         } finally {
             // Đảm bảo đóng SSH session
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -3751,54 +3607,40 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
         node.setStatus("NOT_JOIN_K8S"); // Status mặc định, có thể được override ở nơi gọi
         node.setRole(server.getRole() != null ? server.getRole().toLowerCase() : "worker");
         
-        // Resource info - lấy từ server metrics nếu có, nếu không thì set 0
+        // Resource info - lấy từ cột metrics dạng số của server, chưa có thì set 0
         NodeResponse.NodeResource cpu = new NodeResponse.NodeResource();
         cpu.setRequested(0.0);
         cpu.setLimit(0.0);
-        if (server.getCpuCores() != null && !server.getCpuCores().isEmpty()) {
+        cpu.setCapacity(0.0);
+        Long cpuMillicores = server.getCpuMillicores();
+        if (cpuMillicores == null && server.getCpuCores() != null && !server.getCpuCores().isEmpty()) {
+            // Server chưa được làm mới metrics kể từ khi có cột số
             try {
-                double cpuCapacity = Double.parseDouble(server.getCpuCores());
-                cpu.setCapacity(cpuCapacity);
-                cpu.setLimit(cpuCapacity);
-            } catch (NumberFormatException e) {
-                cpu.setCapacity(0.0);
+                cpuMillicores = Math.round(Double.parseDouble(server.getCpuCores()) * 1000);
+            } catch (NumberFormatException ignored) {
             }
-        } else {
-            cpu.setCapacity(0.0);
+        }
+        if (cpuMillicores != null) {
+            cpu.setCapacity(cpuMillicores / 1000.0);
+            cpu.setLimit(cpuMillicores / 1000.0);
         }
         node.setCpu(cpu);
         
         NodeResponse.NodeResource memory = new NodeResponse.NodeResource();
         memory.setRequested(0.0);
         memory.setLimit(0.0);
-        if (server.getRamTotal() != null && !server.getRamTotal().isEmpty()) {
-            try {
-                double memoryCapacity = parseMemoryBytes(server.getRamTotal()) / BYTES_PER_GB;
-                memory.setCapacity(memoryCapacity);
-                memory.setLimit(memoryCapacity);
-            } catch (Exception e) {
-                memory.setCapacity(0.0);
-            }
-        } else {
-            memory.setCapacity(0.0);
-        }
+        double memoryCapacity = bytesToGb(capacityBytes(server.getRamTotalBytes(), server.getRamTotal()));
+        memory.setCapacity(memoryCapacity);
+        memory.setLimit(memoryCapacity);
         node.setMemory(memory);
         
         // Disk info - lấy từ server metrics nếu có
         NodeResponse.NodeResource disk = new NodeResponse.NodeResource();
         disk.setRequested(0.0);
         disk.setLimit(0.0);
-        if (server.getDiskTotal() != null && !server.getDiskTotal().isEmpty()) {
-            try {
-                double diskCapacity = parseMemoryBytes(server.getDiskTotal()) / BYTES_PER_GB;
-                disk.setCapacity(diskCapacity);
-                disk.setLimit(diskCapacity);
-            } catch (Exception e) {
-                disk.setCapacity(0.0);
-            }
-        } else {
-            disk.setCapacity(0.0);
-        }
+        double diskCapacity = bytesToGb(capacityBytes(server.getDiskTotalBytes(), server.getDiskTotal()));
+        disk.setCapacity(diskCapacity);
+        disk.setLimit(diskCapacity);
         node.setDisk(disk);
         
         // Other info
@@ -3815,6 +3657,23 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
         return node;
     }
 
+    /**
+     * Dung lượng (bytes) từ cột số; server cũ chỉ có chuỗi hiển thị ("8.0Gi") thì parse chuỗi, lỗi trả về 0
+     */
+    private long capacityBytes(Long bytes, String display) {
+        if (bytes != null) {
+            return bytes;
+        }
+        if (display == null || display.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return parseMemoryBytes(display);
+        } catch (Exception e) {
+            return 0L;
+        }
+    }
+
     /**
      * Lấy thông tin disk từ server bằng cách SSH và chạy df -h /
      * 
@@ -3848,15 +3707,15 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                 } catch (Exception e) {
             // Nếu không thể lấy disk info, để giá trị mặc định 0
         } finally {
-            if (nodeSession != null && nodeSession.isConnected()) {
-                nodeSession.disconnect();
+            if (nodeSession != null) {
+                releaseSession(nodeSession);
             }
         }
         
         return result;
     }
 
-    // Các methods getNodeUsageFromKubectlTop, getAllNodesUsageFromKubectlTop, extractNodeRole 
+    // Các methods getNodeUsage, getAllNodesUsage, extractNodeRole 
     // đã được chuyển vào BaseKubernetesService để tái sử dụng
 
     /**
@@ -4011,7 +3870,7 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                             memAllocatableBytes = parseQuantityToMemoryBytes(status.getAllocatable().get("memory"));
                     }
                     
-        // Lấy CPU/Memory usage - ưu tiên từ nodeUsageMap nếu có, nếu không thì gọi kubectl top
+        // Lấy CPU/Memory usage - ưu tiên từ nodeUsageMap nếu có, nếu không thì gọi metrics API
         double cpuUsed = 0.0;
         long memUsedBytes = 0L;
         if (nodeUsageMap != null && nodeUsageMap.containsKey(nodeName)) {
@@ -4019,8 +3878,8 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
             cpuUsed = usage != null ? usage.getCpuCores() : 0.0;
             memUsedBytes = usage != null ? usage.getMemoryBytes() : 0L;
         } else {
-            // Fallback: gọi kubectl top cho node cụ thể (kém hiệu quả hơn)
-            BaseKubernetesService.ResourceUsage usage = getNodeUsageFromKubectlTop(nodeName, masterSession);
+            // Fallback: lấy metrics cho node cụ thể (kém hiệu quả hơn)
+            BaseKubernetesService.ResourceUsage usage = getNodeUsage(nodeName);
             if (usage != null) {
                 cpuUsed = usage.getCpuCores();
                 memUsedBytes = usage.getMemoryBytes();
@@ -4031,9 +3890,10 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                         int podCount = 0;
                         List<NodeResponse.NodePod> nodePods = new ArrayList<>();
                     try {
-                            io.kubernetes.client.openapi.models.V1PodList podList = api.listPodForAllNamespaces(
-                    null, null, "spec.nodeName=" + nodeName, null, null, null, null, null, null, null, null);
-                            if (podList != null && podList.getItems() != null) {
+                            // Pod trên node lấy từ index "node" của cache informer
+                            io.kubernetes.client.openapi.models.V1PodList podList = new io.kubernetes.client.openapi.models.V1PodList()
+                                    .items(clusterStateCache.pods().listByNode(nodeName));
+                            if (podList.getItems() != null) {
                                 podCount = podList.getItems().size();
                 // Chỉ parse danh sách pods nếu includeDetails = true
                 if (includeDetails) {
@@ -4063,7 +3923,7 @@ public class AdminServiceImpl extends BaseKubernetesService implements AdminServ
                     }
                                 }
                         }
-                        } catch (ApiException e) {
+                        } catch (Exception e) {
             // Nếu không lấy được pods, để giá trị mặc định
                     }
                     node.setPodCount(podCount);
@@ -35,17 +35,12 @@ import my_spring_app.my_spring_app.entity.ServerEntity;
 import my_spring_app.my_spring_app.repository.ServerRepository;
 import my_spring_app.my_spring_app.service.AdminStorageService;
 import io.kubernetes.client.util.Yaml;
-import io.kubernetes.client.util.Config;
-import io.kubernetes.client.openapi.Configuration;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 @Service
 public class AdminStorageServiceImpl extends BaseKubernetesService implements AdminStorageService {
@@ -61,82 +56,15 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
                 "Không tìm thấy server MASTER. Vui lòng cấu hình server MASTER trong hệ thống."));
     }
 
-    /**
-     * Override method createKubernetesClient để thay thế server URL trong kubeconfig
-     * trước khi feed cho Java Kubernetes client
-     */
-    @Override
-    protected ApiClient createKubernetesClient(Session session) throws Exception {
-        String kubeconfigPath = "~/.kube/config";
-        File tempKubeconfig = null;
-        try {
-            String kubeconfigContent = executeCommand(session, "cat " + kubeconfigPath, false);
-            if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                String[] alternativePaths = {
-                        "/etc/kubernetes/admin.conf",
-                        "/root/.kube/config",
-                        "$HOME/.kube/config"
-                };
-                for (String altPath : alternativePaths) {
-                    try {
-                        kubeconfigContent = executeCommand(session, "cat " + altPath, true);
-                        if (kubeconfigContent != null && !kubeconfigContent.trim().isEmpty()) {
-                            break;
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-                if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                    throw new RuntimeException("Không thể đọc kubeconfig từ master server.");
-                }
-            }
-
-            // Lấy IP MASTER và thay thế server URL trong kubeconfig trước khi sử dụng
-            Optional<ServerEntity> masterOpt = serverRepository.findByRole("MASTER");
-            if (masterOpt.isPresent()) {
-                String masterIp = masterOpt.get().getIp();
-                kubeconfigContent = replaceKubeconfigServer(kubeconfigContent, masterIp);
-            } else {
-                System.err.println("[createKubernetesClient] WARNING: Không tìm thấy server MASTER để thay server URL trong kubeconfig");
-            }
-
-            tempKubeconfig = File.createTempFile("kubeconfig-", ".yaml");
-            try (FileWriter writer = new FileWriter(tempKubeconfig)) {
-                writer.write(kubeconfigContent);
-            }
-
-            ApiClient client = Config.fromConfig(tempKubeconfig.getAbsolutePath());
-            Configuration.setDefaultApiClient(client);
-            return client;
-        } finally {
-            if (tempKubeconfig != null && tempKubeconfig.exists()) {
-                if (!tempKubeconfig.delete()) {
-                    tempKubeconfig.deleteOnExit();
-                }
-            }
-        }
-    }
-
     @Override
     public PVCListResponse getPVCs() {
-        ServerEntity masterServer = getMasterServer();
-        Session session = null;
         try {
-            session = createSession(masterServer);
-            ApiClient client = createKubernetesClient(session);
-            CoreV1Api api = new CoreV1Api(client);
-
-            io.kubernetes.client.openapi.models.V1PersistentVolumeClaimList pvcList = api
-                    .listPersistentVolumeClaimForAllNamespaces(
-                            null, null, null, null, null, null, null, null, null, null, null);
-
+            // Đọc từ cache informer (không gọi list*ForAllNamespaces cho mỗi request)
             List<PVCResponse> pvcs = new ArrayList<>();
-            if (pvcList.getItems() != null) {
-                for (V1PersistentVolumeClaim v1PVC : pvcList.getItems()) {
-                    try {
-                        pvcs.add(buildPVCResponse(v1PVC));
-                    } catch (Exception ignored) {
-                    }
+            for (V1PersistentVolumeClaim v1PVC : clusterStateCache.persistentVolumeClaims().list()) {
+                try {
+                    pvcs.add(buildPVCResponse(v1PVC));
+                } catch (Exception ignored) {
                 }
             }
             return new PVCListResponse(pvcs);
@@ -144,22 +72,13 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
             throw new RuntimeException("Không thể lấy danh sách PVCs từ Kubernetes API: " + e.getMessage(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy danh sách PVCs: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
     @Override
     public PVCResponse getPVC(String namespace, String name) {
-        ServerEntity masterServer = getMasterServer();
-        Session session = null;
         try {
-            session = createSession(masterServer);
-            ApiClient client = createKubernetesClient(session);
-            CoreV1Api api = new CoreV1Api(client);
-            V1PersistentVolumeClaim pvc = api.readNamespacedPersistentVolumeClaim(name, namespace, null);
+            V1PersistentVolumeClaim pvc = clusterStateCache.persistentVolumeClaims().get(namespace, name);
             if (pvc == null) {
                 throw new RuntimeException("PVC không tồn tại");
             }
@@ -168,10 +87,6 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
             throw new RuntimeException("Không thể lấy pvc: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy pvc: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
@@ -303,8 +218,8 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy chi tiết pvc: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -351,8 +266,8 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
         } catch (Exception e) {
             throw new RuntimeException("Không thể cập nhật pvc từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -380,8 +295,8 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo PVC: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -415,8 +330,8 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo pvc từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -435,31 +350,21 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
         } catch (Exception e) {
             throw new RuntimeException("Không thể xóa pvc: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
 
     @Override
     public PVListResponse getPVs() {
-        ServerEntity masterServer = getMasterServer();
-        Session session = null;
         try {
-            session = createSession(masterServer);
-            ApiClient client = createKubernetesClient(session);
-            CoreV1Api api = new CoreV1Api(client);
-
-            io.kubernetes.client.openapi.models.V1PersistentVolumeList pvList = api.listPersistentVolume(
-                    null, null, null, null, null, null, null, null, null, null, null);
-
+            // Đọc từ cache informer
             List<PVResponse> pvs = new ArrayList<>();
-            if (pvList.getItems() != null) {
-                for (V1PersistentVolume v1PV : pvList.getItems()) {
-                    try {
-                        pvs.add(buildPVResponse(v1PV));
-                    } catch (Exception ignored) {
-                    }
+            for (V1PersistentVolume v1PV : clusterStateCache.persistentVolumes().list()) {
+                try {
+                    pvs.add(buildPVResponse(v1PV));
+                } catch (Exception ignored) {
                 }
             }
             return new PVListResponse(pvs);
@@ -467,22 +372,13 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
             throw new RuntimeException("Không thể lấy danh sách PVs từ Kubernetes API: " + e.getMessage(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy danh sách PVs: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
     @Override
     public PVResponse getPV(String name) {
-        ServerEntity masterServer = getMasterServer();
-        Session session = null;
         try {
-            session = createSession(masterServer);
-            ApiClient client = createKubernetesClient(session);
-            CoreV1Api api = new CoreV1Api(client);
-            V1PersistentVolume pv = api.readPersistentVolume(name, null);
+            V1PersistentVolume pv = clusterStateCache.persistentVolumes().get(null, name);
             if (pv == null) {
                 throw new RuntimeException("PV không tồn tại");
             }
@@ -491,10 +387,6 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
             throw new RuntimeException("Không thể lấy pv: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy pv: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
@@ -621,8 +513,8 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy chi tiết PV: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -644,8 +536,8 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo PV: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -671,8 +563,8 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo PV từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -714,8 +606,8 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
         } catch (Exception e) {
             throw new RuntimeException("Không thể cập nhật PV từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -734,8 +626,8 @@ public class AdminStorageServiceImpl extends BaseKubernetesService implements Ad
         } catch (Exception e) {
             throw new RuntimeException("Không thể xóa PV: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -45,20 +45,16 @@ import io.kubernetes.client.openapi.models.V1PersistentVolumeClaim;
 import io.kubernetes.client.openapi.models.V1PersistentVolumeClaimList;
 import io.kubernetes.client.custom.Quantity;
 import io.kubernetes.client.util.Yaml;
-import io.kubernetes.client.util.Config;
-import io.kubernetes.client.openapi.Configuration;
 import java.util.HashMap;
 import my_spring_app.my_spring_app.entity.ServerEntity;
 import my_spring_app.my_spring_app.repository.ServerRepository;
+import my_spring_app.my_spring_app.k8s.MetricsSnapshotService;
 import my_spring_app.my_spring_app.service.AdminWorkloadService;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 @Service
 public class AdminWorkloadServiceImpl extends BaseKubernetesService implements AdminWorkloadService {
@@ -74,81 +70,15 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
                 "Không tìm thấy server MASTER. Vui lòng cấu hình server MASTER trong hệ thống."));
     }
 
-    /**
-     * Override method createKubernetesClient để thay thế server URL trong kubeconfig
-     * trước khi feed cho Java Kubernetes client
-     */
-    @Override
-    protected ApiClient createKubernetesClient(Session session) throws Exception {
-        String kubeconfigPath = "~/.kube/config";
-        File tempKubeconfig = null;
-        try {
-            String kubeconfigContent = executeCommand(session, "cat " + kubeconfigPath, false);
-            if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                String[] alternativePaths = {
-                        "/etc/kubernetes/admin.conf",
-                        "/root/.kube/config",
-                        "$HOME/.kube/config"
-                };
-                for (String altPath : alternativePaths) {
-                    try {
-                        kubeconfigContent = executeCommand(session, "cat " + altPath, true);
-                        if (kubeconfigContent != null && !kubeconfigContent.trim().isEmpty()) {
-                            break;
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-                if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                    throw new RuntimeException("Không thể đọc kubeconfig từ master server.");
-                }
-            }
-
-            // Lấy IP MASTER và thay thế server URL trong kubeconfig trước khi sử dụng
-            Optional<ServerEntity> masterOpt = serverRepository.findByRole("MASTER");
-            if (masterOpt.isPresent()) {
-                String masterIp = masterOpt.get().getIp();
-                kubeconfigContent = replaceKubeconfigServer(kubeconfigContent, masterIp);
-            } else {
-                System.err.println("[createKubernetesClient] WARNING: Không tìm thấy server MASTER để thay server URL trong kubeconfig");
-            }
-
-            tempKubeconfig = File.createTempFile("kubeconfig-", ".yaml");
-            try (FileWriter writer = new FileWriter(tempKubeconfig)) {
-                writer.write(kubeconfigContent);
-            }
-
-            ApiClient client = Config.fromConfig(tempKubeconfig.getAbsolutePath());
-            Configuration.setDefaultApiClient(client);
-            return client;
-        } finally {
-            if (tempKubeconfig != null && tempKubeconfig.exists()) {
-                if (!tempKubeconfig.delete()) {
-                    tempKubeconfig.deleteOnExit();
-                }
-            }
-        }
-    }
-
     @Override
     public DeploymentListResponse getDeployments() {
-        ServerEntity masterServer = getMasterServer();
-        Session session = null;
         try {
-            session = createSession(masterServer);
-            ApiClient client = createKubernetesClient(session);
-            AppsV1Api api = new AppsV1Api(client);
-
-            io.kubernetes.client.openapi.models.V1DeploymentList deploymentList = api
-                    .listDeploymentForAllNamespaces(null, null, null, null, null, null, null, null, null, null, null);
-
+            // Đọc từ cache informer (không gọi list*ForAllNamespaces cho mỗi request)
             List<DeploymentResponse> deployments = new ArrayList<>();
-            if (deploymentList.getItems() != null) {
-                for (V1Deployment v1Deployment : deploymentList.getItems()) {
-                    try {
-                        deployments.add(buildDeploymentResponse(v1Deployment, session));
-                    } catch (Exception ignored) {
-                    }
+            for (V1Deployment v1Deployment : clusterStateCache.deployments().list()) {
+                try {
+                    deployments.add(buildDeploymentResponse(v1Deployment));
+                } catch (Exception ignored) {
                 }
             }
             return new DeploymentListResponse(deployments);
@@ -156,34 +86,21 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
             throw new RuntimeException("Không thể lấy danh sách deployments từ Kubernetes API: " + e.getMessage(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy danh sách deployments: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
     @Override
     public DeploymentResponse getDeployment(String namespace, String name) {
-        ServerEntity masterServer = getMasterServer();
-        Session session = null;
         try {
-            session = createSession(masterServer);
-            ApiClient client = createKubernetesClient(session);
-            AppsV1Api api = new AppsV1Api(client);
-            V1Deployment v1Deployment = api.readNamespacedDeployment(name, namespace, null);
+            V1Deployment v1Deployment = clusterStateCache.deployments().get(namespace, name);
             if (v1Deployment == null) {
                 throw new RuntimeException("Deployment không tồn tại");
             }
-            return buildDeploymentResponse(v1Deployment, session);
+            return buildDeploymentResponse(v1Deployment);
         } catch (ApiException e) {
             throw new RuntimeException("Không thể lấy deployment: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy deployment: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
@@ -390,38 +307,12 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
             // Có thể lấy qua kubectl hoặc API trực tiếp nếu cần
             detail.setEvents(new ArrayList<>());
 
-            // CPU và Memory (từ kubectl top pods) - sử dụng selector đúng của deployment
+            // CPU và Memory (từ metrics.k8s.io) - sử dụng selector đúng của deployment
             try {
                 if (labelSelector != null && !labelSelector.isEmpty()) {
-                    String cmd = String.format("kubectl top pods -n %s -l %s --no-headers", namespace, labelSelector);
-                    String output = executeCommand(session, cmd, true);
-                    if (output != null && !output.trim().isEmpty()) {
-                        String[] lines = output.split("\\r?\\n");
-                        double totalCpu = 0.0;
-                        long totalMemory = 0L;
-                        for (String line : lines) {
-                            line = line.trim();
-                            if (line.isEmpty()) {
-                                continue;
-                            }
-                            String[] parts = line.split("\\s+");
-                            if (parts.length >= 3) {
-                                try {
-                                    double cpu = parseCpuCores(parts[1]);
-                                    long memory = parseMemoryBytes(parts[2]);
-                                    totalCpu += cpu;
-                                    totalMemory += memory;
-                                } catch (NumberFormatException ex) {
-                                    // Bỏ qua dòng không parse được
-                                }
-                            }
-                        }
-                        detail.setCpu(formatCpu(totalCpu));
-                        detail.setMemory(formatMemory(totalMemory));
-                    } else {
-                        detail.setCpu("0m");
-                        detail.setMemory("0");
-                    }
+                    MetricsSnapshotService.Usage usage = metricsSnapshotService.usageForSelector(namespace, labelSelector);
+                    detail.setCpu(formatCpu(usage.cpuCores()));
+                    detail.setMemory(formatMemory(usage.memoryBytes()));
                 } else {
                     detail.setCpu("0m");
                     detail.setMemory("0");
@@ -437,8 +328,8 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy deployment detail: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -460,14 +351,14 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
                     null,
                     null,
                     null);
-            return buildDeploymentResponse(created, session);
+            return buildDeploymentResponse(created);
         } catch (ApiException e) {
             throw new RuntimeException("Không thể tạo deployment: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo deployment: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -495,14 +386,14 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
                     null,
                     null,
                     null);
-            return buildDeploymentResponse(created, session);
+            return buildDeploymentResponse(created);
         } catch (ApiException e) {
             throw new RuntimeException("Không thể tạo deployment từ YAML: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo deployment từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -634,7 +525,7 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
             api.replaceNamespacedDeploymentScale(name, namespace, scale, null, null, null, null);
             V1Deployment updated = api.readNamespacedDeployment(name, namespace, null);
             System.out.println("[SCALE] Deployment scale completed successfully");
-            return buildDeploymentResponse(updated, session);
+            return buildDeploymentResponse(updated);
         } catch (ApiException e) {
             System.err.println("[SCALE] Error scaling deployment: " + e.getResponseBody());
             throw new RuntimeException("Không thể scale deployment: " + e.getResponseBody(), e);
@@ -642,8 +533,8 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
             System.err.println("[SCALE] Unexpected error scaling deployment: " + e.getMessage());
             throw new RuntimeException("Không thể scale deployment: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -683,14 +574,14 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
             }
 
             V1Deployment updated = api.replaceNamespacedDeployment(name, namespace, deploymentFromYaml, null, null, null, null);
-            return buildDeploymentResponse(updated, session);
+            return buildDeploymentResponse(updated);
         } catch (ApiException e) {
             throw new RuntimeException("Không thể cập nhật deployment từ YAML: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể cập nhật deployment từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -709,31 +600,21 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
         } catch (Exception e) {
             throw new RuntimeException("Không thể xóa deployment: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
 
     @Override
     public PodListResponse getPods() {
-        ServerEntity masterServer = getMasterServer();
-        Session session = null;
         try {
-            session = createSession(masterServer);
-            ApiClient client = createKubernetesClient(session);
-            CoreV1Api api = new CoreV1Api(client);
-
-            io.kubernetes.client.openapi.models.V1PodList podList = api.listPodForAllNamespaces(
-                    null, null, null, null, null, null, null, null, null, null, null);
-
+            // Đọc từ cache informer (không gọi list*ForAllNamespaces cho mỗi request)
             List<PodResponse> pods = new ArrayList<>();
-            if (podList.getItems() != null) {
-                for (V1Pod v1Pod : podList.getItems()) {
-                    try {
-                        pods.add(buildPodResponse(v1Pod, session));
-                    } catch (Exception ignored) {
-                    }
+            for (V1Pod v1Pod : clusterStateCache.pods().list()) {
+                try {
+                    pods.add(buildPodResponse(v1Pod));
+                } catch (Exception ignored) {
                 }
             }
             return new PodListResponse(pods);
@@ -741,34 +622,21 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
             throw new RuntimeException("Không thể lấy danh sách pods từ Kubernetes API: " + e.getMessage(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy danh sách pods: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
     @Override
     public PodResponse getPod(String namespace, String name) {
-        ServerEntity masterServer = getMasterServer();
-        Session session = null;
         try {
-            session = createSession(masterServer);
-            ApiClient client = createKubernetesClient(session);
-            CoreV1Api api = new CoreV1Api(client);
-            V1Pod v1Pod = api.readNamespacedPod(name, namespace, null);
+            V1Pod v1Pod = clusterStateCache.pods().get(namespace, name);
             if (v1Pod == null) {
                 throw new RuntimeException("Pod không tồn tại");
             }
-            return buildPodResponse(v1Pod, session);
+            return buildPodResponse(v1Pod);
         } catch (ApiException e) {
             throw new RuntimeException("Không thể lấy pod: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy pod: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
@@ -875,30 +743,11 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
                 detail.setNode(v1Pod.getSpec().getNodeName());
             }
 
-            // CPU và Memory từ kubectl top pod
+            // CPU và Memory từ metrics.k8s.io
             try {
-                String cmd = String.format("kubectl top pod %s -n %s --no-headers", name, namespace);
-                String output = executeCommand(session, cmd, true);
-                if (output != null && !output.trim().isEmpty()) {
-                    String[] parts = output.trim().split("\\s+");
-                    if (parts.length >= 3) {
-                        try {
-                            double cpu = parseCpuCores(parts[1]);
-                            long memory = parseMemoryBytes(parts[2]);
-                            detail.setCpu(formatCpu(cpu));
-                            detail.setMemory(formatMemory(memory));
-                        } catch (NumberFormatException ex) {
-                            detail.setCpu("0m");
-                            detail.setMemory("0");
-                        }
-                    } else {
-                        detail.setCpu("0m");
-                        detail.setMemory("0");
-                    }
-                } else {
-                    detail.setCpu("0m");
-                    detail.setMemory("0");
-                }
+                MetricsSnapshotService.Usage usage = metricsSnapshotService.usageForPod(namespace, name);
+                detail.setCpu(formatCpu(usage != null ? usage.cpuCores() : 0.0));
+                detail.setMemory(formatMemory(usage != null ? usage.memoryBytes() : 0L));
             } catch (Exception e) {
                 detail.setCpu("0m");
                 detail.setMemory("0");
@@ -928,8 +777,8 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy pod detail: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -1014,18 +863,17 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
         Session session = null;
         try {
             session = createSession(masterServer);
-            String cmd;
-            if (container != null && !container.isEmpty()) {
-                cmd = String.format("kubectl logs %s -n %s -c %s --tail=1000", name, namespace, container);
-            } else {
-                cmd = String.format("kubectl logs %s -n %s --tail=1000", name, namespace);
-            }
-            return executeCommand(session, cmd, true);
+            ApiClient client = createKubernetesClient(session);
+            CoreV1Api api = new CoreV1Api(client);
+            // Chỉ lấy phần đuôi; xem log đầy đủ/theo dõi log mới dùng API stream (PodLogStreamer)
+            String c = (container != null && !container.isEmpty()) ? container : null;
+            String logs = api.readNamespacedPodLog(name, namespace, c, false, null, null, null, null, null, 1000, false);
+            return logs != null ? logs : "";
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy pod logs: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -1056,8 +904,8 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
         } catch (Exception e) {
             throw new RuntimeException("Không thể exec command vào pod: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -1102,14 +950,14 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
 
             // Cập nhật pod
             V1Pod updated = api.replaceNamespacedPod(name, namespace, podFromYaml, null, null, null, null);
-            return buildPodResponse(updated, session);
+            return buildPodResponse(updated);
         } catch (ApiException e) {
             throw new RuntimeException("Không thể cập nhật pod từ YAML: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể cập nhật pod từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -1131,14 +979,14 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
                     null,
                     null,
                     null);
-            return buildPodResponse(created, session);
+            return buildPodResponse(created);
         } catch (ApiException e) {
             throw new RuntimeException("Không thể tạo pod: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo pod: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -1166,14 +1014,14 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
                     null,
                     null,
                     null);
-            return buildPodResponse(created, session);
+            return buildPodResponse(created);
         } catch (ApiException e) {
             throw new RuntimeException("Không thể tạo pod từ YAML: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo pod từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -1192,31 +1040,21 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
         } catch (Exception e) {
             throw new RuntimeException("Không thể xóa pod: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
 
     @Override
     public StatefulsetListResponse getStatefulsets() {
-        ServerEntity masterServer = getMasterServer();
-        Session session = null;
         try {
-            session = createSession(masterServer);
-            ApiClient client = createKubernetesClient(session);
-            AppsV1Api api = new AppsV1Api(client);
-
-            io.kubernetes.client.openapi.models.V1StatefulSetList statefulSetList = api
-                    .listStatefulSetForAllNamespaces(null, null, null, null, null, null, null, null, null, null, null);
-
+            // Đọc từ cache informer (không gọi list*ForAllNamespaces cho mỗi request)
             List<StatefulsetResponse> statefulsets = new ArrayList<>();
-            if (statefulSetList.getItems() != null) {
-                for (V1StatefulSet v1StatefulSet : statefulSetList.getItems()) {
-                    try {
-                        statefulsets.add(buildStatefulsetResponse(v1StatefulSet, session));
-                    } catch (Exception ignored) {
-                    }
+            for (V1StatefulSet v1StatefulSet : clusterStateCache.statefulSets().list()) {
+                try {
+                    statefulsets.add(buildStatefulsetResponse(v1StatefulSet));
+                } catch (Exception ignored) {
                 }
             }
             return new StatefulsetListResponse(statefulsets);
@@ -1224,34 +1062,21 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
             throw new RuntimeException("Không thể lấy danh sách statefulsets từ Kubernetes API: " + e.getMessage(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy danh sách statefulsets: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
     @Override
     public StatefulsetResponse getStatefulset(String namespace, String name) {
-        ServerEntity masterServer = getMasterServer();
-        Session session = null;
         try {
-            session = createSession(masterServer);
-            ApiClient client = createKubernetesClient(session);
-            AppsV1Api api = new AppsV1Api(client);
-            V1StatefulSet v1StatefulSet = api.readNamespacedStatefulSet(name, namespace, null);
+            V1StatefulSet v1StatefulSet = clusterStateCache.statefulSets().get(namespace, name);
             if (v1StatefulSet == null) {
                 throw new RuntimeException("Statefulset không tồn tại");
             }
-            return buildStatefulsetResponse(v1StatefulSet, session);
+            return buildStatefulsetResponse(v1StatefulSet);
         } catch (ApiException e) {
             throw new RuntimeException("Không thể lấy statefulset: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy statefulset: " + e.getMessage(), e);
-        } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
     }
 
@@ -1286,7 +1111,7 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
             api.replaceNamespacedStatefulSetScale(name, namespace, scale, null, null, null, null);
             V1StatefulSet updated = api.readNamespacedStatefulSet(name, namespace, null);
             System.out.println("[SCALE] StatefulSet scale completed successfully");
-            return buildStatefulsetResponse(updated, session);
+            return buildStatefulsetResponse(updated);
         } catch (ApiException e) {
             System.err.println("[SCALE] Error scaling StatefulSet: " + e.getResponseBody());
             throw new RuntimeException("Không thể scale statefulset: " + e.getResponseBody(), e);
@@ -1294,8 +1119,8 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
             System.err.println("[SCALE] Unexpected error scaling StatefulSet: " + e.getMessage());
             throw new RuntimeException("Không thể scale statefulset: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -1401,35 +1226,9 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
             }
             if (!labelSelectorStr.isEmpty()) {
                 try {
-                    String cmd = String.format("kubectl top pods -n %s -l %s --no-headers", namespace, labelSelectorStr);
-                    String output = executeCommand(session, cmd, true);
-                    if (output != null && !output.trim().isEmpty()) {
-                        String[] lines = output.split("\\r?\\n");
-                        double totalCpu = 0.0;
-                        long totalMemory = 0L;
-                        for (String line : lines) {
-                            line = line.trim();
-                            if (line.isEmpty()) {
-                                continue;
-                            }
-                            String[] parts = line.split("\\s+");
-                            if (parts.length >= 3) {
-                                try {
-                                    double cpu = parseCpuCores(parts[1]);
-                                    long memory = parseMemoryBytes(parts[2]);
-                                    totalCpu += cpu;
-                                    totalMemory += memory;
-                                } catch (NumberFormatException ex) {
-                                    // Bỏ qua
-                                }
-                            }
-                        }
-                        detail.setCpu(formatCpu(totalCpu));
-                        detail.setMemory(formatMemory(totalMemory));
-                    } else {
-                        detail.setCpu("0m");
-                        detail.setMemory("0");
-                    }
+                    MetricsSnapshotService.Usage usage = metricsSnapshotService.usageForSelector(namespace, labelSelectorStr);
+                    detail.setCpu(formatCpu(usage.cpuCores()));
+                    detail.setMemory(formatMemory(usage.memoryBytes()));
                 } catch (Exception e) {
                     detail.setCpu("0m");
                     detail.setMemory("0");
@@ -1561,8 +1360,8 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
         } catch (Exception e) {
             throw new RuntimeException("Không thể lấy chi tiết statefulset: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -1584,14 +1383,14 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
                     null,
                     null,
                     null);
-            return buildStatefulsetResponse(created, session);
+            return buildStatefulsetResponse(created);
         } catch (ApiException e) {
             throw new RuntimeException("Không thể tạo statefulset: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo statefulset: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -1619,14 +1418,14 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
                     null,
                     null,
                     null);
-            return buildStatefulsetResponse(created, session);
+            return buildStatefulsetResponse(created);
         } catch (ApiException e) {
             throw new RuntimeException("Không thể tạo statefulset từ YAML: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể tạo statefulset từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -1665,14 +1464,14 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
             }
 
             V1StatefulSet updated = api.replaceNamespacedStatefulSet(name, namespace, statefulsetFromYaml, null, null, null, null);
-            return buildStatefulsetResponse(updated, session);
+            return buildStatefulsetResponse(updated);
         } catch (ApiException e) {
             throw new RuntimeException("Không thể cập nhật statefulset từ YAML: " + e.getResponseBody(), e);
         } catch (Exception e) {
             throw new RuntimeException("Không thể cập nhật statefulset từ YAML: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -1691,8 +1490,8 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
         } catch (Exception e) {
             throw new RuntimeException("Không thể xóa statefulset: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
     }
@@ -1760,7 +1559,7 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
         return info;
     }
 
-    private DeploymentResponse buildDeploymentResponse(V1Deployment v1Deployment, Session session) {
+    private DeploymentResponse buildDeploymentResponse(V1Deployment v1Deployment) {
         if (v1Deployment == null || v1Deployment.getMetadata() == null) {
             return null;
         }
@@ -1860,38 +1659,12 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
             }
         }
 
-        // Tính CPU và Memory từ kubectl top pods
-        if (session != null && namespace != null && !labelSelectorStr.isEmpty()) {
+        // Tính CPU và Memory từ metrics.k8s.io (PodMetrics theo label selector)
+        if (namespace != null && !labelSelectorStr.isEmpty()) {
             try {
-                String cmd = String.format("kubectl top pods -n %s -l %s --no-headers", namespace, labelSelectorStr);
-                String output = executeCommand(session, cmd, true);
-                if (output != null && !output.trim().isEmpty()) {
-                    String[] lines = output.split("\\r?\\n");
-                    double totalCpu = 0.0;
-                    long totalMemory = 0L;
-                    for (String line : lines) {
-                        line = line.trim();
-                        if (line.isEmpty()) {
-                            continue;
-                        }
-                        String[] parts = line.split("\\s+");
-                        if (parts.length >= 3) {
-                            try {
-                                double cpu = parseCpuCores(parts[1]);
-                                long memory = parseMemoryBytes(parts[2]);
-                                totalCpu += cpu;
-                                totalMemory += memory;
-                            } catch (NumberFormatException ex) {
-                                // Bỏ qua dòng không parse được
-                            }
-                        }
-                    }
-                    deployment.setCpu(formatCpu(totalCpu));
-                    deployment.setMemory(formatMemory(totalMemory));
-                } else {
-                    deployment.setCpu("0m");
-                    deployment.setMemory("0");
-                }
+                MetricsSnapshotService.Usage usage = metricsSnapshotService.usageForSelector(namespace, labelSelectorStr);
+                deployment.setCpu(formatCpu(usage.cpuCores()));
+                deployment.setMemory(formatMemory(usage.memoryBytes()));
             } catch (Exception e) {
                 deployment.setCpu("0m");
                 deployment.setMemory("0");
@@ -1946,7 +1719,7 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
         return phase;
     }
 
-    private PodResponse buildPodResponse(V1Pod v1Pod, Session session) {
+    private PodResponse buildPodResponse(V1Pod v1Pod) {
         if (v1Pod == null || v1Pod.getMetadata() == null) {
             return null;
         }
@@ -1987,32 +1760,12 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
             pod.setNode(v1Pod.getSpec().getNodeName());
         }
 
-        // Tính CPU và Memory từ kubectl top pod
-        if (session != null && namespace != null && name != null) {
+        // Tính CPU và Memory từ metrics.k8s.io (PodMetrics của pod)
+        if (namespace != null && name != null) {
             try {
-                String cmd = String.format("kubectl top pod %s -n %s --no-headers", name, namespace);
-                String output = executeCommand(session, cmd, true);
-                if (output != null && !output.trim().isEmpty()) {
-                    String[] parts = output.trim().split("\\s+");
-                    if (parts.length >= 3) {
-                        try {
-                            double cpu = parseCpuCores(parts[1]);
-                            long memory = parseMemoryBytes(parts[2]);
-                            pod.setCpu(formatCpu(cpu));
-                            pod.setMemory(formatMemory(memory));
-                        } catch (NumberFormatException ex) {
-                            // Bỏ qua nếu không parse được
-                            pod.setCpu("0m");
-                            pod.setMemory("0");
-                        }
-                    } else {
-                        pod.setCpu("0m");
-                        pod.setMemory("0");
-                    }
-                } else {
-                    pod.setCpu("0m");
-                    pod.setMemory("0");
-                }
+                MetricsSnapshotService.Usage usage = metricsSnapshotService.usageForPod(namespace, name);
+                pod.setCpu(formatCpu(usage != null ? usage.cpuCores() : 0.0));
+                pod.setMemory(formatMemory(usage != null ? usage.memoryBytes() : 0L));
             } catch (Exception e) {
                 pod.setCpu("0m");
                 pod.setMemory("0");
@@ -2025,7 +1778,7 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
         return pod;
     }
 
-    private StatefulsetResponse buildStatefulsetResponse(V1StatefulSet v1StatefulSet, Session session) {
+    private StatefulsetResponse buildStatefulsetResponse(V1StatefulSet v1StatefulSet) {
         if (v1StatefulSet == null || v1StatefulSet.getMetadata() == null) {
             return null;
         }
@@ -2111,38 +1864,12 @@ public class AdminWorkloadServiceImpl extends BaseKubernetesService implements A
             }
         }
 
-        // Tính CPU và Memory từ kubectl top pods
-        if (session != null && namespace != null && !labelSelectorStr.isEmpty()) {
+        // Tính CPU và Memory từ metrics.k8s.io (PodMetrics theo label selector)
+        if (namespace != null && !labelSelectorStr.isEmpty()) {
             try {
-                String cmd = String.format("kubectl top pods -n %s -l %s --no-headers", namespace, labelSelectorStr);
-                String output = executeCommand(session, cmd, true);
-                if (output != null && !output.trim().isEmpty()) {
-                    String[] lines = output.split("\\r?\\n");
-                    double totalCpu = 0.0;
-                    long totalMemory = 0L;
-                    for (String line : lines) {
-                        line = line.trim();
-                        if (line.isEmpty()) {
-                            continue;
-                        }
-                        String[] parts = line.split("\\s+");
-                        if (parts.length >= 3) {
-                            try {
-                                double cpu = parseCpuCores(parts[1]);
-                                long memory = parseMemoryBytes(parts[2]);
-                                totalCpu += cpu;
-                                totalMemory += memory;
-                            } catch (NumberFormatException ex) {
-                                // Bỏ qua dòng không parse được
-                            }
-                        }
-                    }
-                    statefulset.setCpu(formatCpu(totalCpu));
-                    statefulset.setMemory(formatMemory(totalMemory));
-                } else {
-                    statefulset.setCpu("0m");
-                    statefulset.setMemory("0");
-                }
+                MetricsSnapshotService.Usage usage = metricsSnapshotService.usageForSelector(namespace, labelSelectorStr);
+                statefulset.setCpu(formatCpu(usage.cpuCores()));
+                statefulset.setMemory(formatMemory(usage.memoryBytes()));
             } catch (Exception e) {
                 statefulset.setCpu("0m");
                 statefulset.setMemory("0");
@@ -3,6 +3,10 @@ package my_spring_app.my_spring_app.service.impl;
 import my_spring_app.my_spring_app.dto.reponse.AnsibleStatusResponse;
 import my_spring_app.my_spring_app.dto.reponse.AnsibleOperationResponse;
 import my_spring_app.my_spring_app.dto.reponse.AnsibleTaskStatusResponse;
+import my_spring_app.my_spring_app.tasklog.TaskLog;
+import my_spring_app.my_spring_app.tasklog.TaskLogHub;
+import my_spring_app.my_spring_app.tasklog.TaskRegistry;
+import my_spring_app.my_spring_app.tasklog.TaskRunner;
 import my_spring_app.my_spring_app.dto.reponse.PlaybookListResponse;
 import my_spring_app.my_spring_app.dto.reponse.PlaybookResponse;
 import my_spring_app.my_spring_app.dto.request.InstallAnsibleRequest;
@@ -17,6 +21,7 @@ import my_spring_app.my_spring_app.entity.ServerEntity;
 import my_spring_app.my_spring_app.repository.ServerRepository;
 import my_spring_app.my_spring_app.service.AnsibleService;
 import my_spring_app.my_spring_app.service.ServerService;
+import my_spring_app.my_spring_app.ssh.SshFanOutExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -24,20 +29,16 @@ import org.springframework.web.multipart.MultipartFile;
 import com.jcraft.jsch.Session;
 import io.kubernetes.client.openapi.ApiClient;
 import io.kubernetes.client.util.Config;
-import io.kubernetes.client.openapi.Configuration;
 import java.io.File;
-import java.io.FileWriter;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service implementation cho Ansible
@@ -51,67 +52,24 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
     
     @Autowired
     private ServerService serverService;
-    
-    private final ExecutorService initTaskExecutor = Executors.newFixedThreadPool(4);
-    private final ExecutorService playbookTaskExecutor = Executors.newFixedThreadPool(2);
-    private final ConcurrentMap<String, TaskStatus> initTaskCache = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, TaskStatus> playbookTaskCache = new ConcurrentHashMap<>();
 
-    /**
-     * Override method createKubernetesClient để thay thế server URL trong kubeconfig
-     * trước khi feed cho Java Kubernetes client
-     */
-    @Override
-    protected ApiClient createKubernetesClient(Session session) throws Exception {
-        String kubeconfigPath = "~/.kube/config";
-        File tempKubeconfig = null;
-        try {
-            String kubeconfigContent = executeCommand(session, "cat " + kubeconfigPath, false);
-            if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                String[] alternativePaths = {
-                        "/etc/kubernetes/admin.conf",
-                        "/root/.kube/config",
-                        "$HOME/.kube/config"
-                };
-                for (String altPath : alternativePaths) {
-                    try {
-                        kubeconfigContent = executeCommand(session, "cat " + altPath, true);
-                        if (kubeconfigContent != null && !kubeconfigContent.trim().isEmpty()) {
-                            break;
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-                if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                    throw new RuntimeException("Không thể đọc kubeconfig từ master server.");
-                }
-            }
+    // Log của task được giữ ở hub để client đọc theo offset hoặc nhận qua SSE
+    @Autowired
+    private TaskLogHub taskLogHub;
 
-            // Lấy IP MASTER và thay thế server URL trong kubeconfig trước khi sử dụng
-            Optional<ServerEntity> masterOpt = serverRepository.findByRole("MASTER");
-            if (masterOpt.isPresent()) {
-                String masterIp = masterOpt.get().getIp();
-                kubeconfigContent = replaceKubeconfigServer(kubeconfigContent, masterIp);
-            } else {
-                System.err.println("[createKubernetesClient] WARNING: Không tìm thấy server MASTER để thay server URL trong kubeconfig");
-            }
+    // Chạy lệnh song song trên nhiều node (phân phối SSH key)
+    @Autowired
+    private SshFanOutExecutor sshFanOutExecutor;
 
-            tempKubeconfig = File.createTempFile("kubeconfig-", ".yaml");
-            try (FileWriter writer = new FileWriter(tempKubeconfig)) {
-                writer.write(kubeconfigContent);
-            }
+    // Thời gian tối đa phân phối key tới một node
+    private static final Duration KEY_DISTRIBUTION_TIMEOUT = Duration.ofSeconds(60);
+    
+    // Task init/playbook chạy nền trên TaskRunner và giữ độc quyền controller server
+    @Autowired
+    private TaskRunner taskRunner;
 
-            ApiClient client = Config.fromConfig(tempKubeconfig.getAbsolutePath());
-            Configuration.setDefaultApiClient(client);
-            return client;
-        } finally {
-            if (tempKubeconfig != null && tempKubeconfig.exists()) {
-                if (!tempKubeconfig.delete()) {
-                    tempKubeconfig.deleteOnExit();
-                }
-            }
-        }
-    }
+    private final TaskRegistry<TaskStatus> initTaskCache = new TaskRegistry<>(status -> status.logs);
+    private final TaskRegistry<TaskStatus> playbookTaskCache = new TaskRegistry<>(status -> status.logs);
 
     /**
      * Kiểm tra trạng thái Ansible trên controller server (server có role ANSIBLE).
@@ -585,7 +543,7 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
         TaskStatus taskStatus = createInitTask(taskId, null);
         taskStatus.appendLog("Bắt đầu bước 1...\n");
         taskStatus.setProgress(5);
-        initTaskExecutor.submit(() -> runInitAnsibleStep1(request, controllerServer, taskStatus));
+        startControllerTask(taskId, controllerServer, taskStatus, () -> runInitAnsibleStep1(request, controllerServer, taskStatus));
         
         response.setSuccess(true);
         response.setMessage("Đang thực hiện bước 1. Theo dõi tiến trình bằng taskId.");
@@ -609,7 +567,7 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
         TaskStatus taskStatus = createInitTask(taskId, null);
         taskStatus.appendLog("Bắt đầu bước 2...\n");
         taskStatus.setProgress(5);
-        initTaskExecutor.submit(() -> runInitAnsibleStep2(request, controllerServer, taskStatus));
+        startControllerTask(taskId, controllerServer, taskStatus, () -> runInitAnsibleStep2(request, controllerServer, taskStatus));
             
             response.setSuccess(true);
         response.setMessage("Đang thực hiện bước 2. Theo dõi tiến trình bằng taskId.");
@@ -633,7 +591,7 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
         TaskStatus taskStatus = createInitTask(taskId, null);
         taskStatus.appendLog("Bắt đầu bước 3...\n");
         taskStatus.setProgress(5);
-        initTaskExecutor.submit(() -> runInitAnsibleStep3(request, controllerServer, taskStatus));
+        startControllerTask(taskId, controllerServer, taskStatus, () -> runInitAnsibleStep3(request, controllerServer, taskStatus));
         
         response.setSuccess(true);
         response.setMessage("Đang thực hiện bước 3. Theo dõi tiến trình bằng taskId.");
@@ -657,13 +615,32 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
         TaskStatus taskStatus = createInitTask(taskId, null);
         taskStatus.appendLog("Bắt đầu bước 4...\n");
         taskStatus.setProgress(5);
-        initTaskExecutor.submit(() -> runInitAnsibleStep4(controllerServer, taskStatus));
+        startControllerTask(taskId, controllerServer, taskStatus, () -> runInitAnsibleStep4(controllerServer, taskStatus));
         
         response.setSuccess(true);
         response.setMessage("Đang thực hiện bước 4. Theo dõi tiến trình bằng taskId.");
         return response;
     }
     
+    /**
+     * Chạy task nền trên TaskRunner, giữ độc quyền controller server tới khi task kết thúc: hai bước init,
+     * playbook hay task cài đặt K8s qua Ansible không chạy chồng lên nhau trên cùng server
+     */
+    private void startControllerTask(String taskId, ServerEntity controllerServer, TaskStatus taskStatus, Runnable body) {
+        taskRunner.submit(taskId, () -> {
+            try {
+                if (!taskRunner.tryClaimServer(taskId, controllerServer.getId())) {
+                    taskStatus.appendLog("Controller server đang chạy task khác, chờ tới lượt...\n");
+                    taskRunner.claimServer(taskId, controllerServer.getId());
+                }
+            } catch (Exception e) {
+                taskStatus.markFailed("Không thể bắt đầu task: " + e.getMessage());
+                return;
+            }
+            body.run();
+        });
+    }
+
     /**
      * Escape shell string cho single quotes (giống file mẫu)
      */
@@ -678,20 +655,21 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
         if (taskStatus == null) {
             return;
         }
+        taskStatus.appendLog(formatCommandLog(description, output));
+    }
+    
+    private String formatCommandLog(String description, String output) {
         StringBuilder buffer = new StringBuilder();
         if (description != null && !description.isBlank()) {
             buffer.append(description).append("\n");
         }
-        if (command != null && !command.isBlank()) {
-            //buffer.append("$ ").append(command).append("\n");
-        }
         if (output != null && !output.trim().isEmpty()) {
             buffer.append(output.trim()).append("\n");
         } else {
             buffer.append("\n");
         }
         buffer.append("\n");
-        taskStatus.appendLog(buffer.toString());
+        return buffer.toString();
     }
     
     private void runInitAnsibleStep1(InitAnsibleRequest request, ServerEntity controllerServer, TaskStatus taskStatus) {
@@ -932,72 +910,49 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
                 }
             } catch (Exception ignored) {}
             
-            int successCount = 0;
-            int failCount = 0;
-            int skipped = 0;
-            List<String> errors = new ArrayList<>();
-            int processed = 0;
-            
-            for (ServerEntity targetServer : targetServers) {
-                processed++;
-                taskStatus.appendLog("→ Phân phối SSH key đến " + (targetServer.getName() != null ? targetServer.getName() : targetServer.getIp())
-                        + " (IP: " + targetServer.getIp() + ")\n");
-                try {
-                    String matchToken = (keyCore != null ? escapeShellForSingleQuotes(keyCore) : escapeShellForSingleQuotes(publicKey));
-                    String fullKeyQuoted = escapeShellForSingleQuotes(publicKey);
-                    String addKeyCmd = "bash -lc \"mkdir -p $HOME/.ssh && chmod 700 $HOME/.ssh && touch $HOME/.ssh/authorized_keys && chmod 600 $HOME/.ssh/authorized_keys; " +
-                            "if grep -Fq " + matchToken +
-                            " $HOME/.ssh/authorized_keys; then echo EXIST; else printf '%s\\n' " + fullKeyQuoted +
-                            " | tee -a $HOME/.ssh/authorized_keys >/dev/null; fi\"";
-                    
-                    try {
-                        String addOutput = serverService.execCommand(targetServer.getId(), addKeyCmd, 20000);
-                        appendCommandLog(taskStatus, "Thêm public key vào authorized_keys", addKeyCmd, addOutput);
-                    } catch (Exception e) {
-                        skipped++;
-                        errors.add(targetServer.getIp() + ": Không thể kết nối - " + e.getMessage());
-                        taskStatus.appendLog("   ⚠️ Bỏ qua: " + e.getMessage() + "\n");
-                        continue;
-                    }
-                    
-                    String verifyCmd = "bash -lc \"if grep -Fq " + matchToken +
-                            " $HOME/.ssh/authorized_keys; then echo OK; else echo FAIL; fi\"";
-                    String verify = null;
-                    try {
-                        verify = serverService.execCommand(targetServer.getId(), verifyCmd, 12000);
-                        appendCommandLog(taskStatus, "Kiểm tra key trên node", verifyCmd, verify);
-                    } catch (Exception e) {
-                        appendCommandLog(taskStatus, "Kiểm tra key trên node", verifyCmd, e.getMessage());
-                    }
-                    
-                    if (verify != null && verify.contains("OK")) {
-                        successCount++;
-                        taskStatus.appendLog("   ✅ Thành công\n");
-                    } else {
-                        failCount++;
-                        errors.add(targetServer.getIp() + ": Không xác minh được");
-                        taskStatus.appendLog("   ❌ Không xác minh được key\n");
-                    }
-                } catch (Exception e) {
-                    failCount++;
-                    errors.add(targetServer.getIp() + ": " + e.getMessage());
-                    taskStatus.appendLog("   ❌ Lỗi: " + e.getMessage() + "\n");
-                } finally {
-                    int progress = 10 + (processed * 80 / targetServers.size());
-                    taskStatus.setProgress(Math.min(90, progress));
-                }
-            }
-            
-            if (failCount == 0 && skipped == 0) {
+            String matchToken = (keyCore != null ? escapeShellForSingleQuotes(keyCore) : escapeShellForSingleQuotes(publicKey));
+            String fullKeyQuoted = escapeShellForSingleQuotes(publicKey);
+            String addKeyCmd = "bash -lc \"mkdir -p $HOME/.ssh && chmod 700 $HOME/.ssh && touch $HOME/.ssh/authorized_keys && chmod 600 $HOME/.ssh/authorized_keys; " +
+                    "if grep -Fq " + matchToken +
+                    " $HOME/.ssh/authorized_keys; then echo EXIST; else printf '%s\\n' " + fullKeyQuoted +
+                    " | tee -a $HOME/.ssh/authorized_keys >/dev/null; fi\"";
+            String verifyCmd = "bash -lc \"if grep -Fq " + matchToken +
+                    " $HOME/.ssh/authorized_keys; then echo OK; else echo FAIL; fi\"";
+            
+            // Phân phối song song tới các node, log của từng node được gom lại rồi ghi một lần để không xen kẽ
+            int total = targetServers.size();
+            AtomicInteger processed = new AtomicInteger();
+            SshFanOutExecutor.Report<Void> report = sshFanOutExecutor.run("Phân phối SSH key", targetServers,
+                    SshFanOutExecutor.DEFAULT_PARALLELISM, KEY_DISTRIBUTION_TIMEOUT, targetServer -> {
+                        StringBuilder hostLog = new StringBuilder("→ Phân phối SSH key đến "
+                                + (targetServer.getName() != null ? targetServer.getName() : targetServer.getIp())
+                                + " (IP: " + targetServer.getIp() + ")\n");
+                        try {
+                            String addOutput = serverService.execCommand(targetServer.getId(), addKeyCmd, 20000);
+                            hostLog.append(formatCommandLog("Thêm public key vào authorized_keys", addOutput));
+                            String verify = serverService.execCommand(targetServer.getId(), verifyCmd, 12000);
+                            hostLog.append(formatCommandLog("Kiểm tra key trên node", verify));
+                            if (verify == null || !verify.contains("OK")) {
+                                throw new RuntimeException("Không xác minh được key");
+                            }
+                            return null;
+                        } finally {
+                            taskStatus.appendLog(hostLog.toString());
+                        }
+                    }, result -> {
+                        taskStatus.appendLog(result.success()
+                                ? "   ✅ " + result.host() + ": thành công\n"
+                                : "   ❌ " + result.host() + ": " + result.error() + "\n");
+                        int progress = 10 + (processed.incrementAndGet() * 80 / total);
+                        taskStatus.setProgress(Math.min(90, progress));
+                    });
+            
+            if (report.allSucceeded()) {
                 taskStatus.setProgress(100);
-                taskStatus.markCompleted("✅ Đã phân phối SSH key thành công đến " + successCount + " server(s)\n");
+                taskStatus.markCompleted("✅ Đã phân phối SSH key thành công đến " + report.succeeded().size() + " server(s)\n");
             } else {
-                String summary = "Tổng kết: " + successCount + " OK, " + failCount + " FAILED, " + skipped + " SKIPPED";
-                taskStatus.appendLog(summary + "\n");
-                if (!errors.isEmpty()) {
-                    taskStatus.appendLog("Chi tiết lỗi: " + String.join("; ", errors) + "\n");
-                }
-                if (failCount >= targetServers.size()) {
+                taskStatus.appendLog(report.summary());
+                if (report.succeeded().isEmpty()) {
                     taskStatus.markFailed("Phân phối SSH key thất bại cho tất cả servers");
                 } else {
                     taskStatus.setProgress(100);
@@ -1254,7 +1209,7 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
     
     
     private TaskStatus createInitTask(String taskId, String title) {
-        TaskStatus status = new TaskStatus(taskId);
+        TaskStatus status = new TaskStatus(taskId, taskLogHub.open(taskId));
         if (title != null && !title.isBlank()) {
             status.appendLog(title + "\n");
         }
@@ -1263,7 +1218,7 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
     }
     
     private TaskStatus createPlaybookTask(String taskId, String title) {
-        TaskStatus status = new TaskStatus(taskId);
+        TaskStatus status = new TaskStatus(taskId, taskLogHub.open(taskId));
         if (title != null && !title.isBlank()) {
             status.appendLog(title + "\n");
         }
@@ -1273,27 +1228,33 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
     
     private static class TaskStatus {
         private final String taskId;
-        private final StringBuilder logs = new StringBuilder();
+        private final TaskLog logs;
         private final long startTime = System.currentTimeMillis();
         private volatile Long endTime;
         private volatile String status = "running";
         private volatile int progress = 0;
         private volatile String error;
         
-        TaskStatus(String taskId) {
+        TaskStatus(String taskId, TaskLog logs) {
             this.taskId = taskId;
+            this.logs = logs;
         }
         
-        synchronized void appendLog(String text) {
+        void appendLog(String text) {
             logs.append(text);
         }
         
-        synchronized String snapshotLogs() {
-            return logs.toString();
+        String snapshotLogs(long since) {
+            return logs.readFrom(since);
+        }
+
+        long logLength() {
+            return logs.length();
         }
         
         void setProgress(int progress) {
             this.progress = Math.max(0, Math.min(100, progress));
+            logs.setProgress(this.progress);
         }
         
         void markCompleted(String message) {
@@ -1301,7 +1262,8 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
             this.endTime = System.currentTimeMillis();
             if (message != null && !message.isBlank()) {
                 appendLog(message.endsWith("\n") ? message : message + "\n");
-        }
+            }
+            logs.finish(status, null);
         }
         
         void markFailed(String message) {
@@ -1311,6 +1273,7 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
             if (message != null && !message.isBlank()) {
                 appendLog("❌ " + message + (message.endsWith("\n") ? "" : "\n"));
             }
+            logs.finish(status, message);
         }
         
         @SuppressWarnings("unused")
@@ -1340,7 +1303,7 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
     }
     
     @Override
-    public AnsibleTaskStatusResponse getInitTaskStatus(String taskId) {
+    public AnsibleTaskStatusResponse getInitTaskStatus(String taskId, long since) {
         AnsibleTaskStatusResponse response = new AnsibleTaskStatusResponse();
         response.setTaskId(taskId);
         TaskStatus status = initTaskCache.get(taskId);
@@ -1356,7 +1319,12 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
         response.setSuccess(true);
         response.setStatus(status.getStatus());
         response.setProgress(status.getProgress());
-        response.setLogs(status.snapshotLogs());
+        // Chỉ trả phần log từ offset since, client gửi lại nextOffset ở lần poll sau
+        long offset = Math.max(0, Math.min(since, status.logLength()));
+        String logs = status.snapshotLogs(offset);
+        response.setLogs(logs);
+        response.setLogOffset(offset);
+        response.setNextOffset(offset + logs.length());
         response.setStartTime(status.getStartTime());
         response.setEndTime(status.getEndTime());
         response.setError(status.getError());
@@ -1364,7 +1332,7 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
     }
     
     @Override
-    public AnsibleTaskStatusResponse getPlaybookTaskStatus(String taskId) {
+    public AnsibleTaskStatusResponse getPlaybookTaskStatus(String taskId, long since) {
         AnsibleTaskStatusResponse response = new AnsibleTaskStatusResponse();
         response.setTaskId(taskId);
         TaskStatus status = playbookTaskCache.get(taskId);
@@ -1380,7 +1348,12 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
         response.setSuccess(true);
         response.setStatus(status.getStatus());
         response.setProgress(status.getProgress());
-        response.setLogs(status.snapshotLogs());
+        // Chỉ trả phần log từ offset since, client gửi lại nextOffset ở lần poll sau
+        long offset = Math.max(0, Math.min(since, status.logLength()));
+        String logs = status.snapshotLogs(offset);
+        response.setLogs(logs);
+        response.setLogOffset(offset);
+        response.setNextOffset(offset + logs.length());
         response.setStartTime(status.getStartTime());
         response.setEndTime(status.getEndTime());
         response.setError(status.getError());
@@ -1769,7 +1742,7 @@ public class AnsibleServiceImpl extends BaseKubernetesService implements Ansible
             
             TaskStatus taskStatus = createPlaybookTask(taskId, "Bắt đầu thực thi playbook: " + filename);
             taskStatus.setProgress(5);
-            playbookTaskExecutor.submit(() -> runPlaybookExecution(request, controllerServer, taskStatus));
+            startControllerTask(taskId, controllerServer, taskStatus, () -> runPlaybookExecution(request, controllerServer, taskStatus));
             
             response.setSuccess(true);
             response.setMessage("Đang thực thi playbook. Theo dõi tiến trình bằng taskId.");
@@ -1,8 +1,5 @@
 package my_spring_app.my_spring_app.service.impl;
 
-import com.jcraft.jsch.Channel;
-import com.jcraft.jsch.ChannelExec;
-import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.Session;
 import my_spring_app.my_spring_app.dto.reponse.BackendRequestResponse;
 import my_spring_app.my_spring_app.dto.request.CreateBackendRequest;
@@ -14,18 +11,14 @@ import my_spring_app.my_spring_app.repository.BackendRequestRepository;
 import my_spring_app.my_spring_app.repository.ProjectBackendRepository;
 import my_spring_app.my_spring_app.repository.ServerRepository;
 import my_spring_app.my_spring_app.service.BackendRequestService;
+import my_spring_app.my_spring_app.ssh.SshCommandExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import io.kubernetes.client.openapi.ApiClient;
-import io.kubernetes.client.util.Config;
-import io.kubernetes.client.openapi.Configuration;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.InputStream;
+
 import java.util.List;
 import java.util.Optional;
-import java.util.Properties;
 import java.util.stream.Collectors;
 
 @Service
@@ -44,62 +37,6 @@ public class BackendRequestServiceImpl extends BaseKubernetesService implements
         this.serverRepository = serverRepository;
     }
 
-    /**
-     * Override method createKubernetesClient để thay thế server URL trong kubeconfig
-     * trước khi feed cho Java Kubernetes client
-     */
-    @Override
-    protected ApiClient createKubernetesClient(Session session) throws Exception {
-        String kubeconfigPath = "~/.kube/config";
-        File tempKubeconfig = null;
-        try {
-            String kubeconfigContent = executeCommand(session, "cat " + kubeconfigPath, false);
-            if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                String[] alternativePaths = {
-                        "/etc/kubernetes/admin.conf",
-                        "/root/.kube/config",
-                        "$HOME/.kube/config"
-                };
-                for (String altPath : alternativePaths) {
-                    try {
-                        kubeconfigContent = executeCommand(session, "cat " + altPath, true);
-                        if (kubeconfigContent != null && !kubeconfigContent.trim().isEmpty()) {
-                            break;
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-                if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                    throw new RuntimeException("Không thể đọc kubeconfig từ master server.");
-                }
-            }
-
-            // Lấy IP MASTER và thay thế server URL trong kubeconfig trước khi sử dụng
-            Optional<ServerEntity> masterOpt = serverRepository.findByRole("MASTER");
-            if (masterOpt.isPresent()) {
-                String masterIp = masterOpt.get().getIp();
-                kubeconfigContent = replaceKubeconfigServer(kubeconfigContent, masterIp);
-            } else {
-                System.err.println("[createKubernetesClient] WARNING: Không tìm thấy server MASTER để thay server URL trong kubeconfig");
-            }
-
-            tempKubeconfig = File.createTempFile("kubeconfig-", ".yaml");
-            try (FileWriter writer = new FileWriter(tempKubeconfig)) {
-                writer.write(kubeconfigContent);
-            }
-
-            ApiClient client = Config.fromConfig(tempKubeconfig.getAbsolutePath());
-            Configuration.setDefaultApiClient(client);
-            return client;
-        } finally {
-            if (tempKubeconfig != null && tempKubeconfig.exists()) {
-                if (!tempKubeconfig.delete()) {
-                    tempKubeconfig.deleteOnExit();
-                }
-            }
-        }
-    }
-
     @Override
     public BackendRequestResponse createRequest(CreateBackendRequest requestDto) {
         if (requestDto == null) {
@@ -185,8 +122,8 @@ public class BackendRequestServiceImpl extends BaseKubernetesService implements
         } catch (Exception e) {
             throw new RuntimeException("Không thể cập nhật HPA cho backend: " + e.getMessage(), e);
         } finally {
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+            if (session != null) {
+                releaseSession(session);
             }
         }
 
@@ -254,52 +191,17 @@ public class BackendRequestServiceImpl extends BaseKubernetesService implements
     }
 
     private Session openSshSession(ServerEntity masterServer) throws Exception {
-        JSch jsch = new JSch();
-        Session session = jsch.getSession(masterServer.getUsername(), masterServer.getIp(), masterServer.getPort());
-        session.setPassword(masterServer.getPassword());
-        Properties config = new Properties();
-        config.put("StrictHostKeyChecking", "no");
-        session.setConfig(config);
-        session.setTimeout(7000);
-        session.connect();
+        Session session = createSession(masterServer);
         return session;
     }
 
     private void executeCommand(Session session, String command) throws Exception {
-        Channel channel = null;
-        ChannelExec channelExec = null;
-        try {
-            channel = session.openChannel("exec");
-            channelExec = (ChannelExec) channel;
-            channelExec.setCommand(command);
-            InputStream inputStream = channelExec.getInputStream();
-            channelExec.setErrStream(System.err);
-            channelExec.connect();
-
-            byte[] buffer = new byte[1024];
-            while (true) {
-                while (inputStream.available() > 0) {
-                    int i = inputStream.read(buffer, 0, 1024);
-                    if (i < 0) {
-                        break;
-                    }
-                }
-                if (channelExec.isClosed()) {
-                    if (inputStream.available() > 0) {
-                        continue;
-                    }
-                    int exitStatus = channelExec.getExitStatus();
-                    if (exitStatus != 0) {
-                        throw new RuntimeException("Command exited with status " + exitStatus);
-                    }
-                    break;
-                }
-                Thread.sleep(100);
-            }
-        } finally {
-            if (channelExec != null && channelExec.isConnected()) {
-                channelExec.disconnect();
-            }
+        SshCommandExecutor.CommandResult result = sshCommandExecutor.execute(session, command, SshCommandExecutor.CommandOptions.of(0));
+        if (!result.stderr().isEmpty()) {
+            System.err.print(result.stderr());
+        }
+        if (result.exitStatus() != 0) {
+            throw new RuntimeException("Command exited with status " + result.exitStatus());
         }
     }
 
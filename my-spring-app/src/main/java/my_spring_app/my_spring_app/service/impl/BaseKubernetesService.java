@@ -1,25 +1,26 @@
 package my_spring_app.my_spring_app.service.impl;
 
-import com.jcraft.jsch.ChannelExec;
-import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.Session;
 import io.kubernetes.client.openapi.ApiClient;
-import io.kubernetes.client.util.Config;
 import io.kubernetes.client.openapi.models.V1Node;
+import my_spring_app.my_spring_app.k8s.ClusterStateCache;
+import my_spring_app.my_spring_app.k8s.KubernetesClientRegistry;
+import my_spring_app.my_spring_app.k8s.KubernetesMetricsClient;
+import my_spring_app.my_spring_app.k8s.ManifestApplier;
+import my_spring_app.my_spring_app.k8s.MetricsSnapshotService;
+import my_spring_app.my_spring_app.k8s.ReadinessTracker;
+import my_spring_app.my_spring_app.ssh.SshCommandExecutor;
+import my_spring_app.my_spring_app.ssh.SshSessionPool;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Properties;
 
 /**
  * Base service cung cấp các hàm tiện ích làm việc với Kubernetes (SSH, parse metrics, format dữ liệu).
@@ -29,80 +30,88 @@ public abstract class BaseKubernetesService {
 
     protected static final double BYTES_PER_GB = 1024d * 1024 * 1024;
 
+    @Autowired
+    protected SshSessionPool sshSessionPool;
+
+    @Autowired
+    protected KubernetesClientRegistry kubernetesClientRegistry;
+
+    @Autowired
+    protected KubernetesMetricsClient kubernetesMetricsClient;
+
+    @Autowired
+    protected ClusterStateCache clusterStateCache;
+
+    @Autowired
+    protected MetricsSnapshotService metricsSnapshotService;
+
+    @Autowired
+    protected SshCommandExecutor sshCommandExecutor;
+
+    @Autowired
+    protected ManifestApplier manifestApplier;
+
+    @Autowired
+    protected ReadinessTracker readinessTracker;
+
+    /**
+     * Mượn SSH session đến server từ pool dùng chung (không handshake lại nếu session còn sống).
+     * Session phải được trả lại bằng {@link #releaseSession(Session)}, KHÔNG gọi session.disconnect().
+     */
     protected Session createSession(my_spring_app.my_spring_app.entity.ServerEntity server) throws Exception {
-        JSch jsch = new JSch();
-        Session session = jsch.getSession(server.getUsername(), server.getIp(), server.getPort());
-        session.setPassword(server.getPassword());
-
-        Properties config = new Properties();
-        config.put("StrictHostKeyChecking", "no");
-        session.setConfig(config);
-        session.setTimeout(7000);
-        session.connect();
-        return session;
+        return sshSessionPool.acquire(server);
     }
 
-    protected String executeCommand(Session session, String command, boolean ignoreNonZeroExit) throws Exception {
-        ChannelExec channelExec = null;
-        BufferedReader reader = null;
-        try {
-            channelExec = (ChannelExec) session.openChannel("exec");
-            channelExec.setCommand(command);
-            channelExec.setErrStream(System.err);
-
-            InputStream inputStream = channelExec.getInputStream();
-            channelExec.connect();
-
-            // Đọc output theo từng dòng
-            reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-            StringBuilder output = new StringBuilder();
-            String line;
-            
-            // Đợi channel kết nối và bắt đầu đọc
-            while (true) {
-                // Kiểm tra nếu channel đã đóng
-                if (channelExec.isClosed()) {
-                    // Đọc tất cả các dòng còn lại
-                    while ((line = reader.readLine()) != null) {
-                        output.append(line).append("\n");
-                        System.out.println(line);
-                    }
-                    break;
-                }
-                
-                // Đọc dòng nếu có sẵn (non-blocking check)
-                if (inputStream.available() > 0) {
-                    // Đọc từng dòng, readLine() sẽ block cho đến khi có dòng hoàn chỉnh hoặc stream đóng
-                    // Nhưng vì đã check available() > 0, nên sẽ có dữ liệu
-                    line = reader.readLine();
-                    if (line != null) {
-                        output.append(line).append("\n");
-                        System.out.println(line);
-                    }
-                } else {
-                    // Không có dữ liệu sẵn, đợi một chút
-                    Thread.sleep(100);
-                }
-            }
+    /**
+     * Trả SSH session đã mượn bằng {@link #createSession} về pool.
+     */
+    protected void releaseSession(Session session) {
+        sshSessionPool.release(session);
+    }
 
-            int exitStatus = channelExec.getExitStatus();
-            String result = output.toString().trim();
-            if (exitStatus != 0 && !ignoreNonZeroExit) {
-                throw new RuntimeException("Command exited with status: " + exitStatus + ". Output: " + result);
-            }
-            return result;
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (Exception e) {
-                    // Ignore
+    /**
+     * Chạy action sau khi transaction hiện tại commit (chạy ngay nếu không có transaction).
+     * Dùng để bắt đầu theo dõi readiness sau khi bản ghi BUILDING đã được lưu: callback cập nhật trạng thái
+     * đọc lại bản ghi bằng id nên phải thấy được dữ liệu đã commit.
+     */
+    protected void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
                 }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    protected String executeCommand(Session session, String command, boolean ignoreNonZeroExit) throws Exception {
+        // Output được in ra ngay khi tới (không poll), không giới hạn thời gian như trước
+        SshCommandExecutor.CommandResult result = sshCommandExecutor.execute(session, command,
+                SshCommandExecutor.CommandOptions.of(0).withOutputHandler(System.out::print));
+        String output = result.stdout().trim();
+        if (result.exitStatus() != 0 && !ignoreNonZeroExit) {
+            throw new RuntimeException("Command exited with status: " + result.exitStatus() + ". Output: " + output);
+        }
+        return output;
+    }
+
+    /**
+     * Lấy digest (repo@sha256:...) của image vừa push để tham chiếu cố định, không phụ thuộc tag
+     * Nếu không lấy được digest thì trả về chính tag
+     */
+    protected String resolvePushedImageRef(Session session, String imageTag) {
+        try {
+            String digest = executeCommand(session, "docker inspect --format '{{index .RepoDigests 0}}' '" + imageTag + "'", true);
+            if (digest.contains("@sha256:")) {
+                return digest;
             }
-            if (channelExec != null && channelExec.isConnected()) {
-                channelExec.disconnect();
-            }
+        } catch (Exception e) {
+            System.err.println("[resolvePushedImageRef] Không lấy được digest của " + imageTag + ": " + e.getMessage());
         }
+        return imageTag;
     }
 
     /**
@@ -114,83 +123,35 @@ public abstract class BaseKubernetesService {
      * @return Nội dung kubeconfig đã được thay thế server URL (nếu masterIp được cung cấp)
      */
     protected String replaceKubeconfigServer(String kubeconfigContent, String masterIp) {
-        if (kubeconfigContent == null || masterIp == null || masterIp.isBlank()) {
-            return kubeconfigContent;
-        }
-        String newServerUrl = "https://" + masterIp + ":6443";
-        // Thay cả 127.0.0.1 và localhost nếu có
-        String result = kubeconfigContent
-                .replace("https://127.0.0.1:6443", newServerUrl)
-                .replace("https://localhost:6443", newServerUrl);
-        System.out.println("[replaceKubeconfigServer] Đã thay thế server URL thành: " + newServerUrl);
-        return result;
+        return KubernetesClientRegistry.replaceServerUrl(kubeconfigContent, masterIp);
     }
 
     /**
-     * Tạo Kubernetes client từ kubeconfig trên master server
-     * 
-     * @param session SSH session đến master server
-     * @param masterIp IP của master server (tùy chọn, nếu null sẽ không thay thế server URL)
+     * Lấy Kubernetes client dùng chung của cluster từ {@link KubernetesClientRegistry}.
+     * Kubeconfig chỉ được đọc lại khi server MASTER hoặc cert thay đổi; server URL luôn được
+     * thay bằng IP của MASTER trong DB nên tham số masterIp chỉ còn để tương thích ngược.
+     *
+     * KHÔNG set client này làm default client toàn cục, luôn truyền vào constructor của API
+     * (ví dụ new CoreV1Api(client)).
+     *
+     * @param session SSH session đến master server (dùng để đọc kubeconfig nếu cần tạo client mới)
+     * @param masterIp IP của master server (không còn dùng)
      * @return ApiClient để tương tác với Kubernetes API
      * @throws Exception Nếu có lỗi khi tạo client
      */
     protected ApiClient createKubernetesClient(Session session, String masterIp) throws Exception {
-        String kubeconfigPath = "~/.kube/config";
-        File tempKubeconfig = null;
-        try {
-            String kubeconfigContent = executeCommand(session, "cat " + kubeconfigPath, false);
-            if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                String[] alternativePaths = {
-                        "/etc/kubernetes/admin.conf",
-                        "/root/.kube/config",
-                        "$HOME/.kube/config"
-                };
-                for (String altPath : alternativePaths) {
-                    try {
-                        kubeconfigContent = executeCommand(session, "cat " + altPath, true);
-                        if (kubeconfigContent != null && !kubeconfigContent.trim().isEmpty()) {
-                            break;
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-                if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                    throw new RuntimeException("Không thể đọc kubeconfig từ master server.");
-                }
-            }
-
-            // Thay thế server URL nếu masterIp được cung cấp
-            if (masterIp != null && !masterIp.isBlank()) {
-                kubeconfigContent = replaceKubeconfigServer(kubeconfigContent, masterIp);
-            }
-
-            tempKubeconfig = File.createTempFile("kubeconfig-", ".yaml");
-            try (FileWriter writer = new FileWriter(tempKubeconfig)) {
-                writer.write(kubeconfigContent);
-            }
-
-            ApiClient client = Config.fromConfig(tempKubeconfig.getAbsolutePath());
-            io.kubernetes.client.openapi.Configuration.setDefaultApiClient(client);
-            return client;
-        } finally {
-            if (tempKubeconfig != null && tempKubeconfig.exists()) {
-                if (!tempKubeconfig.delete()) {
-                    tempKubeconfig.deleteOnExit();
-                }
-            }
-        }
+        return kubernetesClientRegistry.getClient(session);
     }
 
     /**
-     * Tạo Kubernetes client từ kubeconfig trên master server (không thay thế server URL)
-     * Method này được giữ lại để tương thích ngược
-     * 
+     * Lấy Kubernetes client dùng chung của cluster (xem {@link #createKubernetesClient(Session, String)}).
+     *
      * @param session SSH session đến master server
      * @return ApiClient để tương tác với Kubernetes API
      * @throws Exception Nếu có lỗi khi tạo client
      */
     protected ApiClient createKubernetesClient(Session session) throws Exception {
-        return createKubernetesClient(session, null);
+        return kubernetesClientRegistry.getClient(session);
     }
 
     protected double parseCpuCores(String cpuStr) {
@@ -435,57 +396,39 @@ public abstract class BaseKubernetesService {
     }
 
     /**
-     * Lấy CPU/Memory usage từ kubectl top cho một node cụ thể
+     * Lấy CPU/Memory usage của một node cụ thể từ metrics.k8s.io
      * 
      * @param nodeName Tên node
-     * @param masterSession SSH session đến master server
      * @return ResourceUsage hoặc null nếu không lấy được
      */
-    protected ResourceUsage getNodeUsageFromKubectlTop(String nodeName, Session masterSession) {
-        try {
-            String topNodesCmd = "kubectl top nodes --no-headers | grep " + nodeName;
-            String topOutput = executeCommand(masterSession, topNodesCmd, true);
-            if (topOutput != null && !topOutput.trim().isEmpty()) {
-                String[] parts = topOutput.trim().split("\\s+");
-                if (parts.length >= 4) {
-                    double cpu = parseCpuCores(parts[1]);
-                    long memory = parseMemoryBytes(parts[3]);
-                    return new ResourceUsage().addCpu(cpu).addMemory(memory);
-                }
-            }
-        } catch (Exception e) {
-            // Nếu kubectl top không khả dụng, trả về null
+    protected ResourceUsage getNodeUsage(String nodeName) {
+        KubernetesMetricsClient.NodeUsage usage = getAllNodesUsageFromMetricsApi().get(nodeName);
+        if (usage == null) {
+            return null;
         }
-        return null;
+        return new ResourceUsage().addCpu(usage.cpuCores()).addMemory(usage.memoryBytes());
     }
 
     /**
-     * Lấy CPU/Memory usage từ kubectl top cho tất cả nodes
+     * Lấy CPU/Memory usage cho tất cả nodes từ metrics.k8s.io (một request cho cả cluster)
      * 
-     * @param masterSession SSH session đến master server
      * @return Map với key là node name, value là ResourceUsage
      */
-    protected Map<String, ResourceUsage> getAllNodesUsageFromKubectlTop(Session masterSession) {
+    protected Map<String, ResourceUsage> getAllNodesUsage() {
         Map<String, ResourceUsage> nodeUsageMap = new HashMap<>();
+        for (KubernetesMetricsClient.NodeUsage usage : getAllNodesUsageFromMetricsApi().values()) {
+            nodeUsageMap.put(usage.name(), new ResourceUsage().addCpu(usage.cpuCores()).addMemory(usage.memoryBytes()));
+        }
+        return nodeUsageMap;
+    }
+
+    private Map<String, KubernetesMetricsClient.NodeUsage> getAllNodesUsageFromMetricsApi() {
         try {
-            String topNodesCmd = "kubectl top nodes --no-headers";
-            String topOutput = executeCommand(masterSession, topNodesCmd, true);
-            if (topOutput != null && !topOutput.trim().isEmpty()) {
-                String[] lines = topOutput.trim().split("\\r?\\n");
-                for (String line : lines) {
-                    String[] parts = line.trim().split("\\s+");
-                    if (parts.length >= 4) {
-                        String nodeName = parts[0];
-                        double cpu = parseCpuCores(parts[1]);
-                        long memory = parseMemoryBytes(parts[3]);
-                        nodeUsageMap.put(nodeName, new ResourceUsage().addCpu(cpu).addMemory(memory));
-                    }
-                }
-            }
+            return kubernetesMetricsClient.listNodeUsage();
         } catch (Exception e) {
-            // Nếu kubectl top không khả dụng, để giá trị mặc định rỗng
+            // Nếu Metrics Server không khả dụng, để giá trị mặc định rỗng
+            return new HashMap<>();
         }
-        return nodeUsageMap;
     }
 }
 
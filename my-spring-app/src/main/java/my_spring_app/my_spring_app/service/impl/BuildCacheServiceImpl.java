@@ -0,0 +1,121 @@
+package my_spring_app.my_spring_app.service.impl;
+
+import my_spring_app.my_spring_app.artifact.ArtifactStore;
+import my_spring_app.my_spring_app.entity.BuildCacheEntity;
+import my_spring_app.my_spring_app.repository.BuildCacheRepository;
+import my_spring_app.my_spring_app.service.BuildCacheService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Cache kết quả docker build theo nội dung: cùng file zip, cùng framework và cùng Dockerfile
+ * thì dùng lại image đã push thay vì unzip/build/push lại.
+ * Metadata lưu trong bảng build_cache, vượt quá MAX_ENTRIES thì xóa các entry lâu không dùng nhất (LRU).
+ */
+@Service
+@Transactional
+public class BuildCacheServiceImpl implements BuildCacheService {
+
+    private static final int MAX_ENTRIES = 200;
+
+    @Autowired
+    private BuildCacheRepository buildCacheRepository;
+
+    /**
+     * Tính cache key từ artifact, framework và nội dung Dockerfile (đọc trực tiếp trong file zip local)
+     *
+     * @param projectDir thư mục gốc của project bên trong zip (tên zip bỏ đuôi .zip)
+     * @return cache key, hoặc null nếu zip không có Dockerfile (không cache)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public String computeKey(ArtifactStore.Artifact artifact, String projectDir, String frameworkType) {
+        try (ZipFile zip = new ZipFile(artifact.path().toFile())) {
+            ZipEntry dockerfile = zip.getEntry(projectDir + "/Dockerfile");
+            if (dockerfile == null) {
+                return null;
+            }
+            MessageDigest dockerfileDigest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = zip.getInputStream(dockerfile)) {
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    dockerfileDigest.update(buffer, 0, n);
+                }
+            }
+            MessageDigest keyDigest = MessageDigest.getInstance("SHA-256");
+            keyDigest.update(artifact.id().getBytes(StandardCharsets.UTF_8));
+            keyDigest.update((byte) '\n');
+            keyDigest.update(frameworkType.toUpperCase().getBytes(StandardCharsets.UTF_8));
+            keyDigest.update((byte) '\n');
+            keyDigest.update(dockerfileDigest.digest());
+            return HexFormat.of().formatHex(keyDigest.digest());
+        } catch (Exception e) {
+            System.err.println("[BuildCache] Không thể tính cache key cho artifact " + artifact.id() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Tìm image đã build cho cache key, cập nhật thời điểm dùng gần nhất
+     *
+     * @return image ref đã push, hoặc null nếu chưa có
+     */
+    @Override
+    public String findImage(String cacheKey) {
+        if (cacheKey == null) {
+            return null;
+        }
+        Optional<BuildCacheEntity> entryOptional = buildCacheRepository.findByCacheKey(cacheKey);
+        if (entryOptional.isEmpty()) {
+            System.out.println("[BuildCache] Miss: " + cacheKey);
+            return null;
+        }
+        BuildCacheEntity entry = entryOptional.get();
+        entry.setLastUsedAt(LocalDateTime.now());
+        entry.setHitCount(entry.getHitCount() + 1);
+        buildCacheRepository.save(entry);
+        System.out.println("[BuildCache] Hit: " + cacheKey + " -> " + entry.getImageRef());
+        return entry.getImageRef();
+    }
+
+    @Override
+    public void recordBuild(String cacheKey, ArtifactStore.Artifact artifact, String frameworkType, String imageRef) {
+        if (cacheKey == null) {
+            return;
+        }
+        BuildCacheEntity entry = buildCacheRepository.findByCacheKey(cacheKey).orElseGet(BuildCacheEntity::new);
+        entry.setCacheKey(cacheKey);
+        entry.setArtifactId(artifact.id());
+        entry.setFrameworkType(frameworkType.toUpperCase());
+        entry.setImageRef(imageRef);
+        entry.setLastUsedAt(LocalDateTime.now());
+        buildCacheRepository.save(entry);
+        System.out.println("[BuildCache] Lưu cache: " + cacheKey + " -> " + imageRef);
+
+        evictLeastRecentlyUsed();
+    }
+
+    private void evictLeastRecentlyUsed() {
+        long count = buildCacheRepository.count();
+        if (count <= MAX_ENTRIES) {
+            return;
+        }
+        int excess = (int) (count - MAX_ENTRIES);
+        List<BuildCacheEntity> oldest = buildCacheRepository.findAllByOrderByLastUsedAtAsc(PageRequest.of(0, excess));
+        buildCacheRepository.deleteAll(oldest);
+        System.out.println("[BuildCache] Đã xóa " + oldest.size() + " entry lâu không dùng");
+    }
+}
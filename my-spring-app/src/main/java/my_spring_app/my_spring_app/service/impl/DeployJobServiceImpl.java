@@ -0,0 +1,373 @@
+package my_spring_app.my_spring_app.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import my_spring_app.my_spring_app.dto.reponse.DeployJobResponse;
+import my_spring_app.my_spring_app.entity.DeployJobEntity;
+import my_spring_app.my_spring_app.entity.DeployJobStageEntity;
+import my_spring_app.my_spring_app.entity.ProjectBackendEntity;
+import my_spring_app.my_spring_app.repository.DeployJobRepository;
+import my_spring_app.my_spring_app.repository.DeployJobStageRepository;
+import my_spring_app.my_spring_app.repository.ProjectBackendRepository;
+import my_spring_app.my_spring_app.service.DeployJobService;
+import my_spring_app.my_spring_app.tasklog.TaskRunner;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Hàng đợi deploy job chạy nền.
+ * Request HTTP chỉ tạo job và trả về jobId; các bước upload/build/push/apply/rollout
+ * chạy trên worker pool giới hạn, trạng thái từng bước được lưu vào DB và đẩy qua SSE.
+ *
+ * Hàng đợi chỉ nằm trong bộ nhớ: job QUEUED/RUNNING còn lại trong DB khi ứng dụng khởi động là job của
+ * lần chạy trước bị ngắt giữa chừng, được đánh dấu FAILED (xem {@link #recoverInterruptedJobs()}).
+ */
+@Service
+public class DeployJobServiceImpl implements DeployJobService {
+
+    private static final int WORKER_THREADS = 4;
+    private static final int QUEUE_CAPACITY = 32;
+    // Số lệnh docker build chạy song song tối đa trên DOCKER server
+    private static final int MAX_PARALLEL_BUILDS = 2;
+    private static final long SSE_TIMEOUT_MS = 30 * 60 * 1000L;
+    private static final int MAX_MESSAGE_LENGTH = 2000;
+
+    private final DeployJobRepository deployJobRepository;
+    private final DeployJobStageRepository deployJobStageRepository;
+    private final ProjectBackendRepository projectBackendRepository;
+    private final TaskRunner taskRunner;
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore buildPermits = new Semaphore(MAX_PARALLEL_BUILDS, true);
+    private final Map<String, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+
+    public DeployJobServiceImpl(DeployJobRepository deployJobRepository,
+                                DeployJobStageRepository deployJobStageRepository,
+                                ProjectBackendRepository projectBackendRepository, TaskRunner taskRunner) {
+        this.deployJobRepository = deployJobRepository;
+        this.deployJobStageRepository = deployJobStageRepository;
+        this.projectBackendRepository = projectBackendRepository;
+        this.taskRunner = taskRunner;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                WORKER_THREADS, WORKER_THREADS, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                r -> {
+                    Thread t = new Thread(r, "deploy-worker-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @Override
+    public DeployJobEntity createJob(ProjectBackendEntity backend, List<String> stages) {
+        DeployJobEntity job = new DeployJobEntity();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setBackend(backend);
+        job.setStatus("QUEUED");
+        job = deployJobRepository.save(job);
+
+        int order = 0;
+        for (String name : stages) {
+            DeployJobStageEntity stage = new DeployJobStageEntity();
+            stage.setJob(job);
+            stage.setStageOrder(order++);
+            stage.setName(name);
+            stage.setStatus("PENDING");
+            deployJobStageRepository.save(stage);
+        }
+        System.out.println("[DeployJob] Tạo job " + job.getJobId() + " cho backend id=" + backend.getId());
+        return job;
+    }
+
+    /**
+     * Đưa pipeline vào hàng đợi. Nếu đang trong transaction thì chỉ submit sau khi commit,
+     * để worker không đọc/ghi entity trước khi bản ghi BUILDING và job được lưu.
+     */
+    @Override
+    public void submit(String jobId, Runnable pipeline) {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            throw new RuntimeException("Hàng đợi deploy đang đầy, vui lòng thử lại sau");
+        }
+        // Pipeline chạy như một task của TaskRunner (trên worker thread): giới hạn theo server và hủy được qua jobId
+        Runnable task = () -> taskRunner.run(jobId, () -> runPipeline(jobId, pipeline));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(jobId, task);
+                }
+            });
+        } else {
+            enqueue(jobId, task);
+        }
+    }
+
+    private void enqueue(String jobId, Runnable task) {
+        try {
+            executor.execute(task);
+            System.out.println("[DeployJob] Đã đưa job " + jobId + " vào hàng đợi (queue=" + executor.getQueue().size() + ")");
+        } catch (RejectedExecutionException e) {
+            System.err.println("[DeployJob] Hàng đợi đầy, từ chối job " + jobId);
+            failJob(jobId, "Hàng đợi deploy đang đầy, vui lòng thử lại sau");
+        }
+    }
+
+    private void runPipeline(String jobId, Runnable pipeline) {
+        try {
+            updateJob(jobId, job -> {
+                job.setStatus("RUNNING");
+                job.setStartedAt(LocalDateTime.now());
+            });
+            pipeline.run();
+        } catch (Exception e) {
+            // Pipeline tự gọi failJob; đây chỉ là chốt chặn cho lỗi ngoài dự kiến
+            System.err.println("[DeployJob] Job " + jobId + " lỗi: " + e.getMessage());
+            DeployJobEntity job = deployJobRepository.findByJobId(jobId).orElse(null);
+            if (job != null && !isTerminal(job.getStatus())) {
+                failJob(jobId, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void runStage(String jobId, String stage, StageAction action) throws Exception {
+        DeployJobStageEntity stageEntity = findStage(jobId, stage);
+        boolean build = STAGE_BUILD.equals(stage);
+        if (build) {
+            System.out.println("[DeployJob] Job " + jobId + " chờ slot build (còn " + buildPermits.availablePermits() + ")");
+            buildPermits.acquire();
+        }
+        long start = System.currentTimeMillis();
+        try {
+            stageEntity.setStatus("RUNNING");
+            stageEntity.setStartedAt(LocalDateTime.now());
+            deployJobStageRepository.save(stageEntity);
+            updateJob(jobId, job -> job.setCurrentStage(stage));
+            System.out.println("[DeployJob] Job " + jobId + " bắt đầu bước " + stage);
+
+            action.run();
+
+            stageEntity.setStatus("SUCCEEDED");
+            finishStage(stageEntity, start, null);
+            System.out.println("[DeployJob] Job " + jobId + " hoàn tất bước " + stage + " sau " + stageEntity.getDurationMs() + "ms");
+        } catch (Exception e) {
+            stageEntity.setStatus("FAILED");
+            finishStage(stageEntity, start, e.getMessage());
+            throw e;
+        } finally {
+            if (build) {
+                buildPermits.release();
+            }
+            publish(jobId);
+        }
+    }
+
+    @Override
+    public void skipStage(String jobId, String stage, String reason) {
+        DeployJobStageEntity stageEntity = findStage(jobId, stage);
+        stageEntity.setStatus("SKIPPED");
+        stageEntity.setMessage(truncate(reason));
+        deployJobStageRepository.save(stageEntity);
+        publish(jobId);
+    }
+
+    @Override
+    public void completeJob(String jobId) {
+        updateJob(jobId, job -> {
+            job.setStatus("SUCCEEDED");
+            job.setCurrentStage(null);
+            job.setFinishedAt(LocalDateTime.now());
+        });
+        System.out.println("[DeployJob] Job " + jobId + " thành công");
+        publish(jobId);
+    }
+
+    @Override
+    public void failJob(String jobId, String errorMessage) {
+        updateJob(jobId, job -> {
+            job.setStatus("FAILED");
+            job.setErrorMessage(truncate(errorMessage));
+            job.setFinishedAt(LocalDateTime.now());
+        });
+        System.err.println("[DeployJob] Job " + jobId + " thất bại: " + errorMessage);
+        publish(jobId);
+    }
+
+    @Override
+    public DeployJobResponse getJob(String jobId) {
+        DeployJobEntity job = deployJobRepository.findByJobId(jobId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy deploy job với id: " + jobId));
+        return toResponse(job);
+    }
+
+    @Override
+    public SseEmitter streamJob(String jobId) {
+        DeployJobResponse snapshot = getJob(jobId);
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+        try {
+            emitter.send(SseEmitter.event().name("job").data(snapshot));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        if (isTerminal(snapshot.getStatus())) {
+            emitter.complete();
+            return emitter;
+        }
+        List<SseEmitter> list = emitters.computeIfAbsent(jobId, k -> new CopyOnWriteArrayList<>());
+        list.add(emitter);
+        Runnable remove = () -> list.remove(emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+        return emitter;
+    }
+
+    /**
+     * Khi khởi động: job QUEUED/RUNNING của lần chạy trước không thể chạy tiếp (pipeline, file upload và
+     * kết nối SSH chỉ tồn tại trong bộ nhớ của process cũ) nên được đánh dấu FAILED, bước đang chạy thành FAILED,
+     * bước chưa chạy thành SKIPPED và backend đang BUILDING chuyển sang ERROR để người dùng deploy lại.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void recoverInterruptedJobs() {
+        List<DeployJobEntity> interrupted = deployJobRepository.findAllByStatusIn(List.of("QUEUED", "RUNNING"));
+        if (interrupted.isEmpty()) {
+            return;
+        }
+        String message = "Server khởi động lại khi job đang chạy, vui lòng deploy lại";
+        LocalDateTime now = LocalDateTime.now();
+        for (DeployJobEntity job : interrupted) {
+            for (DeployJobStageEntity stage : deployJobStageRepository.findAllByJob_IdOrderByStageOrderAsc(job.getId())) {
+                if ("RUNNING".equals(stage.getStatus())) {
+                    stage.setStatus("FAILED");
+                    stage.setMessage(message);
+                    stage.setFinishedAt(now);
+                    deployJobStageRepository.save(stage);
+                } else if ("PENDING".equals(stage.getStatus())) {
+                    stage.setStatus("SKIPPED");
+                    deployJobStageRepository.save(stage);
+                }
+            }
+            job.setStatus("FAILED");
+            job.setErrorMessage(message);
+            job.setFinishedAt(now);
+            deployJobRepository.save(job);
+
+            ProjectBackendEntity backend = job.getBackend();
+            if (backend != null && "BUILDING".equals(backend.getStatus())) {
+                backend.setStatus("ERROR");
+                projectBackendRepository.save(backend);
+            }
+        }
+        System.out.println("[DeployJob] Đã đánh dấu FAILED " + interrupted.size() + " job bị ngắt do server khởi động lại");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void publish(String jobId) {
+        List<SseEmitter> list = emitters.get(jobId);
+        if (list == null || list.isEmpty()) {
+            return;
+        }
+        DeployJobResponse snapshot;
+        try {
+            snapshot = getJob(jobId);
+        } catch (Exception e) {
+            System.err.println("[DeployJob] Không thể đọc job " + jobId + " để gửi SSE: " + e.getMessage());
+            return;
+        }
+        boolean terminal = isTerminal(snapshot.getStatus());
+        for (SseEmitter emitter : list) {
+            try {
+                emitter.send(SseEmitter.event().name("job").data(snapshot));
+                if (terminal) {
+                    emitter.complete();
+                }
+            } catch (Exception e) {
+                list.remove(emitter);
+            }
+        }
+        if (terminal) {
+            emitters.remove(jobId);
+        }
+    }
+
+    private void updateJob(String jobId, Consumer<DeployJobEntity> change) {
+        DeployJobEntity job = deployJobRepository.findByJobId(jobId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy deploy job với id: " + jobId));
+        change.accept(job);
+        deployJobRepository.save(job);
+    }
+
+    private DeployJobStageEntity findStage(String jobId, String stage) {
+        DeployJobEntity job = deployJobRepository.findByJobId(jobId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy deploy job với id: " + jobId));
+        return deployJobStageRepository.findAllByJob_IdOrderByStageOrderAsc(job.getId()).stream()
+                .filter(s -> stage.equals(s.getName()))
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("Job " + jobId + " không có bước " + stage));
+    }
+
+    private void finishStage(DeployJobStageEntity stageEntity, long start, String message) {
+        stageEntity.setFinishedAt(LocalDateTime.now());
+        stageEntity.setDurationMs(System.currentTimeMillis() - start);
+        stageEntity.setMessage(truncate(message));
+        deployJobStageRepository.save(stageEntity);
+    }
+
+    private DeployJobResponse toResponse(DeployJobEntity job) {
+        List<DeployJobResponse.StageInfo> stages = new ArrayList<>();
+        for (DeployJobStageEntity s : deployJobStageRepository.findAllByJob_IdOrderByStageOrderAsc(job.getId())) {
+            stages.add(new DeployJobResponse.StageInfo(
+                    s.getName(), s.getStatus(), s.getMessage(),
+                    s.getStartedAt(), s.getFinishedAt(), s.getDurationMs()));
+        }
+        DeployJobResponse response = new DeployJobResponse();
+        response.setJobId(job.getJobId());
+        response.setBackendId(job.getBackend() != null ? job.getBackend().getId() : null);
+        response.setStatus(job.getStatus());
+        response.setCurrentStage(job.getCurrentStage());
+        response.setErrorMessage(job.getErrorMessage());
+        response.setCreatedAt(job.getCreatedAt());
+        response.setStartedAt(job.getStartedAt());
+        response.setFinishedAt(job.getFinishedAt());
+        response.setStages(stages);
+        return response;
+    }
+
+    private static boolean isTerminal(String status) {
+        return "SUCCEEDED".equals(status) || "FAILED".equals(status);
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_MESSAGE_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_MESSAGE_LENGTH);
+    }
+}
@@ -9,6 +9,10 @@ import my_spring_app.my_spring_app.entity.ServerEntity;
 import my_spring_app.my_spring_app.repository.ServerRepository;
 import my_spring_app.my_spring_app.service.DockerService;
 import my_spring_app.my_spring_app.service.ServerService;
+import my_spring_app.my_spring_app.tasklog.TaskLog;
+import my_spring_app.my_spring_app.tasklog.TaskLogHub;
+import my_spring_app.my_spring_app.tasklog.TaskRegistry;
+import my_spring_app.my_spring_app.tasklog.TaskRunner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,8 +20,6 @@ import org.springframework.stereotype.Service;
 
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  * Service implementation cho Docker
@@ -34,35 +36,49 @@ public class DockerServiceImpl implements DockerService {
     @Autowired
     private ServerService serverService;
 
+    // Log của task được giữ ở hub để client đọc theo offset hoặc nhận qua SSE
+    @Autowired
+    private TaskLogHub taskLogHub;
+
+    // Task cài/gỡ Docker giữ độc quyền DOCKER server (không chạy cùng lúc với docker build của deploy job)
+    @Autowired
+    private TaskRunner taskRunner;
+
     // Cache để lưu trữ trạng thái các task Docker
-    private final ConcurrentMap<String, DockerTaskStatus> taskCache = new ConcurrentHashMap<>();
+    private final TaskRegistry<DockerTaskStatus> taskCache = new TaskRegistry<>(status -> status.logs);
 
     /**
      * Class để lưu trữ trạng thái task Docker
      */
     private static class DockerTaskStatus {
         private final String taskId;
-        private final StringBuilder logs = new StringBuilder();
+        private final TaskLog logs;
         private final long startTime = System.currentTimeMillis();
         private volatile Long endTime;
         private volatile String status = "running"; // running, completed, failed
         private volatile int currentStep = 0; // Bước hiện tại (1-5 cho install, 1-4 cho uninstall)
         private volatile String error;
 
-        DockerTaskStatus(String taskId) {
+        DockerTaskStatus(String taskId, TaskLog logs) {
             this.taskId = taskId;
+            this.logs = logs;
         }
 
-        synchronized void appendLog(String text) {
+        void appendLog(String text) {
             logs.append(text);
         }
 
-        synchronized String snapshotLogs() {
-            return logs.toString();
+        String snapshotLogs(long since) {
+            return logs.readFrom(since);
+        }
+
+        long logLength() {
+            return logs.length();
         }
 
         void setCurrentStep(int step) {
             this.currentStep = step;
+            logs.setProgress(getProgress());
         }
 
         void markCompleted(String message) {
@@ -71,6 +87,8 @@ public class DockerServiceImpl implements DockerService {
             if (message != null && !message.isBlank()) {
                 appendLog("✅ " + message + (message.endsWith("\n") ? "" : "\n"));
             }
+            logs.setProgress(100);
+            logs.finish(status, null);
         }
 
         void markFailed(String message, int failedStep) {
@@ -81,6 +99,20 @@ public class DockerServiceImpl implements DockerService {
             if (message != null && !message.isBlank()) {
                 appendLog("❌ Buoc " + failedStep + " that bai: " + message + (message.endsWith("\n") ? "" : "\n"));
             }
+            logs.finish(status, message);
+        }
+
+        /**
+         * Tính progress dựa trên currentStep (1-5 cho install, 1-4 cho uninstall)
+         */
+        int getProgress() {
+            int maxSteps = 5; // Mặc định cho install
+            if (currentStep > 4) {
+                maxSteps = 5; // Install
+            } else if (currentStep > 0 && currentStep <= 4) {
+                maxSteps = 4; // Uninstall
+            }
+            return "completed".equals(status) ? 100 : (currentStep * 100 / maxSteps);
         }
 
         String getStatus() { return status; }
@@ -359,13 +391,14 @@ public class DockerServiceImpl implements DockerService {
         response.setMessage("Đã bắt đầu cài đặt Docker");
 
         // Tạo task status để tracking
-        DockerTaskStatus taskStatus = new DockerTaskStatus(taskId);
+        DockerTaskStatus taskStatus = new DockerTaskStatus(taskId, taskLogHub.open(taskId));
         taskStatus.appendLog("Bat dau cai dat Docker tren server " + dockerServer.getIp() + "\n");
         taskCache.put(taskId, taskStatus);
 
-        // Chạy cài đặt Docker trong background thread
-        Thread installThread = new Thread(() -> {
+        // Chạy cài đặt Docker nền trên TaskRunner (giới hạn task theo server, hủy được)
+        taskRunner.submit(taskId, () -> {
             try {
+                claimDockerServer(taskId, dockerServer, taskStatus);
                 logger.info("Bắt đầu cài đặt Docker trên server {} (taskId: {})", dockerServer.getIp(), taskId);
                 executeDockerInstall(dockerServer, request.getSudoPassword(), taskId, taskStatus);
                 logger.info("Hoàn thành cài đặt Docker trên server {} (taskId: {})", dockerServer.getIp(), taskId);
@@ -376,8 +409,6 @@ public class DockerServiceImpl implements DockerService {
                 }
             }
         });
-        installThread.setDaemon(true); // Đánh dấu là daemon thread
-        installThread.start();
 
         return response;
     }
@@ -409,13 +440,14 @@ public class DockerServiceImpl implements DockerService {
         response.setMessage("Đã bắt đầu gỡ Docker");
 
         // Tạo task status để tracking
-        DockerTaskStatus taskStatus = new DockerTaskStatus(taskId);
+        DockerTaskStatus taskStatus = new DockerTaskStatus(taskId, taskLogHub.open(taskId));
         taskStatus.appendLog("Bat dau go Docker tren server " + dockerServer.getIp() + "\n");
         taskCache.put(taskId, taskStatus);
 
-        // Chạy gỡ Docker trong background thread
-        Thread uninstallThread = new Thread(() -> {
+        // Chạy gỡ Docker nền trên TaskRunner
+        taskRunner.submit(taskId, () -> {
             try {
+                claimDockerServer(taskId, dockerServer, taskStatus);
                 logger.info("Bắt đầu gỡ Docker trên server {} (taskId: {})", dockerServer.getIp(), taskId);
                 executeDockerUninstall(dockerServer, request.getSudoPassword(), taskId, taskStatus);
                 logger.info("Hoàn thành gỡ Docker trên server {} (taskId: {})", dockerServer.getIp(), taskId);
@@ -426,8 +458,6 @@ public class DockerServiceImpl implements DockerService {
                 }
             }
         });
-        uninstallThread.setDaemon(true); // Đánh dấu là daemon thread
-        uninstallThread.start();
 
         return response;
     }
@@ -459,13 +489,14 @@ public class DockerServiceImpl implements DockerService {
         response.setMessage("Đã bắt đầu cài đặt lại Docker");
 
         // Tạo task status để tracking
-        DockerTaskStatus taskStatus = new DockerTaskStatus(taskId);
+        DockerTaskStatus taskStatus = new DockerTaskStatus(taskId, taskLogHub.open(taskId));
         taskStatus.appendLog("Bat dau cai dat lai Docker tren server " + dockerServer.getIp() + "\n");
         taskCache.put(taskId, taskStatus);
 
-        // Chạy cài đặt lại Docker trong background thread
-        Thread reinstallThread = new Thread(() -> {
+        // Chạy cài đặt lại Docker nền trên TaskRunner
+        taskRunner.submit(taskId, () -> {
             try {
+                claimDockerServer(taskId, dockerServer, taskStatus);
                 logger.info("Bắt đầu cài đặt lại Docker trên server {} (taskId: {})", dockerServer.getIp(), taskId);
                 executeDockerReinstall(dockerServer, request.getSudoPassword(), taskId, taskStatus);
                 logger.info("Hoàn thành cài đặt lại Docker trên server {} (taskId: {})", dockerServer.getIp(), taskId);
@@ -476,12 +507,20 @@ public class DockerServiceImpl implements DockerService {
                 }
             }
         });
-        reinstallThread.setDaemon(true); // Đánh dấu là daemon thread
-        reinstallThread.start();
 
         return response;
     }
 
+    /**
+     * Giành độc quyền DOCKER server cho task, chờ nếu server đang có build hoặc task cài đặt khác
+     */
+    private void claimDockerServer(String taskId, ServerEntity dockerServer, DockerTaskStatus taskStatus) {
+        if (!taskRunner.tryClaimServer(taskId, dockerServer.getId())) {
+            taskStatus.appendLog("Server " + dockerServer.getIp() + " dang chay task khac, cho toi luot...\n");
+            taskRunner.claimServer(taskId, dockerServer.getId());
+        }
+    }
+
     /**
      * Thực hiện cài đặt Docker
      * Các bước tương ứng với frontend:
@@ -709,7 +748,7 @@ public class DockerServiceImpl implements DockerService {
     /**
      * Lấy trạng thái task Docker
      */
-    public AnsibleTaskStatusResponse getDockerTaskStatus(String taskId) {
+    public AnsibleTaskStatusResponse getDockerTaskStatus(String taskId, long since) {
         AnsibleTaskStatusResponse response = new AnsibleTaskStatusResponse();
         response.setTaskId(taskId);
         
@@ -725,17 +764,13 @@ public class DockerServiceImpl implements DockerService {
         
         response.setSuccess(true);
         response.setStatus(taskStatus.getStatus());
-        // Tính progress dựa trên currentStep (1-5 cho install, 1-4 cho uninstall)
-        int maxSteps = 5; // Mặc định cho install
-        if (taskStatus.getCurrentStep() > 4) {
-            maxSteps = 5; // Install
-        } else if (taskStatus.getCurrentStep() > 0 && taskStatus.getCurrentStep() <= 4) {
-            maxSteps = 4; // Uninstall
-        }
-        int progress = taskStatus.getStatus().equals("completed") ? 100 : 
-                      (taskStatus.getCurrentStep() * 100 / maxSteps);
-        response.setProgress(progress);
-        response.setLogs(taskStatus.snapshotLogs());
+        response.setProgress(taskStatus.getProgress());
+        // Chỉ trả phần log từ offset since, client gửi lại nextOffset ở lần poll sau
+        long offset = Math.max(0, Math.min(since, taskStatus.logLength()));
+        String logs = taskStatus.snapshotLogs(offset);
+        response.setLogs(logs);
+        response.setLogOffset(offset);
+        response.setNextOffset(offset + logs.length());
         response.setStartTime(taskStatus.getStartTime());
         response.setEndTime(taskStatus.getEndTime());
         response.setError(taskStatus.getError());
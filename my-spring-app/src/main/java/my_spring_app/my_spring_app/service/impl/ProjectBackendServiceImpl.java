@@ -1,19 +1,26 @@
 package my_spring_app.my_spring_app.service.impl;
 
 import com.jcraft.jsch.*;
+import my_spring_app.my_spring_app.artifact.ArtifactStore;
 import my_spring_app.my_spring_app.dto.reponse.BackendReplicaInfoResponse;
 import my_spring_app.my_spring_app.dto.reponse.DeployBackendResponse;
 import my_spring_app.my_spring_app.dto.request.DeployBackendRequest;
 import my_spring_app.my_spring_app.entity.BackendRequestEntity;
+import my_spring_app.my_spring_app.entity.DeployJobEntity;
 import my_spring_app.my_spring_app.entity.ProjectBackendEntity;
 import my_spring_app.my_spring_app.entity.ProjectEntity;
 import my_spring_app.my_spring_app.entity.ServerEntity;
 import my_spring_app.my_spring_app.entity.UserEntity;
+import my_spring_app.my_spring_app.k8s.ManifestApplier;
+import my_spring_app.my_spring_app.k8s.ReadinessTracker;
 import my_spring_app.my_spring_app.repository.BackendRequestRepository;
 import my_spring_app.my_spring_app.repository.ProjectBackendRepository;
 import my_spring_app.my_spring_app.repository.ProjectRepository;
 import my_spring_app.my_spring_app.repository.ServerRepository;
 import my_spring_app.my_spring_app.repository.UserRepository;
+import my_spring_app.my_spring_app.service.BuildCacheService;
+import my_spring_app.my_spring_app.tasklog.TaskRunner;
+import my_spring_app.my_spring_app.service.DeployJobService;
 import my_spring_app.my_spring_app.service.ProjectBackendService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -22,23 +29,20 @@ import org.springframework.transaction.annotation.Transactional;
 
 import io.kubernetes.client.openapi.ApiClient;
 import io.kubernetes.client.openapi.ApiException;
-import io.kubernetes.client.openapi.Configuration;
 import io.kubernetes.client.openapi.apis.AppsV1Api;
 import io.kubernetes.client.openapi.apis.CoreV1Api;
 import io.kubernetes.client.openapi.models.V1Namespace;
 import io.kubernetes.client.openapi.models.V1ObjectMeta;
 import io.kubernetes.client.openapi.models.V1Scale;
 import io.kubernetes.client.openapi.models.V1ScaleSpec;
-import io.kubernetes.client.util.Config;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
-import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service implementation cho ProjectBackend
@@ -72,6 +76,25 @@ public class ProjectBackendServiceImpl extends BaseKubernetesService implements
     @Autowired
     private BackendRequestRepository backendRequestRepository;
 
+    // Hàng đợi deploy job chạy nền
+    @Autowired
+    private DeployJobService deployJobService;
+
+    // Kho artifact theo hash cho file zip upload
+    @Autowired
+    private ArtifactStore artifactStore;
+
+    // Cache image đã build theo nội dung source
+    @Autowired
+    private BuildCacheService buildCacheService;
+
+    // Deploy job giữ permit dùng chung của DOCKER/MASTER server: không build/apply trong lúc server đang được cài đặt lại
+    @Autowired
+    private TaskRunner taskRunner;
+
+    // Thời gian tối đa chờ Deployment rollout xong (giây)
+    private static final int ROLLOUT_TIMEOUT_SECONDS = 300;
+
     /**
      * Tạo short UUID từ UUID đầy đủ để sử dụng trong Kubernetes
      * UUID đầy đủ có 36 ký tự (với dấu gạch ngang), short UUID sẽ có độ dài cố định 12 ký tự
@@ -107,60 +130,16 @@ public class ProjectBackendServiceImpl extends BaseKubernetesService implements
      * Kiểm tra và tạo namespace trên Kubernetes cluster nếu chưa tồn tại
      * Sử dụng Kubernetes Java Client API
      * 
-     * @param session SSH session đến MASTER server để lấy kubeconfig
      * @param namespace Tên namespace cần kiểm tra/tạo
      * @throws Exception Nếu có lỗi khi kiểm tra hoặc tạo namespace
      */
-    private void ensureNamespaceExists(Session session, String namespace) throws Exception {
+    private void ensureNamespaceExists(String namespace) throws Exception {
         System.out.println("[ensureNamespaceExists] Kiểm tra namespace: " + namespace);
         
-        File tempKubeconfig = null;
         try {
-            // Đọc kubeconfig từ master server (thường ở ~/.kube/config)
-            String kubeconfigPath = "~/.kube/config";
-            System.out.println("[ensureNamespaceExists] Đang đọc kubeconfig từ: " + kubeconfigPath);
-            String kubeconfigContent = executeCommand(session, "cat " + kubeconfigPath, false);
-            if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                String[] alternativePaths = {
-                        "/etc/kubernetes/admin.conf",
-                        "/root/.kube/config",
-                        "$HOME/.kube/config"
-                };
-                for (String altPath : alternativePaths) {
-                    try {
-                        kubeconfigContent = executeCommand(session, "cat " + altPath, true);
-                        if (kubeconfigContent != null && !kubeconfigContent.trim().isEmpty()) {
-                            break;
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-                if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                    throw new RuntimeException("Không thể đọc kubeconfig từ master server");
-                }
-            }
-
-            // Lấy IP MASTER và thay thế server URL trong kubeconfig trước khi sử dụng
-            Optional<ServerEntity> masterOpt = serverRepository.findByRole("MASTER");
-            if (masterOpt.isPresent()) {
-                String masterIp = masterOpt.get().getIp();
-                kubeconfigContent = replaceKubeconfigServer(kubeconfigContent, masterIp);
-            } else {
-                System.err.println("[ensureNamespaceExists] WARNING: Không tìm thấy server MASTER để thay server URL trong kubeconfig");
-            }
-            
-            // Tạo file kubeconfig tạm thời trên local
-            tempKubeconfig = File.createTempFile("kubeconfig-", ".yaml");
-            tempKubeconfig.deleteOnExit();
-            try (FileWriter writer = new FileWriter(tempKubeconfig)) {
-                writer.write(kubeconfigContent);
-            }
-            System.out.println("[ensureNamespaceExists] Đã tạo file kubeconfig tạm thời: " + tempKubeconfig.getAbsolutePath());
-            
-            // Khởi tạo Kubernetes API client từ kubeconfig
-            ApiClient client = Config.fromConfig(tempKubeconfig.getAbsolutePath());
-            Configuration.setDefaultApiClient(client);
-            CoreV1Api api = new CoreV1Api();
+            // Client dùng chung từ registry, không cần SSH tới MASTER
+            ApiClient client = kubernetesClientRegistry.getClient();
+            CoreV1Api api = new CoreV1Api(client);
             
             // Kiểm tra namespace đã tồn tại chưa
             try {
@@ -188,73 +167,6 @@ public class ProjectBackendServiceImpl extends BaseKubernetesService implements
             System.err.println("[ensureNamespaceExists] Lỗi: " + e.getMessage());
             e.printStackTrace();
             throw new RuntimeException("Không thể kiểm tra/tạo namespace: " + e.getMessage(), e);
-        } finally {
-            // Đảm bảo xóa file tạm thời sau khi sử dụng
-            if (tempKubeconfig != null && tempKubeconfig.exists()) {
-                try {
-                    tempKubeconfig.delete();
-                } catch (Exception e) {
-                    System.err.println("[ensureNamespaceExists] Không thể xóa file kubeconfig tạm thời: " + e.getMessage());
-                }
-            }
-        }
-    }
-
-    /**
-     * Override method createKubernetesClient để thay thế server URL trong kubeconfig
-     * trước khi feed cho Java Kubernetes client
-     */
-    @Override
-    protected ApiClient createKubernetesClient(Session session) throws Exception {
-        String kubeconfigPath = "~/.kube/config";
-        System.out.println("[createKubernetesClient] Đang đọc kubeconfig từ: " + kubeconfigPath);
-        File tempKubeconfig = null;
-        try {
-            String kubeconfigContent = executeCommand(session, "cat " + kubeconfigPath, false);
-            if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                String[] alternativePaths = {
-                        "/etc/kubernetes/admin.conf",
-                        "/root/.kube/config",
-                        "$HOME/.kube/config"
-                };
-                for (String altPath : alternativePaths) {
-                    try {
-                        kubeconfigContent = executeCommand(session, "cat " + altPath, true);
-                        if (kubeconfigContent != null && !kubeconfigContent.trim().isEmpty()) {
-                            break;
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-                if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                    throw new RuntimeException("Không thể đọc kubeconfig từ master server.");
-                }
-            }
-
-            // Lấy IP MASTER và thay thế server URL trong kubeconfig trước khi sử dụng
-            Optional<ServerEntity> masterOpt = serverRepository.findByRole("MASTER");
-            if (masterOpt.isPresent()) {
-                String masterIp = masterOpt.get().getIp();
-                kubeconfigContent = replaceKubeconfigServer(kubeconfigContent, masterIp);
-            } else {
-                System.err.println("[createKubernetesClient] WARNING: Không tìm thấy server MASTER để thay server URL trong kubeconfig");
-            }
-
-            tempKubeconfig = File.createTempFile("kubeconfig-", ".yaml");
-            try (FileWriter writer = new FileWriter(tempKubeconfig)) {
-                writer.write(kubeconfigContent);
-            }
-            System.out.println("[createKubernetesClient] Đã tạo kubeconfig tạm tại: " + tempKubeconfig.getAbsolutePath());
-
-            ApiClient client = Config.fromConfig(tempKubeconfig.getAbsolutePath());
-            Configuration.setDefaultApiClient(client);
-            return client;
-        } finally {
-            if (tempKubeconfig != null && tempKubeconfig.exists()) {
-                if (!tempKubeconfig.delete()) {
-                    tempKubeconfig.deleteOnExit();
-                }
-            }
         }
     }
 
@@ -498,10 +410,12 @@ public class ProjectBackendServiceImpl extends BaseKubernetesService implements
      * Triển khai backend project lên Kubernetes cluster
      * Hỗ trợ 2 phương thức deploy: DOCKER (từ image có sẵn) và FILE (từ file zip)
      * Backend sẽ sử dụng thông tin database từ request để kết nối, không tự động tạo database
+     * Request chỉ validate, lưu backend ở trạng thái BUILDING và tạo deploy job;
+     * các bước upload/build/push/apply/rollout chạy nền qua DeployJobService
      *
      * @param request Thông tin request để deploy backend project
-     * @return Response chứa thông tin URL, status và domain name của project đã deploy
-     * @throws RuntimeException Nếu có lỗi trong quá trình deploy
+     * @return Response chứa domain, trạng thái BUILDING và jobId để theo dõi tiến trình
+     * @throws RuntimeException Nếu dữ liệu không hợp lệ hoặc không thể đưa job vào hàng đợi
      */
     @Override
     public DeployBackendResponse deploy(DeployBackendRequest request) {
@@ -541,6 +455,7 @@ public class ProjectBackendServiceImpl extends BaseKubernetesService implements
             !"FILE".equalsIgnoreCase(request.getDeploymentType())) {
             throw new RuntimeException("Deployment type không hợp lệ. Chỉ hỗ trợ DOCKER hoặc FILE");
         }
+        boolean fileDeployment = "FILE".equalsIgnoreCase(request.getDeploymentType());
 
         // Validate framework (chỉ hỗ trợ SPRINGBOOT, NODEJS)
         String framework = request.getFrameworkType().toUpperCase();
@@ -548,6 +463,17 @@ public class ProjectBackendServiceImpl extends BaseKubernetesService implements
             throw new RuntimeException("Framework không hợp lệ. Chỉ hỗ trợ SPRINGBOOT, NODEJS");
         }
 
+        // Validate nguồn deploy theo phương thức
+        if (fileDeployment) {
+            boolean hasFile = request.getFile() != null && !request.getFile().isEmpty();
+            boolean hasArtifact = request.getArtifactId() != null && !request.getArtifactId().isBlank();
+            if (!hasFile && !hasArtifact) {
+                throw new RuntimeException("File upload hoặc artifactId không được để trống khi deployment type là FILE");
+            }
+        } else if (request.getDockerImage() == null || request.getDockerImage().trim().isEmpty()) {
+            throw new RuntimeException("Docker image không được để trống khi deployment type là DOCKER");
+        }
+
         // Chuẩn hóa tên project: chuyển sang lowercase, thay khoảng trắng bằng dấu gạch ngang, loại bỏ ký tự đặc biệt
         String projectName = request.getProjectName().toLowerCase()
                 .replaceAll("\\s+", "-")
@@ -574,12 +500,29 @@ public class ProjectBackendServiceImpl extends BaseKubernetesService implements
         }
         System.out.println("[deployBackend] Sử dụng domain name từ request: " + domainName);
 
+        // ========== BƯỚC 2: LẤY THÔNG TIN SERVER TỪ DATABASE ==========
+
+        // Lấy thông tin các server từ database: MASTER (Kubernetes cluster), DOCKER (build/push images)
+        Optional<ServerEntity> masterServerOptional = serverRepository.findByRole("MASTER");
+        Optional<ServerEntity> dockerServerOptional = serverRepository.findByRole("DOCKER");
+
+        // Validate các server bắt buộc
+        if (masterServerOptional.isEmpty()) {
+            throw new RuntimeException("Không tìm thấy server MASTER. Vui lòng cấu hình server MASTER trong hệ thống.");
+        }
+        if (dockerServerOptional.isEmpty()) {
+            throw new RuntimeException("Không tìm thấy server DOCKER. Vui lòng cấu hình server DOCKER trong hệ thống.");
+        }
+
+        ServerEntity master_server = masterServerOptional.get();
+        ServerEntity docker_server = dockerServerOptional.get();
+
         // Tạo ProjectBackendEntity và thiết lập các thuộc tính cơ bản
         ProjectBackendEntity projectEntity = new ProjectBackendEntity();
         projectEntity.setProjectName(request.getProjectName());
         projectEntity.setFrameworkType(framework);
         projectEntity.setDeploymentType(request.getDeploymentType().toUpperCase());
-        projectEntity.setStatus("BUILDING"); // Trạng thái ban đầu là BUILDING
+        projectEntity.setStatus("BUILDING"); // Trạng thái ban đầu là BUILDING, worker sẽ cập nhật RUNNING/ERROR
         projectEntity.setReplicas(1); // Mặc định deploy với 1 replica
         projectEntity.setMaxReplicas(maxReplicas);
         projectEntity.setProject(project);
@@ -587,6 +530,9 @@ public class ProjectBackendServiceImpl extends BaseKubernetesService implements
         projectEntity.setUuid_k8s(uuid_k8s);
         // Lưu domain name từ request vào entity
         projectEntity.setDomainNameSystem(domainName);
+        if (!fileDeployment) {
+            projectEntity.setDockerImage(request.getDockerImage());
+        }
 
         // Lưu thông tin database vào entity (backend sẽ sử dụng thông tin này để kết nối database)
         projectEntity.setDatabaseIp(request.getDatabaseIp());
@@ -595,338 +541,259 @@ public class ProjectBackendServiceImpl extends BaseKubernetesService implements
         projectEntity.setDatabaseUsername(request.getDatabaseUsername());
         projectEntity.setDatabasePassword(request.getDatabasePassword()); // Có thể null
 
-        // ========== BƯỚC 2: LẤY THÔNG TIN SERVER TỪ DATABASE ==========
-
-        // Lấy thông tin các server từ database: MASTER (Kubernetes cluster), DOCKER (build/push images)
-        Optional<ServerEntity> masterServerOptional = serverRepository.findByRole("MASTER");
-        Optional<ServerEntity> dockerServerOptional = serverRepository.findByRole("DOCKER");
-
-        // Validate các server bắt buộc
-        if (masterServerOptional.isEmpty()) {
-            throw new RuntimeException("Không tìm thấy server MASTER. Vui lòng cấu hình server MASTER trong hệ thống.");
-        }
-        if (dockerServerOptional.isEmpty()) {
-            throw new RuntimeException("Không tìm thấy server DOCKER. Vui lòng cấu hình server DOCKER trong hệ thống.");
-        }
-
-        ServerEntity master_server = masterServerOptional.get();
-        ServerEntity docker_server = dockerServerOptional.get();
-
-        // Khởi tạo các biến để quản lý SSH/SFTP connections
-        Session session = null;           // SSH session đến DOCKER server (dùng cho FILE deployment)
-        ChannelSftp sftp = null;          // SFTP channel đến DOCKER server
-        Session clusterSession = null;    // SSH session đến MASTER server (Kubernetes cluster)
-        ChannelSftp sftpYaml = null;      // SFTP channel đến MASTER server để upload YAML
+        // ========== BƯỚC 3: LƯU ARTIFACT VÀ ĐƯA JOB VÀO HÀNG ĐỢI ==========
 
+        // MultipartFile không còn dùng được sau khi request kết thúc -> ghi vào kho artifact (theo hash) cho worker
+        ArtifactStore.Artifact artifact = null;
+        String safeName = null;
         try {
-            // ========== BƯỚC 3: XỬ LÝ DEPLOYMENT THEO PHƯƠNG THỨC ==========
-
-            if ("DOCKER".equalsIgnoreCase(request.getDeploymentType())) {
-                // ========== PHƯƠNG THỨC 1: DEPLOY TỪ DOCKER IMAGE CÓ SẴN ==========
-
-                // Validate Docker image
-                if (request.getDockerImage() == null || request.getDockerImage().trim().isEmpty()) {
-                    throw new RuntimeException("Docker image không được để trống khi deployment type là DOCKER");
-                }
-
-                projectEntity.setDockerImage(request.getDockerImage());
-
-                // Kết nối SSH đến MASTER server (Kubernetes cluster)
-                System.out.println("[deployBackend] Đang kết nối đến MASTER server: " + master_server.getIp() + ":" + master_server.getPort());
-                JSch jsch = new JSch();
-                clusterSession = jsch.getSession(master_server.getUsername(), master_server.getIp(), master_server.getPort());
-                clusterSession.setPassword(master_server.getPassword());
-                Properties config = new Properties();
-                config.put("StrictHostKeyChecking", "no"); // Không kiểm tra host key
-                clusterSession.setConfig(config);
-                clusterSession.setTimeout(7000);
-                clusterSession.connect();
-                System.out.println("[deployBackend] Kết nối SSH đến MASTER server thành công");
-
-                // Tạo nội dung YAML file (Deployment + Service + Ingress)
-                // Sử dụng uuid_k8s để làm tên resource trong K8s, tránh trùng khi projectName bị trùng
-                String fileName = uuid_k8s + ".yaml";
-                String yamlContent;
-                if ("SPRINGBOOT".equals(framework)) {
-                    yamlContent = generateBackendSpringBootYaml(
-                        uuid_k8s,
-                        request.getDockerImage(),
-                        domainName,
-                        namespace,
-                        request.getDatabaseName(),
-                        request.getDatabaseIp(),
-                        request.getDatabasePort(),
-                        request.getDatabaseUsername(),
-                        request.getDatabasePassword(),
-                        maxReplicas
-                    );
-                } else {
-                    // NODEJS
-                    yamlContent = generateBackendNodeJsYaml(
-                        uuid_k8s,
-                        request.getDockerImage(),
-                        domainName,
-                        namespace,
-                        request.getDatabaseName(),
-                        request.getDatabaseIp(),
-                        request.getDatabasePort(),
-                        request.getDatabaseUsername(),
-                        request.getDatabasePassword(),
-                        maxReplicas
-                    );
-                }
-
-                // Mở SFTP channel để upload YAML file
-                Channel sftpYamlCh = clusterSession.openChannel("sftp");
-                sftpYamlCh.connect();
-                sftpYaml = (ChannelSftp) sftpYamlCh;
-
-                // Tạo thư mục đích với UUID để tránh trùng tên: /home/<master_username>/uploads/<username>/<uuid_k8s của project>/backend/<uuid_k8s>
-                String yamlRemoteDir = "/home/" + master_server.getUsername() + "/uploads/" + user.getUsername() + "/" + project.getUuid_k8s() + "/backend/" + uuid_k8s;
-                System.out.println("[deployBackend] Tạo/cd thư mục YAML: " + yamlRemoteDir);
-                String[] yamlDirParts = yamlRemoteDir.split("/");
-                String yamlCur = "";
-                for (String p : yamlDirParts) {
-                    if (p == null || p.isBlank()) continue;
-                    yamlCur += "/" + p;
-                    try {
-                        sftpYaml.cd(yamlCur); // Thử chuyển vào thư mục
-                    } catch (Exception e) {
-                        sftpYaml.mkdir(yamlCur); // Nếu không tồn tại thì tạo mới
-                        sftpYaml.cd(yamlCur);
+            if (fileDeployment) {
+                String originalName;
+                if (request.getFile() != null && !request.getFile().isEmpty()) {
+                    originalName = request.getFile().getOriginalFilename();
+                    try (InputStream in = request.getFile().getInputStream()) {
+                        artifact = artifactStore.store(in, request.getUsername());
                     }
+                } else {
+                    originalName = request.getArtifactFileName();
+                    artifact = artifactStore.get(request.getArtifactId(), request.getUsername());
                 }
+                safeName = originalName != null ? originalName.replaceAll("[^a-zA-Z0-9._-]", "_") : (projectName + ".zip");
+                System.out.println("[deployBackend] Sử dụng artifact " + artifact.id() + " (" + artifact.size() + " bytes)");
+            }
 
-                // Upload YAML file lên server
-                InputStream yamlStream = new ByteArrayInputStream(yamlContent.getBytes(StandardCharsets.UTF_8));
-                String yamlRemotePath = yamlRemoteDir + "/" + fileName;
-                sftpYaml.put(yamlStream, yamlRemotePath);
-                System.out.println("[deployBackend] Đã upload YAML file: " + yamlRemotePath);
-
-                // Lưu yamlPath (đường dẫn YAML trên MASTER server)
-                // Với deployment type là DOCKER: không có sourcePath (null)
-                projectEntity.setSourcePath(null);
-                projectEntity.setYamlPath(yamlRemotePath);
+            projectEntity = projectBackendRepository.save(projectEntity);
 
-                // Kiểm tra và tạo namespace nếu chưa tồn tại
-                ensureNamespaceExists(clusterSession, namespace);
+            DeployJobEntity job = deployJobService.createJob(projectEntity, List.of(
+                    DeployJobService.STAGE_UPLOAD,
+                    DeployJobService.STAGE_BUILD,
+                    DeployJobService.STAGE_PUSH,
+                    DeployJobService.STAGE_APPLY,
+                    DeployJobService.STAGE_ROLLOUT_WAIT));
+            String jobId = job.getJobId();
 
-                // Apply YAML file vào Kubernetes cluster bằng kubectl
-                System.out.println("[deployBackend] Đang apply YAML: kubectl apply -f " + yamlRemotePath);
-                executeCommand(clusterSession, "kubectl apply -f '" + yamlRemotePath + "'");
+            ProjectBackendEntity backend = projectEntity;
+            ArtifactStore.Artifact source = artifact;
+            String zipName = safeName;
+            deployJobService.submit(jobId, () -> runDeployPipeline(jobId, backend, user.getUsername(), project,
+                    master_server, docker_server, source, zipName));
 
-            } else if ("FILE".equalsIgnoreCase(request.getDeploymentType())) {
-                // ========== PHƯƠNG THỨC 2: DEPLOY TỪ FILE ZIP ==========
+            System.out.println("[deployBackend] Đã tạo deploy job " + jobId + " cho backend id=" + projectEntity.getId());
 
-                // Validate file upload
-                if (request.getFile() == null || request.getFile().isEmpty()) {
-                    throw new RuntimeException("File upload không được để trống khi deployment type là FILE");
-                }
+            // Tạo response và trả về ngay, client theo dõi tiến trình qua jobId
+            DeployBackendResponse response = new DeployBackendResponse();
+            response.setUrl("http://" + domainName);
+            response.setStatus(projectEntity.getStatus());
+            response.setDomainNameSystem(domainName);
+            response.setBackendId(projectEntity.getId());
+            response.setJobId(jobId);
+            return response;
 
-                System.out.println("[deployBackend] Kết nối SSH tới DOCKER server: " + docker_server.getIp() + ":" + docker_server.getPort());
-
-                // Bước 1: Kết nối SSH đến DOCKER server (để build và push image)
-                JSch jsch = new JSch();
-                session = jsch.getSession(docker_server.getUsername(), docker_server.getIp(), docker_server.getPort());
-                session.setPassword(docker_server.getPassword());
-                Properties cfg = new Properties();
-                cfg.put("StrictHostKeyChecking", "no");
-                session.setConfig(cfg);
-                session.setTimeout(7000);
-                session.connect();
-                System.out.println("[deployBackend] Đã kết nối SSH DOCKER server thành công");
-
-                // Bước 2: Upload file .zip lên DOCKER server
-                Channel ch = session.openChannel("sftp");
-                ch.connect();
-                sftp = (ChannelSftp) ch;
-
-                // Tạo thư mục đích trên DOCKER server với UUID để tránh trùng tên: /home/<docker_username>/uploads/<username>/<uuid_k8s của project>/backend/<uuid_k8s>
-                String remoteBase = "/home/" + docker_server.getUsername() + "/uploads/" + user.getUsername() + "/" + project.getUuid_k8s() + "/backend/" + uuid_k8s;
-                System.out.println("[deployBackend] Tạo/cd thư mục đích: " + remoteBase);
-                // Đảm bảo thư mục tồn tại (tạo từng cấp thư mục nếu chưa có)
-                String[] parts = remoteBase.split("/");
-                String cur = "";
-                for (String p : parts) {
-                    if (p == null || p.isBlank()) continue;
-                    cur += "/" + p;
-                    try {
-                        sftp.cd(cur);
-                    } catch (Exception e) {
-                        sftp.mkdir(cur);
-                        sftp.cd(cur);
-                    }
-                }
+        } catch (Exception ex) {
+            System.err.println("[deployBackend] Lỗi khi tạo deploy job: " + ex.getMessage());
+            throw new RuntimeException("Lỗi khi triển khai backend: " + ex.getMessage(), ex);
+        }
+    }
 
-                // Tạo tên file an toàn (loại bỏ ký tự đặc biệt)
-                String originalName = request.getFile().getOriginalFilename();
-                String safeName = originalName != null ? originalName.replaceAll("[^a-zA-Z0-9._-]", "_") : (projectName + ".zip");
-                String remoteZipPath = remoteBase + "/" + safeName;
-                System.out.println("[deployBackend] Upload file lên: " + remoteZipPath);
-                sftp.put(request.getFile().getInputStream(), remoteZipPath);
+    /**
+     * Chạy các bước triển khai trên worker thread của DeployJobService
+     * Với DOCKER: bỏ qua UPLOAD/BUILD/PUSH, chỉ apply YAML và chờ rollout
+     * Với FILE: upload zip lên DOCKER server, build, push image rồi apply YAML lên MASTER
+     */
+    private void runDeployPipeline(String jobId, ProjectBackendEntity projectEntity, String username, ProjectEntity project,
+                                   ServerEntity master_server, ServerEntity docker_server, ArtifactStore.Artifact artifact, String safeName) {
+        String uuid_k8s = projectEntity.getUuid_k8s();
+        String namespace = project.getNamespace();
+        String framework = projectEntity.getFrameworkType();
 
-                // Lưu sourcePath (đường dẫn file zip trên DOCKER server)
-                projectEntity.setSourcePath(remoteZipPath);
+        // Khởi tạo các biến để quản lý SSH/SFTP connections
+        Session session = null;           // SSH session đến DOCKER server (dùng cho FILE deployment)
+        ChannelSftp sftp = null;          // SFTP channel đến DOCKER server
 
-                // Bước 3: Giải nén file .zip trên DOCKER server
-                String unzipCmd = "cd " + remoteBase + " && unzip -o '" + safeName + "'";
-                System.out.println("[deployBackend] Giải nén: " + unzipCmd);
-                executeCommand(session, unzipCmd);
+        try {
+            if ("FILE".equals(projectEntity.getDeploymentType())) {
+                // ========== PHƯƠNG THỨC FILE: UPLOAD, BUILD VÀ PUSH IMAGE ==========
 
-                // Bước 4: Build và push Docker image
+                // Thư mục làm việc riêng của job trên DOCKER server: /home/<docker_username>/uploads/<username>/<uuid_k8s của project>/backend/<uuid_k8s>/<jobId>
+                // (các worker chạy song song, kể cả hai lần deploy cùng một backend, không dùng chung thư mục)
+                String remoteBase = "/home/" + docker_server.getUsername() + "/uploads/" + username + "/" + project.getUuid_k8s()
+                        + "/backend/" + uuid_k8s + "/" + jobId;
+                String remoteZipPath = remoteBase + "/" + safeName;
                 // Xác định thư mục project sau khi giải nén
                 String extractedDir = safeName.endsWith(".zip") ? safeName.substring(0, safeName.length() - 4) : safeName;
                 String projectDir = remoteBase + "/" + extractedDir;
 
-                // Kiểm tra Dockerfile có tồn tại không
-                String checkDockerfile = "test -f '" + projectDir + "/Dockerfile' && echo OK || echo NO";
-                System.out.println("[deployBackend] Kiểm tra Dockerfile: " + checkDockerfile);
-                String check = executeCommand(session, checkDockerfile);
-                if (!"OK".equals(check.trim())) {
-                    throw new RuntimeException("Không tìm thấy Dockerfile trong gói source đã giải nén");
-                }
+                // Cache build theo (zip, framework, Dockerfile): trùng thì dùng lại image đã push, bỏ qua upload/build/push
+                String buildCacheKey = buildCacheService.computeKey(artifact, extractedDir, framework);
+                String cachedImage = buildCacheService.findImage(buildCacheKey);
+
+                if (cachedImage != null) {
+                    String reason = "Dùng lại image đã build từ cùng source: " + cachedImage;
+                    deployJobService.skipStage(jobId, DeployJobService.STAGE_UPLOAD, reason);
+                    deployJobService.skipStage(jobId, DeployJobService.STAGE_BUILD, reason);
+                    deployJobService.skipStage(jobId, DeployJobService.STAGE_PUSH, reason);
+                    // Không có file nào được upload lên DOCKER server trong lần deploy này
+                    projectEntity.setSourcePath(null);
+                    projectEntity.setDockerImage(cachedImage);
+                } else {
+                    // Sử dụng uuid_k8s thay vì projectName để tránh trùng tên image
+                    String imageTag = dockerhub_username + "/" + uuid_k8s + ":latest";
 
-                // Build Docker image từ Dockerfile
-                // Sử dụng uuid_k8s thay vì projectName để tránh trùng tên image
-                String imageTag = dockerhub_username + "/" + uuid_k8s + ":latest";
-                String buildCmd = "cd '" + projectDir + "' && docker build -t '" + imageTag + "' .";
-                System.out.println("[deployBackend] Docker build: " + buildCmd);
-                executeCommand(session, buildCmd);
-
-                // Push image lên DockerHub
-                String pushCmd = "docker push '" + imageTag + "'";
-                System.out.println("[deployBackend] Docker push: " + pushCmd);
-                executeCommand(session, pushCmd);
-
-                projectEntity.setDockerImage(imageTag); // Lưu image tag vào database
-
-                // Dọn dẹp: Xóa Docker image local sau khi push thành công
-                try {
-                    String rmiCmd = "docker rmi '" + escapeSingleQuotes(imageTag) + "' || true";
-                    System.out.println("[deployBackend] Dọn dẹp Docker image: " + rmiCmd);
-                    executeCommand(session, rmiCmd, true);
-                    System.out.println("[deployBackend] Đã dọn dẹp Docker image: " + imageTag);
-                } catch (Exception cleanupEx) {
-                    System.err.println("[deployBackend] Lỗi khi dọn dẹp Docker image (bỏ qua): " + cleanupEx.getMessage());
-                }
+                    // Giành cả MASTER (dùng ở bước APPLY) cùng lúc theo thứ tự id: không chờ MASTER khi đang giữ DOCKER
+                    taskRunner.claimServersShared(jobId, List.of(docker_server.getId(), master_server.getId()));
+                    System.out.println("[deployBackend] Kết nối SSH tới DOCKER server: " + docker_server.getIp() + ":" + docker_server.getPort());
+                    session = createSession(docker_server);
+                    Session dockerSession = session;
+                    System.out.println("[deployBackend] Đã kết nối SSH DOCKER server thành công");
 
-                // Dọn dẹp: Xóa thư mục mã nguồn đã upload và giải nén
-                try {
-                    String cleanupDirCmd = "rm -rf '" + escapeSingleQuotes(remoteBase) + "' || true";
-                    System.out.println("[deployBackend] Dọn dẹp thư mục mã nguồn: " + cleanupDirCmd);
-                    executeCommand(session, cleanupDirCmd, true);
-                    System.out.println("[deployBackend] Đã dọn dẹp thư mục mã nguồn: " + remoteBase);
-                } catch (Exception cleanupEx) {
-                    System.err.println("[deployBackend] Lỗi khi dọn dẹp thư mục mã nguồn (bỏ qua): " + cleanupEx.getMessage());
-                }
-                try {
-                    String uploadsRoot = "/home/" + docker_server.getUsername() + "/uploads";
-                    String cleanupUploadsCmd = "rm -rf '" + escapeSingleQuotes(uploadsRoot) + "' || true";
-                    System.out.println("[deployBackend] Dọn dẹp thư mục uploads: " + cleanupUploadsCmd);
-                    executeCommand(session, cleanupUploadsCmd, true);
-                } catch (Exception cleanupEx) {
-                    System.err.println("[deployBackend] Lỗi khi dọn dẹp thư mục uploads (bỏ qua): " + cleanupEx.getMessage());
+                    Channel ch = session.openChannel("sftp");
+                    ch.connect();
+                    sftp = (ChannelSftp) ch;
+                    ChannelSftp dockerSftp = sftp;
+
+                    try {
+                        deployJobService.runStage(jobId, DeployJobService.STAGE_UPLOAD, () -> {
+                            System.out.println("[deployBackend] Tạo/cd thư mục đích: " + remoteBase);
+                            ensureRemoteDir(dockerSftp, remoteBase);
+
+                            // Artifact đã có trong cache của DOCKER server (cùng hash) thì không truyền lại
+                            System.out.println("[deployBackend] Upload file lên: " + remoteZipPath);
+                            artifactStore.uploadTo(dockerSession, dockerSftp, artifact, "/home/" + docker_server.getUsername(), remoteZipPath);
+
+                            // Giải nén file .zip trên DOCKER server
+                            String unzipCmd = "cd " + remoteBase + " && unzip -o '" + safeName + "'";
+                            System.out.println("[deployBackend] Giải nén: " + unzipCmd);
+                            executeCommand(dockerSession, unzipCmd);
+
+                            // Kiểm tra Dockerfile có tồn tại không
+                            String checkDockerfile = "test -f '" + projectDir + "/Dockerfile' && echo OK || echo NO";
+                            System.out.println("[deployBackend] Kiểm tra Dockerfile: " + checkDockerfile);
+                            String check = executeCommand(dockerSession, checkDockerfile);
+                            if (!"OK".equals(check.trim())) {
+                                throw new RuntimeException("Không tìm thấy Dockerfile trong gói source đã giải nén");
+                            }
+                        });
+                        // Lưu sourcePath (đường dẫn file zip trên DOCKER server)
+                        projectEntity.setSourcePath(remoteZipPath);
+
+                        deployJobService.runStage(jobId, DeployJobService.STAGE_BUILD, () -> {
+                            String buildCmd = "cd '" + projectDir + "' && docker build -t '" + imageTag + "' .";
+                            System.out.println("[deployBackend] Docker build: " + buildCmd);
+                            executeCommand(dockerSession, buildCmd);
+                        });
+
+                        deployJobService.runStage(jobId, DeployJobService.STAGE_PUSH, () -> {
+                            String pushCmd = "docker push '" + imageTag + "'";
+                            System.out.println("[deployBackend] Docker push: " + pushCmd);
+                            executeCommand(dockerSession, pushCmd);
+                        });
+                        // Lưu image vào database dạng digest để bản cache không bị ảnh hưởng khi tag bị ghi đè
+                        String imageRef = resolvePushedImageRef(session, imageTag);
+                        projectEntity.setDockerImage(imageRef);
+                        buildCacheService.recordBuild(buildCacheKey, artifact, framework, imageRef);
+
+                        // Dọn dẹp: Xóa Docker image local sau khi push thành công
+                        try {
+                            String rmiCmd = "docker rmi '" + escapeSingleQuotes(imageTag) + "' || true";
+                            System.out.println("[deployBackend] Dọn dẹp Docker image: " + rmiCmd);
+                            executeCommand(session, rmiCmd, true);
+                            System.out.println("[deployBackend] Đã dọn dẹp Docker image: " + imageTag);
+                        } catch (Exception cleanupEx) {
+                            System.err.println("[deployBackend] Lỗi khi dọn dẹp Docker image (bỏ qua): " + cleanupEx.getMessage());
+                        }
+                    } finally {
+                        // Dọn dẹp (kể cả khi build lỗi): chỉ xóa thư mục làm việc của job này,
+                        // các job khác có thể đang build trong thư mục uploads
+                        try {
+                            String cleanupDirCmd = "rm -rf '" + escapeSingleQuotes(remoteBase) + "' || true";
+                            System.out.println("[deployBackend] Dọn dẹp thư mục mã nguồn: " + cleanupDirCmd);
+                            executeCommand(session, cleanupDirCmd, true);
+                            System.out.println("[deployBackend] Đã dọn dẹp thư mục mã nguồn: " + remoteBase);
+                        } catch (Exception cleanupEx) {
+                            System.err.println("[deployBackend] Lỗi khi dọn dẹp thư mục mã nguồn (bỏ qua): " + cleanupEx.getMessage());
+                        }
+                    }
+
+                    // Giải phóng session DOCKER trước khi sang MASTER
+                    if (sftp.isConnected()) sftp.disconnect();
+                    sftp = null;
+                    releaseSession(session);
+                    session = null;
                 }
+            } else {
+                // ========== PHƯƠNG THỨC DOCKER: DÙNG IMAGE CÓ SẴN ==========
+                String reason = "Deploy từ Docker image có sẵn: " + projectEntity.getDockerImage();
+                deployJobService.skipStage(jobId, DeployJobService.STAGE_UPLOAD, reason);
+                deployJobService.skipStage(jobId, DeployJobService.STAGE_BUILD, reason);
+                deployJobService.skipStage(jobId, DeployJobService.STAGE_PUSH, reason);
+                // Với deployment type là DOCKER: không có sourcePath (null)
+                projectEntity.setSourcePath(null);
+            }
 
-                // Bước 5: Tạo YAML và apply lên Kubernetes cluster (MASTER server)
-                System.out.println("[deployBackend] Chuyển sang MASTER server để upload/apply YAML: " + master_server.getIp() + ":" + master_server.getPort());
+            // ========== APPLY MANIFEST LÊN KUBERNETES CLUSTER (QUA KUBERNETES API) ==========
+            // Không cần SSH tới MASTER: namespace, manifest và rollout đều đi qua Kubernetes API
+            taskRunner.claimServerShared(jobId, master_server.getId());
 
-                // Tạo nội dung YAML file
+            // Generation của Deployment sau khi apply, dùng để chờ rollout đúng phiên bản vừa apply
+            AtomicLong deploymentGeneration = new AtomicLong();
+            deployJobService.runStage(jobId, DeployJobService.STAGE_APPLY, () -> {
+                // Tạo nội dung YAML file (Deployment + Service + Ingress)
                 // Sử dụng uuid_k8s để làm tên resource trong K8s, tránh trùng khi projectName bị trùng
-                String fileName = uuid_k8s + ".yaml";
                 String yamlContent;
                 if ("SPRINGBOOT".equals(framework)) {
                     yamlContent = generateBackendSpringBootYaml(
                         uuid_k8s,
-                        imageTag,
-                        domainName,
+                        projectEntity.getDockerImage(),
+                        projectEntity.getDomainNameSystem(),
                         namespace,
-                        request.getDatabaseName(),
-                        request.getDatabaseIp(),
-                        request.getDatabasePort(),
-                        request.getDatabaseUsername(),
-                        request.getDatabasePassword(),
-                        maxReplicas
+                        projectEntity.getDatabaseName(),
+                        projectEntity.getDatabaseIp(),
+                        projectEntity.getDatabasePort(),
+                        projectEntity.getDatabaseUsername(),
+                        projectEntity.getDatabasePassword(),
+                        projectEntity.getMaxReplicas()
                     );
                 } else {
                     // NODEJS
                     yamlContent = generateBackendNodeJsYaml(
                         uuid_k8s,
-                        imageTag,
-                        domainName,
+                        projectEntity.getDockerImage(),
+                        projectEntity.getDomainNameSystem(),
                         namespace,
-                        request.getDatabaseName(),
-                        request.getDatabaseIp(),
-                        request.getDatabasePort(),
-                        request.getDatabaseUsername(),
-                        request.getDatabasePassword(),
-                        maxReplicas
+                        projectEntity.getDatabaseName(),
+                        projectEntity.getDatabaseIp(),
+                        projectEntity.getDatabasePort(),
+                        projectEntity.getDatabaseUsername(),
+                        projectEntity.getDatabasePassword(),
+                        projectEntity.getMaxReplicas()
                     );
                 }
 
-                // Kết nối SSH đến MASTER server
-                JSch jschCluster = new JSch();
-                clusterSession = jschCluster.getSession(master_server.getUsername(), master_server.getIp(), master_server.getPort());
-                clusterSession.setPassword(master_server.getPassword());
-                Properties cfgCluster = new Properties();
-                cfgCluster.put("StrictHostKeyChecking", "no");
-                clusterSession.setConfig(cfgCluster);
-                clusterSession.setTimeout(7000);
-                clusterSession.connect();
-                System.out.println("[deployBackend] Kết nối SSH tới MASTER server thành công");
-
-                // Mở SFTP channel để upload YAML file
-                Channel sftpYamlCh = clusterSession.openChannel("sftp");
-                sftpYamlCh.connect();
-                sftpYaml = (ChannelSftp) sftpYamlCh;
-
-                // Tạo thư mục đích trên MASTER server với UUID để tránh trùng tên: /home/<master_username>/uploads/<username>/<uuid_k8s của project>/backend/<uuid_k8s>
-                String yamlRemoteDir = "/home/" + master_server.getUsername() + "/uploads/" + user.getUsername() + "/" + project.getUuid_k8s() + "/backend/" + uuid_k8s;
-                System.out.println("[deployBackend] Tạo/cd thư mục YAML: " + yamlRemoteDir);
-                String[] yamlDirParts = yamlRemoteDir.split("/");
-                String yamlCur = "";
-                for (String p : yamlDirParts) {
-                    if (p == null || p.isBlank()) continue;
-                    yamlCur += "/" + p;
-                    try {
-                        sftpYaml.cd(yamlCur);
-                    } catch (Exception e) {
-                        sftpYaml.mkdir(yamlCur);
-                        sftpYaml.cd(yamlCur);
-                    }
-                }
-
-                // Upload YAML file lên MASTER server
-                InputStream yamlStream = new ByteArrayInputStream(yamlContent.getBytes(StandardCharsets.UTF_8));
-                String yamlRemotePath = yamlRemoteDir + "/" + fileName;
-                sftpYaml.put(yamlStream, yamlRemotePath);
-                System.out.println("[deployBackend] Upload YAML: " + yamlRemotePath);
-
-                // Lưu yamlPath (đường dẫn YAML trên MASTER server)
-                // Với FILE method: đã có sourcePath (đã set ở trên), giờ set thêm yamlPath
-                projectEntity.setYamlPath(yamlRemotePath);
-
                 // Kiểm tra và tạo namespace nếu chưa tồn tại
-                ensureNamespaceExists(clusterSession, namespace);
+                ensureNamespaceExists(namespace);
 
-                // Apply YAML file vào Kubernetes cluster
-                System.out.println("[deployBackend] Đang apply YAML: kubectl apply -f " + yamlRemotePath);
-                executeCommand(clusterSession, "kubectl apply -f '" + yamlRemotePath + "'");
-            }
+                // Server-side apply qua Kubernetes API, object không thay đổi sẽ được bỏ qua
+                ManifestApplier.ApplyResult result = manifestApplier.apply(namespace, yamlContent);
+                System.out.println("[deployBackend] Apply manifest: " + result.applied() + " object thay đổi, "
+                        + result.unchanged() + " object giữ nguyên");
+                deploymentGeneration.set(result.generationOf("Deployment", "app-" + uuid_k8s));
+            });
 
-            // ========== BƯỚC 4: CẬP NHẬT TRẠNG THÁI VÀ TRẢ VỀ KẾT QUẢ ==========
+            deployJobService.runStage(jobId, DeployJobService.STAGE_ROLLOUT_WAIT, () -> {
+                // Chờ qua watch dùng chung, không giữ SSH session hay chạy kubectl trên MASTER
+                System.out.println("[deployBackend] Chờ rollout Deployment app-" + uuid_k8s + " (namespace " + namespace + ")");
+                ReadinessTracker.await(readinessTracker.awaitDeploymentRollout(namespace, "app-" + uuid_k8s,
+                        deploymentGeneration.get(), Duration.ofSeconds(ROLLOUT_TIMEOUT_SECONDS)));
+                System.out.println("[deployBackend] Rollout hoàn tất: app-" + uuid_k8s);
+            });
+
+            // ========== CẬP NHẬT TRẠNG THÁI ==========
 
             // Cập nhật trạng thái project thành RUNNING
             projectEntity.setStatus("RUNNING");
             projectBackendRepository.save(projectEntity);
-            System.out.println("[deployBackend] Hoàn tất triển khai backend, projectName=" + projectName + ", domain=" + domainName);
-
-            // Tạo response và trả về
-            DeployBackendResponse response = new DeployBackendResponse();
-            response.setUrl("http://" + domainName);
-            response.setStatus(projectEntity.getStatus());
-            response.setDomainNameSystem(domainName);
-            return response;
+            deployJobService.completeJob(jobId);
+            System.out.println("[deployBackend] Hoàn tất triển khai backend, uuid=" + uuid_k8s + ", domain=" + projectEntity.getDomainNameSystem());
 
         } catch (Exception ex) {
             // ========== XỬ LÝ LỖI ==========
@@ -935,18 +802,34 @@ public class ProjectBackendServiceImpl extends BaseKubernetesService implements
             // Cập nhật trạng thái project thành ERROR
             projectEntity.setStatus("ERROR");
             projectBackendRepository.save(projectEntity);
-            throw new RuntimeException("Lỗi khi triển khai backend: " + ex.getMessage(), ex);
+            deployJobService.failJob(jobId, ex.getMessage());
         } finally {
             // ========== DỌN DẸP TÀI NGUYÊN ==========
             // Đảm bảo đóng tất cả các kết nối SSH/SFTP để giải phóng tài nguyên
             if (sftp != null && sftp.isConnected()) sftp.disconnect();
-            if (session != null && session.isConnected()) session.disconnect();
-            if (sftpYaml != null && sftpYaml.isConnected()) sftpYaml.disconnect();
-            if (clusterSession != null && clusterSession.isConnected()) clusterSession.disconnect();
+            if (session != null) releaseSession(session);
             System.out.println("[deployBackend] Đã đóng các kết nối SSH/SFTP");
         }
     }
 
+    /**
+     * Tạo từng cấp thư mục trên remote qua SFTP nếu chưa tồn tại
+     */
+    private void ensureRemoteDir(ChannelSftp sftp, String remoteDir) throws SftpException {
+        String cur = "";
+        for (String p : remoteDir.split("/")) {
+            if (p == null || p.isBlank()) continue;
+            cur += "/" + p;
+            try {
+                sftp.cd(cur); // Thử chuyển vào thư mục
+            } catch (SftpException e) {
+                sftp.mkdir(cur); // Nếu không tồn tại thì tạo mới
+                sftp.cd(cur);
+            }
+        }
+    }
+
+
     @Override
     public void stopBackend(Long projectId, Long backendId) {
         System.out.println("[stopBackend] Yêu cầu dừng backend projectId=" + projectId + ", backendId=" + backendId);
@@ -1055,14 +938,7 @@ public class ProjectBackendServiceImpl extends BaseKubernetesService implements
 
         Session clusterSession = null;
         try {
-            JSch jsch = new JSch();
-            clusterSession = jsch.getSession(masterServer.getUsername(), masterServer.getIp(), masterServer.getPort());
-            clusterSession.setPassword(masterServer.getPassword());
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            clusterSession.setConfig(config);
-            clusterSession.setTimeout(7000);
-            clusterSession.connect();
+            clusterSession = createSession(masterServer);
             System.out.println("[scaleBackendDeployment] Đã kết nối tới MASTER server");
 
             ApiClient client = createKubernetesClient(clusterSession);
@@ -1079,8 +955,8 @@ public class ProjectBackendServiceImpl extends BaseKubernetesService implements
             System.err.println("[scaleBackendDeployment] Lỗi: " + e.getMessage());
             throw new RuntimeException("Không thể scale backend: " + e.getMessage(), e);
         } finally {
-            if (clusterSession != null && clusterSession.isConnected()) {
-                clusterSession.disconnect();
+            if (clusterSession != null) {
+                releaseSession(clusterSession);
             }
         }
     }
@@ -1106,14 +982,7 @@ public class ProjectBackendServiceImpl extends BaseKubernetesService implements
         Session clusterSession = null;
         try {
             // Kết nối SSH tới MASTER server để có thể chạy lệnh kubectl
-            JSch jsch = new JSch();
-            clusterSession = jsch.getSession(masterServer.getUsername(), masterServer.getIp(), masterServer.getPort());
-            clusterSession.setPassword(masterServer.getPassword());
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            clusterSession.setConfig(config);
-            clusterSession.setTimeout(7000);
-            clusterSession.connect();
+            clusterSession = createSession(masterServer);
             System.out.println("[deleteBackendResources] Đã kết nối MASTER server để xóa resources");
 
             String deleteIngressCmd = String.format("kubectl -n %s delete ing/%s || true", namespace, ingressName);
@@ -1148,8 +1017,8 @@ public class ProjectBackendServiceImpl extends BaseKubernetesService implements
             System.err.println("[deleteBackendResources] Lỗi: " + e.getMessage());
             throw new RuntimeException("Không thể xóa resources backend: " + e.getMessage(), e);
         } finally {
-            if (clusterSession != null && clusterSession.isConnected()) {
-                clusterSession.disconnect();
+            if (clusterSession != null) {
+                releaseSession(clusterSession);
             }
         }
     }
@@ -7,34 +7,54 @@ import my_spring_app.my_spring_app.entity.ProjectDatabaseEntity;
 import my_spring_app.my_spring_app.entity.ProjectEntity;
 import my_spring_app.my_spring_app.entity.ServerEntity;
 import my_spring_app.my_spring_app.entity.UserEntity;
+import my_spring_app.my_spring_app.backup.DatabaseBackupStore;
+import my_spring_app.my_spring_app.dto.reponse.DatabaseBackupResponse;
+import my_spring_app.my_spring_app.dto.reponse.InstallTaskResponse;
+import my_spring_app.my_spring_app.k8s.ManifestApplier;
+import my_spring_app.my_spring_app.k8s.PodDumpExporter;
+import my_spring_app.my_spring_app.k8s.PodStreamImporter;
+import my_spring_app.my_spring_app.k8s.ReadinessTracker;
 import my_spring_app.my_spring_app.repository.ProjectDatabaseRepository;
 import my_spring_app.my_spring_app.repository.ProjectRepository;
 import my_spring_app.my_spring_app.repository.ServerRepository;
 import my_spring_app.my_spring_app.repository.UserRepository;
 import my_spring_app.my_spring_app.service.ProjectDatabaseService;
+import my_spring_app.my_spring_app.tasklog.TaskLog;
+import my_spring_app.my_spring_app.tasklog.TaskLogHub;
+import my_spring_app.my_spring_app.tasklog.TaskRunner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import io.kubernetes.client.openapi.ApiClient;
 import io.kubernetes.client.openapi.ApiException;
-import io.kubernetes.client.openapi.Configuration;
 import io.kubernetes.client.openapi.apis.AppsV1Api;
 import io.kubernetes.client.openapi.apis.CoreV1Api;
 import io.kubernetes.client.openapi.models.V1Namespace;
 import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1PersistentVolumeClaim;
 import io.kubernetes.client.openapi.models.V1Scale;
 import io.kubernetes.client.openapi.models.V1ScaleSpec;
-import io.kubernetes.client.util.Config;
+import io.kubernetes.client.openapi.models.V1Service;
+import io.kubernetes.client.openapi.models.V1StatefulSet;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.time.Duration;
 import java.util.Optional;
-import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 /**
  * Service implementation cho ProjectDatabase
@@ -56,6 +76,26 @@ public class ProjectDatabaseServiceImpl extends BaseKubernetesService implements
     @Autowired
     private ServerRepository serverRepository;
 
+    @Autowired
+    private PodStreamImporter podStreamImporter;
+
+    @Autowired
+    private PodDumpExporter podDumpExporter;
+
+    @Autowired
+    private DatabaseBackupStore databaseBackupStore;
+
+    @Autowired
+    private TaskRunner taskRunner;
+
+    @Autowired
+    private TaskLogHub taskLogHub;
+
+    // Thời gian tối đa chờ PVC Bound / StatefulSet sẵn sàng (giây)
+    private static final int READY_TIMEOUT_SECONDS = 300;
+    // Thời gian tối đa chờ LoadBalancer cấp EXTERNAL-IP trước khi fallback sang DNS nội bộ (giây)
+    private static final int EXTERNAL_IP_TIMEOUT_SECONDS = 30;
+
     /**
      * Tạo short UUID từ UUID đầy đủ để sử dụng trong Kubernetes
      * UUID đầy đủ có 36 ký tự (với dấu gạch ngang), short UUID sẽ có độ dài cố định 12 ký tự
@@ -91,17 +131,16 @@ public class ProjectDatabaseServiceImpl extends BaseKubernetesService implements
      * Kiểm tra và tạo namespace trên Kubernetes cluster nếu chưa tồn tại
      * Sử dụng Kubernetes Java Client API
      * 
-     * @param session SSH session đến MASTER server để lấy kubeconfig
      * @param namespace Tên namespace cần kiểm tra/tạo
      * @throws Exception Nếu có lỗi khi kiểm tra hoặc tạo namespace
      */
-    private void ensureNamespaceExists(Session session, String namespace) throws Exception {
+    private void ensureNamespaceExists(String namespace) throws Exception {
         System.out.println("[ensureNamespaceExists] Kiểm tra namespace: " + namespace);
         
         try {
-            // Sử dụng method createKubernetesClient từ parent class (đã xử lý thay thế server URL)
-            ApiClient client = createKubernetesClient(session);
-            CoreV1Api api = new CoreV1Api();
+            // Client dùng chung từ registry, không cần SSH tới MASTER
+            ApiClient client = kubernetesClientRegistry.getClient();
+            CoreV1Api api = new CoreV1Api(client);
             
             // Kiểm tra namespace đã tồn tại chưa
             try {
@@ -315,41 +354,6 @@ public class ProjectDatabaseServiceImpl extends BaseKubernetesService implements
                 "      name: mongodb\n";
     }
 
-    /**
-     * Chờ PVC chuyển sang trạng thái Bound trước khi tiếp tục.
-     */
-    private void waitForPvcBound(Session session, String namespace, String pvcName, int timeoutSeconds) throws Exception {
-        long deadline = System.currentTimeMillis() + timeoutSeconds * 1000L;
-        String status = "";
-        String cmd = String.format("kubectl get pvc %s -n %s -o jsonpath='{.status.phase}'", pvcName, namespace);
-        while (System.currentTimeMillis() < deadline) {
-            try {
-                status = executeCommand(session, cmd).replace("'", "").trim();
-                if ("Bound".equalsIgnoreCase(status)) {
-                    System.out.println("[waitForPvcBound] PVC " + pvcName + " đã ở trạng thái Bound");
-                    return;
-                }
-                System.out.println("[waitForPvcBound] PVC " + pvcName + " hiện ở trạng thái: " + status + ", tiếp tục chờ...");
-            } catch (Exception ex) {
-                System.out.println("[waitForPvcBound] Không đọc được trạng thái PVC (sẽ thử lại): " + ex.getMessage());
-            }
-            Thread.sleep(5000);
-        }
-        throw new RuntimeException("PVC " + pvcName + " chưa sẵn sàng (trạng thái: " +
-                (status == null ? "Unknown" : status) + ") sau " + timeoutSeconds + " giây. Vui lòng kiểm tra StorageClass/PV.");
-    }
-
-    /**
-     * Chờ pod với nhãn app=<resourceName> chuyển sang trạng thái Ready.
-     */
-    private void waitForPodReady(Session session, String namespace, String resourceName, int timeoutSeconds) throws Exception {
-        String waitCmd = String.format("kubectl wait --for=condition=ready pod -l app=%s -n %s --timeout=%ds",
-                resourceName, namespace, timeoutSeconds);
-        System.out.println("[waitForPodReady] " + waitCmd);
-        executeCommand(session, waitCmd);
-        System.out.println("[waitForPodReady] Pod với nhãn app=" + resourceName + " đã sẵn sàng");
-    }
-
     /**
      * Helper method để thực thi lệnh qua SSH (tương thích với code cũ)
      * Gọi method từ parent class với ignoreNonZeroExit = false
@@ -458,98 +462,27 @@ public class ProjectDatabaseServiceImpl extends BaseKubernetesService implements
             projectEntity.setDatabasePort(27017);
         }
 
-        // Khởi tạo các biến để quản lý SSH/SFTP connections
-        Session masterSession = null;
-        ChannelSftp sftpMaster = null;
+        // File dump tạm (nếu có), được xóa sau khi import nền xong
+        Path dumpFile = null;
 
         try {
-            // ========== BƯỚC 3: KẾT NỐI ĐẾN MASTER SERVER ==========
-
-            System.out.println("[deployDatabase] Kết nối SSH đến MASTER server: " + masterServer.getIp() + ":" + masterServer.getPort());
-            JSch jsch = new JSch();
-            masterSession = jsch.getSession(masterServer.getUsername(), masterServer.getIp(), masterServer.getPort());
-            masterSession.setPassword(masterServer.getPassword());
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            masterSession.setConfig(config);
-            masterSession.setTimeout(7000);
-            masterSession.connect();
-            System.out.println("[deployDatabase] Kết nối SSH đến MASTER server thành công");
-
-            // ========== BƯỚC 4: KIỂM TRA VÀ TẠO NAMESPACE ==========
+            // ========== BƯỚC 3-4: KIỂM TRA VÀ TẠO NAMESPACE (QUA KUBERNETES API, KHÔNG CẦN SSH) ==========
 
-            ensureNamespaceExists(masterSession, namespace);
+            ensureNamespaceExists(namespace);
 
             // ========== BƯỚC 5: XỬ LÝ FILE DATABASE (NẾU CÓ) ==========
 
-            String sqlFilePath = null;
-
-            if (request.getFile() != null && !request.getFile().isEmpty()) {
-                // Upload database file lên MASTER server
-                Channel channelMaster = masterSession.openChannel("sftp");
-                channelMaster.connect();
-                sftpMaster = (ChannelSftp) channelMaster;
-
-                String dbFileName = request.getFile().getOriginalFilename();
-                // Tạo thư mục với UUID để tránh trùng tên: /home/<master_username>/uploads/<username>/<uuid_k8s của project>/database/<uuid_k8s>
-                String remoteDbBase = "/home/" + masterServer.getUsername() + "/uploads/" + user.getUsername() + "/" + project.getUuid_k8s() + "/database/" + uuid_k8s;
-
-                System.out.println("[deployDatabase] Tạo/cd thư mục đích: " + remoteDbBase);
-                // Đảm bảo thư mục tồn tại
-                String[] parts = remoteDbBase.split("/");
-                String cur = "";
-                for (String p : parts) {
-                    if (p == null || p.isBlank()) continue;
-                    cur += "/" + p;
-                    try {
-                        sftpMaster.cd(cur);
-                    } catch (Exception e) {
-                        sftpMaster.mkdir(cur);
-                        sftpMaster.cd(cur);
-                    }
-                }
-
-                String dbRemotePath = remoteDbBase + "/" + dbFileName;
-                System.out.println("[deployDatabase] Upload database file lên: " + dbRemotePath);
-                sftpMaster.put(request.getFile().getInputStream(), dbRemotePath);
-                System.out.println("[deployDatabase] Đã upload database file lên MASTER server: " + dbRemotePath);
-
-                // Lưu đường dẫn file vào entity
-                projectEntity.setSourcePath(dbRemotePath);
-
-                // Giải nén file database (nếu là .zip)
-                if (dbFileName != null && dbFileName.endsWith(".zip")) {
-                    // Bỏ qua thư mục/mac metadata (__MACOSX, .DS_Store)
-                    String unzipCmd = "cd " + remoteDbBase + " && unzip -o '" + dbFileName + "' -x '__MACOSX/*' '*.DS_Store'";
-                    System.out.println("[deployDatabase] Giải nén database file: " + unzipCmd);
-                    executeCommand(masterSession, unzipCmd);
-
-                    // Tìm file .sql trong thư mục đã giải nén
-                    String findSqlCmd = "cd " + remoteDbBase + " && find . -type f -name '*.sql' "
-                            + "! -path '*__MACOSX*' "
-                            + "! -name '._*' "
-                            + "| head -1";
-                    String sqlFile = executeCommand(masterSession, findSqlCmd).trim();
-                    if (!sqlFile.isEmpty()) {
-                        sqlFile = sqlFile.replaceFirst("^\\./", "");
-                        sqlFilePath = remoteDbBase + "/" + sqlFile;
-                        System.out.println("[deployDatabase] Tìm thấy file SQL: " + sqlFilePath);
-                    } else {
-                        System.out.println("[deployDatabase] Không tìm thấy file .sql trong thư mục đã giải nén");
-                    }
-                } else if (dbFileName != null && dbFileName.endsWith(".sql")) {
-                    sqlFilePath = dbRemotePath;
-                    System.out.println("[deployDatabase] Sử dụng file SQL trực tiếp: " + sqlFilePath);
-                }
-
-                sftpMaster.disconnect();
-                sftpMaster = null;
+            // File dump không còn upload lên MASTER: được đọc trực tiếp từ file upload và stream vào pod ở bước 7
+            boolean hasDumpFile = request.getFile() != null && !request.getFile().isEmpty();
+            if (hasDumpFile) {
+                projectEntity.setSourcePath(request.getFile().getOriginalFilename());
+                System.out.println("[deployDatabase] File dump: " + request.getFile().getOriginalFilename()
+                        + " (" + request.getFile().getSize() + " byte)");
             }
 
-            // ========== BƯỚC 6: TẠO VÀ APPLY YAML CHO DATABASE ==========
+            // ========== BƯỚC 6: TẠO VÀ APPLY MANIFEST CHO DATABASE ==========
 
-            // Tạo nội dung YAML file
-            String fileName = uuid_k8s + ".yaml";
+            // Tạo nội dung YAML (StatefulSet + Service, MySQL có thêm Secret)
             String yamlContent;
             if ("MYSQL".equals(databaseType)) {
                 yamlContent = generateMySQLYaml(uuid_k8s, namespace, databaseName, databaseUsername, databasePassword, storageSize);
@@ -558,160 +491,34 @@ public class ProjectDatabaseServiceImpl extends BaseKubernetesService implements
                 yamlContent = generateMongoDBYaml(uuid_k8s, namespace, databaseName, databaseUsername, databasePassword, storageSize);
             }
 
-            // Mở SFTP channel để upload YAML file
-            Channel sftpYamlCh = masterSession.openChannel("sftp");
-            sftpYamlCh.connect();
-            sftpMaster = (ChannelSftp) sftpYamlCh;
-
-            // Tạo thư mục đích với UUID: /home/<master_username>/uploads/<username>/<uuid_k8s của project>/database/<uuid_k8s>
-            String yamlRemoteDir = "/home/" + masterServer.getUsername() + "/uploads/" + user.getUsername() + "/" + project.getUuid_k8s() + "/database/" + uuid_k8s;
-            System.out.println("[deployDatabase] Tạo/cd thư mục YAML: " + yamlRemoteDir);
-            String[] yamlDirParts = yamlRemoteDir.split("/");
-            String yamlCur = "";
-            for (String p : yamlDirParts) {
-                if (p == null || p.isBlank()) continue;
-                yamlCur += "/" + p;
-                try {
-                    sftpMaster.cd(yamlCur);
-                } catch (Exception e) {
-                    sftpMaster.mkdir(yamlCur);
-                    sftpMaster.cd(yamlCur);
-                }
-            }
-
-            // Upload YAML file lên MASTER server
-            InputStream yamlStream = new ByteArrayInputStream(yamlContent.getBytes(StandardCharsets.UTF_8));
-            String yamlRemotePath = yamlRemoteDir + "/" + fileName;
-            sftpMaster.put(yamlStream, yamlRemotePath);
-            System.out.println("[deployDatabase] Đã upload YAML file: " + yamlRemotePath);
-
-            // Lưu yamlPath (đường dẫn YAML trên MASTER server)
-            projectEntity.setYamlPath(yamlRemotePath);
-
-            // Apply YAML file vào Kubernetes cluster bằng kubectl
-            System.out.println("[deployDatabase] Đang apply YAML: kubectl apply -f " + yamlRemotePath);
-            executeCommand(masterSession, "kubectl apply -f '" + yamlRemotePath + "'");
+            // Server-side apply qua Kubernetes API (namespace đã được tạo ở bước 4), object không thay đổi sẽ được bỏ qua
+            ManifestApplier.ApplyResult applyResult = manifestApplier.apply(namespace, yamlContent);
+            System.out.println("[deployDatabase] Apply manifest: " + applyResult.applied() + " object thay đổi, "
+                    + applyResult.unchanged() + " object giữ nguyên");
 
             String resourceName = "db-" + uuid_k8s;
             String pvcNamePrefix = "MYSQL".equalsIgnoreCase(databaseType) ? "mysql-data-" : "mongodb-data-";
             String pvcName = pvcNamePrefix + resourceName + "-0";
 
-            // Đợi PVC được bind và pod sẵn sàng trước khi thao tác thêm (ví dụ copy file SQL)
-            waitForPvcBound(masterSession, namespace, pvcName, 300);
-            waitForPodReady(masterSession, namespace, resourceName, 300);
-
-            // Đợi một chút để service được tạo
-            System.out.println("[deployDatabase] Đợi service được tạo...");
-            Thread.sleep(3000); // Đợi 3 giây
-
-            // ========== BƯỚC 6.5: LẤY EXTERNAL-IP TỪ SERVICE ==========
-            
             String serviceName = "db-" + uuid_k8s + "-svc";
-            System.out.println("[deployDatabase] Đang lấy EXTERNAL-IP từ service: " + serviceName);
-            
-            // Chờ EXTERNAL-IP được assign (có thể mất vài giây với LoadBalancer)
-            String externalIp = null;
-            int maxRetries = 30; // Tối đa 30 lần thử (30 giây)
-            for (int i = 0; i < maxRetries; i++) {
-                try {
-                    String getSvcCmd = "kubectl get svc " + serviceName + " -n " + namespace + " -o jsonpath='{.status.loadBalancer.ingress[0].ip}'";
-                    String result = executeCommand(masterSession, getSvcCmd);
-                    if (result != null && !result.trim().isEmpty() && !result.trim().equals("<none>")) {
-                        externalIp = result.trim();
-                        System.out.println("[deployDatabase] Đã lấy được EXTERNAL-IP: " + externalIp);
-                        break;
-                    }
-                } catch (Exception e) {
-                    System.out.println("[deployDatabase] Lần thử " + (i + 1) + "/" + maxRetries + ": Chưa có EXTERNAL-IP, đợi thêm...");
-                }
-                
-                if (i < maxRetries - 1) {
-                    Thread.sleep(1000); // Đợi 1 giây trước khi thử lại
-                }
-            }
-            
-            if (externalIp == null || externalIp.isEmpty()) {
-                System.err.println("[deployDatabase] WARNING: Không thể lấy EXTERNAL-IP sau " + maxRetries + " lần thử");
-                System.err.println("[deployDatabase] Sử dụng service name làm database IP");
-                // Fallback: sử dụng service name
-                externalIp = serviceName + "." + namespace + ".svc.cluster.local";
-            }
-            
-            // Cập nhật database IP với EXTERNAL-IP
-            projectEntity.setDatabaseIp(externalIp);
-            System.out.println("[deployDatabase] Database IP đã được cập nhật: " + externalIp);
-
-            // Đợi một chút để database pod khởi động
-            System.out.println("[deployDatabase] Đợi database pod khởi động...");
-            Thread.sleep(2000); // Đợi thêm 2 giây
-
-            // ========== BƯỚC 7: IMPORT FILE SQL (NẾU CÓ) ==========
-
-            if (sqlFilePath != null && "MYSQL".equals(databaseType)) {
-                // Import file SQL vào MySQL pod
-                String podName = "db-" + uuid_k8s + "-0"; // StatefulSet pod name
-                System.out.println("[deployDatabase] Bắt đầu import file SQL vào pod: " + podName);
-                
-                // Copy file SQL vào pod trước
-                String copyCmd = "kubectl cp " + sqlFilePath + " " + namespace + "/" + podName + ":/tmp/import.sql";
-                System.out.println("[deployDatabase] Copy file SQL vào pod: " + copyCmd);
-                try {
-                    executeCommand(masterSession, copyCmd);
-                    System.out.println("[deployDatabase] Đã copy file SQL vào pod");
-                } catch (Exception e) {
-                    System.err.println("[deployDatabase] Lỗi khi copy file SQL vào pod: " + e.getMessage());
-                    throw new RuntimeException("Không thể copy file SQL vào pod: " + e.getMessage(), e);
-                }
-                
-                // Import SQL từ file trong pod
-                String importCmd = "kubectl exec -n " + namespace + " " + podName + " -- sh -c \"mysql -u" + databaseUsername + " -p'" + databasePassword + "' " + databaseName + " < /tmp/import.sql\"";
-                System.out.println("[deployDatabase] Thực thi import SQL: " + importCmd);
-                try {
-                    String importOutput = executeCommand(masterSession, importCmd);
-                    if (!importOutput.isEmpty()) {
-                        System.out.println("[deployDatabase] Output từ import SQL: " + importOutput);
-                    }
-                    System.out.println("[deployDatabase] Đã import file SQL thành công");
-                    
-                    // Xóa file tạm trong pod
-                    String cleanupCmd = "kubectl exec -n " + namespace + " " + podName + " -- rm -f /tmp/import.sql";
-                    executeCommand(masterSession, cleanupCmd);
-                } catch (Exception e) {
-                    System.err.println("[deployDatabase] Lỗi khi import file SQL: " + e.getMessage());
-                    System.err.println("[deployDatabase] WARNING: Import SQL thất bại nhưng database đã được tạo");
-                } finally {
-                    // Dọn dẹp file SQL và file nén đã upload
-                    try {
-                        String deleteSqlCmd = String.format("rm -f '%s' || true", escapeSingleQuotes(sqlFilePath));
-                        System.out.println("[deployDatabase] Dọn dẹp file SQL: " + deleteSqlCmd);
-                        executeCommand(masterSession, deleteSqlCmd, true);
-                    } catch (Exception cleanupEx) {
-                        System.err.println("[deployDatabase] Lỗi khi dọn dẹp file SQL (bỏ qua): " + cleanupEx.getMessage());
-                    }
+            long statefulSetGeneration = applyResult.generationOf("StatefulSet", resourceName);
 
-                    String sourcePath = projectEntity.getSourcePath();
-                    if (sourcePath != null && !sourcePath.trim().isEmpty()) {
-                        String trimmedSource = sourcePath.trim();
-                        try {
-                            String deleteZipCmd = String.format("rm -f '%s' || true", escapeSingleQuotes(trimmedSource));
-                            System.out.println("[deployDatabase] Dọn dẹp file nén đã upload: " + deleteZipCmd);
-                            executeCommand(masterSession, deleteZipCmd, true);
-                        } catch (Exception cleanupEx) {
-                            System.err.println("[deployDatabase] Lỗi khi dọn dẹp file nén (bỏ qua): " + cleanupEx.getMessage());
-                        }
-                    }
-                }
-            } else if (sqlFilePath != null && "MONGODB".equals(databaseType)) {
-                // TODO: Xử lý import cho MongoDB
-                System.out.println("[deployDatabase] Import MongoDB chưa được hỗ trợ");
+            // File upload của request bị xóa khi request kết thúc còn import chạy nền: ghi ra file tạm trước
+            if (hasDumpFile) {
+                dumpFile = Files.createTempFile("db-dump-", ".upload");
+                request.getFile().transferTo(dumpFile);
             }
 
-            // ========== BƯỚC 8: CẬP NHẬT TRẠNG THÁI VÀ TRẢ VỀ KẾT QUẢ ==========
+            // ========== BƯỚC 7: LƯU TRẠNG THÁI, CHỜ SẴN SÀNG VÀ IMPORT CHẠY NỀN ==========
 
-            // Cập nhật thông tin vào entity
-            projectEntity.setStatus("RUNNING");
+            // Giữ BUILDING cho tới khi PVC/StatefulSet sẵn sàng và import xong; request không chờ
+            // (không giữ worker thread của Tomcat tới READY_TIMEOUT_SECONDS)
+            projectEntity.setStatus("BUILDING");
             projectDatabaseRepository.save(projectEntity);
-            System.out.println("[deployDatabase] Hoàn tất triển khai database, projectName=" + request.getProjectName() + ", databaseName=" + databaseName);
+            PendingDatabase pending = new PendingDatabase(projectEntity.getId(), databaseType, namespace, resourceName,
+                    pvcName, serviceName, statefulSetGeneration, dumpFile, databaseName, databaseUsername, databasePassword);
+            runAfterCommit(() -> trackReadiness(pending));
+            System.out.println("[deployDatabase] Đã apply database, chờ sẵn sàng nền: projectName=" + request.getProjectName() + ", databaseName=" + databaseName);
 
             // Tạo response và trả về
             DeployDatabaseResponse response = new DeployDatabaseResponse();
@@ -727,19 +534,11 @@ public class ProjectDatabaseServiceImpl extends BaseKubernetesService implements
             // ========== XỬ LÝ LỖI ==========
             System.err.println("[deployDatabase] Lỗi: " + ex.getMessage());
             ex.printStackTrace();
+            deleteDumpFile(dumpFile);
             // Cập nhật trạng thái project thành ERROR
             projectEntity.setStatus("ERROR");
             projectDatabaseRepository.save(projectEntity);
             throw new RuntimeException("Lỗi khi triển khai database: " + ex.getMessage(), ex);
-        } finally {
-            // ========== DỌN DẸP TÀI NGUYÊN ==========
-            if (sftpMaster != null && sftpMaster.isConnected()) {
-                sftpMaster.disconnect();
-            }
-            if (masterSession != null && masterSession.isConnected()) {
-                masterSession.disconnect();
-            }
-            System.out.println("[deployDatabase] Đã đóng các kết nối SSH/SFTP");
         }
     }
 
@@ -807,64 +606,6 @@ public class ProjectDatabaseServiceImpl extends BaseKubernetesService implements
         System.out.println("[startDatabase] Đã khởi động database thành công");
     }
 
-    /**
-     * Override method createKubernetesClient để thay thế server URL trong kubeconfig
-     * trước khi feed cho Java Kubernetes client
-     */
-    @Override
-    protected ApiClient createKubernetesClient(Session session) throws Exception {
-        String kubeconfigPath = "~/.kube/config";
-        System.out.println("[createKubernetesClient] Đang đọc kubeconfig từ: " + kubeconfigPath);
-        File tempKubeconfig = null;
-        try {
-            String kubeconfigContent = executeCommand(session, "cat " + kubeconfigPath, false);
-            if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                String[] alternativePaths = {
-                        "/etc/kubernetes/admin.conf",
-                        "/root/.kube/config",
-                        "$HOME/.kube/config"
-                };
-                for (String altPath : alternativePaths) {
-                    try {
-                        kubeconfigContent = executeCommand(session, "cat " + altPath, true);
-                        if (kubeconfigContent != null && !kubeconfigContent.trim().isEmpty()) {
-                            break;
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-                if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                    throw new RuntimeException("Không thể đọc kubeconfig từ master server.");
-                }
-            }
-
-            // Lấy IP MASTER và thay thế server URL trong kubeconfig trước khi sử dụng
-            Optional<ServerEntity> masterOpt = serverRepository.findByRole("MASTER");
-            if (masterOpt.isPresent()) {
-                String masterIp = masterOpt.get().getIp();
-                kubeconfigContent = replaceKubeconfigServer(kubeconfigContent, masterIp);
-            } else {
-                System.err.println("[createKubernetesClient] WARNING: Không tìm thấy server MASTER để thay server URL trong kubeconfig");
-            }
-
-            tempKubeconfig = File.createTempFile("kubeconfig-", ".yaml");
-            try (FileWriter writer = new FileWriter(tempKubeconfig)) {
-                writer.write(kubeconfigContent);
-            }
-            System.out.println("[createKubernetesClient] Đã tạo kubeconfig tạm tại: " + tempKubeconfig.getAbsolutePath());
-
-            ApiClient client = Config.fromConfig(tempKubeconfig.getAbsolutePath());
-            Configuration.setDefaultApiClient(client);
-            return client;
-        } finally {
-            if (tempKubeconfig != null && tempKubeconfig.exists()) {
-                if (!tempKubeconfig.delete()) {
-                    tempKubeconfig.deleteOnExit();
-                }
-            }
-        }
-    }
-
     /**
      * Helper method để scale StatefulSet của database
      * 
@@ -886,14 +627,7 @@ public class ProjectDatabaseServiceImpl extends BaseKubernetesService implements
 
         Session clusterSession = null;
         try {
-            JSch jsch = new JSch();
-            clusterSession = jsch.getSession(masterServer.getUsername(), masterServer.getIp(), masterServer.getPort());
-            clusterSession.setPassword(masterServer.getPassword());
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            clusterSession.setConfig(config);
-            clusterSession.setTimeout(7000);
-            clusterSession.connect();
+            clusterSession = createSession(masterServer);
             System.out.println("[scaleDatabaseStatefulSet] Đã kết nối tới MASTER server");
 
             ApiClient client = createKubernetesClient(clusterSession);
@@ -913,8 +647,8 @@ public class ProjectDatabaseServiceImpl extends BaseKubernetesService implements
             System.err.println("[scaleDatabaseStatefulSet] Lỗi: " + e.getMessage());
             throw new RuntimeException("Không thể scale database: " + e.getMessage(), e);
         } finally {
-            if (clusterSession != null && clusterSession.isConnected()) {
-                clusterSession.disconnect();
+            if (clusterSession != null) {
+                releaseSession(clusterSession);
             }
         }
     }
@@ -951,6 +685,133 @@ public class ProjectDatabaseServiceImpl extends BaseKubernetesService implements
         System.out.println("[deleteDatabase] Đã xóa database thành công");
     }
 
+    /**
+     * Lệnh dump và vị trí pod của một database project
+     *
+     * @param fileName tên file tải về / lưu backup (đã nén gzip)
+     */
+    private record DumpTarget(String namespace, String podName, String command, String fileName) {
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public String getExportFileName(Long projectId, Long databaseId) {
+        return resolveDumpTarget(projectId, databaseId).fileName();
+    }
+
+    /**
+     * Chạy mysqldump/mongodump trong pod và stream kết quả (gzip) vào out.
+     * Không giữ transaction (và connection JDBC) trong suốt thời gian export.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void exportDatabase(Long projectId, Long databaseId, OutputStream out) {
+        DumpTarget target = resolveDumpTarget(projectId, databaseId);
+        System.out.println("[exportDatabase] Bắt đầu export database " + databaseId + " từ pod " + target.podName());
+        PodDumpExporter.ExportResult result;
+        try {
+            result = podDumpExporter.exportDump(target.namespace(), target.podName(), null, target.command(), out);
+        } catch (RuntimeException e) {
+            // Ném lại để StreamingResponseBody lỗi: response đã commit nên Tomcat cắt kết nối
+            // thay vì kết thúc bình thường, client nhận được lỗi tải chứ không phải file dump thiếu
+            System.err.println("[exportDatabase] Export database " + databaseId + " thất bại: " + e.getMessage());
+            throw e;
+        }
+        System.out.println("[exportDatabase] Đã export database " + databaseId + ": " + result.bytes() + " byte, nén còn "
+                + result.compressedBytes() + " byte trong " + result.durationMs() + " ms");
+    }
+
+    /**
+     * Backup database vào kho backup local, chạy nền trên {@link TaskRunner}; tiến trình theo dõi qua task log
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public InstallTaskResponse createBackup(Long projectId, Long databaseId) {
+        DumpTarget target = resolveDumpTarget(projectId, databaseId);
+        if (databaseBackupStore.isRunning(databaseId)) {
+            throw new RuntimeException("Database đang được backup, vui lòng chờ bản backup hiện tại hoàn tất");
+        }
+        String taskId = UUID.randomUUID().toString();
+        TaskLog log = taskLogHub.open(taskId);
+        log.append("Bắt đầu backup database " + databaseId + " vào " + target.fileName() + "\n");
+        taskRunner.submit(taskId, () -> {
+            try {
+                DatabaseBackupStore.Backup backup = databaseBackupStore.create(databaseId, target.fileName(),
+                        out -> podDumpExporter.exportDump(target.namespace(), target.podName(), null, target.command(), out));
+                log.append("✅ Đã lưu backup " + backup.fileName() + " (" + backup.size() + " bytes)\n");
+                log.setProgress(100);
+                log.finish("completed", null);
+            } catch (Exception e) {
+                System.err.println("[createBackup] Lỗi khi backup database " + databaseId + ": " + e.getMessage());
+                log.append("❌ Backup thất bại: " + e.getMessage() + "\n");
+                log.finish("failed", e.getMessage());
+            }
+        });
+        return new InstallTaskResponse(taskId, "running", "Đang backup database " + databaseId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<DatabaseBackupResponse> listBackups(Long projectId, Long databaseId) {
+        findProjectDatabase(projectId, databaseId);
+        return databaseBackupStore.list(databaseId).stream()
+                .map(backup -> new DatabaseBackupResponse(backup.fileName(), backup.size(),
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(backup.createdAt()), ZoneId.systemDefault())))
+                .toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Path getBackupFile(Long projectId, Long databaseId, String fileName) {
+        findProjectDatabase(projectId, databaseId);
+        return databaseBackupStore.get(databaseId, fileName).path();
+    }
+
+    /**
+     * Lấy database và kiểm tra database thuộc về project
+     */
+    private ProjectDatabaseEntity findProjectDatabase(Long projectId, Long databaseId) {
+        ProjectEntity project = projectRepository.findById(projectId)
+                .orElseThrow(() -> new RuntimeException("Project không tồn tại với id: " + projectId));
+        ProjectDatabaseEntity database = projectDatabaseRepository.findById(databaseId)
+                .orElseThrow(() -> new RuntimeException("Database project không tồn tại với id: " + databaseId));
+        if (database.getProject() == null || !database.getProject().getId().equals(project.getId())) {
+            throw new RuntimeException("Database project không thuộc về project này");
+        }
+        return database;
+    }
+
+    private DumpTarget resolveDumpTarget(Long projectId, Long databaseId) {
+        ProjectDatabaseEntity database = findProjectDatabase(projectId, databaseId);
+        if (!"RUNNING".equalsIgnoreCase(database.getStatus())) {
+            throw new RuntimeException("Database phải đang chạy (RUNNING) để export/backup");
+        }
+        String namespace = projectRepository.findById(projectId).map(ProjectEntity::getNamespace).orElse(null);
+        if (namespace == null || namespace.trim().isEmpty()) {
+            throw new RuntimeException("Project không có namespace.");
+        }
+
+        String username = escapeSingleQuotes(database.getDatabaseUsername());
+        String password = escapeSingleQuotes(database.getDatabasePassword());
+        String databaseName = escapeSingleQuotes(database.getDatabaseName());
+        String command;
+        String extension;
+        if ("MYSQL".equalsIgnoreCase(database.getDatabaseType())) {
+            // --single-transaction: snapshot nhất quán không khóa bảng InnoDB; --quick: đọc từng dòng thay vì cả bảng;
+            // --no-tablespaces: user của database không có quyền PROCESS
+            command = "MYSQL_PWD='" + password + "' mysqldump --single-transaction --quick --no-tablespaces -u'"
+                    + username + "' '" + databaseName + "'";
+            extension = ".sql.gz";
+        } else {
+            command = "mongodump --archive --username '" + username + "' --password '" + password
+                    + "' --authenticationDatabase admin --db '" + databaseName + "'";
+            extension = ".archive.gz";
+        }
+        String baseName = String.valueOf(database.getDatabaseName()).replaceAll("[^A-Za-z0-9._-]", "_");
+        String fileName = baseName + "-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + extension;
+        return new DumpTarget(namespace, "db-" + database.getUuid_k8s() + "-0", command, fileName);
+    }
+
     /**
      * Helper method để xóa các tài nguyên Kubernetes của database
      * Xóa StatefulSet, Service, Secret (cho MySQL), PVC và YAML files
@@ -991,14 +852,7 @@ public class ProjectDatabaseServiceImpl extends BaseKubernetesService implements
         Session clusterSession = null;
         try {
             // Kết nối SSH tới MASTER server để có thể chạy lệnh kubectl
-            JSch jsch = new JSch();
-            clusterSession = jsch.getSession(masterServer.getUsername(), masterServer.getIp(), masterServer.getPort());
-            clusterSession.setPassword(masterServer.getPassword());
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            clusterSession.setConfig(config);
-            clusterSession.setTimeout(7000);
-            clusterSession.connect();
+            clusterSession = createSession(masterServer);
             System.out.println("[deleteDatabaseResources] Đã kết nối MASTER server để xóa resources");
 
             // Xóa StatefulSet
@@ -1055,8 +909,8 @@ public class ProjectDatabaseServiceImpl extends BaseKubernetesService implements
             System.err.println("[deleteDatabaseResources] Lỗi: " + e.getMessage());
             throw new RuntimeException("Không thể xóa resources database: " + e.getMessage(), e);
         } finally {
-            if (clusterSession != null && clusterSession.isConnected()) {
-                clusterSession.disconnect();
+            if (clusterSession != null) {
+                releaseSession(clusterSession);
             }
         }
     }
@@ -1067,6 +921,147 @@ public class ProjectDatabaseServiceImpl extends BaseKubernetesService implements
      * @param input Chuỗi cần escape
      * @return Chuỗi đã escape
      */
+    /**
+     * Database vừa apply đang chờ sẵn sàng
+     */
+    private record PendingDatabase(Long databaseId, String databaseType, String namespace, String resourceName,
+                                   String pvcName, String serviceName, long statefulSetGeneration, Path dumpFile,
+                                   String databaseName, String databaseUsername, String databasePassword) {
+    }
+
+    /**
+     * Chờ PVC Bound, StatefulSet sẵn sàng và EXTERNAL-IP qua watch dùng chung. Các lời chờ được nối bằng
+     * CompletableFuture nên không thread nào bị giữ trong lúc chờ; khi xong, import dump và cập nhật trạng thái
+     * chạy trên virtual thread riêng (không chạy trên thread sự kiện của informer).
+     */
+    private void trackReadiness(PendingDatabase pending) {
+        CompletableFuture<V1PersistentVolumeClaim> pvcBound = readinessTracker.awaitPvcBound(
+                pending.namespace(), pending.pvcName(), Duration.ofSeconds(READY_TIMEOUT_SECONDS));
+        CompletableFuture<V1StatefulSet> statefulSetReady = readinessTracker.awaitStatefulSetReady(
+                pending.namespace(), pending.resourceName(), pending.statefulSetGeneration(),
+                Duration.ofSeconds(READY_TIMEOUT_SECONDS));
+        CompletableFuture<V1Service> loadBalancer = readinessTracker.awaitLoadBalancerIp(
+                pending.namespace(), pending.serviceName(), Duration.ofSeconds(EXTERNAL_IP_TIMEOUT_SECONDS));
+
+        CompletableFuture<V1PersistentVolumeClaim> pvcChecked = pvcBound.handle((pvc, error) -> {
+            if (error != null) {
+                // Hủy các lời chờ còn lại để giải phóng ngay thay vì đợi hết thời gian
+                statefulSetReady.cancel(false);
+                loadBalancer.cancel(false);
+                throw new RuntimeException("PVC " + pending.pvcName() + " chưa sẵn sàng: " + ReadinessTracker.failureMessage(error)
+                        + ". Vui lòng kiểm tra StorageClass/PV.");
+            }
+            System.out.println("[deployDatabase] PVC " + pending.pvcName() + " đã ở trạng thái Bound");
+            return pvc;
+        });
+        // Không có EXTERNAL-IP thì dùng DNS nội bộ của service làm database IP
+        CompletableFuture<String> databaseIp = loadBalancer.handle((service, error) -> {
+            if (error == null) {
+                String externalIp = service.getStatus().getLoadBalancer().getIngress().get(0).getIp();
+                if (externalIp != null && !externalIp.isEmpty()) {
+                    System.out.println("[deployDatabase] Đã lấy được EXTERNAL-IP: " + externalIp);
+                    return externalIp;
+                }
+            } else {
+                System.out.println("[deployDatabase] " + ReadinessTracker.failureMessage(error));
+            }
+            System.err.println("[deployDatabase] WARNING: Không thể lấy EXTERNAL-IP sau " + EXTERNAL_IP_TIMEOUT_SECONDS + " giây, sử dụng service name làm database IP");
+            return pending.serviceName() + "." + pending.namespace() + ".svc.cluster.local";
+        });
+
+        pvcChecked.thenCompose(pvc -> statefulSetReady)
+                .thenCombine(databaseIp, (statefulSet, ip) -> ip)
+                .whenComplete((ip, error) -> Thread.ofVirtual().name("database-ready-" + pending.resourceName())
+                        .start(() -> finishDeploy(pending, ip, error)));
+    }
+
+    /**
+     * Bước cuối của deploy database khi các lời chờ đã xong: import dump (nếu có) rồi chuyển RUNNING, hoặc ERROR.
+     * Chỉ ghi khi database vẫn đang BUILDING (người dùng có thể đã dừng hoặc xóa trong lúc chờ).
+     */
+    private void finishDeploy(PendingDatabase pending, String databaseIp, Throwable error) {
+        try {
+            if (error != null) {
+                System.err.println("[deployDatabase] Lỗi: " + ReadinessTracker.failureMessage(error));
+                updateDeployedDatabase(pending.databaseId(), null, "ERROR");
+                return;
+            }
+            System.out.println("[deployDatabase] StatefulSet " + pending.resourceName() + " đã sẵn sàng, database IP: " + databaseIp);
+            if (pending.dumpFile() != null) {
+                importDump(pending.dumpFile(), pending.databaseType(), pending.namespace(), pending.resourceName() + "-0",
+                        pending.databaseName(), pending.databaseUsername(), pending.databasePassword());
+            }
+            updateDeployedDatabase(pending.databaseId(), databaseIp, "RUNNING");
+            System.out.println("[deployDatabase] Hoàn tất triển khai database id=" + pending.databaseId() + ", databaseName=" + pending.databaseName());
+        } catch (Exception e) {
+            System.err.println("[deployDatabase] Không cập nhật được database id=" + pending.databaseId() + ": " + e.getMessage());
+        } finally {
+            deleteDumpFile(pending.dumpFile());
+        }
+    }
+
+    private void updateDeployedDatabase(Long databaseId, String databaseIp, String status) {
+        projectDatabaseRepository.findById(databaseId)
+                .filter(database -> "BUILDING".equals(database.getStatus()))
+                .ifPresent(database -> {
+                    if (databaseIp != null) {
+                        database.setDatabaseIp(databaseIp);
+                    }
+                    database.setStatus(status);
+                    projectDatabaseRepository.save(database);
+                });
+    }
+
+    private static void deleteDumpFile(Path dumpFile) {
+        if (dumpFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(dumpFile);
+        } catch (IOException e) {
+            System.err.println("[deployDatabase] Không xóa được file dump tạm " + dumpFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stream file dump (.sql hoặc archive của mongodump, có thể nén gzip/zstd/zip) vào stdin của mysql/mongorestore
+     * trong pod. Lỗi import chỉ được ghi log: database vẫn được tạo như trước đây.
+     */
+    private void importDump(Path dumpFile, String databaseType, String namespace, String podName,
+                            String databaseName, String databaseUsername, String databasePassword) {
+        String command;
+        Predicate<String> entryFilter;
+        boolean isMySql = "MYSQL".equals(databaseType);
+        if (isMySql) {
+            command = "MYSQL_PWD='" + escapeSingleQuotes(databasePassword) + "' mysql -u'" + escapeSingleQuotes(databaseUsername)
+                    + "' '" + escapeSingleQuotes(databaseName) + "'";
+            entryFilter = name -> name.endsWith(".sql");
+        } else {
+            // User được tạo bằng MONGO_INITDB_ROOT_USERNAME nên xác thực trên database admin
+            command = "mongorestore --archive --username '" + escapeSingleQuotes(databaseUsername)
+                    + "' --password '" + escapeSingleQuotes(databasePassword) + "' --authenticationDatabase admin";
+            entryFilter = name -> name.endsWith(".archive") || name.endsWith(".dump");
+        }
+
+        System.out.println("[deployDatabase] Bắt đầu stream file dump vào pod: " + podName);
+        try {
+            PodStreamImporter.ImportResult result = podStreamImporter.importDump(namespace, podName, null, command,
+                    () -> Files.newInputStream(dumpFile), entryFilter, isMySql,
+                    progress -> System.out.println("[deployDatabase] Import: " + progress.bytes() / (1024 * 1024) + "/"
+                            + progress.totalBytes() / (1024 * 1024) + " MB"
+                            + (progress.statements() >= 0 ? ", " + progress.statements() + " câu lệnh" : "")));
+            if (!result.output().isBlank()) {
+                System.out.println("[deployDatabase] Output từ import: " + result.output().trim());
+            }
+            System.out.println("[deployDatabase] Đã import file dump thành công: " + result.bytes() + " byte"
+                    + (result.statements() >= 0 ? ", " + result.statements() + " câu lệnh" : "")
+                    + " trong " + result.durationMs() + " ms");
+        } catch (Exception e) {
+            System.err.println("[deployDatabase] Lỗi khi import file dump: " + e.getMessage());
+            System.err.println("[deployDatabase] WARNING: Import thất bại nhưng database đã được tạo");
+        }
+    }
+
     private String escapeSingleQuotes(String input) {
         return input.replace("'", "'\"'\"'");
     }
@@ -1,6 +1,7 @@
 package my_spring_app.my_spring_app.service.impl;
 
 import com.jcraft.jsch.*;
+import my_spring_app.my_spring_app.artifact.ArtifactStore;
 import my_spring_app.my_spring_app.dto.reponse.DeployFrontendResponse;
 import my_spring_app.my_spring_app.dto.reponse.FrontendReplicaInfoResponse;
 import my_spring_app.my_spring_app.dto.reponse.ListProjectFrontendResponse;
@@ -10,11 +11,14 @@ import my_spring_app.my_spring_app.entity.ProjectEntity;
 import my_spring_app.my_spring_app.entity.ProjectFrontendEntity;
 import my_spring_app.my_spring_app.entity.ServerEntity;
 import my_spring_app.my_spring_app.entity.UserEntity;
+import my_spring_app.my_spring_app.k8s.ManifestApplier;
+import my_spring_app.my_spring_app.k8s.ReadinessTracker;
 import my_spring_app.my_spring_app.repository.FrontendRequestRepository;
 import my_spring_app.my_spring_app.repository.ProjectFrontendRepository;
 import my_spring_app.my_spring_app.repository.ProjectRepository;
 import my_spring_app.my_spring_app.repository.ServerRepository;
 import my_spring_app.my_spring_app.repository.UserRepository;
+import my_spring_app.my_spring_app.service.BuildCacheService;
 import my_spring_app.my_spring_app.service.ProjectFrontendService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -23,23 +27,18 @@ import org.springframework.transaction.annotation.Transactional;
 
 import io.kubernetes.client.openapi.ApiClient;
 import io.kubernetes.client.openapi.ApiException;
-import io.kubernetes.client.openapi.Configuration;
 import io.kubernetes.client.openapi.apis.AppsV1Api;
 import io.kubernetes.client.openapi.apis.CoreV1Api;
 import io.kubernetes.client.openapi.models.V1Namespace;
 import io.kubernetes.client.openapi.models.V1ObjectMeta;
 import io.kubernetes.client.openapi.models.V1Scale;
-import io.kubernetes.client.util.Config;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.Optional;
-import java.util.Properties;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -74,6 +73,17 @@ public class ProjectFrontendServiceImpl extends BaseKubernetesService implements
     @Autowired
     private FrontendRequestRepository frontendRequestRepository;
 
+    // Kho artifact theo hash cho file zip upload
+    @Autowired
+    private ArtifactStore artifactStore;
+
+    // Cache image đã build theo nội dung source
+    @Autowired
+    private BuildCacheService buildCacheService;
+
+    // Thời gian tối đa chờ Deployment rollout xong (giây)
+    private static final int ROLLOUT_TIMEOUT_SECONDS = 300;
+
     /**
      * Tạo short UUID từ UUID đầy đủ để sử dụng trong Kubernetes
      * UUID đầy đủ có 36 ký tự (với dấu gạch ngang), short UUID sẽ có độ dài cố định 12 ký tự
@@ -395,17 +405,16 @@ public class ProjectFrontendServiceImpl extends BaseKubernetesService implements
      * Kiểm tra và tạo namespace trên Kubernetes cluster nếu chưa tồn tại
      * Sử dụng Kubernetes Java Client API
      * 
-     * @param session SSH session đến MASTER server để lấy kubeconfig
      * @param namespace Tên namespace cần kiểm tra/tạo
      * @throws Exception Nếu có lỗi khi kiểm tra hoặc tạo namespace
      */
-    private void ensureNamespaceExists(Session session, String namespace) throws Exception {
+    private void ensureNamespaceExists(String namespace) throws Exception {
         System.out.println("[ensureNamespaceExists] Kiểm tra namespace: " + namespace);
         
         try {
-            // Sử dụng method createKubernetesClient từ parent class (đã xử lý thay thế server URL)
-            ApiClient client = createKubernetesClient(session);
-            CoreV1Api api = new CoreV1Api();
+            // Client dùng chung từ registry, không cần SSH tới MASTER
+            ApiClient client = kubernetesClientRegistry.getClient();
+            CoreV1Api api = new CoreV1Api(client);
             
             // Kiểm tra namespace đã tồn tại chưa
             try {
@@ -436,63 +445,6 @@ public class ProjectFrontendServiceImpl extends BaseKubernetesService implements
         }
     }
 
-    /**
-     * Override method createKubernetesClient để thay thế server URL trong kubeconfig
-     * trước khi feed cho Java Kubernetes client
-     */
-    @Override
-    protected ApiClient createKubernetesClient(Session session) throws Exception {
-        String kubeconfigPath = "~/.kube/config";
-        System.out.println("[createKubernetesClient] Đang đọc kubeconfig từ: " + kubeconfigPath);
-        File tempKubeconfig = null;
-        try {
-            String kubeconfigContent = executeCommand(session, "cat " + kubeconfigPath, false);
-            if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                String[] alternativePaths = {
-                        "/etc/kubernetes/admin.conf",
-                        "/root/.kube/config",
-                        "$HOME/.kube/config"
-                };
-                for (String altPath : alternativePaths) {
-                    try {
-                        kubeconfigContent = executeCommand(session, "cat " + altPath, true);
-                        if (kubeconfigContent != null && !kubeconfigContent.trim().isEmpty()) {
-                            break;
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-                if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                    throw new RuntimeException("Không thể đọc kubeconfig từ master server.");
-                }
-            }
-
-            // Lấy IP MASTER và thay thế server URL trong kubeconfig trước khi sử dụng
-            Optional<ServerEntity> masterOpt = serverRepository.findByRole("MASTER");
-            if (masterOpt.isPresent()) {
-                String masterIp = masterOpt.get().getIp();
-                kubeconfigContent = replaceKubeconfigServer(kubeconfigContent, masterIp);
-            } else {
-                System.err.println("[createKubernetesClient] WARNING: Không tìm thấy server MASTER để thay server URL trong kubeconfig");
-            }
-
-            tempKubeconfig = File.createTempFile("kubeconfig-", ".yaml");
-            try (FileWriter writer = new FileWriter(tempKubeconfig)) {
-                writer.write(kubeconfigContent);
-            }
-            System.out.println("[createKubernetesClient] Đã tạo kubeconfig tạm tại: " + tempKubeconfig.getAbsolutePath());
-            ApiClient client = Config.fromConfig(tempKubeconfig.getAbsolutePath());
-            Configuration.setDefaultApiClient(client);
-            return client;
-        } finally {
-            if (tempKubeconfig != null && tempKubeconfig.exists()) {
-                if (!tempKubeconfig.delete()) {
-                    tempKubeconfig.deleteOnExit();
-                }
-            }
-        }
-    }
-
     /**
      * Helper method để thực thi lệnh qua SSH (tương thích với code cũ)
      * Gọi method từ parent class với ignoreNonZeroExit = false
@@ -619,8 +571,9 @@ public class ProjectFrontendServiceImpl extends BaseKubernetesService implements
         // Khởi tạo các biến để quản lý SSH/SFTP connections
         Session session = null;           // SSH session đến DOCKER server (dùng cho FILE deployment)
         ChannelSftp sftp = null;          // SFTP channel đến DOCKER server
-        Session clusterSession = null;    // SSH session đến MASTER server (Kubernetes cluster)
-        ChannelSftp sftpYaml = null;      // SFTP channel đến MASTER server để upload YAML
+
+        // Generation của Deployment sau khi apply, dùng để chờ rollout đúng phiên bản vừa apply
+        long deploymentGeneration = 0;
 
         try {
             // ========== BƯỚC 3: XỬ LÝ DEPLOYMENT THEO PHƯƠNG THỨC ==========
@@ -635,21 +588,8 @@ public class ProjectFrontendServiceImpl extends BaseKubernetesService implements
 
                 projectEntity.setDockerImage(request.getDockerImage());
 
-                // Kết nối SSH đến MASTER server (Kubernetes cluster)
-                System.out.println("[deployFrontend] Đang kết nối đến MASTER server: " + master_server.getIp() + ":" + master_server.getPort());
-                JSch jsch = new JSch();
-                clusterSession = jsch.getSession(master_server.getUsername(), master_server.getIp(), master_server.getPort());
-                clusterSession.setPassword(master_server.getPassword());
-                Properties config = new Properties();
-                config.put("StrictHostKeyChecking", "no"); // Không kiểm tra host key
-                clusterSession.setConfig(config);
-                clusterSession.setTimeout(7000);
-                clusterSession.connect();
-                System.out.println("[deployFrontend] Kết nối SSH đến MASTER server thành công");
-
                 // Tạo nội dung YAML file (Deployment + Service + Ingress)
                 // Sử dụng uuid_k8s để làm tên resource trong K8s, tránh trùng khi projectName bị trùng
-                String fileName = uuid_k8s + ".yaml";
                 String yamlContent = "";
                 if ("REACT".equals(framework)) {
                     yamlContent = generateFrontendReactYaml(uuid_k8s, request.getDockerImage(), domainName, namespace, projectEntity.getMaxReplicas());
@@ -659,229 +599,178 @@ public class ProjectFrontendServiceImpl extends BaseKubernetesService implements
                     yamlContent = generateFrontendAngularYaml(uuid_k8s, request.getDockerImage(), domainName, namespace, projectEntity.getMaxReplicas());
                 }
 
-                // Mở SFTP channel để upload YAML file
-                Channel sftpYamlCh = clusterSession.openChannel("sftp");
-                sftpYamlCh.connect();
-                sftpYaml = (ChannelSftp) sftpYamlCh;
-                
-                // Tạo thư mục đích với UUID để tránh trùng tên: /home/<master_username>/uploads/<username>/<uuid_k8s của project>/frontend/<uuid_k8s>
-                String yamlRemoteDir = "/home/" + master_server.getUsername() + "/uploads/" + user.getUsername() + "/" + project.getUuid_k8s() + "/frontend/" + uuid_k8s;
-                System.out.println("[deployFrontend] Tạo/cd thư mục YAML: " + yamlRemoteDir);
-                String[] yamlDirParts = yamlRemoteDir.split("/");
-                String yamlCur = "";
-                for (String p : yamlDirParts) {
-                    if (p == null || p.isBlank()) continue;
-                    yamlCur += "/" + p;
-                    try {
-                        sftpYaml.cd(yamlCur); // Thử chuyển vào thư mục
-                    } catch (Exception e) {
-                        sftpYaml.mkdir(yamlCur); // Nếu không tồn tại thì tạo mới
-                        sftpYaml.cd(yamlCur);
-                    }
-                }
-                
-                // Upload YAML file lên MASTER server (Kubernetes cluster)
-                InputStream yamlStream = new ByteArrayInputStream(yamlContent.getBytes(StandardCharsets.UTF_8));
-                String yamlRemotePath = yamlRemoteDir + "/" + fileName;
-                sftpYaml.put(yamlStream, yamlRemotePath);
-                System.out.println("[deployFrontend] Đã upload YAML file: " + yamlRemotePath);
-
-                // Lưu yamlPath (đường dẫn YAML trên MASTER server)
                 // Với deployment type là DOCKER: không có sourcePath (null)
                 projectEntity.setSourcePath(null);
-                projectEntity.setYamlPath(yamlRemotePath);
 
                 // Kiểm tra và tạo namespace nếu chưa tồn tại
-                ensureNamespaceExists(clusterSession, namespace);
+                ensureNamespaceExists(namespace);
 
-                // Apply YAML file vào Kubernetes cluster bằng kubectl
-                System.out.println("[deployFrontend] Đang apply YAML: kubectl apply -f " + yamlRemotePath);
-                executeCommand(clusterSession, "kubectl apply -f '" + yamlRemotePath + "'");
+                // Server-side apply qua Kubernetes API, object không thay đổi sẽ được bỏ qua
+                ManifestApplier.ApplyResult result = manifestApplier.apply(namespace, yamlContent);
+                System.out.println("[deployFrontend] Apply manifest: " + result.applied() + " object thay đổi, "
+                        + result.unchanged() + " object giữ nguyên");
+                deploymentGeneration = result.generationOf("Deployment", "app-" + uuid_k8s);
 
             } else if ("FILE".equalsIgnoreCase(request.getDeploymentType())) {
                 // ========== PHƯƠNG THỨC 2: DEPLOY TỪ FILE ZIP ==========
                 
-                // Validate file upload
-                if (request.getFile() == null || request.getFile().isEmpty()) {
-                    throw new RuntimeException("File upload không được để trống khi deployment method là FILE");
+                // Validate file upload (file multipart hoặc artifactId đã upload qua /api/artifacts)
+                boolean hasFile = request.getFile() != null && !request.getFile().isEmpty();
+                boolean hasArtifact = request.getArtifactId() != null && !request.getArtifactId().isBlank();
+                if (!hasFile && !hasArtifact) {
+                    throw new RuntimeException("File upload hoặc artifactId không được để trống khi deployment method là FILE");
                 }
 
-                System.out.println("[deployFrontend] Kết nối SSH tới DOCKER server: " + docker_server.getIp() + ":" + docker_server.getPort());
-
-                // Bước 1: Kết nối SSH đến DOCKER server (để build và push image)
-                JSch jsch = new JSch();
-                session = jsch.getSession(docker_server.getUsername(), docker_server.getIp(), docker_server.getPort());
-                session.setPassword(docker_server.getPassword());
-                Properties cfg = new Properties();
-                cfg.put("StrictHostKeyChecking", "no");
-                session.setConfig(cfg);
-                session.setTimeout(7000);
-                session.connect();
-                System.out.println("[deployFrontend] Đã kết nối SSH DOCKER server thành công");
-
-                // Bước 2: Upload file .zip lên DOCKER server
-                Channel ch = session.openChannel("sftp");
-                ch.connect();
-                sftp = (ChannelSftp) ch;
-
-                // Tạo thư mục đích trên DOCKER server với UUID để tránh trùng tên: /home/<docker_username>/uploads/<username>/<uuid_k8s của project>/frontend/<uuid_k8s>
-                String remoteBase = "/home/" + docker_server.getUsername() + "/uploads/" + user.getUsername() + "/" + project.getUuid_k8s() + "/frontend/" + uuid_k8s;
-                System.out.println("[deployFrontend] Tạo/cd thư mục đích: " + remoteBase);
-                // Đảm bảo thư mục tồn tại (tạo từng cấp thư mục nếu chưa có)
-                String[] parts = remoteBase.split("/");
-                String cur = "";
-                for (String p : parts) {
-                    if (p == null || p.isBlank()) continue;
-                    cur += "/" + p;
-                    try {
-                        sftp.cd(cur);
-                    } catch (Exception e) {
-                        sftp.mkdir(cur);
-                        sftp.cd(cur);
+                // Ghi file vào kho artifact (băm SHA-256 trong lúc ghi) để upload trùng nội dung không phải truyền lại
+                ArtifactStore.Artifact artifact;
+                String originalName;
+                if (hasFile) {
+                    originalName = request.getFile().getOriginalFilename();
+                    try (InputStream in = request.getFile().getInputStream()) {
+                        artifact = artifactStore.store(in, request.getUsername());
                     }
+                } else {
+                    originalName = request.getArtifactFileName();
+                    artifact = artifactStore.get(request.getArtifactId(), request.getUsername());
                 }
 
                 // Tạo tên file an toàn (loại bỏ ký tự đặc biệt)
-                String originalName = request.getFile().getOriginalFilename();
                 String safeName = originalName != null ? originalName.replaceAll("[^a-zA-Z0-9._-]", "_") : (projectName + ".zip");
-                String remoteZipPath = remoteBase + "/" + safeName;
-                System.out.println("[deployFrontend] Upload file lên: " + remoteZipPath);
-                sftp.put(request.getFile().getInputStream(), remoteZipPath);
-                
-                // Lưu sourcePath (đường dẫn file zip trên DOCKER server)
-                projectEntity.setSourcePath(remoteZipPath);
-
-                // Bước 3: Giải nén file .zip trên DOCKER server
-                String unzipCmd = "cd " + remoteBase + " && unzip -o '" + safeName + "'";
-                System.out.println("[deployFrontend] Giải nén: " + unzipCmd);
-                executeCommand(session, unzipCmd);
-
-                // Bước 4: Build và push Docker image
                 // Xác định thư mục project sau khi giải nén
                 String extractedDir = safeName.endsWith(".zip") ? safeName.substring(0, safeName.length() - 4) : safeName;
-                String projectDir = remoteBase + "/" + extractedDir;
-
-                // Kiểm tra Dockerfile có tồn tại không
-                String checkDockerfile = "test -f '" + projectDir + "/Dockerfile' && echo OK || echo NO";
-                System.out.println("[deployFrontend] Kiểm tra Dockerfile: " + checkDockerfile);
-                String check = executeCommand(session, checkDockerfile);
-                if (!"OK".equals(check.trim())) {
-                    throw new RuntimeException("Không tìm thấy Dockerfile trong gói source đã giải nén");
-                }
 
-                // Build Docker image từ Dockerfile
-                // Sử dụng uuid_k8s thay vì projectName để tránh trùng tên image
-                String imageTag = dockerhub_username + "/" + uuid_k8s + ":latest";
-                String buildCmd = "cd '" + projectDir + "' && docker build -t '" + imageTag + "' .";
-                System.out.println("[deployFrontend] Docker build: " + buildCmd);
-                executeCommand(session, buildCmd);
+                // Cache build theo (zip, framework, Dockerfile): trùng thì dùng lại image đã push, bỏ qua upload/build/push
+                String buildCacheKey = buildCacheService.computeKey(artifact, extractedDir, framework);
+                String imageRef = buildCacheService.findImage(buildCacheKey);
+
+                if (imageRef != null) {
+                    System.out.println("[deployFrontend] Dùng lại image đã build từ cùng source: " + imageRef);
+                    projectEntity.setDockerImage(imageRef);
+                } else {
+                    System.out.println("[deployFrontend] Kết nối SSH tới DOCKER server: " + docker_server.getIp() + ":" + docker_server.getPort());
+
+                    // Bước 1: Kết nối SSH đến DOCKER server (để build và push image)
+                    session = createSession(docker_server);
+                    System.out.println("[deployFrontend] Đã kết nối SSH DOCKER server thành công");
+
+                    // Bước 2: Upload file .zip lên DOCKER server
+                    Channel ch = session.openChannel("sftp");
+                    ch.connect();
+                    sftp = (ChannelSftp) ch;
+
+                    // Tạo thư mục đích trên DOCKER server với UUID để tránh trùng tên: /home/<docker_username>/uploads/<username>/<uuid_k8s của project>/frontend/<uuid_k8s>
+                    String remoteBase = "/home/" + docker_server.getUsername() + "/uploads/" + user.getUsername() + "/" + project.getUuid_k8s() + "/frontend/" + uuid_k8s;
+                    System.out.println("[deployFrontend] Tạo/cd thư mục đích: " + remoteBase);
+                    // Đảm bảo thư mục tồn tại (tạo từng cấp thư mục nếu chưa có)
+                    String[] parts = remoteBase.split("/");
+                    String cur = "";
+                    for (String p : parts) {
+                        if (p == null || p.isBlank()) continue;
+                        cur += "/" + p;
+                        try {
+                            sftp.cd(cur);
+                        } catch (Exception e) {
+                            sftp.mkdir(cur);
+                            sftp.cd(cur);
+                        }
+                    }
+
+                    String remoteZipPath = remoteBase + "/" + safeName;
+                    System.out.println("[deployFrontend] Upload file lên: " + remoteZipPath);
+                    artifactStore.uploadTo(session, sftp, artifact, "/home/" + docker_server.getUsername(), remoteZipPath);
                 
-                // Push image lên DockerHub
-                String pushCmd = "docker push '" + imageTag + "'";
-                System.out.println("[deployFrontend] Docker push: " + pushCmd);
-                executeCommand(session, pushCmd);
-
-                projectEntity.setDockerImage(imageTag); // Lưu image tag vào database
-
-                // Dọn dẹp: Xóa Docker image local sau khi push thành công
-                try {
-                    String rmiCmd = "docker rmi '" + escapeSingleQuotes(imageTag) + "' || true";
-                    System.out.println("[deployFrontend] Dọn dẹp Docker image: " + rmiCmd);
-                    executeCommand(session, rmiCmd, true);
-                    System.out.println("[deployFrontend] Đã dọn dẹp Docker image: " + imageTag);
-                } catch (Exception cleanupEx) {
-                    System.err.println("[deployFrontend] Lỗi khi dọn dẹp Docker image (bỏ qua): " + cleanupEx.getMessage());
-                }
+                    // Lưu sourcePath (đường dẫn file zip trên DOCKER server)
+                    projectEntity.setSourcePath(remoteZipPath);
+
+                    // Bước 3: Giải nén file .zip trên DOCKER server
+                    String unzipCmd = "cd " + remoteBase + " && unzip -o '" + safeName + "'";
+                    System.out.println("[deployFrontend] Giải nén: " + unzipCmd);
+                    executeCommand(session, unzipCmd);
+
+                    // Bước 4: Build và push Docker image
+                    // Xác định thư mục project sau khi giải nén
+                    String projectDir = remoteBase + "/" + extractedDir;
+
+                    // Kiểm tra Dockerfile có tồn tại không
+                    String checkDockerfile = "test -f '" + projectDir + "/Dockerfile' && echo OK || echo NO";
+                    System.out.println("[deployFrontend] Kiểm tra Dockerfile: " + checkDockerfile);
+                    String check = executeCommand(session, checkDockerfile);
+                    if (!"OK".equals(check.trim())) {
+                        throw new RuntimeException("Không tìm thấy Dockerfile trong gói source đã giải nén");
+                    }
 
-                // Dọn dẹp: Xóa thư mục mã nguồn đã upload và giải nén
-                try {
-                    String cleanupDirCmd = "rm -rf '" + escapeSingleQuotes(remoteBase) + "' || true";
-                    System.out.println("[deployFrontend] Dọn dẹp thư mục mã nguồn: " + cleanupDirCmd);
-                    executeCommand(session, cleanupDirCmd, true);
-                    System.out.println("[deployFrontend] Đã dọn dẹp thư mục mã nguồn: " + remoteBase);
-                } catch (Exception cleanupEx) {
-                    System.err.println("[deployFrontend] Lỗi khi dọn dẹp thư mục mã nguồn (bỏ qua): " + cleanupEx.getMessage());
-                }
-                try {
-                    String uploadsRoot = "/home/" + docker_server.getUsername() + "/uploads";
-                    String cleanupUploadsCmd = "rm -rf '" + escapeSingleQuotes(uploadsRoot) + "' || true";
-                    System.out.println("[deployFrontend] Dọn dẹp thư mục uploads: " + cleanupUploadsCmd);
-                    executeCommand(session, cleanupUploadsCmd, true);
-                } catch (Exception cleanupEx) {
-                    System.err.println("[deployFrontend] Lỗi khi dọn dẹp thư mục uploads (bỏ qua): " + cleanupEx.getMessage());
+                    // Build Docker image từ Dockerfile
+                    // Sử dụng uuid_k8s thay vì projectName để tránh trùng tên image
+                    String imageTag = dockerhub_username + "/" + uuid_k8s + ":latest";
+                    String buildCmd = "cd '" + projectDir + "' && docker build -t '" + imageTag + "' .";
+                    System.out.println("[deployFrontend] Docker build: " + buildCmd);
+                    executeCommand(session, buildCmd);
+                
+                    // Push image lên DockerHub
+                    String pushCmd = "docker push '" + imageTag + "'";
+                    System.out.println("[deployFrontend] Docker push: " + pushCmd);
+                    executeCommand(session, pushCmd);
+
+                    // Lưu image vào database dạng digest để bản cache không bị ảnh hưởng khi tag bị ghi đè
+                    imageRef = resolvePushedImageRef(session, imageTag);
+                    projectEntity.setDockerImage(imageRef);
+                    buildCacheService.recordBuild(buildCacheKey, artifact, framework, imageRef);
+
+                    // Dọn dẹp: Xóa Docker image local sau khi push thành công
+                    try {
+                        String rmiCmd = "docker rmi '" + escapeSingleQuotes(imageTag) + "' || true";
+                        System.out.println("[deployFrontend] Dọn dẹp Docker image: " + rmiCmd);
+                        executeCommand(session, rmiCmd, true);
+                        System.out.println("[deployFrontend] Đã dọn dẹp Docker image: " + imageTag);
+                    } catch (Exception cleanupEx) {
+                        System.err.println("[deployFrontend] Lỗi khi dọn dẹp Docker image (bỏ qua): " + cleanupEx.getMessage());
+                    }
+
+                    // Dọn dẹp: Xóa thư mục mã nguồn đã upload và giải nén
+                    try {
+                        String cleanupDirCmd = "rm -rf '" + escapeSingleQuotes(remoteBase) + "' || true";
+                        System.out.println("[deployFrontend] Dọn dẹp thư mục mã nguồn: " + cleanupDirCmd);
+                        executeCommand(session, cleanupDirCmd, true);
+                        System.out.println("[deployFrontend] Đã dọn dẹp thư mục mã nguồn: " + remoteBase);
+                    } catch (Exception cleanupEx) {
+                        System.err.println("[deployFrontend] Lỗi khi dọn dẹp thư mục mã nguồn (bỏ qua): " + cleanupEx.getMessage());
+                    }
                 }
 
-                // Bước 5: Tạo YAML và apply lên Kubernetes cluster (MASTER server)
-                System.out.println("[deployFrontend] Chuyển sang MASTER server để upload/apply YAML: " + master_server.getIp() + ":" + master_server.getPort());
+                // Bước 5: Tạo manifest và apply lên Kubernetes cluster qua Kubernetes API
+                System.out.println("[deployFrontend] Apply manifest lên cluster qua Kubernetes API");
 
                 // Tạo nội dung YAML file
                 // Sử dụng uuid_k8s để làm tên resource trong K8s, tránh trùng khi projectName bị trùng
-                String fileName = uuid_k8s + ".yaml";    
                 String yamlContent = "";
                 if ("REACT".equals(framework)) {
-                    yamlContent = generateFrontendReactYaml(uuid_k8s, imageTag, domainName, namespace, projectEntity.getMaxReplicas());
+                    yamlContent = generateFrontendReactYaml(uuid_k8s, imageRef, domainName, namespace, projectEntity.getMaxReplicas());
                 } else if ("VUE".equals(framework)) {
-                    yamlContent = generateFrontendVueYaml(uuid_k8s, imageTag, domainName, namespace, projectEntity.getMaxReplicas());
+                    yamlContent = generateFrontendVueYaml(uuid_k8s, imageRef, domainName, namespace, projectEntity.getMaxReplicas());
                 } else if ("ANGULAR".equals(framework)) {
-                    yamlContent = generateFrontendAngularYaml(uuid_k8s, imageTag, domainName, namespace, projectEntity.getMaxReplicas());
+                    yamlContent = generateFrontendAngularYaml(uuid_k8s, imageRef, domainName, namespace, projectEntity.getMaxReplicas());
                 }
 
-                // Kết nối SSH đến MASTER server
-                JSch jschCluster = new JSch();
-                clusterSession = jschCluster.getSession(master_server.getUsername(), master_server.getIp(), master_server.getPort());
-                clusterSession.setPassword(master_server.getPassword());
-                Properties cfgCluster = new Properties();
-                cfgCluster.put("StrictHostKeyChecking", "no");
-                clusterSession.setConfig(cfgCluster);
-                clusterSession.setTimeout(7000);
-                clusterSession.connect();
-                System.out.println("[deployFrontend] Kết nối SSH tới MASTER server thành công");
-
-                // Mở SFTP channel để upload YAML file
-                Channel sftpYamlCh = clusterSession.openChannel("sftp");
-                sftpYamlCh.connect();
-                sftpYaml = (ChannelSftp) sftpYamlCh;
-                
-                // Tạo thư mục đích trên MASTER server với UUID để tránh trùng tên: /home/<master_username>/uploads/<username>/<uuid_k8s của project>/frontend/<uuid_k8s>
-                String yamlRemoteDir = "/home/" + master_server.getUsername() + "/uploads/" + user.getUsername() + "/" + project.getUuid_k8s() + "/frontend/" + uuid_k8s;
-                System.out.println("[deployFrontend] Tạo/cd thư mục YAML: " + yamlRemoteDir);
-                String[] yamlDirParts = yamlRemoteDir.split("/");
-                String yamlCur = "";
-                for (String p : yamlDirParts) {
-                    if (p == null || p.isBlank()) continue;
-                    yamlCur += "/" + p;
-                    try {
-                        sftpYaml.cd(yamlCur);
-                    } catch (Exception e) {
-                        sftpYaml.mkdir(yamlCur);
-                        sftpYaml.cd(yamlCur);
-                    }
-                }
-                
-                // Upload YAML file lên MASTER server
-                InputStream yamlStream = new ByteArrayInputStream(yamlContent.getBytes(StandardCharsets.UTF_8));
-                String yamlRemotePath = yamlRemoteDir + "/" + fileName;
-                sftpYaml.put(yamlStream, yamlRemotePath);
-                System.out.println("[deployFrontend] Upload YAML: " + yamlRemotePath);
-
-                // Lưu yamlPath (đường dẫn YAML trên MASTER server)
-                // Với FILE method: đã có sourcePath (đã set ở trên), giờ set thêm yamlPath
-                projectEntity.setYamlPath(yamlRemotePath);
-
                 // Kiểm tra và tạo namespace nếu chưa tồn tại
-                ensureNamespaceExists(clusterSession, namespace);
+                ensureNamespaceExists(namespace);
 
-                // Apply YAML file vào Kubernetes cluster
-                System.out.println("[deployFrontend] Đang apply YAML: kubectl apply -f " + yamlRemotePath);
-                executeCommand(clusterSession, "kubectl apply -f '" + yamlRemotePath + "'");
+                // Server-side apply qua Kubernetes API, object không thay đổi sẽ được bỏ qua
+                ManifestApplier.ApplyResult result = manifestApplier.apply(namespace, yamlContent);
+                System.out.println("[deployFrontend] Apply manifest: " + result.applied() + " object thay đổi, "
+                        + result.unchanged() + " object giữ nguyên");
+                deploymentGeneration = result.generationOf("Deployment", "app-" + uuid_k8s);
             }
 
-            // ========== BƯỚC 4: CẬP NHẬT TRẠNG THÁI VÀ TRẢ VỀ KẾT QUẢ ==========
-            
-            // Cập nhật trạng thái project thành RUNNING
-            projectEntity.setStatus("RUNNING");
+            // ========== BƯỚC 4: LƯU TRẠNG THÁI VÀ TRẢ VỀ KẾT QUẢ ==========
+
+            // Giữ BUILDING cho tới khi rollout xong: trạng thái RUNNING/ERROR được cập nhật nền qua watch dùng chung,
+            // request không chờ rollout (không giữ worker thread của Tomcat tới ROLLOUT_TIMEOUT_SECONDS)
+            projectEntity.setStatus("BUILDING");
             projectFrontendRepository.save(projectEntity);
-            System.out.println("[deployFrontend] Hoàn tất triển khai frontend, projectName=" + projectName + ", domain=" + domainName);
+            Long frontendId = projectEntity.getId();
+            long generation = deploymentGeneration;
+            runAfterCommit(() -> trackRollout(frontendId, namespace, uuid_k8s, generation));
+            System.out.println("[deployFrontend] Đã apply frontend, chờ rollout nền: projectName=" + projectName + ", domain=" + domainName);
 
             // Tạo response và trả về
             DeployFrontendResponse response = new DeployFrontendResponse();
@@ -902,13 +791,39 @@ public class ProjectFrontendServiceImpl extends BaseKubernetesService implements
             // ========== DỌN DẸP TÀI NGUYÊN ==========
             // Đảm bảo đóng tất cả các kết nối SSH/SFTP để giải phóng tài nguyên
             if (sftp != null && sftp.isConnected()) sftp.disconnect();
-            if (session != null && session.isConnected()) session.disconnect();
-            if (sftpYaml != null && sftpYaml.isConnected()) sftpYaml.disconnect();
-            if (clusterSession != null && clusterSession.isConnected()) clusterSession.disconnect();
+            if (session != null) releaseSession(session);
             System.out.println("[deployFrontend] Đã đóng các kết nối SSH/SFTP");
         }
     }
 
+    /**
+     * Theo dõi rollout của Deployment vừa apply và cập nhật trạng thái frontend khi xong/thất bại.
+     * Callback chạy trên virtual thread riêng (không ghi DB trên thread sự kiện của informer) và chỉ ghi
+     * khi frontend vẫn đang BUILDING (người dùng có thể đã dừng hoặc xóa trong lúc chờ).
+     */
+    private void trackRollout(Long frontendId, String namespace, String uuid_k8s, long generation) {
+        System.out.println("[deployFrontend] Chờ rollout Deployment app-" + uuid_k8s + " (namespace " + namespace + ")");
+        readinessTracker.awaitDeploymentRollout(namespace, "app-" + uuid_k8s, generation, Duration.ofSeconds(ROLLOUT_TIMEOUT_SECONDS))
+                .whenComplete((deployment, error) -> Thread.ofVirtual().name("frontend-rollout-" + uuid_k8s).start(() -> {
+                    String status = error == null ? "RUNNING" : "ERROR";
+                    if (error == null) {
+                        System.out.println("[deployFrontend] Rollout hoàn tất: app-" + uuid_k8s);
+                    } else {
+                        System.err.println("[deployFrontend] Rollout app-" + uuid_k8s + " thất bại: " + ReadinessTracker.failureMessage(error));
+                    }
+                    try {
+                        projectFrontendRepository.findById(frontendId)
+                                .filter(frontend -> "BUILDING".equals(frontend.getStatus()))
+                                .ifPresent(frontend -> {
+                                    frontend.setStatus(status);
+                                    projectFrontendRepository.save(frontend);
+                                });
+                    } catch (Exception e) {
+                        System.err.println("[deployFrontend] Không cập nhật được trạng thái frontend id=" + frontendId + ": " + e.getMessage());
+                    }
+                }));
+    }
+
     @Override
     public void stopFrontend(Long projectId, Long frontendId) {
         System.out.println("[stopFrontend] Yêu cầu dừng frontend projectId=" + projectId + ", frontendId=" + frontendId);
@@ -1032,14 +947,7 @@ public class ProjectFrontendServiceImpl extends BaseKubernetesService implements
         Session clusterSession = null;
         try {
             // Kết nối SSH tới MASTER để đọc kubeconfig
-            JSch jsch = new JSch();
-            clusterSession = jsch.getSession(masterServer.getUsername(), masterServer.getIp(), masterServer.getPort());
-            clusterSession.setPassword(masterServer.getPassword());
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            clusterSession.setConfig(config);
-            clusterSession.setTimeout(7000);
-            clusterSession.connect();
+            clusterSession = createSession(masterServer);
             System.out.println("[scaleFrontendDeployment] Đã kết nối MASTER server để scale deployment");
 
             // Tạo Kubernetes client dựa trên kubeconfig vừa đọc
@@ -1059,8 +967,8 @@ public class ProjectFrontendServiceImpl extends BaseKubernetesService implements
             throw new RuntimeException("Không thể scale frontend: " + e.getMessage(), e);
         } finally {
             // Đóng SSH session để tránh rò rỉ kết nối
-            if (clusterSession != null && clusterSession.isConnected()) {
-                clusterSession.disconnect();
+            if (clusterSession != null) {
+                releaseSession(clusterSession);
             }
         }
     }
@@ -1086,14 +994,7 @@ public class ProjectFrontendServiceImpl extends BaseKubernetesService implements
         Session clusterSession = null;
         try {
             // Kết nối SSH tới server MASTER để chạy lệnh kubectl
-            JSch jsch = new JSch();
-            clusterSession = jsch.getSession(masterServer.getUsername(), masterServer.getIp(), masterServer.getPort());
-            clusterSession.setPassword(masterServer.getPassword());
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            clusterSession.setConfig(config);
-            clusterSession.setTimeout(7000);
-            clusterSession.connect();
+            clusterSession = createSession(masterServer);
             System.out.println("[deleteFrontendResources] Đã kết nối MASTER server để xóa resources");
 
             // Xóa ingress
@@ -1133,8 +1034,8 @@ public class ProjectFrontendServiceImpl extends BaseKubernetesService implements
             System.err.println("[deleteFrontendResources] Lỗi: " + e.getMessage());
             throw new RuntimeException("Không thể xóa resources frontend: " + e.getMessage(), e);
         } finally {
-            if (clusterSession != null && clusterSession.isConnected()) {
-                clusterSession.disconnect();
+            if (clusterSession != null) {
+                releaseSession(clusterSession);
             }
         }
     }
@@ -13,16 +13,15 @@ import my_spring_app.my_spring_app.dto.reponse.ProjectRequestHistoryResponse;
 import my_spring_app.my_spring_app.dto.request.CreateProjectRequest;
 import my_spring_app.my_spring_app.entity.BackendRequestEntity;
 import my_spring_app.my_spring_app.entity.FrontendRequestEntity;
+import my_spring_app.my_spring_app.k8s.KubernetesMetricsClient;
 import my_spring_app.my_spring_app.repository.BackendRequestRepository;
 import my_spring_app.my_spring_app.repository.FrontendRequestRepository;
 import com.jcraft.jsch.*;
 import io.kubernetes.client.openapi.ApiClient;
 import io.kubernetes.client.openapi.ApiException;
-import io.kubernetes.client.openapi.Configuration;
 import io.kubernetes.client.openapi.apis.CoreV1Api;
 import io.kubernetes.client.openapi.models.V1Namespace;
 import io.kubernetes.client.openapi.models.V1ObjectMeta;
-import io.kubernetes.client.util.Config;
 import my_spring_app.my_spring_app.entity.ProjectBackendEntity;
 import my_spring_app.my_spring_app.entity.ProjectDatabaseEntity;
 import my_spring_app.my_spring_app.entity.ProjectEntity;
@@ -37,13 +36,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Optional;
-import java.util.Properties;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -457,19 +453,20 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
                 ? projectWithDatabases.getDatabases() 
                 : (project.getDatabases() != null ? project.getDatabases() : new java.util.ArrayList<>());
 
-        // Lấy master server và tạo SSH session để lấy metrics từ Kubernetes
-        Session session = null;
-        try {
-            ServerEntity masterServer = getMasterServer();
-            session = createSession(masterServer);
-        } catch (Exception e) {
-            System.err.println("[getProjectDatabases] Không thể tạo SSH session để lấy metrics: " + e.getMessage());
-            // Tiếp tục mà không có metrics
-        }
-
-        final Session finalSession = session;
         final String namespace = project.getNamespace();
 
+        // Lấy metrics của tất cả pod trong namespace từ snapshot metrics dùng chung
+        List<KubernetesMetricsClient.PodUsage> podUsages = null;
+        if (namespace != null) {
+            try {
+                podUsages = metricsSnapshotService.podsInNamespace(namespace);
+            } catch (Exception e) {
+                System.err.println("[getProjectDatabases] Không thể lấy metrics từ Kubernetes: " + e.getMessage());
+                // Tiếp tục mà không có metrics
+            }
+        }
+        final List<KubernetesMetricsClient.PodUsage> finalPodUsages = podUsages;
+
         // Map databases sang DTO
         List<ProjectDatabaseListResponse.DatabaseInfo> databaseInfos = databases.stream()
                 .map(db -> {
@@ -487,43 +484,20 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
                     info.setCreatedAt(db.getCreatedAt());
 
                     // Lấy CPU và Memory từ Kubernetes dựa vào uuid_k8s và namespace
-                    if (finalSession != null && namespace != null && db.getUuid_k8s() != null && !db.getUuid_k8s().isEmpty()) {
+                    if (finalPodUsages != null && db.getUuid_k8s() != null && !db.getUuid_k8s().isEmpty()) {
                         try {
-                            // Sử dụng cú pháp: kubectl top pod -n <namespace> | grep <db-uuid>
-                            // Ví dụ: kubectl top pod -n ns-1b27c3a13de1 | grep db-0b007a05d0b0
+                            // Cộng dồn các pod có tên bắt đầu bằng db-<uuid>
                             String podNamePrefix = "db-" + db.getUuid_k8s();
-                            String cmd = String.format("kubectl top pod -n %s | grep %s", namespace, podNamePrefix);
-                            String output = executeCommand(finalSession, cmd, true);
-                            
-                            if (output != null && !output.trim().isEmpty()) {
-                                String[] lines = output.split("\\r?\\n");
-                                double totalCpu = 0.0;
-                                long totalMemory = 0L;
-                                
-                                for (String line : lines) {
-                                    line = line.trim();
-                                    if (line.isEmpty()) {
-                                        continue;
-                                    }
-                                    String[] parts = line.split("\\s+");
-                                    if (parts.length >= 3) {
-                                        try {
-                                            double cpu = parseCpuCores(parts[1]);
-                                            long memory = parseMemoryBytes(parts[2]);
-                                            totalCpu += cpu;
-                                            totalMemory += memory;
-                                        } catch (NumberFormatException ex) {
-                                            // Bỏ qua dòng không parse được
-                                        }
-                                    }
+                            double totalCpu = 0.0;
+                            long totalMemory = 0L;
+                            for (KubernetesMetricsClient.PodUsage usage : finalPodUsages) {
+                                if (usage.name() != null && usage.name().startsWith(podNamePrefix)) {
+                                    totalCpu += usage.cpuCores();
+                                    totalMemory += usage.memoryBytes();
                                 }
-                                
-                                info.setCpu(formatCpu(totalCpu));
-                                info.setMemory(formatMemory(totalMemory));
-                            } else {
-                                info.setCpu("0m");
-                                info.setMemory("0");
                             }
+                            info.setCpu(formatCpu(totalCpu));
+                            info.setMemory(formatMemory(totalMemory));
                         } catch (Exception e) {
                             System.err.println("[getProjectDatabases] Lỗi khi lấy metrics cho database " + db.getId() + ": " + e.getMessage());
                             info.setCpu("0m");
@@ -538,11 +512,6 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
                 })
                 .collect(Collectors.toList());
 
-        // Đóng SSH session
-        if (session != null && session.isConnected()) {
-            session.disconnect();
-        }
-
         // Tạo response
         ProjectDatabaseListResponse response = new ProjectDatabaseListResponse();
         response.setDatabases(databaseInfos);
@@ -570,19 +539,20 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
                 ? projectWithBackends.getBackends() 
                 : (project.getBackends() != null ? project.getBackends() : new java.util.ArrayList<>());
 
-        // Lấy master server và tạo SSH session để lấy metrics từ Kubernetes
-        Session session = null;
-        try {
-            ServerEntity masterServer = getMasterServer();
-            session = createSession(masterServer);
-        } catch (Exception e) {
-            System.err.println("[getProjectBackends] Không thể tạo SSH session để lấy metrics: " + e.getMessage());
-            // Tiếp tục mà không có metrics
-        }
-
-        final Session finalSession = session;
         final String namespace = project.getNamespace();
 
+        // Lấy metrics của tất cả pod trong namespace từ snapshot metrics dùng chung
+        List<KubernetesMetricsClient.PodUsage> podUsages = null;
+        if (namespace != null) {
+            try {
+                podUsages = metricsSnapshotService.podsInNamespace(namespace);
+            } catch (Exception e) {
+                System.err.println("[getProjectBackends] Không thể lấy metrics từ Kubernetes: " + e.getMessage());
+                // Tiếp tục mà không có metrics
+            }
+        }
+        final List<KubernetesMetricsClient.PodUsage> finalPodUsages = podUsages;
+
         // Map backends sang DTO
         List<ProjectBackendListResponse.BackendInfo> backendInfos = backends.stream()
                 .map(be -> {
@@ -606,43 +576,20 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
                     info.setCreatedAt(be.getCreatedAt());
 
                     // Lấy CPU và Memory từ Kubernetes dựa vào uuid_k8s và namespace
-                    if (finalSession != null && namespace != null && be.getUuid_k8s() != null && !be.getUuid_k8s().isEmpty()) {
+                    if (finalPodUsages != null && be.getUuid_k8s() != null && !be.getUuid_k8s().isEmpty()) {
                         try {
-                            // Sử dụng cú pháp: kubectl top pod -n <namespace> | grep <app-uuid>
-                            // Ví dụ: kubectl top pod -n ns-1b27c3a13de1 | grep app-0b007a05d0b0
+                            // Cộng dồn các pod có tên bắt đầu bằng app-<uuid>
                             String podNamePrefix = "app-" + be.getUuid_k8s();
-                            String cmd = String.format("kubectl top pod -n %s | grep %s", namespace, podNamePrefix);
-                            String output = executeCommand(finalSession, cmd, true);
-                            
-                            if (output != null && !output.trim().isEmpty()) {
-                                String[] lines = output.split("\\r?\\n");
-                                double totalCpu = 0.0;
-                                long totalMemory = 0L;
-                                
-                                for (String line : lines) {
-                                    line = line.trim();
-                                    if (line.isEmpty()) {
-                                        continue;
-                                    }
-                                    String[] parts = line.split("\\s+");
-                                    if (parts.length >= 3) {
-                                        try {
-                                            double cpu = parseCpuCores(parts[1]);
-                                            long memory = parseMemoryBytes(parts[2]);
-                                            totalCpu += cpu;
-                                            totalMemory += memory;
-                                        } catch (NumberFormatException ex) {
-                                            // Bỏ qua dòng không parse được
-                                        }
-                                    }
+                            double totalCpu = 0.0;
+                            long totalMemory = 0L;
+                            for (KubernetesMetricsClient.PodUsage usage : finalPodUsages) {
+                                if (usage.name() != null && usage.name().startsWith(podNamePrefix)) {
+                                    totalCpu += usage.cpuCores();
+                                    totalMemory += usage.memoryBytes();
                                 }
-                                
-                                info.setCpu(formatCpu(totalCpu));
-                                info.setMemory(formatMemory(totalMemory));
-                            } else {
-                                info.setCpu("0m");
-                                info.setMemory("0");
                             }
+                            info.setCpu(formatCpu(totalCpu));
+                            info.setMemory(formatMemory(totalMemory));
                         } catch (Exception e) {
                             System.err.println("[getProjectBackends] Lỗi khi lấy metrics cho backend " + be.getId() + ": " + e.getMessage());
                             info.setCpu("0m");
@@ -657,11 +604,6 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
                 })
                 .collect(Collectors.toList());
 
-        // Đóng SSH session
-        if (session != null && session.isConnected()) {
-            session.disconnect();
-        }
-
         // Tạo response
         ProjectBackendListResponse response = new ProjectBackendListResponse();
         response.setBackends(backendInfos);
@@ -689,19 +631,20 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
                 ? projectWithFrontends.getFrontends() 
                 : (project.getFrontends() != null ? project.getFrontends() : new java.util.ArrayList<>());
 
-        // Lấy master server và tạo SSH session để lấy metrics từ Kubernetes
-        Session session = null;
-        try {
-            ServerEntity masterServer = getMasterServer();
-            session = createSession(masterServer);
-        } catch (Exception e) {
-            System.err.println("[getProjectFrontends] Không thể tạo SSH session để lấy metrics: " + e.getMessage());
-            // Tiếp tục mà không có metrics
-        }
-
-        final Session finalSession = session;
         final String namespace = project.getNamespace();
 
+        // Lấy metrics của tất cả pod trong namespace từ snapshot metrics dùng chung
+        List<KubernetesMetricsClient.PodUsage> podUsages = null;
+        if (namespace != null) {
+            try {
+                podUsages = metricsSnapshotService.podsInNamespace(namespace);
+            } catch (Exception e) {
+                System.err.println("[getProjectFrontends] Không thể lấy metrics từ Kubernetes: " + e.getMessage());
+                // Tiếp tục mà không có metrics
+            }
+        }
+        final List<KubernetesMetricsClient.PodUsage> finalPodUsages = podUsages;
+
         // Map frontends sang DTO
         List<ProjectFrontendListResponse.FrontendInfo> frontendInfos = frontends.stream()
                 .map(fe -> {
@@ -720,43 +663,20 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
                     info.setCreatedAt(fe.getCreatedAt());
 
                     // Lấy CPU và Memory từ Kubernetes dựa vào uuid_k8s và namespace
-                    if (finalSession != null && namespace != null && fe.getUuid_k8s() != null && !fe.getUuid_k8s().isEmpty()) {
+                    if (finalPodUsages != null && fe.getUuid_k8s() != null && !fe.getUuid_k8s().isEmpty()) {
                         try {
-                            // Sử dụng cú pháp: kubectl top pod -n <namespace> | grep <app-uuid>
-                            // Ví dụ: kubectl top pod -n ns-1b27c3a13de1 | grep app-0b007a05d0b0
+                            // Cộng dồn các pod có tên bắt đầu bằng app-<uuid>
                             String podNamePrefix = "app-" + fe.getUuid_k8s();
-                            String cmd = String.format("kubectl top pod -n %s | grep %s", namespace, podNamePrefix);
-                            String output = executeCommand(finalSession, cmd, true);
-                            
-                            if (output != null && !output.trim().isEmpty()) {
-                                String[] lines = output.split("\\r?\\n");
-                                double totalCpu = 0.0;
-                                long totalMemory = 0L;
-                                
-                                for (String line : lines) {
-                                    line = line.trim();
-                                    if (line.isEmpty()) {
-                                        continue;
-                                    }
-                                    String[] parts = line.split("\\s+");
-                                    if (parts.length >= 3) {
-                                        try {
-                                            double cpu = parseCpuCores(parts[1]);
-                                            long memory = parseMemoryBytes(parts[2]);
-                                            totalCpu += cpu;
-                                            totalMemory += memory;
-                                        } catch (NumberFormatException ex) {
-                                            // Bỏ qua dòng không parse được
-                                        }
-                                    }
+                            double totalCpu = 0.0;
+                            long totalMemory = 0L;
+                            for (KubernetesMetricsClient.PodUsage usage : finalPodUsages) {
+                                if (usage.name() != null && usage.name().startsWith(podNamePrefix)) {
+                                    totalCpu += usage.cpuCores();
+                                    totalMemory += usage.memoryBytes();
                                 }
-                                
-                                info.setCpu(formatCpu(totalCpu));
-                                info.setMemory(formatMemory(totalMemory));
-                            } else {
-                                info.setCpu("0m");
-                                info.setMemory("0");
                             }
+                            info.setCpu(formatCpu(totalCpu));
+                            info.setMemory(formatMemory(totalMemory));
                         } catch (Exception e) {
                             System.err.println("[getProjectFrontends] Lỗi khi lấy metrics cho frontend " + fe.getId() + ": " + e.getMessage());
                             info.setCpu("0m");
@@ -771,11 +691,6 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
                 })
                 .collect(Collectors.toList());
 
-        // Đóng SSH session
-        if (session != null && session.isConnected()) {
-            session.disconnect();
-        }
-
         // Tạo response
         ProjectFrontendListResponse response = new ProjectFrontendListResponse();
         response.setFrontends(frontendInfos);
@@ -848,64 +763,6 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
         System.out.println("[deleteProject] Đã xóa project thành công: " + project.getProjectName());
     }
 
-    /**
-     * Override method createKubernetesClient để thay thế server URL trong kubeconfig
-     * trước khi feed cho Java Kubernetes client
-     */
-    @Override
-    protected ApiClient createKubernetesClient(Session session) throws Exception {
-        String kubeconfigPath = "~/.kube/config";
-        System.out.println("[createKubernetesClient] Đang đọc kubeconfig từ: " + kubeconfigPath);
-        File tempKubeconfig = null;
-        try {
-            String kubeconfigContent = executeCommand(session, "cat " + kubeconfigPath, false);
-            if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                String[] alternativePaths = {
-                        "/etc/kubernetes/admin.conf",
-                        "/root/.kube/config",
-                        "$HOME/.kube/config"
-                };
-                for (String altPath : alternativePaths) {
-                    try {
-                        kubeconfigContent = executeCommand(session, "cat " + altPath, true);
-                        if (kubeconfigContent != null && !kubeconfigContent.trim().isEmpty()) {
-                            break;
-                        }
-                    } catch (Exception ignored) {
-                    }
-                }
-                if (kubeconfigContent == null || kubeconfigContent.trim().isEmpty()) {
-                    throw new RuntimeException("Không thể đọc kubeconfig từ master server.");
-                }
-            }
-
-            // Lấy IP MASTER và thay thế server URL trong kubeconfig trước khi sử dụng
-            Optional<ServerEntity> masterOpt = serverRepository.findByRole("MASTER");
-            if (masterOpt.isPresent()) {
-                String masterIp = masterOpt.get().getIp();
-                kubeconfigContent = replaceKubeconfigServer(kubeconfigContent, masterIp);
-            } else {
-                System.err.println("[createKubernetesClient] WARNING: Không tìm thấy server MASTER để thay server URL trong kubeconfig");
-            }
-
-            tempKubeconfig = File.createTempFile("kubeconfig-", ".yaml");
-            try (FileWriter writer = new FileWriter(tempKubeconfig)) {
-                writer.write(kubeconfigContent);
-            }
-            System.out.println("[createKubernetesClient] Đã tạo kubeconfig tạm tại: " + tempKubeconfig.getAbsolutePath());
-
-            ApiClient client = Config.fromConfig(tempKubeconfig.getAbsolutePath());
-            Configuration.setDefaultApiClient(client);
-            return client;
-        } finally {
-            if (tempKubeconfig != null && tempKubeconfig.exists()) {
-                if (!tempKubeconfig.delete()) {
-                    tempKubeconfig.deleteOnExit();
-                }
-            }
-        }
-    }
-
     /**
      * Tạo namespace trong Kubernetes cluster
      * 
@@ -930,19 +787,12 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
 
         try {
             // Kết nối SSH tới MASTER server
-            JSch jsch = new JSch();
-            clusterSession = jsch.getSession(masterServer.getUsername(), masterServer.getIp(), masterServer.getPort());
-            clusterSession.setPassword(masterServer.getPassword());
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            clusterSession.setConfig(config);
-            clusterSession.setTimeout(7000);
-            clusterSession.connect();
+            clusterSession = createSession(masterServer);
             System.out.println("[createProjectNamespace] Đã kết nối tới MASTER server");
 
             // Sử dụng method createKubernetesClient từ parent class (đã xử lý thay thế server URL)
             ApiClient client = createKubernetesClient(clusterSession);
-            CoreV1Api api = new CoreV1Api();
+            CoreV1Api api = new CoreV1Api(client);
             
             // Kiểm tra namespace đã tồn tại chưa
             try {
@@ -970,8 +820,8 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
             System.err.println("[createProjectNamespace] Lỗi khi tạo namespace: " + e.getMessage());
             throw new RuntimeException("Không thể tạo namespace trong Kubernetes: " + e.getMessage(), e);
         } finally {
-            if (clusterSession != null && clusterSession.isConnected()) {
-                clusterSession.disconnect();
+            if (clusterSession != null) {
+                releaseSession(clusterSession);
             }
         }
     }
@@ -1000,14 +850,7 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
 
         try {
             // Kết nối SSH tới MASTER server
-            JSch jsch = new JSch();
-            clusterSession = jsch.getSession(masterServer.getUsername(), masterServer.getIp(), masterServer.getPort());
-            clusterSession.setPassword(masterServer.getPassword());
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            clusterSession.setConfig(config);
-            clusterSession.setTimeout(7000);
-            clusterSession.connect();
+            clusterSession = createSession(masterServer);
             System.out.println("[deleteProjectNamespace] Đã kết nối tới MASTER server");
 
             // Xóa namespace bằng kubectl
@@ -1020,8 +863,8 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
             System.err.println("[deleteProjectNamespace] Lỗi khi xóa namespace: " + e.getMessage());
             throw new RuntimeException("Không thể xóa namespace trong Kubernetes: " + e.getMessage(), e);
         } finally {
-            if (clusterSession != null && clusterSession.isConnected()) {
-                clusterSession.disconnect();
+            if (clusterSession != null) {
+                releaseSession(clusterSession);
             }
         }
     }
@@ -1056,14 +899,7 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
 
         try {
             // Kết nối SSH tới MASTER server
-            JSch jsch = new JSch();
-            clusterSession = jsch.getSession(masterServer.getUsername(), masterServer.getIp(), masterServer.getPort());
-            clusterSession.setPassword(masterServer.getPassword());
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            clusterSession.setConfig(config);
-            clusterSession.setTimeout(7000);
-            clusterSession.connect();
+            clusterSession = createSession(masterServer);
             System.out.println("[deleteProjectDirectory] Đã kết nối tới MASTER server");
 
             // Xác định đường dẫn thư mục project: /home/<master_username>/uploads/<username>/<uuid_k8s>
@@ -1082,8 +918,8 @@ public class ProjectServiceImpl extends BaseKubernetesService implements Project
             System.err.println("[deleteProjectDirectory] Lỗi khi xóa thư mục project: " + e.getMessage());
             throw new RuntimeException("Không thể xóa thư mục project trên server: " + e.getMessage(), e);
         } finally {
-            if (clusterSession != null && clusterSession.isConnected()) {
-                clusterSession.disconnect();
+            if (clusterSession != null) {
+                releaseSession(clusterSession);
             }
         }
     }
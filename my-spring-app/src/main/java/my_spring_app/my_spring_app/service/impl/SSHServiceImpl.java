@@ -1,7 +1,5 @@
 package my_spring_app.my_spring_app.service.impl;
 
-import com.jcraft.jsch.Channel;
-import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.Session;
 import my_spring_app.my_spring_app.dto.reponse.CheckConnectionResponse;
@@ -9,10 +7,10 @@ import my_spring_app.my_spring_app.dto.reponse.ExecuteCommandResponse;
 import my_spring_app.my_spring_app.dto.request.CheckConnectionRequest;
 import my_spring_app.my_spring_app.dto.request.ExecuteCommandRequest;
 import my_spring_app.my_spring_app.service.SSHService;
+import my_spring_app.my_spring_app.ssh.SshCommandExecutor;
+import my_spring_app.my_spring_app.ssh.SshSessionPool;
 import org.springframework.stereotype.Service;
 
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.Properties;
 
 /**
@@ -24,6 +22,16 @@ public class SSHServiceImpl implements SSHService {
 
     // Thời gian chờ kết nối SSH (5 giây)
     private static final int CONNECTION_TIMEOUT = 5000;
+    // Thời gian tối đa cho một lệnh (5 phút)
+    private static final long COMMAND_TIMEOUT = 300_000L;
+
+    private final SshSessionPool sshSessionPool;
+    private final SshCommandExecutor sshCommandExecutor;
+
+    public SSHServiceImpl(SshSessionPool sshSessionPool, SshCommandExecutor sshCommandExecutor) {
+        this.sshSessionPool = sshSessionPool;
+        this.sshCommandExecutor = sshCommandExecutor;
+    }
 
     /**
      * Kiểm tra kết nối SSH đến server
@@ -97,100 +105,40 @@ public class SSHServiceImpl implements SSHService {
         response.setCommand(request.getCommand());
 
         Session session = null;
-        Channel channel = null;
         try {
-            // Tạo JSch instance để quản lý SSH connections
-            System.out.println("[executeCommand] Tạo JSch instance");
-            JSch jsch = new JSch();
-            
-            // Tạo SSH session với thông tin kết nối
-            System.out.println("[executeCommand] Tạo SSH session với username: " + request.getUsername());
-            session = jsch.getSession(request.getUsername(), request.getHost(), request.getPort());
-            session.setPassword(request.getPassword());
-
-            // Tắt kiểm tra strict host key (để tránh lỗi khi kết nối lần đầu)
-            System.out.println("[executeCommand] Thiết lập cấu hình SSH (tắt StrictHostKeyChecking)");
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            session.setConfig(config);
-
-            // Thiết lập thời gian chờ kết nối
-            System.out.println("[executeCommand] Thiết lập timeout: " + CONNECTION_TIMEOUT + "ms");
-            session.setTimeout(CONNECTION_TIMEOUT);
-
-            // Kết nối đến server
-            System.out.println("[executeCommand] Đang kết nối đến server...");
-            session.connect();
+            // Mượn SSH session từ pool (không handshake lại nếu đã có session tới host này)
+            System.out.println("[executeCommand] Mượn SSH session từ pool với username: " + request.getUsername());
+            session = sshSessionPool.acquire(null, request.getHost(), request.getPort(), request.getUsername(),
+                    null, request.getPassword());
             System.out.println("[executeCommand] Kết nối thành công đến server");
 
-            // Mở kênh exec để thực thi lệnh
-            System.out.println("[executeCommand] Mở kênh exec");
-            channel = session.openChannel("exec");
-            ChannelExec channelExec = (ChannelExec) channel;
-
-            // Thiết lập câu lệnh cần thực thi
-            System.out.println("[executeCommand] Thiết lập lệnh: " + request.getCommand());
-            channelExec.setCommand(request.getCommand());
-
-            // Chuyển hướng error stream sang output stream để dễ debug
-            channelExec.setErrStream(System.err);
-
-            // Lấy input stream để đọc output từ lệnh
-            InputStream inputStream = channelExec.getInputStream();
-
-            // Kết nối channel để bắt đầu thực thi lệnh
-            System.out.println("[executeCommand] Kết nối channel và bắt đầu thực thi lệnh");
-            channel.connect();
-
-            // Đọc output từ lệnh
-            System.out.println("[executeCommand] Đang đọc output từ lệnh...");
-            StringBuilder output = new StringBuilder();
-            byte[] buffer = new byte[1024]; // Buffer để đọc dữ liệu
-
-            // Vòng lặp để đọc output từ lệnh cho đến khi lệnh thực thi xong
-            while (true) {
-                // Đọc tất cả dữ liệu có sẵn trong input stream
-                while (inputStream.available() > 0) {
-                    int bytesRead = inputStream.read(buffer, 0, 1024);
-                    if (bytesRead < 0) {
-                        break;
-                    }
-                    output.append(new String(buffer, 0, bytesRead, StandardCharsets.UTF_8));
-                }
-
-                // Kiểm tra xem channel đã đóng chưa (lệnh đã thực thi xong)
-                if (channel.isClosed()) {
-                    // Nếu vẫn còn dữ liệu trong stream, tiếp tục đọc
-                    if (inputStream.available() > 0) {
-                        continue;
-                    }
-                    // Lấy exit status của lệnh (0 = thành công, != 0 = lỗi)
-                    int exitStatus = channel.getExitStatus();
-                    response.setExitStatus(exitStatus);
-                    System.out.println("[executeCommand] Lệnh đã thực thi xong với exit status: " + exitStatus);
-                    break;
-                }
-
-                // Nghỉ 100ms trước khi kiểm tra lại để tránh chiếm CPU
-                try {
-                    Thread.sleep(100);
-                } catch (Exception e) {
-                    // Bỏ qua lỗi sleep
-                }
+            // Thực thi lệnh, stdout/stderr được đẩy về khi có dữ liệu, chờ đến khi channel đóng hoặc quá hạn
+            System.out.println("[executeCommand] Thực thi lệnh: " + request.getCommand());
+            SshCommandExecutor.CommandResult result = sshCommandExecutor.execute(session, request.getCommand(), COMMAND_TIMEOUT);
+            if (!result.stderr().isEmpty()) {
+                System.err.print(result.stderr());
             }
 
             // Kiểm tra exit status để xác định lệnh thực thi thành công hay thất bại
-            int exitStatus = channel.getExitStatus();
-            if (exitStatus == 0) {
+            int exitStatus = result.exitStatus();
+            response.setExitStatus(exitStatus);
+            String output = result.stdout().trim();
+            System.out.println("[executeCommand] Lệnh đã thực thi xong với exit status: " + exitStatus);
+            if (result.timedOut()) {
+                System.err.println("[executeCommand] Lệnh bị ngắt vì quá thời gian " + COMMAND_TIMEOUT + "ms");
+                response.setSuccess(false);
+                response.setOutput(output);
+                response.setError("Command timed out after " + COMMAND_TIMEOUT + "ms");
+            } else if (exitStatus == 0) {
                 System.out.println("[executeCommand] Lệnh thực thi thành công");
                 response.setSuccess(true);
-                response.setOutput(output.toString().trim());
+                response.setOutput(output);
                 response.setError(null);
             } else {
                 System.err.println("[executeCommand] Lệnh thực thi thất bại với exit status: " + exitStatus);
-                System.err.println("[executeCommand] Output: " + output.toString().trim());
+                System.err.println("[executeCommand] Output: " + output);
                 response.setSuccess(false);
-                response.setOutput(output.toString().trim());
+                response.setOutput(output);
                 response.setError("Command exited with status: " + exitStatus);
             }
 
@@ -204,14 +152,9 @@ public class SSHServiceImpl implements SSHService {
             response.setExitStatus(-1);
             return response;
         } finally {
-            // Đảm bảo đóng channel và session sau khi thực thi xong để giải phóng tài nguyên
-            if (channel != null && channel.isConnected()) {
-                System.out.println("[executeCommand] Đóng channel");
-                channel.disconnect();
-            }
-            if (session != null && session.isConnected()) {
-                System.out.println("[executeCommand] Đóng SSH session");
-                session.disconnect();
+            if (session != null) {
+                System.out.println("[executeCommand] Trả SSH session về pool");
+                sshSessionPool.release(session);
             }
             System.out.println("[executeCommand] Hoàn tất thực thi lệnh");
         }
@@ -1,6 +1,5 @@
 package my_spring_app.my_spring_app.service.impl;
 
-import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.KeyPair;
 import com.jcraft.jsch.Session;
@@ -13,15 +12,21 @@ import my_spring_app.my_spring_app.dto.request.UpdateServerRequest;
 import my_spring_app.my_spring_app.dto.request.TestSshRequest;
 import my_spring_app.my_spring_app.entity.ServerEntity;
 import my_spring_app.my_spring_app.entity.SshKeyEntity;
+import my_spring_app.my_spring_app.k8s.KubernetesClientRegistry;
+import my_spring_app.my_spring_app.metrics.MetricsCollector;
+import my_spring_app.my_spring_app.metrics.ServerMetricsProbe;
+import my_spring_app.my_spring_app.metrics.ServerMetricsStream;
 import my_spring_app.my_spring_app.repository.ServerRepository;
 import my_spring_app.my_spring_app.repository.SshKeyRepository;
 import my_spring_app.my_spring_app.service.ServerService;
+import my_spring_app.my_spring_app.ssh.SshCommandExecutor;
+import my_spring_app.my_spring_app.ssh.SshSessionPool;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
@@ -36,7 +41,6 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -54,6 +58,33 @@ public class ServerServiceImpl implements ServerService {
     @Autowired
     private SshKeyRepository sshKeyRepository;
 
+    // Pool SSH session dùng chung, tránh handshake lại cho mỗi lệnh
+    @Autowired
+    private SshSessionPool sshSessionPool;
+
+    // Đo metrics qua SSH và time-series do collector nền lấy mẫu định kỳ
+    @Autowired
+    private ServerMetricsProbe serverMetricsProbe;
+
+    @Autowired
+    private MetricsCollector metricsCollector;
+
+    @Autowired
+    private ServerMetricsStream serverMetricsStream;
+
+    // Client Kubernetes cache theo server MASTER, cần báo khi thông tin server đổi
+    @Autowired
+    private KubernetesClientRegistry kubernetesClientRegistry;
+
+    // Executor dùng chung cho ping/probe khi refresh (thay cho tạo rồi shutdown fixed pool mỗi lần gọi).
+    // Virtual thread nên không cần giới hạn pool: thread chỉ chờ I/O của socket/SSH.
+    private final ExecutorService probeExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("server-refresh-", 0).factory());
+
+    // Thực thi command qua channel exec, không poll available()/sleep
+    @Autowired
+    private SshCommandExecutor sshCommandExecutor;
+
     /**
      * Lấy tất cả server từ database
      * @return Danh sách tất cả server dưới dạng ServerResponse
@@ -199,21 +230,20 @@ public class ServerServiceImpl implements ServerService {
         // Bước 5: Lấy metrics từ server (CPU, RAM, Disk)
         System.out.println("[createServer] Buoc 5: Lay metrics tu server...");
         try {
-            Map<String, String> metrics = getServerMetrics(
+            ServerMetricsProbe.ServerSample sample = getServerMetrics(
+                savedServer.getId(),
                 request.getIp(), 
                 request.getPort(), 
                 request.getUsername(), 
                 sshKey != null ? sshKey.getEncryptedPrivateKey() : null,
                 request.getPassword()
             );
-            if (metrics != null) {
-                savedServer.setCpuCores(metrics.get("cpuCores"));
-                savedServer.setRamTotal(metrics.get("ramTotal"));
-                savedServer.setDiskTotal(metrics.get("diskTotal"));
+            if (sample != null) {
+                applyTotals(savedServer, sample);
                 savedServer = serverRepository.saveAndFlush(savedServer);
-                System.out.println("[createServer] Da lay metrics thanh cong: CPU=" + metrics.get("cpuCores") + 
-                                  " cores, RAM=" + metrics.get("ramTotal") + 
-                                  ", Disk=" + metrics.get("diskTotal"));
+                System.out.println("[createServer] Da lay metrics thanh cong: CPU=" + savedServer.getCpuCores() + 
+                                  " cores, RAM=" + savedServer.getRamTotal() + 
+                                  ", Disk=" + savedServer.getDiskTotal());
             }
         } catch (Exception e) {
             System.err.println("[createServer] Loi khi lay metrics: " + e.getMessage());
@@ -239,6 +269,7 @@ public class ServerServiceImpl implements ServerService {
         response.setDiskTotal(savedServer.getDiskTotal());
         // Không set used - các giá trị này sẽ lấy trực tiếp từ SSH khi cần
 
+        kubernetesClientRegistry.markMasterChanged();
         System.out.println("[createServer] Hoan tat tao server thanh cong: name=" + savedServer.getName() + 
                           ", id=" + savedServer.getId() + ", role=" + savedServer.getRole());
         return response;
@@ -398,20 +429,29 @@ public class ServerServiceImpl implements ServerService {
         }
         
         // Cập nhật metrics nếu có
+        // Chuỗi nhập tay được parse một lần ở đây để cột số luôn khớp với chuỗi hiển thị
         if (request.getCpuCores() != null) {
             server.setCpuCores(request.getCpuCores().isBlank() ? null : request.getCpuCores());
+            server.setCpuMillicores(parseMillicores(server.getCpuCores()));
         }
         if (request.getRamTotal() != null) {
             server.setRamTotal(request.getRamTotal().isBlank() ? null : request.getRamTotal());
+            server.setRamTotalBytes(parseBytes(server.getRamTotal()));
         }
         if (request.getDiskTotal() != null) {
             server.setDiskTotal(request.getDiskTotal().isBlank() ? null : request.getDiskTotal());
+            server.setDiskTotalBytes(parseBytes(server.getDiskTotal()));
         }
         
         // Lưu vào database
         System.out.println("[updateServer] Luu thay doi vao database");
         ServerEntity updatedServer = serverRepository.save(server);
         System.out.println("[updateServer] Da cap nhat server thanh cong voi ID: " + updatedServer.getId());
+
+        // Thong tin ket noi co the da doi, bo SSH session cu trong pool
+        sshSessionPool.evict(id);
+        serverMetricsStream.stop(id);
+        kubernetesClientRegistry.markMasterChanged();
         
         return convertToResponse(updatedServer);
     }
@@ -463,6 +503,9 @@ public class ServerServiceImpl implements ServerService {
         
         // 3) Xóa server
         serverRepository.delete(server);
+        sshSessionPool.evict(id);
+        serverMetricsStream.stop(id);
+        kubernetesClientRegistry.markMasterChanged();
         System.out.println("[deleteServer] Da xoa server thanh cong voi ID: " + id);
     }
 
@@ -535,6 +578,12 @@ public class ServerServiceImpl implements ServerService {
         response.setRamUsed(server.getRamUsed());
         response.setDiskTotal(server.getDiskTotal());
         response.setDiskUsed(server.getDiskUsed());
+        response.setCpuMillicores(server.getCpuMillicores());
+        response.setCpuUsedMillicores(server.getCpuUsedMillicores());
+        response.setRamTotalBytes(server.getRamTotalBytes());
+        response.setRamUsedBytes(server.getRamUsedBytes());
+        response.setDiskTotalBytes(server.getDiskTotalBytes());
+        response.setDiskUsedBytes(server.getDiskUsedBytes());
         return response;
     }
     
@@ -576,24 +625,8 @@ public class ServerServiceImpl implements ServerService {
             String escaped = publicKey.replace("'", "'\"'\"'");
             String cmd = "sh -lc \"mkdir -p ~/.ssh && chmod 700 ~/.ssh && touch ~/.ssh/authorized_keys && chmod 600 ~/.ssh/authorized_keys && printf '%s\\n' '"
                     + escaped + "' >> ~/.ssh/authorized_keys\"";
-            ChannelExec ch = null;
-            try {
-                ch = (ChannelExec) session.openChannel("exec");
-                ch.setCommand(cmd);
-                ch.connect(5000);
-                while (!ch.isClosed()) {
-                    try {
-                        Thread.sleep(50);
-                    } catch (InterruptedException ignored) {
-                    }
-                }
-                System.out.println("[generateAndInstallSshKey] Da cai public key thanh cong");
-            } finally {
-                // Dam bao channel luon duoc dong
-                if (ch != null && ch.isConnected()) {
-                    ch.disconnect();
-                }
-            }
+            sshCommandExecutor.execute(session, cmd, 5000);
+            System.out.println("[generateAndInstallSshKey] Da cai public key thanh cong");
 
             // 3) Cau hinh sudo NOPASSWD cho user
             System.out.println("[generateAndInstallSshKey] Cau hinh sudo NOPASSWD...");
@@ -671,294 +704,118 @@ public class ServerServiceImpl implements ServerService {
      * Đảm bảo channel luôn được đóng sau khi thực thi xong
      */
     private String execSimple(Session session, String cmd, int timeoutMs) throws Exception {
-        ChannelExec ch = null;
-        try {
-            ch = (ChannelExec) session.openChannel("exec");
-            ch.setCommand(cmd);
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            ch.setOutputStream(out);
-            ch.connect(timeoutMs);
-            while (!ch.isClosed()) {
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-            return out.toString(StandardCharsets.UTF_8);
-        } finally {
-            // Đảm bảo channel luôn được đóng
-            if (ch != null && ch.isConnected()) {
-                ch.disconnect();
-            }
-        }
+        return sshCommandExecutor.execute(session, cmd, timeoutMs).stdout();
     }
     
     /**
      * Lấy metrics từ server (CPU cores, RAM total, Disk total)
      * Sử dụng SSH key nếu có, nếu không thì dùng password
-     * Lấy giá trị chính xác (không làm tròn) từ các lệnh Linux
+     * Sample đo được cũng được ghi vào time-series của MetricsCollector
      */
-    private Map<String, String> getServerMetrics(String ip, Integer port, String username, 
-                                                   String privateKeyPem, String password) {
-        // System.out.println("[getServerMetrics] Bat dau lay metrics tu server: " + ip);
-
-        String metricsCommand = "echo \"CPU_CORES:$(nproc || echo '0')\"; " +
-                "echo \"CPU_LOAD:$(uptime | awk -F'load average:' '{print $2}' | awk '{print $1}' | tr -d ',' || echo '0')\"; " +
-                "echo \"RAM_TOTAL_BYTES:$(free -b 2>/dev/null | awk 'NR==2{print $2}' || echo '0')\"; " +
-                "echo \"RAM_USED_BYTES:$(free -b 2>/dev/null | awk 'NR==2{print $3}' || echo '0')\"; " +
-                "echo \"DISK_TOTAL_KB:$(df / 2>/dev/null | awk 'NR==2{print $2}' || echo '0')\"; " +
-                "echo \"DISK_USED_KB:$(df / 2>/dev/null | awk 'NR==2{print $3}' || echo '0')\"";
-        
-        Session session = null;
-        ChannelExec channel = null;
-
-        try {
-            JSch jsch = new JSch();
-
-            // Uu tien dung SSH key neu co
-            if (privateKeyPem != null && !privateKeyPem.isBlank()) {
-                // System.out.println("[getServerMetrics] Su dung SSH key de ket noi");
-                byte[] prv = privateKeyPem.getBytes(StandardCharsets.UTF_8);
-                jsch.addIdentity("inmem-key", prv, null, null);
-                session = jsch.getSession(username, ip, port);
-            } else {
-                // System.out.println("[getServerMetrics] Su dung password de ket noi");
-                session = jsch.getSession(username, ip, port);
-                session.setPassword(password);
-            }
-
-            Properties config = new Properties();
-            config.put("StrictHostKeyChecking", "no");
-            session.setConfig(config);
-            session.setTimeout(10000);
-            session.connect(10000);
-
-            if (!session.isConnected()) {
-                throw new RuntimeException("Session khong the ket noi");
-            }
-
-            channel = (ChannelExec) session.openChannel("exec");
-            if (channel == null) {
-                throw new RuntimeException("Khong the mo channel exec");
-            }
-            channel.setCommand(metricsCommand);
-
-            InputStream in = channel.getInputStream();
-            InputStream err = channel.getErrStream();
-            channel.connect(10000);
-
-            int retryCount = 0;
-            while (!channel.isConnected() && retryCount < 20) {
-                try {
-                    Thread.sleep(100);
-                    retryCount++;
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Channel connect bi interrupt");
-                }
-            }
-
-            if (!channel.isConnected()) {
-                throw new RuntimeException("Channel khong the ket noi sau " + (retryCount * 100) + "ms");
-            }
-
-            ByteArrayOutputStream outBuf = new ByteArrayOutputStream();
-            ByteArrayOutputStream errBuf = new ByteArrayOutputStream();
-            byte[] buffer = new byte[4096];
-            long deadline = System.currentTimeMillis() + 15000;
-
-            while (true) {
-                boolean hasData = false;
-
-                while (in.available() > 0) {
-                    int read = in.read(buffer, 0, buffer.length);
-                    if (read < 0) break;
-                    outBuf.write(buffer, 0, read);
-                    hasData = true;
-                }
-
-                while (err.available() > 0) {
-                    int read = err.read(buffer, 0, buffer.length);
-                    if (read < 0) break;
-                    errBuf.write(buffer, 0, read);
-                    hasData = true;
-                }
-
-                if (channel.isClosed() && !hasData) {
-                    try {
-                        Thread.sleep(200);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                    while (in.available() > 0) {
-                        int read = in.read(buffer, 0, buffer.length);
-                        if (read < 0) break;
-                        outBuf.write(buffer, 0, read);
-                    }
-                    while (err.available() > 0) {
-                        int read = err.read(buffer, 0, buffer.length);
-                        if (read < 0) break;
-                        errBuf.write(buffer, 0, read);
-                    }
-                    break;
-                }
-
-                if (System.currentTimeMillis() > deadline) {
-                    // System.err.println("[getServerMetrics] Timeout khi doc output tu server: " + ip);
-                    break;
-                }
-
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-
-            String output = outBuf.toString(StandardCharsets.UTF_8).trim();
-            String errorOutput = errBuf.toString(StandardCharsets.UTF_8).trim();
+    private ServerMetricsProbe.ServerSample getServerMetrics(Long serverId, String ip, Integer port, String username, 
+                                                             String privateKeyPem, String password) {
+        ServerMetricsProbe.ServerSample sample = serverMetricsProbe.probe(serverId, ip, port, username, privateKeyPem, password);
+        if (sample == null) {
+            return null;
+        }
+        metricsCollector.recordServerSample(serverId, sample);
+        return sample;
+    }
 
-            // System.out.println("[getServerMetrics] Output (stdout): " + output);
-            // if (!errorOutput.isEmpty()) {
-            //     System.err.println("[getServerMetrics] Output (stderr): " + errorOutput);
-            // }
+    /**
+     * Lấy metrics mới nhất của server: ưu tiên sample collector đã lấy trong chu kỳ gần nhất,
+     * chỉ SSH trực tiếp khi collector chưa có dữ liệu (vừa khởi động hoặc server mới thêm)
+     */
+    private ServerMetricsProbe.ServerSample getLatestServerMetrics(Long serverId, String ip, Integer port, String username,
+                                                                   String privateKeyPem, String password) {
+        ServerMetricsProbe.ServerSample sample = metricsCollector.latestServerSample(serverId, 2 * MetricsCollector.INTERVAL_MS);
+        if (sample != null) {
+            return sample;
+        }
+        return getServerMetrics(serverId, ip, port, username, privateKeyPem, password);
+    }
 
-            int exitStatus = channel.getExitStatus();
-            if (exitStatus != 0 && exitStatus != -1) {
-                // System.err.println("[getServerMetrics] Command exit status: " + exitStatus + " cho server: " + ip);
-            }
+    /**
+     * Ghi total (CPU cores, RAM, Disk) của sample vào ServerEntity: cột số và chuỗi hiển thị (RAM/Disk format sang Gi).
+     * Giá trị 0 (không đọc được) thì giữ nguyên giá trị cũ.
+     */
+    private void applyTotals(ServerEntity server, ServerMetricsProbe.ServerSample sample) {
+        if (sample.cpuCores() > 0) {
+            server.setCpuMillicores(sample.cpuCores() * 1000L);
+            server.setCpuCores(String.valueOf(sample.cpuCores()));
+        }
+        if (sample.ramTotalBytes() > 0) {
+            server.setRamTotalBytes(sample.ramTotalBytes());
+            server.setRamTotal(formatBytes(sample.ramTotalBytes()));
+        }
+        if (sample.diskTotalBytes() > 0) {
+            server.setDiskTotalBytes(sample.diskTotalBytes());
+            server.setDiskTotal(formatBytes(sample.diskTotalBytes()));
+        }
+    }
 
-            return parseMetricsOutput(output);
+    /**
+     * Ghi cả total và used của sample vào ServerEntity
+     */
+    private void applySample(ServerEntity server, ServerMetricsProbe.ServerSample sample) {
+        applyTotals(server, sample);
+        if (!Double.isNaN(sample.cpuLoad())) {
+            server.setCpuUsedMillicores(Math.round(sample.cpuLoad() * 1000));
+            server.setCpuUsed(String.valueOf(sample.cpuLoad()));
+        }
+        if (sample.ramUsedBytes() > 0) {
+            server.setRamUsedBytes(sample.ramUsedBytes());
+            server.setRamUsed(formatBytes(sample.ramUsedBytes()));
+        }
+        if (sample.diskUsedBytes() > 0) {
+            server.setDiskUsedBytes(sample.diskUsedBytes());
+            server.setDiskUsed(formatBytes(sample.diskUsedBytes()));
+        }
+    }
 
-        } catch (Exception e) {
-            // System.err.println("[getServerMetrics] Loi khi lay metrics tu server " + ip + ": " + e.getMessage());
-            // if (e.getCause() != null) {
-            //     System.err.println("[getServerMetrics] Nguyen nhan: " + e.getCause().getMessage());
-            // }
+    /**
+     * Parse số cores nhập tay ("4", "2.5", "500m") sang millicores, null nếu rỗng hoặc sai định dạng
+     */
+    private Long parseMillicores(String value) {
+        if (value == null || value.isBlank()) {
             return null;
-        } finally {
-            if (channel != null) {
-                try {
-                    if (channel.isConnected()) {
-                        channel.disconnect();
-                    }
-                } catch (Exception e) {
-                    // System.err.println("[getServerMetrics] Loi khi dong channel: " + e.getMessage());
-                }
-            }
-            if (session != null) {
-                try {
-                    if (session.isConnected()) {
-                        session.disconnect();
-                    }
-                } catch (Exception e) {
-                    // System.err.println("[getServerMetrics] Loi khi dong session: " + e.getMessage());
-                }
+        }
+        String v = value.trim().toLowerCase();
+        try {
+            if (v.endsWith("m")) {
+                return Math.round(Double.parseDouble(v.substring(0, v.length() - 1)));
             }
+            return Math.round(Double.parseDouble(v) * 1000);
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
-    
+
     /**
-     * Parse output từ metrics command và convert sang đơn vị phù hợp
-     * Format: CPU_CORES:4\nCPU_LOAD:1.2\nRAM_TOTAL_BYTES:8589934592\nRAM_USED_BYTES:3435973836\nDISK_TOTAL_KB:52428800\nDISK_USED_KB:26214400
-     * Convert: RAM từ bytes sang Gi/GiB, Disk từ KB sang G/GB
+     * Parse dung lượng nhập tay ("8Gi", "16G", "512Mi", "1024") sang bytes, null nếu rỗng hoặc sai định dạng
      */
-    private Map<String, String> parseMetricsOutput(String output) {
-        Map<String, String> metrics = new HashMap<>();
-        String cpuCores = null;
-        String cpuUsed = null;
-        String ramTotal = null;
-        String ramUsed = null;
-        String diskTotal = null;
-        String diskUsed = null;
-        
-        try {
-            String[] lines = output.split("\n");
-            // System.out.println("[parseMetricsOutput] Total lines in output: " + lines.length);
-            // for (int i = 0; i < lines.length; i++) {
-            //     System.out.println("[parseMetricsOutput] Line " + i + ": " + lines[i]);
-            // }
-            
-            long ramTotalBytes = 0;
-            long ramUsedBytes = 0;
-            long diskTotalKB = 0;
-            long diskUsedKB = 0;
-            
-            for (String line : lines) {
-                line = line.trim();
-                if (line.isEmpty()) continue; // Bỏ qua dòng trống
-                if (line.startsWith("CPU_CORES:")) {
-                    cpuCores = line.substring(10).trim();
-                } else if (line.startsWith("CPU_LOAD:")) {
-                    cpuUsed = line.substring(9).trim();
-                    // Validate và format CPU load (loại bỏ khoảng trắng)
-                    if (cpuUsed != null && !cpuUsed.isEmpty()) {
-                        cpuUsed = cpuUsed.trim();
-                    }
-                } else if (line.startsWith("RAM_TOTAL_BYTES:")) {
-                    try {
-                        String value = line.substring(16).trim();
-                        if (!value.isEmpty() && !value.equals("0")) {
-                            ramTotalBytes = Long.parseLong(value);
-                            ramTotal = formatBytes(ramTotalBytes);
-                            // System.out.println("[parseMetricsOutput] Parsed RAM_TOTAL_BYTES: " + ramTotalBytes + " -> " + ramTotal);
-                        } else {
-                            // System.err.println("[parseMetricsOutput] RAM_TOTAL_BYTES is empty or 0");
-                        }
-                    } catch (NumberFormatException e) {
-                        // System.err.println("[parseMetricsOutput] Loi parse RAM total bytes: " + line + " - " + e.getMessage());
-                    }
-                } else if (line.startsWith("RAM_USED_BYTES:")) {
-                    try {
-                        String value = line.substring(15).trim();
-                        if (!value.isEmpty() && !value.equals("0")) {
-                            ramUsedBytes = Long.parseLong(value);
-                            ramUsed = formatBytes(ramUsedBytes);
-                        }
-                    } catch (NumberFormatException e) {
-                        // System.err.println("[parseMetricsOutput] Loi parse RAM used bytes: " + e.getMessage());
-                    }
-                } else if (line.startsWith("DISK_TOTAL_KB:")) {
-                    try {
-                        String value = line.substring(14).trim();
-                        if (!value.isEmpty() && !value.equals("0")) {
-                            diskTotalKB = Long.parseLong(value);
-                            diskTotal = formatKB(diskTotalKB);
-                            // System.out.println("[parseMetricsOutput] Parsed DISK_TOTAL_KB: " + diskTotalKB + " -> " + diskTotal);
-                        } else {
-                            // System.err.println("[parseMetricsOutput] DISK_TOTAL_KB is empty or 0");
-                        }
-                    } catch (NumberFormatException e) {
-                        // System.err.println("[parseMetricsOutput] Loi parse Disk total KB: " + line + " - " + e.getMessage());
-                    }
-                } else if (line.startsWith("DISK_USED_KB:")) {
-                    try {
-                        String value = line.substring(13).trim();
-                        if (!value.isEmpty() && !value.equals("0")) {
-                            diskUsedKB = Long.parseLong(value);
-                            diskUsed = formatKB(diskUsedKB);
-                        }
-                    } catch (NumberFormatException e) {
-                        // System.err.println("[parseMetricsOutput] Loi parse Disk used KB: " + e.getMessage());
-                    }
-                }
+    private Long parseBytes(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String v = value.trim().toUpperCase();
+        String[] suffixes = {"KI", "MI", "GI", "TI", "K", "M", "G", "T"};
+        double[] factors = {1024d, 1024d * 1024, 1024d * 1024 * 1024, 1024d * 1024 * 1024 * 1024, 1e3, 1e6, 1e9, 1e12};
+        double factor = 1d;
+        for (int i = 0; i < suffixes.length; i++) {
+            if (v.endsWith(suffixes[i])) {
+                factor = factors[i];
+                v = v.substring(0, v.length() - suffixes[i].length()).trim();
+                break;
             }
-        } catch (Exception e) {
-            // System.err.println("[parseMetricsOutput] Loi khi parse: " + e.getMessage());
         }
-        
-        metrics.put("cpuCores", cpuCores != null ? cpuCores : null);
-        metrics.put("cpuUsed", cpuUsed != null ? cpuUsed : null);
-        metrics.put("ramTotal", ramTotal != null ? ramTotal : null);
-        metrics.put("ramUsed", ramUsed != null ? ramUsed : null);
-        metrics.put("diskTotal", diskTotal != null ? diskTotal : null);
-        metrics.put("diskUsed", diskUsed != null ? diskUsed : null);
-        
-        return metrics;
+        try {
+            return Math.round(Double.parseDouble(v) * factor);
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
+
     /**
      * Convert bytes sang GiB (Gibibyte = 1024^3 bytes)
      * Format: "0.59Gi", "8.5Gi" hoặc "16.2Gi"
@@ -974,23 +831,6 @@ public class ServerServiceImpl implements ServerService {
         return String.format("%.2fGi", gib);
     }
     
-    /**
-     * Convert KB (1KB blocks từ df) sang GiB (Gibibyte)
-     * Format: "0.05Gi", "50Gi" hoặc "100.5Gi"
-     * Note: df sử dụng 1KB = 1024 bytes (binary), nên convert: kb / (1024^2) = GiB
-     * Luôn hiển thị GiB, kể cả khi < 1 GiB
-     */
-    private String formatKB(long kb) {
-        if (kb <= 0) return "0";
-        
-        // Convert KB (binary, 1KB = 1024 bytes) sang GiB (binary, 1GiB = 1024^3 bytes)
-        // Công thức: kb / (1024^2) vì 1KB = 1024 bytes, 1GiB = 1024^3 bytes
-        double gib = kb / (1024.0 * 1024.0);
-        
-        // Luôn hiển thị GiB với 2 chữ số thập phân
-        return String.format("%.2fGi", gib);
-    }
-    
     /**
      * Kiểm tra và cập nhật trạng thái tất cả servers
      * Ping tất cả servers và cập nhật status ONLINE/OFFLINE
@@ -1030,48 +870,33 @@ public class ServerServiceImpl implements ServerService {
     @Transactional
     private List<ServerResponse> checkAllStatusesInternal(int timeoutMs) {
         List<ServerEntity> servers = serverRepository.findAll();
-        final int POOL_SIZE = Math.min(servers.size(), 16);
-        
-        ExecutorService executor = Executors.newFixedThreadPool(POOL_SIZE);
         long start = System.currentTimeMillis();
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
         
+        // Thread probe chỉ ping và trả kết quả, entity chỉ được sửa trên thread đang giữ transaction
+        Map<Long, ServerEntity.ServerStatus> statusMap = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
         for (ServerEntity s : servers) {
+            final Long serverId = s.getId();
+            final String ip = s.getIp();
+            final Integer port = s.getPort();
+            final ServerEntity.ServerStatus currentStatus = s.getStatus();
             futures.add(CompletableFuture.runAsync(() -> {
-                // DISABLED servers: chỉ check status (ping) nhưng giữ nguyên DISABLED
-                if (s.getStatus() == ServerEntity.ServerStatus.DISABLED) {
-                    // Vẫn ping để check nhưng không thay đổi status
-                    try (Socket socket = new Socket()) {
-                        InetSocketAddress addr = new InetSocketAddress(s.getIp(), s.getPort() != null ? s.getPort() : 22);
-                        socket.connect(addr, timeoutMs);
-                        // Giữ nguyên DISABLED, không đổi thành ONLINE
-                    } catch (Exception ignored) {
-                        // Giữ nguyên DISABLED, không đổi thành OFFLINE
-                    }
-                    return; // Skip update status
+                boolean online = ping(ip, port, timeoutMs);
+                // DISABLED servers: vẫn ping để check nhưng giữ nguyên DISABLED
+                if (currentStatus != ServerEntity.ServerStatus.DISABLED) {
+                    statusMap.put(serverId, online ? ServerEntity.ServerStatus.ONLINE : ServerEntity.ServerStatus.OFFLINE);
                 }
-                
-                // ONLINE/OFFLINE servers: ping và cập nhật status
-                boolean online = false;
-                try (Socket socket = new Socket()) {
-                    InetSocketAddress addr = new InetSocketAddress(s.getIp(), s.getPort() != null ? s.getPort() : 22);
-                    socket.connect(addr, timeoutMs);
-                    online = true;
-                } catch (Exception ignored) {
-                } finally {
-                    s.setStatus(online ? ServerEntity.ServerStatus.ONLINE : ServerEntity.ServerStatus.OFFLINE);
-                }
-            }, executor));
+            }, probeExecutor));
         }
-        
         CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-        executor.shutdown();
-        try {
-            executor.awaitTermination(2, TimeUnit.SECONDS);
-        } catch (InterruptedException ignored) {
-        }
         
-        serverRepository.saveAll(servers);
+        // Entity đang được quản lý trong transaction: chỉ server đổi status mới sinh UPDATE, flush một lần theo JDBC batch
+        for (ServerEntity s : servers) {
+            ServerEntity.ServerStatus status = statusMap.get(s.getId());
+            if (status != null) {
+                s.setStatus(status);
+            }
+        }
         
         long elapsed = System.currentTimeMillis() - start;
         System.out.println("[checkAllStatuses] Da kiem tra va cap nhat status cho " + servers.size() + " servers trong " + elapsed + " ms");
@@ -1091,17 +916,12 @@ public class ServerServiceImpl implements ServerService {
      */
     private List<ServerResponse> checkAllServersInternal(int timeoutMs) {
         System.out.println("[checkAllServers] Bat dau lam moi status va metrics cho tat ca servers (timeout: " + timeoutMs + "ms)");
-        // Su dung findAllWithSshKeys de eager load SSH keys
+        // Một query duy nhất: servers kèm SSH key (eager load, không phải đọc lại từng server)
         List<ServerEntity> servers = serverRepository.findAllWithSshKeys();
-        final int POOL_SIZE = Math.min(servers.size(), 16);
-        
-        // Load SSH keys trước khi các thread chạy (trong transaction)
-        Map<Long, String> sshKeyMap = loadSshKeysForServers(servers);
         
         // Map để lưu kết quả update từ các thread
         Map<Long, ServerUpdateInfo> updateMap = new ConcurrentHashMap<>();
         
-        ExecutorService executor = Executors.newFixedThreadPool(POOL_SIZE);
         long start = System.currentTimeMillis();
         List<CompletableFuture<Void>> futures = new ArrayList<>();
         
@@ -1112,40 +932,24 @@ public class ServerServiceImpl implements ServerService {
             final String username = s.getUsername();
             final String password = s.getPassword();
             final ServerEntity.ServerStatus currentStatus = s.getStatus();
-            final String privateKeyPem = sshKeyMap.get(serverId); // Lấy SSH key đã load sẵn
+            final String privateKeyPem = s.getSshKey() != null ? s.getSshKey().getEncryptedPrivateKey() : null;
             
             futures.add(CompletableFuture.runAsync(() -> {
-                // DISABLED servers: chỉ check status (ping) nhưng giữ nguyên DISABLED
+                // DISABLED servers: vẫn ping để check nhưng giữ nguyên DISABLED, không cần update gì
+                boolean online = ping(ip, port, timeoutMs);
                 if (currentStatus == ServerEntity.ServerStatus.DISABLED) {
-                    // Vẫn ping để check nhưng không thay đổi status
-                    try (Socket socket = new Socket()) {
-                        InetSocketAddress addr = new InetSocketAddress(ip, port != null ? port : 22);
-                        socket.connect(addr, timeoutMs);
-                        // Giữ nguyên DISABLED, không đổi thành ONLINE
-                    } catch (Exception ignored) {
-                        // Giữ nguyên DISABLED, không đổi thành OFFLINE
-                    }
-                    // Không cần update gì
                     return;
                 }
                 
-                // ONLINE/OFFLINE servers: ping và cập nhật status
-                boolean online = false;
-                try (Socket socket = new Socket()) {
-                    InetSocketAddress addr = new InetSocketAddress(ip, port != null ? port : 22);
-                    socket.connect(addr, timeoutMs);
-                    online = true;
-                } catch (Exception ignored) {
-                }
-                
                 ServerUpdateInfo updateInfo = new ServerUpdateInfo();
                 updateInfo.status = online ? ServerEntity.ServerStatus.ONLINE : ServerEntity.ServerStatus.OFFLINE;
                 
                 // Nếu online, lấy và cập nhật metrics
                 if (online) {
                     try {
-                        // Lấy metrics từ server (sử dụng SSH key đã load sẵn)
-                        Map<String, String> metrics = getServerMetrics(
+                        // Lấy metrics từ collector, chỉ SSH khi collector chưa có sample (sử dụng SSH key đã load sẵn)
+                        ServerMetricsProbe.ServerSample sample = getLatestServerMetrics(
+                            serverId,
                             ip,
                             port,
                             username,
@@ -1154,14 +958,8 @@ public class ServerServiceImpl implements ServerService {
                         );
                         
                         // Lưu metrics vào updateInfo (cả total và used)
-                        if (metrics != null) {
-                            updateInfo.cpuCores = metrics.get("cpuCores");
-                            updateInfo.cpuUsed = metrics.get("cpuUsed");
-                            updateInfo.ramTotal = metrics.get("ramTotal");
-                            updateInfo.ramUsed = metrics.get("ramUsed");
-                            updateInfo.diskTotal = metrics.get("diskTotal");
-                            updateInfo.diskUsed = metrics.get("diskUsed");
-                            System.out.println("[checkAllServers] Da lay metrics thanh cong cho server ID " + serverId + " (" + ip + ")");
+                        if (sample != null && sample.hasData()) {
+                            updateInfo.sample = sample;
                         } else {
                             // Bao loi khi khong lay duoc metrics
                             System.err.println("[checkAllServers] KHONG THE LAY METRICS cho server ID " + serverId + " (" + ip + ":" + port + ") - Server online nhung khong the ket noi SSH hoac timeout");
@@ -1175,15 +973,10 @@ public class ServerServiceImpl implements ServerService {
                 }
                 
                 updateMap.put(serverId, updateInfo);
-            }, executor));
+            }, probeExecutor));
         }
         
         CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
-        executor.shutdown();
-        try {
-            executor.awaitTermination(2, TimeUnit.SECONDS);
-        } catch (InterruptedException ignored) {
-        }
         
         // Dem so server co metrics va khong co metrics
         int serversWithMetrics = 0;
@@ -1193,7 +986,7 @@ public class ServerServiceImpl implements ServerService {
         for (ServerUpdateInfo info : updateMap.values()) {
             if (info.status == ServerEntity.ServerStatus.ONLINE) {
                 serversOnline++;
-                if (info.cpuCores != null || info.ramTotal != null || info.diskTotal != null) {
+                if (info.sample != null) {
                     serversWithMetrics++;
                 } else {
                     serversWithoutMetrics++;
@@ -1203,48 +996,32 @@ public class ServerServiceImpl implements ServerService {
             }
         }
         
-        // Cập nhật tất cả servers trong transaction
-        updateServersInTransaction(updateMap);
-        
-        // Reload để trả về dữ liệu mới nhất
-        List<ServerEntity> updatedServers = serverRepository.findAll();
+        // Cập nhật trên chính các entity đã load (không đọc lại DB)
+        applyUpdates(servers, updateMap);
         
         long elapsed = System.currentTimeMillis() - start;
-        System.out.println("[checkAllServers] Da lam moi status va metrics cho " + updatedServers.size() + " servers trong " + elapsed + " ms");
+        System.out.println("[checkAllServers] Da lam moi status va metrics cho " + servers.size() + " servers trong " + elapsed + " ms");
         System.out.println("[checkAllServers] Ket qua: " + serversOnline + " server ONLINE, " + serversOffline + " server OFFLINE");
         System.out.println("[checkAllServers] Metrics: " + serversWithMetrics + " server co metrics, " + serversWithoutMetrics + " server ONLINE nhung khong lay duoc metrics");
         if (serversWithoutMetrics > 0) {
             System.err.println("[checkAllServers] CANH BAO: Co " + serversWithoutMetrics + " server(s) ONLINE nhung KHONG THE LAY METRICS (kiem tra SSH key hoac ket noi)");
         }
         
-        return updatedServers.stream()
+        return servers.stream()
                 .map(this::convertToResponse)
                 .collect(Collectors.toList());
     }
     
     /**
-     * Load SSH keys cho tất cả servers trong transaction
-     * Tránh LazyInitializationException khi các thread truy cập SSH keys
+     * Mở kết nối TCP tới cổng SSH để kiểm tra server còn sống
      */
-    @Transactional(readOnly = true)
-    private Map<Long, String> loadSshKeysForServers(List<ServerEntity> servers) {
-        Map<Long, String> sshKeyMap = new HashMap<>();
-        for (ServerEntity server : servers) {
-            try {
-                // Reload server với SSH key trong transaction
-                ServerEntity serverWithKey = serverRepository.findById(server.getId()).orElse(null);
-                if (serverWithKey != null && serverWithKey.getSshKey() != null) {
-                    // Force load SSH key bằng cách truy cập vào nó
-                    SshKeyEntity sshKey = serverWithKey.getSshKey();
-                    if (sshKey.getEncryptedPrivateKey() != null) {
-                        sshKeyMap.put(server.getId(), sshKey.getEncryptedPrivateKey());
-                    }
-                }
-            } catch (Exception e) {
-                System.err.println("[loadSshKeysForServers] Loi khi load SSH key cho server ID " + server.getId() + ": " + e.getMessage());
-            }
+    private boolean ping(String ip, Integer port, int timeoutMs) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(ip, port != null ? port : 22), timeoutMs);
+            return true;
+        } catch (Exception ignored) {
+            return false;
         }
-        return sshKeyMap;
     }
     
     /**
@@ -1253,25 +1030,19 @@ public class ServerServiceImpl implements ServerService {
      */
     private static class ServerUpdateInfo {
         ServerEntity.ServerStatus status;
-        String cpuCores;
-        String cpuUsed;
-        String ramTotal;
-        String ramUsed;
-        String diskTotal;
-        String diskUsed;
+        ServerMetricsProbe.ServerSample sample;
     }
     
     /**
-     * Cập nhật servers trong transaction
+     * Ghi kết quả refresh vào các entity đã load trong transaction của checkAllServers.
+     * Không gọi findById/save từng server: Hibernate dirty checking sinh UPDATE cho server có thay đổi
+     * và gửi chung một JDBC batch khi flush (hibernate.jdbc.batch_size trong application.yaml).
      */
-    @Transactional
-    private void updateServersInTransaction(Map<Long, ServerUpdateInfo> updateMap) {
-        for (Map.Entry<Long, ServerUpdateInfo> entry : updateMap.entrySet()) {
-            Long serverId = entry.getKey();
-            ServerUpdateInfo updateInfo = entry.getValue();
-            
-            ServerEntity server = serverRepository.findById(serverId).orElse(null);
-            if (server == null) {
+    private void applyUpdates(List<ServerEntity> servers, Map<Long, ServerUpdateInfo> updateMap) {
+        int withMetrics = 0;
+        for (ServerEntity server : servers) {
+            ServerUpdateInfo updateInfo = updateMap.get(server.getId());
+            if (updateInfo == null) {
                 continue;
             }
             
@@ -1280,42 +1051,13 @@ public class ServerServiceImpl implements ServerService {
                 server.setStatus(updateInfo.status);
             }
             
-            // Cập nhật metrics nếu có
-            boolean metricsUpdated = false;
-            if (updateInfo.cpuCores != null) {
-                server.setCpuCores(updateInfo.cpuCores);
-                metricsUpdated = true;
-            }
-            if (updateInfo.cpuUsed != null) {
-                server.setCpuUsed(updateInfo.cpuUsed);
-                metricsUpdated = true;
-            }
-            if (updateInfo.ramTotal != null) {
-                server.setRamTotal(updateInfo.ramTotal);
-                metricsUpdated = true;
-            }
-            if (updateInfo.ramUsed != null) {
-                server.setRamUsed(updateInfo.ramUsed);
-                metricsUpdated = true;
-            }
-            if (updateInfo.diskTotal != null) {
-                server.setDiskTotal(updateInfo.diskTotal);
-                metricsUpdated = true;
-            }
-            if (updateInfo.diskUsed != null) {
-                server.setDiskUsed(updateInfo.diskUsed);
-                metricsUpdated = true;
-            }
-            
-            // Lưu vào database
-            serverRepository.save(server);
-            if (metricsUpdated) {
-                System.out.println("[updateServersInTransaction] Da luu metrics vao database cho server ID " + serverId +
-                                  " (CPU: " + updateInfo.cpuCores + " cores, load: " + updateInfo.cpuUsed +
-                                  ", RAM: " + updateInfo.ramTotal + " total, " + updateInfo.ramUsed + " used" +
-                                  ", Disk: " + updateInfo.diskTotal + " total, " + updateInfo.diskUsed + " used)");
+            // Cập nhật metrics nếu có (cột số và chuỗi hiển thị)
+            if (updateInfo.sample != null) {
+                applySample(server, updateInfo.sample);
+                withMetrics++;
             }
         }
+        System.out.println("[applyUpdates] Da cap nhat " + updateMap.size() + " servers (" + withMetrics + " co metrics)");
     }
     
     /**
@@ -1378,325 +1120,92 @@ public class ServerServiceImpl implements ServerService {
     /**
      * Helper: Thực thi command qua SSH key
      */
-    private String execCommandWithKey(String ip, Integer port, String username, String privateKeyPem, String command, int timeoutMs) {
-        Session session = null;
-        ChannelExec channel = null;
-        try {
-            JSch jsch = new JSch();
-            byte[] prv = privateKeyPem.getBytes(StandardCharsets.UTF_8);
-            jsch.addIdentity("inmem-key", prv, null, null);
-            session = jsch.getSession(username, ip, port);
-            session.setConfig("StrictHostKeyChecking", "no");
-            session.setTimeout(timeoutMs);
-            session.connect(timeoutMs);
-            
-            channel = (ChannelExec) session.openChannel("exec");
-            channel.setCommand(command);
-            
-            InputStream in = channel.getInputStream();
-            InputStream err = channel.getErrStream();
-            channel.connect(timeoutMs);
-            
-            ByteArrayOutputStream outBuf = new ByteArrayOutputStream();
-            ByteArrayOutputStream errBuf = new ByteArrayOutputStream();
-            byte[] buffer = new byte[4096];
-            long deadline = System.currentTimeMillis() + timeoutMs;
-            
-            while (true) {
-                // Read stdout
-                while (in.available() > 0) {
-                    int read = in.read(buffer, 0, buffer.length);
-                    if (read < 0) break;
-                    outBuf.write(buffer, 0, read);
-                }
-                // Read stderr
-                while (err.available() > 0) {
-                    int read = err.read(buffer, 0, buffer.length);
-                    if (read < 0) break;
-                    errBuf.write(buffer, 0, read);
-                }
-                if (channel.isClosed()) break;
-                if (System.currentTimeMillis() > deadline) break;
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-            
-            // Log stderr if present
-            String errOutput = errBuf.toString(StandardCharsets.UTF_8).trim();
-            if (!errOutput.isEmpty()) {
-                System.out.println("[execCommandWithKey] Stderr output length: " + errOutput.length() + " characters");
-                if (errOutput.length() > 1000) {
-                    System.out.println("[execCommandWithKey] Stderr (first 500 chars):\n" + errOutput.substring(0, Math.min(500, errOutput.length())));
-                    System.out.println("[execCommandWithKey] ... (truncated " + (errOutput.length() - 500) + " chars) ...");
-                } else {
-                    System.out.println("[execCommandWithKey] Stderr:\n" + errOutput);
-                }
-            }
-            
-            // Log exit status
-            if (channel.isClosed()) {
-                int exitStatus = channel.getExitStatus();
-                if (exitStatus == 0) {
-                    System.out.println("[execCommandWithKey] Exit status: 0 (success)");
-                } else {
-                    System.out.println("[execCommandWithKey] Exit status: " + exitStatus + " (non-zero, may indicate error)");
-                }
-            }
-            
-            return outBuf.toString(StandardCharsets.UTF_8).trim();
-        } catch (Exception e) {
-            System.err.println("[execCommandWithKey] Loi: " + e.getMessage());
-            e.printStackTrace();
+    private String execCommandWithKey(Long serverId, String ip, Integer port, String username, String privateKeyPem, String command, int timeoutMs) {
+        SshCommandExecutor.CommandResult result = runPooledCommand("execCommandWithKey", serverId, ip, port, username,
+                privateKeyPem, null, command, SshCommandExecutor.CommandOptions.of(timeoutMs));
+        if (result == null) {
             return null;
-        } finally {
-            if (channel != null && channel.isConnected()) {
-                channel.disconnect();
-            }
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
         }
+        logCommandResult("execCommandWithKey", result);
+        return result.stdout().trim();
     }
     
     /**
      * Helper: Thực thi command qua SSH key với streaming output
      */
-    private String execCommandWithKey(String ip, Integer port, String username, String privateKeyPem, String command, int timeoutMs, Consumer<String> outputHandler) {
-        Session session = null;
-        ChannelExec channel = null;
-        try {
-            JSch jsch = new JSch();
-            byte[] prv = privateKeyPem.getBytes(StandardCharsets.UTF_8);
-            jsch.addIdentity("inmem-key", prv, null, null);
-            session = jsch.getSession(username, ip, port);
-            session.setConfig("StrictHostKeyChecking", "no");
-            session.setTimeout(timeoutMs);
-            session.connect(timeoutMs);
-            
-            channel = (ChannelExec) session.openChannel("exec");
-            channel.setCommand(command);
-            
-            InputStream in = channel.getInputStream();
-            InputStream err = channel.getErrStream();
-            channel.connect(timeoutMs);
-            
-            StringBuilder aggregated = new StringBuilder();
-            byte[] buffer = new byte[2048];
-            long deadline = System.currentTimeMillis() + timeoutMs;
-            
-            while (true) {
-                // Read stdout
-                while (in.available() > 0) {
-                    int read = in.read(buffer, 0, buffer.length);
-                    if (read < 0) break;
-                    String chunk = new String(buffer, 0, read, StandardCharsets.UTF_8);
-                    aggregated.append(chunk);
-                    if (outputHandler != null) {
-                        outputHandler.accept(chunk);
-                    }
-                }
-                // Read stderr
-                while (err.available() > 0) {
-                    int read = err.read(buffer, 0, buffer.length);
-                    if (read < 0) break;
-                    String chunk = new String(buffer, 0, read, StandardCharsets.UTF_8);
-                    aggregated.append(chunk);
-                    if (outputHandler != null) {
-                        outputHandler.accept(chunk);
-                    }
-                }
-                if (channel.isClosed()) {
-                    if (in.available() == 0 && err.available() == 0) {
-                        break;
-                    }
-                }
-                if (System.currentTimeMillis() > deadline) break;
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-            
-            return aggregated.toString();
-        } catch (Exception e) {
-            System.err.println("[execCommandWithKey with outputHandler] Loi: " + e.getMessage());
-            e.printStackTrace();
-            return null;
-        } finally {
-            if (channel != null && channel.isConnected()) {
-                channel.disconnect();
-            }
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
-        }
+    private String execCommandWithKey(Long serverId, String ip, Integer port, String username, String privateKeyPem, String command, int timeoutMs, Consumer<String> outputHandler) {
+        SshCommandExecutor.CommandResult result = runPooledCommand("execCommandWithKey with outputHandler", serverId, ip, port, username,
+                privateKeyPem, null, command,
+                SshCommandExecutor.CommandOptions.of(timeoutMs).withOutputHandler(outputHandler).withMergedStderr());
+        return result != null ? result.stdout() : null;
     }
     
     /**
      * Helper: Thực thi command qua password với streaming output
      */
-    private String execCommandWithPassword(String ip, Integer port, String username, String password, String command, int timeoutMs, Consumer<String> outputHandler) {
-        Session session = null;
-        ChannelExec channel = null;
-        try {
-            JSch jsch = new JSch();
-            session = jsch.getSession(username, ip, port);
-            session.setPassword(password);
-            session.setConfig("StrictHostKeyChecking", "no");
-            session.setTimeout(timeoutMs);
-            session.connect(timeoutMs);
-            
-            channel = (ChannelExec) session.openChannel("exec");
-            channel.setCommand(command);
-            
-            InputStream in = channel.getInputStream();
-            InputStream err = channel.getErrStream();
-            channel.connect(timeoutMs);
-            
-            StringBuilder aggregated = new StringBuilder();
-            byte[] buffer = new byte[2048];
-            long deadline = System.currentTimeMillis() + timeoutMs;
-            
-            while (true) {
-                // Read stdout
-                while (in.available() > 0) {
-                    int read = in.read(buffer, 0, buffer.length);
-                    if (read < 0) break;
-                    String chunk = new String(buffer, 0, read, StandardCharsets.UTF_8);
-                    aggregated.append(chunk);
-                    if (outputHandler != null) {
-                        outputHandler.accept(chunk);
-                    }
-                }
-                // Read stderr
-                while (err.available() > 0) {
-                    int read = err.read(buffer, 0, buffer.length);
-                    if (read < 0) break;
-                    String chunk = new String(buffer, 0, read, StandardCharsets.UTF_8);
-                    aggregated.append(chunk);
-                    if (outputHandler != null) {
-                        outputHandler.accept(chunk);
-                    }
-                }
-                if (channel.isClosed()) {
-                    if (in.available() == 0 && err.available() == 0) {
-                        break;
-                    }
-                }
-                if (System.currentTimeMillis() > deadline) break;
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-            
-            return aggregated.toString();
-        } catch (Exception e) {
-            System.err.println("[execCommandWithPassword with outputHandler] Loi: " + e.getMessage());
-            e.printStackTrace();
-            return null;
-        } finally {
-            if (channel != null && channel.isConnected()) {
-                channel.disconnect();
-            }
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
-        }
+    private String execCommandWithPassword(Long serverId, String ip, Integer port, String username, String password, String command, int timeoutMs, Consumer<String> outputHandler) {
+        SshCommandExecutor.CommandResult result = runPooledCommand("execCommandWithPassword with outputHandler", serverId, ip, port, username,
+                null, password, command,
+                SshCommandExecutor.CommandOptions.of(timeoutMs).withOutputHandler(outputHandler).withMergedStderr());
+        return result != null ? result.stdout() : null;
     }
     
     /**
      * Helper: Thực thi command qua password
      */
-    private String execCommandWithPassword(String ip, Integer port, String username, String password, String command, int timeoutMs) {
+    private String execCommandWithPassword(Long serverId, String ip, Integer port, String username, String password, String command, int timeoutMs) {
+        SshCommandExecutor.CommandResult result = runPooledCommand("execCommandWithPassword", serverId, ip, port, username,
+                null, password, command, SshCommandExecutor.CommandOptions.of(timeoutMs));
+        if (result == null) {
+            return null;
+        }
+        logCommandResult("execCommandWithPassword", result);
+        return result.stdout().trim();
+    }
+
+    /**
+     * Helper: Mượn session từ pool (key hoặc password) và thực thi command qua SshCommandExecutor
+     * Trả về null nếu không kết nối/thực thi được
+     */
+    private SshCommandExecutor.CommandResult runPooledCommand(String logTag, Long serverId, String ip, Integer port, String username,
+                                                              String privateKeyPem, String password, String command,
+                                                              SshCommandExecutor.CommandOptions options) {
         Session session = null;
-        ChannelExec channel = null;
         try {
-            JSch jsch = new JSch();
-            session = jsch.getSession(username, ip, port);
-            session.setPassword(password);
-            session.setConfig("StrictHostKeyChecking", "no");
-            session.setTimeout(timeoutMs);
-            session.connect(timeoutMs);
-            
-            channel = (ChannelExec) session.openChannel("exec");
-            channel.setCommand(command);
-            
-            InputStream in = channel.getInputStream();
-            InputStream err = channel.getErrStream();
-            channel.connect(timeoutMs);
-            
-            ByteArrayOutputStream outBuf = new ByteArrayOutputStream();
-            ByteArrayOutputStream errBuf = new ByteArrayOutputStream();
-            byte[] buffer = new byte[4096];
-            long deadline = System.currentTimeMillis() + timeoutMs;
-            
-            while (true) {
-                // Read stdout
-                while (in.available() > 0) {
-                    int read = in.read(buffer, 0, buffer.length);
-                    if (read < 0) break;
-                    outBuf.write(buffer, 0, read);
-                }
-                // Read stderr
-                while (err.available() > 0) {
-                    int read = err.read(buffer, 0, buffer.length);
-                    if (read < 0) break;
-                    errBuf.write(buffer, 0, read);
-                }
-                if (channel.isClosed()) break;
-                if (System.currentTimeMillis() > deadline) break;
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-            
-            // Log stderr if present
-            String errOutput = errBuf.toString(StandardCharsets.UTF_8).trim();
-            if (!errOutput.isEmpty()) {
-                System.out.println("[execCommandWithPassword] Stderr output length: " + errOutput.length() + " characters");
-                if (errOutput.length() > 1000) {
-                    System.out.println("[execCommandWithPassword] Stderr (first 500 chars):\n" + errOutput.substring(0, Math.min(500, errOutput.length())));
-                    System.out.println("[execCommandWithPassword] ... (truncated " + (errOutput.length() - 500) + " chars) ...");
-                } else {
-                    System.out.println("[execCommandWithPassword] Stderr:\n" + errOutput);
-                }
-            }
-            
-            // Log exit status
-            if (channel.isClosed()) {
-                int exitStatus = channel.getExitStatus();
-                if (exitStatus == 0) {
-                    System.out.println("[execCommandWithPassword] Exit status: 0 (success)");
-                } else {
-                    System.out.println("[execCommandWithPassword] Exit status: " + exitStatus + " (non-zero, may indicate error)");
-                }
-            }
-            
-            return outBuf.toString(StandardCharsets.UTF_8).trim();
+            session = sshSessionPool.acquire(serverId, ip, port, username, privateKeyPem, password);
+            return sshCommandExecutor.execute(session, command, options);
         } catch (Exception e) {
-            System.err.println("[execCommandWithPassword] Loi: " + e.getMessage());
+            System.err.println("[" + logTag + "] Loi: " + e.getMessage());
             e.printStackTrace();
             return null;
         } finally {
-            if (channel != null && channel.isConnected()) {
-                channel.disconnect();
+            if (session != null) {
+                sshSessionPool.release(session);
             }
-            if (session != null && session.isConnected()) {
-                session.disconnect();
+        }
+    }
+
+    /**
+     * Helper: Log stderr và exit status của command
+     */
+    private void logCommandResult(String logTag, SshCommandExecutor.CommandResult result) {
+        String errOutput = result.stderr().trim();
+        if (!errOutput.isEmpty()) {
+            System.out.println("[" + logTag + "] Stderr output length: " + errOutput.length() + " characters");
+            if (errOutput.length() > 1000) {
+                System.out.println("[" + logTag + "] Stderr (first 500 chars):\n" + errOutput.substring(0, 500));
+                System.out.println("[" + logTag + "] ... (truncated " + (errOutput.length() - 500) + " chars) ...");
+            } else {
+                System.out.println("[" + logTag + "] Stderr:\n" + errOutput);
             }
         }
+        if (result.timedOut()) {
+            System.out.println("[" + logTag + "] Command bi ngat vi qua thoi gian cho phep");
+        } else if (result.exitStatus() == 0) {
+            System.out.println("[" + logTag + "] Exit status: 0 (success)");
+        } else {
+            System.out.println("[" + logTag + "] Exit status: " + result.exitStatus() + " (non-zero, may indicate error)");
+        }
     }
     
     @Override
@@ -1708,6 +1217,10 @@ public class ServerServiceImpl implements ServerService {
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy server với ID: " + id));
         
         boolean hadSshKeyBefore = server.getSshKey() != null;
+
+        // Bo session cu trong pool de lan ket noi tiep theo dung thong tin moi
+        sshSessionPool.evict(id);
+        serverMetricsStream.stop(id);
         
         // Uu tien thu SSH key truoc neu co
         if (hadSshKeyBefore) {
@@ -1778,6 +1291,8 @@ public class ServerServiceImpl implements ServerService {
         // Set status = DISABLED
         server.setStatus(ServerEntity.ServerStatus.DISABLED);
         server = serverRepository.saveAndFlush(server);
+        sshSessionPool.evict(id);
+        serverMetricsStream.stop(id);
         
         System.out.println("[disconnectServer] Da disconnect server thanh cong");
         return convertToResponse(server);
@@ -1806,7 +1321,7 @@ public class ServerServiceImpl implements ServerService {
         // Uu tien dung SSH key
         String privateKeyPem = resolveServerPrivateKeyPem(id);
         if (privateKeyPem != null && !privateKeyPem.isBlank()) {
-            String output = execCommandWithKey(ip, port, username, privateKeyPem, command, timeoutMs);
+            String output = execCommandWithKey(id, ip, port, username, privateKeyPem, command, timeoutMs);
             if (output != null) {
                 System.out.println("[execCommand] Thuc thi thanh cong bang SSH key");
                 // Log output chi tiet
@@ -1832,7 +1347,7 @@ public class ServerServiceImpl implements ServerService {
         // Fallback: dung password neu co
         String password = server.getPassword();
         if (password != null && !password.isBlank()) {
-            String output = execCommandWithPassword(ip, port, username, password, command, timeoutMs);
+            String output = execCommandWithPassword(id, ip, port, username, password, command, timeoutMs);
             if (output != null) {
                 System.out.println("[execCommand] Thuc thi thanh cong bang password");
                 // Log output chi tiet
@@ -1881,7 +1396,7 @@ public class ServerServiceImpl implements ServerService {
         // Uu tien dung SSH key
         String privateKeyPem = resolveServerPrivateKeyPem(id);
         if (privateKeyPem != null && !privateKeyPem.isBlank()) {
-            String output = execCommandWithKey(ip, port, username, privateKeyPem, command, timeoutMs, outputHandler);
+            String output = execCommandWithKey(id, ip, port, username, privateKeyPem, command, timeoutMs, outputHandler);
             if (output != null) {
                 System.out.println("[execCommand with outputHandler] Thuc thi thanh cong bang SSH key");
                 System.out.println("[execCommand with outputHandler] Output: " + output);
@@ -1892,7 +1407,7 @@ public class ServerServiceImpl implements ServerService {
         // Fallback: dung password neu co
         String password = server.getPassword();
         if (password != null && !password.isBlank()) {
-            String output = execCommandWithPassword(ip, port, username, password, command, timeoutMs, outputHandler);
+            String output = execCommandWithPassword(id, ip, port, username, password, command, timeoutMs, outputHandler);
             if (output != null) {
                 System.out.println("[execCommand with outputHandler] Thuc thi thanh cong bang password");
                 return output;
@@ -1922,6 +1437,8 @@ public class ServerServiceImpl implements ServerService {
         String shutdownCommand = "sudo shutdown -h now || sudo poweroff || sudo systemctl poweroff || sudo halt";
         
         String output = execCommand(id, shutdownCommand, 10000);
+        sshSessionPool.evict(id);
+        serverMetricsStream.stop(id);
         
         // Sau khi shutdown thanh cong, set status = OFFLINE
         server.setStatus(ServerEntity.ServerStatus.OFFLINE);
@@ -1951,6 +1468,8 @@ public class ServerServiceImpl implements ServerService {
         String restartCommand = "sudo reboot || sudo shutdown -r now || sudo systemctl reboot";
         
         String output = execCommand(id, restartCommand, 10000);
+        sshSessionPool.evict(id);
+        serverMetricsStream.stop(id);
         
         // Sau khi restart, set status = OFFLINE (se tu dong chuyen thanh ONLINE sau khi server khoi dong lai)
         server.setStatus(ServerEntity.ServerStatus.OFFLINE);
@@ -2009,7 +1528,7 @@ public class ServerServiceImpl implements ServerService {
                     if (canConnect) {
                         // Kiểm tra sudo NOPASSWD
                         String checkSudoCmd = "sudo -l 2>/dev/null | grep -q 'NOPASSWD' && echo 'HAS_NOPASSWD' || echo 'NO_NOPASSWD'";
-                        String sudoCheckResult = execCommandWithKey(ip, port, username, privateKeyPem, checkSudoCmd, 5000);
+                        String sudoCheckResult = execCommandWithKey(id, ip, port, username, privateKeyPem, checkSudoCmd, 5000);
                         
                         if (sudoCheckResult != null && sudoCheckResult.contains("HAS_NOPASSWD")) {
                             hasSudoNopasswd = true;
@@ -2112,7 +1631,7 @@ public class ServerServiceImpl implements ServerService {
         // Uu tien dung SSH key
         String privateKeyPem = resolveServerPrivateKeyPem(id);
         if (privateKeyPem != null && !privateKeyPem.isBlank()) {
-            String output = execCommandWithSudoAndKey(ip, port, username, privateKeyPem, command, sudoPassword, timeoutMs);
+            String output = execCommandWithSudoAndKey(id, ip, port, username, privateKeyPem, command, sudoPassword, timeoutMs);
             if (output != null) {
                 System.out.println("[execCommandWithSudo] Thuc thi thanh cong bang SSH key");
                 return output;
@@ -2122,7 +1641,7 @@ public class ServerServiceImpl implements ServerService {
         // Fallback: dung password neu co
         String password = server.getPassword();
         if (password != null && !password.isBlank()) {
-            String output = execCommandWithSudoAndPassword(ip, port, username, password, command, sudoPassword, timeoutMs);
+            String output = execCommandWithSudoAndPassword(id, ip, port, username, password, command, sudoPassword, timeoutMs);
             if (output != null) {
                 System.out.println("[execCommandWithSudo] Thuc thi thanh cong bang password");
                 return output;
@@ -2135,148 +1654,27 @@ public class ServerServiceImpl implements ServerService {
     /**
      * Helper: Thực thi command với sudo password qua SSH key
      */
-    private String execCommandWithSudoAndKey(String ip, Integer port, String username, String privateKeyPem, String command, String sudoPassword, int timeoutMs) {
-        Session session = null;
-        ChannelExec channel = null;
-        try {
-            JSch jsch = new JSch();
-            byte[] prv = privateKeyPem.getBytes(StandardCharsets.UTF_8);
-            jsch.addIdentity("inmem-key", prv, null, null);
-            session = jsch.getSession(username, ip, port);
-            session.setConfig("StrictHostKeyChecking", "no");
-            session.setTimeout(timeoutMs);
-            session.connect(timeoutMs);
-
-            channel = (ChannelExec) session.openChannel("exec");
-
-            // Nếu lệnh bắt đầu bằng sudo, thêm password
-            if (command.startsWith("sudo -S")) {
-                channel.setCommand("echo '" + sudoPassword + "' | " + command);
-            } else {
-                channel.setCommand(command);
-            }
-
-            channel.connect(timeoutMs);
-
-            InputStream in = channel.getInputStream();
-            InputStream err = channel.getErrStream();
-            channel.connect(timeoutMs);
-
-            ByteArrayOutputStream outBuf = new ByteArrayOutputStream();
-            ByteArrayOutputStream errBuf = new ByteArrayOutputStream();
-            byte[] buffer = new byte[4096];
-            long deadline = System.currentTimeMillis() + timeoutMs;
-
-            while (true) {
-                // Read stdout
-                while (in.available() > 0) {
-                    int read = in.read(buffer, 0, buffer.length);
-                    if (read < 0) break;
-                    outBuf.write(buffer, 0, read);
-                }
-                // Read stderr
-                while (err.available() > 0) {
-                    int read = err.read(buffer, 0, buffer.length);
-                    if (read < 0) break;
-                    errBuf.write(buffer, 0, read);
-                }
-                if (channel.isClosed() && in.available() == 0 && err.available() == 0) break;
-                if (System.currentTimeMillis() > deadline) break;
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-
-            return outBuf.toString(StandardCharsets.UTF_8).trim();
-        } catch (Exception e) {
-            System.err.println("[execCommandWithSudoAndKey] Loi: " + e.getMessage());
-            e.printStackTrace();
-            return null;
-        } finally {
-            if (channel != null && channel.isConnected()) {
-                channel.disconnect();
-            }
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
-        }
+    private String execCommandWithSudoAndKey(Long serverId, String ip, Integer port, String username, String privateKeyPem, String command, String sudoPassword, int timeoutMs) {
+        // Nếu lệnh bắt đầu bằng sudo, thêm password
+        String fullCommand = command.startsWith("sudo -S") ? "echo '" + sudoPassword + "' | " + command : command;
+        SshCommandExecutor.CommandResult result = runPooledCommand("execCommandWithSudoAndKey", serverId, ip, port, username,
+                privateKeyPem, null, fullCommand, SshCommandExecutor.CommandOptions.of(timeoutMs));
+        return result != null ? result.stdout().trim() : null;
     }
 
     /**
      * Helper: Thực thi command với sudo password qua SSH password
      */
-    private String execCommandWithSudoAndPassword(String ip, Integer port, String username, String password, String command, String sudoPassword, int timeoutMs) {
-        Session session = null;
-        ChannelExec channel = null;
-        try {
-            JSch jsch = new JSch();
-            session = jsch.getSession(username, ip, port);
-            session.setPassword(password);
-            session.setConfig("StrictHostKeyChecking", "no");
-            session.setTimeout(timeoutMs);
-            session.connect(timeoutMs);
-
-            channel = (ChannelExec) session.openChannel("exec");
-
-            // Nếu lệnh bắt đầu bằng sudo, thêm password
-            if (command.startsWith("sudo -S")) {
-                channel.setCommand("echo '" + sudoPassword + "' | " + command);
-            } else {
-                channel.setCommand(command);
-            }
-
-            channel.connect(timeoutMs);
-
-            InputStream in = channel.getInputStream();
-            InputStream err = channel.getErrStream();
-            channel.connect(timeoutMs);
-
-            ByteArrayOutputStream outBuf = new ByteArrayOutputStream();
-            ByteArrayOutputStream errBuf = new ByteArrayOutputStream();
-            byte[] buffer = new byte[4096];
-            long deadline = System.currentTimeMillis() + timeoutMs;
-
-            while (true) {
-                // Read stdout
-                while (in.available() > 0) {
-                    int read = in.read(buffer, 0, buffer.length);
-                    if (read < 0) break;
-                    outBuf.write(buffer, 0, read);
-                }
-                // Read stderr
-                while (err.available() > 0) {
-                    int read = err.read(buffer, 0, buffer.length);
-                    if (read < 0) break;
-                    errBuf.write(buffer, 0, read);
-                }
-                if (channel.isClosed() && in.available() == 0 && err.available() == 0) break;
-                if (System.currentTimeMillis() > deadline) break;
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-
-            return outBuf.toString(StandardCharsets.UTF_8).trim();
-        } catch (Exception e) {
-            System.err.println("[execCommandWithSudoAndPassword] Loi: " + e.getMessage());
-            e.printStackTrace();
-            return null;
-        } finally {
-            if (channel != null && channel.isConnected()) {
-                channel.disconnect();
-            }
-            if (session != null && session.isConnected()) {
-                session.disconnect();
-            }
-        }
+    private String execCommandWithSudoAndPassword(Long serverId, String ip, Integer port, String username, String password, String command, String sudoPassword, int timeoutMs) {
+        // Nếu lệnh bắt đầu bằng sudo, thêm password
+        String fullCommand = command.startsWith("sudo -S") ? "echo '" + sudoPassword + "' | " + command : command;
+        SshCommandExecutor.CommandResult result = runPooledCommand("execCommandWithSudoAndPassword", serverId, ip, port, username,
+                null, password, fullCommand, SshCommandExecutor.CommandOptions.of(timeoutMs));
+        return result != null ? result.stdout().trim() : null;
     }
 
+    @PreDestroy
+    public void shutdown() {
+        probeExecutor.shutdownNow();
+    }
 }
-
-
@@ -320,8 +320,8 @@ public class UserServiceImpl extends BaseKubernetesService implements UserServic
             System.err.println("[deleteProjectNamespace] Lỗi khi xóa namespace: " + e.getMessage());
             throw new RuntimeException("Không thể xóa namespace trong Kubernetes: " + e.getMessage(), e);
         } finally {
-            if (clusterSession != null && clusterSession.isConnected()) {
-                clusterSession.disconnect();
+            if (clusterSession != null) {
+                releaseSession(clusterSession);
             }
         }
     }
@@ -0,0 +1,349 @@
+package my_spring_app.my_spring_app.ssh;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.Session;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Thực thi lệnh qua channel exec của JSch theo kiểu event-driven, thay cho vòng lặp
+ * available() + Thread.sleep.
+ *
+ * stdout/stderr được JSch đẩy thẳng vào OutputStream của executor ngay trên thread đọc của session
+ * (không cần thread nào chờ/poll), output được giới hạn kích thước. Khi channel đóng (sau khi đã nhận
+ * exit-status) JSch đóng stream stderr, lúc đó CompletableFuture được complete với kết quả.
+ * Thread đọc của session dùng chung cho mọi channel nên không bao giờ chạy outputHandler trên đó:
+ * output được chuyển qua hàng đợi cho một virtual thread riêng của lệnh, future chỉ complete sau khi
+ * handler đã nhận hết output.
+ * Deadline của mỗi lệnh được canh bởi một scheduler dùng chung: quá hạn thì ngắt channel.
+ *
+ * Executor không quản lý session: người gọi tự mượn/trả session (ví dụ qua {@link SshSessionPool}).
+ */
+@Component
+public class SshCommandExecutor {
+
+    // Giới hạn mặc định cho mỗi stream (stdout/stderr), phần vượt quá bị bỏ
+    public static final int DEFAULT_MAX_OUTPUT_BYTES = 8 * 1024 * 1024;
+    // Số ký tự output tối đa đang chờ outputHandler xử lý (độc lập với maxOutputBytes: lệnh chỉ stream
+    // qua handler có thể đặt maxOutputBytes = 0 mà vẫn nhận đủ output)
+    private static final int MAX_PENDING_HANDLER_CHARS = 4 * 1024 * 1024;
+    private static final int CHANNEL_CONNECT_TIMEOUT_MS = 10_000;
+
+    private final ScheduledExecutorService deadlineScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ssh-command-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Tuỳ chọn thực thi một lệnh.
+     *
+     * @param timeoutMs      deadline của lệnh tính từ lúc mở channel (0 = không giới hạn)
+     * @param maxOutputBytes số byte tối đa giữ lại cho mỗi stream trong kết quả (không ảnh hưởng outputHandler)
+     * @param outputHandler  nhận từng đoạn output (đã decode UTF-8) theo đúng thứ tự, trên virtual thread riêng
+     *                       của lệnh; null nếu không cần
+     * @param mergeStderr    gộp stderr vào stdout (giống 2>&1) thay vì giữ riêng
+     */
+    public record CommandOptions(long timeoutMs, int maxOutputBytes, Consumer<String> outputHandler, boolean mergeStderr) {
+
+        public static CommandOptions of(long timeoutMs) {
+            return new CommandOptions(timeoutMs, DEFAULT_MAX_OUTPUT_BYTES, null, false);
+        }
+
+        public CommandOptions withOutputHandler(Consumer<String> handler) {
+            return new CommandOptions(timeoutMs, maxOutputBytes, handler, mergeStderr);
+        }
+
+        public CommandOptions withMaxOutputBytes(int maxBytes) {
+            return new CommandOptions(timeoutMs, maxBytes, outputHandler, mergeStderr);
+        }
+
+        public CommandOptions withMergedStderr() {
+            return new CommandOptions(timeoutMs, maxOutputBytes, outputHandler, true);
+        }
+    }
+
+    /**
+     * Kết quả của một lệnh.
+     *
+     * @param exitStatus exit status của lệnh (-1 nếu channel bị ngắt trước khi có exit status)
+     * @param timedOut   lệnh bị ngắt vì quá deadline
+     * @param truncated  output vượt quá maxOutputBytes và đã bị cắt
+     */
+    public record CommandResult(int exitStatus, String stdout, String stderr, boolean timedOut, boolean truncated) {
+
+        public boolean isSuccess() {
+            return exitStatus == 0 && !timedOut;
+        }
+    }
+
+    /**
+     * Chạy lệnh bất đồng bộ. Future complete khi channel đóng hoặc quá deadline;
+     * cancel future sẽ ngắt channel.
+     */
+    public CompletableFuture<CommandResult> executeAsync(Session session, String command, CommandOptions options) {
+        CompletableFuture<CommandResult> future = new CompletableFuture<>();
+        ChannelExec channel;
+        try {
+            channel = (ChannelExec) session.openChannel("exec");
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        channel.setCommand(command);
+
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+        CappedBuffer stdout = new CappedBuffer(options.maxOutputBytes());
+        CappedBuffer stderr = options.mergeStderr() ? stdout : new CappedBuffer(options.maxOutputBytes());
+        ScheduledFuture<?>[] deadline = new ScheduledFuture<?>[1];
+
+        OutputDispatcher dispatcher = options.outputHandler() != null
+                ? new OutputDispatcher(options.outputHandler(), MAX_PENDING_HANDLER_CHARS)
+                : null;
+
+        // JSch đóng stream stderr trong Channel.disconnect(), sau khi đã nhận exit-status và CHANNEL_CLOSE
+        Runnable onClosed = () -> {
+            if (deadline[0] != null) {
+                deadline[0].cancel(false);
+            }
+            CommandResult result = new CommandResult(channel.getExitStatus(), stdout.asString(),
+                    options.mergeStderr() ? "" : stderr.asString(), timedOut.get(),
+                    stdout.isTruncated() || stderr.isTruncated());
+            if (dispatcher != null) {
+                dispatcher.finish(() -> future.complete(result));
+            } else {
+                future.complete(result);
+            }
+        };
+        channel.setOutputStream(new StreamSink(stdout, dispatcher, null));
+        channel.setExtOutputStream(new StreamSink(stderr, dispatcher, onClosed));
+
+        future.whenComplete((result, error) -> {
+            if (error instanceof CancellationException && channel.isConnected()) {
+                channel.disconnect();
+            }
+        });
+
+        try {
+            channel.connect(CHANNEL_CONNECT_TIMEOUT_MS);
+        } catch (Exception e) {
+            // Complete lỗi trước, disconnect sau (disconnect sẽ gọi onClosed nhưng future đã xong)
+            future.completeExceptionally(e);
+            channel.disconnect();
+            return future;
+        }
+        // Chỉ chạy thread của handler khi channel đã mở: connect lỗi thì sink có thể không bao giờ đóng
+        // và thread sẽ chờ mãi. Output tới trong lúc connect đã nằm sẵn trong hàng đợi.
+        if (dispatcher != null) {
+            dispatcher.start();
+        }
+        if (options.timeoutMs() > 0 && !future.isDone()) {
+            deadline[0] = deadlineScheduler.schedule(() -> {
+                timedOut.set(true);
+                channel.disconnect();
+            }, options.timeoutMs(), TimeUnit.MILLISECONDS);
+        }
+        return future;
+    }
+
+    /**
+     * Chạy lệnh và chờ kết quả (deadline do options.timeoutMs quyết định).
+     * Thread gọi bị interrupt (ví dụ task bị hủy) thì ngắt channel luôn thay vì để lệnh chạy tiếp.
+     */
+    public CommandResult execute(Session session, String command, CommandOptions options) throws Exception {
+        CompletableFuture<CommandResult> future = executeAsync(session, command, options);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Chạy lệnh với timeout và các tuỳ chọn mặc định.
+     */
+    public CommandResult execute(Session session, String command, long timeoutMs) throws Exception {
+        return execute(session, command, CommandOptions.of(timeoutMs));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deadlineScheduler.shutdownNow();
+    }
+
+    /**
+     * Buffer giữ output tối đa maxBytes, phần vượt quá chỉ được đếm.
+     */
+    private static final class CappedBuffer {
+        private final int maxBytes;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private boolean truncated;
+
+        CappedBuffer(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized void write(byte[] bytes, int off, int len) {
+            int room = maxBytes - buffer.size();
+            if (room < len) {
+                truncated = true;
+            }
+            if (room > 0) {
+                buffer.write(bytes, off, Math.min(room, len));
+            }
+        }
+
+        synchronized boolean isTruncated() {
+            return truncated;
+        }
+
+        synchronized String asString() {
+            return buffer.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Chuyển output từ thread đọc của session sang một virtual thread gọi outputHandler theo thứ tự.
+     * Thread đọc chỉ thêm vào hàng đợi (không chờ). Khi handler xử lý không kịp và phần chờ vượt quá
+     * maxPendingChars thì đoạn mới bị bỏ, handler nhận một dòng thông báo số ký tự đã bỏ.
+     */
+    private static final class OutputDispatcher {
+        private final Consumer<String> handler;
+        private final int maxPendingChars;
+        private final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        private final AtomicLong pendingChars = new AtomicLong();
+        private long droppedChars;
+
+        OutputDispatcher(Consumer<String> handler, int maxPendingChars) {
+            this.handler = handler;
+            this.maxPendingChars = maxPendingChars;
+        }
+
+        void start() {
+            Thread.ofVirtual().name("ssh-output").start(this::run);
+        }
+
+        synchronized void offer(String chunk) {
+            if (pendingChars.get() + chunk.length() > maxPendingChars) {
+                droppedChars += chunk.length();
+                return;
+            }
+            if (droppedChars > 0) {
+                queue.add("\n[ssh] Đã bỏ " + droppedChars + " ký tự output do xử lý không kịp\n");
+                droppedChars = 0;
+            }
+            pendingChars.addAndGet(chunk.length());
+            queue.add(chunk);
+        }
+
+        /**
+         * Chạy onDrained sau khi handler đã nhận hết output trong hàng đợi, rồi dừng thread.
+         */
+        void finish(Runnable onDrained) {
+            queue.add(onDrained);
+        }
+
+        private void run() {
+            while (true) {
+                Object item;
+                try {
+                    item = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (item instanceof Runnable onDrained) {
+                    onDrained.run();
+                    return;
+                }
+                String chunk = (String) item;
+                pendingChars.addAndGet(-chunk.length());
+                try {
+                    handler.accept(chunk);
+                } catch (Exception e) {
+                    System.err.println("[SshCommandExecutor] Loi trong outputHandler: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * OutputStream JSch ghi dữ liệu vào. Decode UTF-8 theo luồng để ký tự nhiều byte bị chia
+     * giữa hai packet không bị vỡ khi chuyển cho outputHandler.
+     */
+    private static final class StreamSink extends OutputStream {
+        private final CappedBuffer target;
+        private final OutputDispatcher handler;
+        private final Runnable onClose;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private ByteBuffer pending = ByteBuffer.allocate(0);
+        private boolean closed;
+
+        StreamSink(CappedBuffer target, OutputDispatcher handler, Runnable onClose) {
+            this.target = target;
+            this.handler = handler;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int off, int len) {
+            target.write(bytes, off, len);
+            if (handler == null || len == 0) {
+                return;
+            }
+            ByteBuffer input = ByteBuffer.allocate(pending.remaining() + len);
+            input.put(pending).put(bytes, off, len).flip();
+            CharBuffer chars = CharBuffer.allocate(input.remaining());
+            decoder.decode(input, chars, false);
+            pending = input.slice();
+            chars.flip();
+            if (chars.hasRemaining()) {
+                handler.offer(chars.toString());
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (onClose != null) {
+                onClose.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package my_spring_app.my_spring_app.ssh;
+
+import jakarta.annotation.PreDestroy;
+import my_spring_app.my_spring_app.entity.ServerEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Chạy cùng một kế hoạch lệnh trên nhiều server song song (chuẩn bị node, phân phối SSH key, join node...).
+ *
+ * Mỗi host chạy trên một virtual thread, số host chạy cùng lúc bị giới hạn bởi parallelism. Mỗi host có
+ * timeout riêng tính từ lúc host bắt đầu chạy: quá hạn thì thread của host bị interrupt, lệnh SSH đang chờ
+ * bị ngắt channel (xem {@link SshCommandExecutor#execute}) và host được ghi nhận là timeout.
+ * Lỗi của một host không làm dừng các host khác; kết quả được gom lại thành {@link Report}
+ * theo đúng thứ tự danh sách server truyền vào.
+ */
+@Component
+public class SshFanOutExecutor {
+
+    // Số host chạy song song mặc định khi mỗi host dùng session riêng của nó
+    // (host dùng chung session tới một server thì dùng parallelismOn)
+    public static final int DEFAULT_PARALLELISM = 10;
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("ssh-fanout-", 0).factory());
+
+    private final SshSessionPool sshSessionPool;
+
+    public SshFanOutExecutor(SshSessionPool sshSessionPool) {
+        this.sshSessionPool = sshSessionPool;
+    }
+
+    /**
+     * Parallelism cho fan-out mà mọi host đều chạy lệnh qua session tới cùng một server (ví dụ lệnh ssh-copy-id
+     * chạy trên ANSIBLE cho từng node): không vượt quá số channel còn mượn được trên session đó, nếu không các
+     * host dư sẽ chờ permit của pool rồi thất bại vì timeout.
+     */
+    public int parallelismOn(ServerEntity sharedServer) {
+        return Math.max(1, Math.min(DEFAULT_PARALLELISM, sshSessionPool.availableChannels(sharedServer.getId())));
+    }
+
+    /**
+     * Công việc chạy trên một host, giá trị trả về được giữ trong {@link HostResult#value()}.
+     * Ném exception để đánh dấu host thất bại.
+     */
+    @FunctionalInterface
+    public interface HostTask<T> {
+        T run(ServerEntity server) throws Exception;
+    }
+
+    /**
+     * Kết quả trên một host
+     */
+    public record HostResult<T>(ServerEntity server, boolean success, boolean timedOut, T value, String error, long durationMs) {
+
+        /**
+         * Tên hiển thị của host: name (ip)
+         */
+        public String host() {
+            String name = server.getName() != null ? server.getName() : "server-" + server.getId();
+            return name + " (" + server.getIp() + ")";
+        }
+    }
+
+    /**
+     * Báo cáo tổng hợp của một lần fan-out
+     */
+    public record Report<T>(String operation, List<HostResult<T>> results, long durationMs) {
+
+        public List<HostResult<T>> succeeded() {
+            return results.stream().filter(HostResult::success).toList();
+        }
+
+        public List<HostResult<T>> failed() {
+            return results.stream().filter(result -> !result.success()).toList();
+        }
+
+        public boolean allSucceeded() {
+            return results.stream().allMatch(HostResult::success);
+        }
+
+        /**
+         * Tóm tắt nhiều dòng: một dòng tổng rồi một dòng cho mỗi host
+         */
+        public String summary() {
+            StringBuilder summary = new StringBuilder();
+            summary.append(String.format("%s: %d/%d host thành công (%d ms)%n",
+                    operation, succeeded().size(), results.size(), durationMs));
+            for (HostResult<T> result : results) {
+                if (result.success()) {
+                    summary.append(String.format("  ✅ %s (%d ms)%n", result.host(), result.durationMs()));
+                } else {
+                    summary.append(String.format("  ❌ %s%s: %s%n", result.host(),
+                            result.timedOut() ? " [timeout]" : "", result.error()));
+                }
+            }
+            return summary.toString();
+        }
+    }
+
+    /**
+     * Chạy task trên tất cả server và chờ tới khi mọi host kết thúc (thành công, lỗi hoặc timeout).
+     *
+     * @param operation      tên thao tác (dùng cho log và báo cáo)
+     * @param servers        danh sách host
+     * @param parallelism    số host chạy cùng lúc (<= 0 thì dùng DEFAULT_PARALLELISM)
+     * @param perHostTimeout thời gian tối đa cho mỗi host, null = không giới hạn
+     * @param onHostDone     gọi ngay khi từng host xong (cập nhật log/tiến độ), có thể null
+     */
+    public <T> Report<T> run(String operation, List<ServerEntity> servers, int parallelism, Duration perHostTimeout,
+                             HostTask<T> task, Consumer<HostResult<T>> onHostDone) {
+        long startedAt = System.currentTimeMillis();
+        Semaphore slots = new Semaphore(parallelism > 0 ? parallelism : DEFAULT_PARALLELISM);
+        List<Future<HostResult<T>>> futures = new ArrayList<>();
+        for (ServerEntity server : servers) {
+            futures.add(executor.submit(() -> {
+                slots.acquire();
+                try {
+                    HostResult<T> result = runHost(server, perHostTimeout, task);
+                    if (onHostDone != null) {
+                        try {
+                            onHostDone.accept(result);
+                        } catch (Exception e) {
+                            System.err.println("[SshFanOutExecutor] Lỗi callback của " + operation + ": " + e.getMessage());
+                        }
+                    }
+                    return result;
+                } finally {
+                    slots.release();
+                }
+            }));
+        }
+
+        List<HostResult<T>> results = new ArrayList<>();
+        try {
+            for (Future<HostResult<T>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            // Thread gọi bị interrupt (task bị hủy): dừng toàn bộ host còn lại
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new CancellationException(operation + " đã bị hủy");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Lỗi khi chạy " + operation + ": " + e.getCause().getMessage(), e.getCause());
+        }
+        Report<T> report = new Report<>(operation, results, System.currentTimeMillis() - startedAt);
+        System.out.println("[SshFanOutExecutor] " + operation + ": " + report.succeeded().size() + "/" + results.size()
+                + " host thành công trong " + report.durationMs() + " ms");
+        return report;
+    }
+
+    private <T> HostResult<T> runHost(ServerEntity server, Duration timeout, HostTask<T> task) throws InterruptedException {
+        long startedAt = System.currentTimeMillis();
+        Future<T> future = executor.submit(() -> task.run(server));
+        try {
+            T value = timeout != null ? future.get(timeout.toMillis(), TimeUnit.MILLISECONDS) : future.get();
+            return new HostResult<>(server, true, false, value, null, System.currentTimeMillis() - startedAt);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return new HostResult<>(server, false, true, null,
+                    "Quá " + timeout.toSeconds() + " giây", System.currentTimeMillis() - startedAt);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return new HostResult<>(server, false, false, null, cause.getMessage(), System.currentTimeMillis() - startedAt);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,352 @@
+package my_spring_app.my_spring_app.ssh;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import jakarta.annotation.PreDestroy;
+import my_spring_app.my_spring_app.entity.ServerEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool SSH session dùng chung cho toàn bộ backend.
+ *
+ * Mỗi server (theo ID) giữ một Session đã xác thực sẵn, các service mượn session này để mở
+ * channel exec/sftp rồi trả lại bằng {@link #release(Session)} thay vì tạo JSch mới,
+ * handshake TCP + KEX + auth rồi đóng ngay sau mỗi lệnh.
+ *
+ * - Giới hạn số người mượn đồng thời trên một session (sshd mặc định MaxSessions = 10)
+ * - Kiểm tra sức khỏe khi mượn, tự kết nối lại nếu session đã chết hoặc thông tin đăng nhập thay đổi
+ * - Dọn các session không còn ai dùng sau một khoảng idle
+ */
+@Component
+public class SshSessionPool {
+
+    // Số channel tối đa mở đồng thời trên một session (để dư so với MaxSessions=10 của sshd)
+    private static final int MAX_CHANNELS_PER_SESSION = 8;
+    // Thời gian chờ tối đa khi session đang dùng hết channel
+    private static final long ACQUIRE_TIMEOUT_MS = 30_000L;
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    // Keepalive để sshd/NAT không cắt session idle và để JSch phát hiện session chết
+    private static final int KEEPALIVE_INTERVAL_MS = 15_000;
+    private static final int KEEPALIVE_COUNT_MAX = 3;
+    // Session idle lâu hơn ngưỡng này thì gửi keepalive kiểm tra trước khi cho mượn
+    private static final long HEALTH_CHECK_AFTER_IDLE_MS = 30_000L;
+    // Session không có người mượn quá ngưỡng này sẽ bị đóng
+    private static final long IDLE_EVICT_MS = 5 * 60_000L;
+
+    private final Map<String, PooledSession> pool = new ConcurrentHashMap<>();
+    // Tra ngược từ Session (so sánh theo identity) về entry để release
+    private final Map<Session, PooledSession> bySession = new IdentityHashMap<>();
+
+    /**
+     * Mượn session đến server dùng password (tương đương createSession cũ).
+     */
+    public Session acquire(ServerEntity server) throws JSchException {
+        return acquire(server.getId(), server.getIp(), server.getPort(), server.getUsername(), null, server.getPassword());
+    }
+
+    /**
+     * Mượn session đến server. Nếu có private key thì ưu tiên xác thực bằng key, lỗi thì fallback password.
+     *
+     * @param serverId ID server trong DB (null nếu là kết nối tạm theo host/port/username)
+     * @return Session đã kết nối, BẮT BUỘC trả lại bằng {@link #release(Session)} trong finally
+     */
+    public Session acquire(Long serverId, String host, Integer port, String username,
+                           String privateKeyPem, String password) throws JSchException {
+        int sshPort = port != null ? port : 22;
+        String key = serverId != null ? "server-" + serverId : host + ":" + sshPort + ":" + username;
+        // Với server trong DB, đổi password/key được xử lý bằng evict(serverId);
+        // kết nối tạm theo host thì password là một phần của định danh (không cho dùng lại session với password sai)
+        String fingerprint = host + "|" + sshPort + "|" + username
+                + (serverId != null ? "" : "|" + password);
+
+        while (true) {
+            PooledSession[] replaced = new PooledSession[1];
+            PooledSession entry = pool.compute(key, (k, existing) -> {
+                if (existing != null && !existing.retired && existing.fingerprint.equals(fingerprint)) {
+                    return existing;
+                }
+                replaced[0] = existing;
+                return new PooledSession(key, fingerprint, host, sshPort, username);
+            });
+            if (replaced[0] != null) {
+                // Thông tin đăng nhập đã đổi hoặc session cũ hỏng: đóng khi không còn ai mượn
+                synchronized (replaced[0]) {
+                    retire(replaced[0]);
+                }
+            }
+
+            try {
+                if (!entry.permits.tryAcquire(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    throw new JSchException("Hết channel SSH khả dụng tới " + host + " sau " + ACQUIRE_TIMEOUT_MS + "ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JSchException("Bị interrupt khi chờ SSH session tới " + host);
+            }
+
+            Session session = null;
+            JSchException error = null;
+            synchronized (entry) {
+                if (!entry.retired) {
+                    try {
+                        if (entry.session == null) {
+                            entry.session = connect(host, sshPort, username, privateKeyPem, password);
+                            System.out.println("[SshSessionPool] Đã mở session mới: " + username + "@" + host + ":" + sshPort + " (" + key + ")");
+                        } else if (!isHealthy(entry)) {
+                            System.out.println("[SshSessionPool] Session tới " + host + " không còn sống, kết nối lại");
+                            retire(entry);
+                        }
+                    } catch (JSchException e) {
+                        retire(entry);
+                        error = e;
+                    }
+                }
+                if (!entry.retired) {
+                    session = entry.session;
+                    entry.borrowers++;
+                    entry.lastUsed = System.currentTimeMillis();
+                }
+            }
+            if (session == null) {
+                // Entry đã bị loại (bởi thread khác hoặc do hỏng), trả permit và thử lại với entry mới
+                entry.permits.release();
+                pool.remove(key, entry);
+                if (error != null) {
+                    throw error;
+                }
+                continue;
+            }
+            synchronized (bySession) {
+                bySession.put(session, entry);
+            }
+            return session;
+        }
+    }
+
+    /**
+     * Trả session lại pool. Không đóng kết nối trừ khi session đã bị loại khỏi pool.
+     */
+    public void release(Session session) {
+        if (session == null) {
+            return;
+        }
+        PooledSession entry;
+        synchronized (bySession) {
+            entry = bySession.get(session);
+        }
+        if (entry == null) {
+            // Session không thuộc pool, đóng như cũ
+            if (session.isConnected()) {
+                session.disconnect();
+            }
+            return;
+        }
+        synchronized (entry) {
+            if (entry.borrowers > 0) {
+                entry.borrowers--;
+                entry.permits.release();
+            }
+            entry.lastUsed = System.currentTimeMillis();
+            if (entry.retired && entry.borrowers == 0) {
+                closeEntry(entry);
+            }
+        }
+    }
+
+    /**
+     * Đánh dấu session hỏng (ví dụ openChannel báo "session is down"), lần mượn sau sẽ kết nối lại.
+     */
+    public void invalidate(Session session) {
+        if (session == null) {
+            return;
+        }
+        PooledSession entry;
+        synchronized (bySession) {
+            entry = bySession.get(session);
+        }
+        if (entry != null) {
+            synchronized (entry) {
+                retire(entry);
+            }
+            pool.remove(entry.key, entry);
+        }
+    }
+
+    /**
+     * Mở một session riêng, KHÔNG thuộc pool (cùng cấu hình keepalive/xác thực như session trong pool).
+     * Dùng cho channel sống suốt vòng đời ứng dụng để không giữ permit của pool; người gọi tự
+     * disconnect (hoặc gọi {@link #release(Session)}, với session ngoài pool sẽ đóng luôn kết nối).
+     */
+    public Session connectDedicated(String host, Integer port, String username,
+                                    String privateKeyPem, String password) throws JSchException {
+        return connect(host, port != null ? port : 22, username, privateKeyPem, password);
+    }
+
+    /**
+     * Số channel còn mượn được ngay trên session tới server (chưa có session thì là MAX_CHANNELS_PER_SESSION).
+     * Dùng để giới hạn số việc song song cùng chạy lệnh trên một server, tránh chờ permit tới hết ACQUIRE_TIMEOUT_MS.
+     */
+    public int availableChannels(Long serverId) {
+        PooledSession entry = serverId != null ? pool.get("server-" + serverId) : null;
+        if (entry == null || entry.retired) {
+            return MAX_CHANNELS_PER_SESSION;
+        }
+        return entry.permits.availablePermits();
+    }
+
+    /**
+     * Loại bỏ session của server khỏi pool (khi server bị sửa thông tin, xóa hoặc disconnect).
+     */
+    public void evict(Long serverId) {
+        if (serverId == null) {
+            return;
+        }
+        PooledSession entry = pool.remove("server-" + serverId);
+        if (entry != null) {
+            synchronized (entry) {
+                retire(entry);
+            }
+            System.out.println("[SshSessionPool] Đã loại session của server ID " + serverId + " khỏi pool");
+        }
+    }
+
+    /**
+     * Định kỳ đóng các session idle không còn người mượn.
+     */
+    @Scheduled(fixedDelay = 60_000L)
+    public void evictIdleSessions() {
+        long now = System.currentTimeMillis();
+        for (PooledSession entry : pool.values()) {
+            boolean evicted = false;
+            synchronized (entry) {
+                boolean dead = entry.session != null && !entry.session.isConnected();
+                if (entry.borrowers == 0 && (dead || now - entry.lastUsed > IDLE_EVICT_MS)) {
+                    retire(entry);
+                    evicted = true;
+                }
+            }
+            if (evicted) {
+                pool.remove(entry.key, entry);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (PooledSession entry : pool.values()) {
+            synchronized (entry) {
+                entry.retired = true;
+                closeEntry(entry);
+            }
+        }
+        pool.clear();
+    }
+
+    private Session connect(String host, int port, String username, String privateKeyPem, String password) throws JSchException {
+        JSchException keyError = null;
+        if (privateKeyPem != null && !privateKeyPem.isBlank()) {
+            try {
+                JSch jsch = new JSch();
+                jsch.addIdentity("inmem-key", privateKeyPem.getBytes(StandardCharsets.UTF_8), null, null);
+                Session session = jsch.getSession(username, host, port);
+                configure(session);
+                session.connect(CONNECT_TIMEOUT_MS);
+                return session;
+            } catch (JSchException e) {
+                keyError = e;
+                System.err.println("[SshSessionPool] Xác thực bằng SSH key tới " + host + " thất bại: " + e.getMessage());
+            }
+        }
+        if (password == null || password.isBlank()) {
+            throw keyError != null ? keyError : new JSchException("Không có SSH key hoặc password để kết nối " + host);
+        }
+        JSch jsch = new JSch();
+        Session session = jsch.getSession(username, host, port);
+        session.setPassword(password);
+        configure(session);
+        session.connect(CONNECT_TIMEOUT_MS);
+        return session;
+    }
+
+    private void configure(Session session) throws JSchException {
+        Properties config = new Properties();
+        config.put("StrictHostKeyChecking", "no");
+        session.setConfig(config);
+        session.setTimeout(CONNECT_TIMEOUT_MS);
+        session.setServerAliveInterval(KEEPALIVE_INTERVAL_MS);
+        session.setServerAliveCountMax(KEEPALIVE_COUNT_MAX);
+    }
+
+    private boolean isHealthy(PooledSession entry) {
+        Session session = entry.session;
+        if (session == null || !session.isConnected()) {
+            return false;
+        }
+        if (System.currentTimeMillis() - entry.lastUsed > HEALTH_CHECK_AFTER_IDLE_MS) {
+            try {
+                session.sendKeepAliveMsg();
+            } catch (Exception e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Gọi trong synchronized(entry)
+    private void retire(PooledSession entry) {
+        entry.retired = true;
+        if (entry.borrowers == 0) {
+            closeEntry(entry);
+        }
+    }
+
+    // Gọi trong synchronized(entry)
+    private void closeEntry(PooledSession entry) {
+        Session session = entry.session;
+        if (session == null) {
+            return;
+        }
+        synchronized (bySession) {
+            bySession.remove(session);
+        }
+        entry.session = null;
+        try {
+            if (session.isConnected()) {
+                session.disconnect();
+            }
+        } catch (Exception ignored) {
+        }
+        System.out.println("[SshSessionPool] Đã đóng session: " + entry.username + "@" + entry.host + ":" + entry.port);
+    }
+
+    private static class PooledSession {
+        final String key;
+        final String fingerprint;
+        final String host;
+        final int port;
+        final String username;
+        final Semaphore permits = new Semaphore(MAX_CHANNELS_PER_SESSION);
+        Session session;
+        int borrowers;
+        long lastUsed = System.currentTimeMillis();
+        volatile boolean retired;
+
+        PooledSession(String key, String fingerprint, String host, int port, String username) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.host = host;
+            this.port = port;
+            this.username = username;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package my_spring_app.my_spring_app.ssh;
+
+import com.jcraft.jsch.Session;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SSH session dùng chung cho các terminal web.
+ *
+ * Terminal mở tới cùng server với cùng thông tin đăng nhập (user SSH + key hoặc password) dùng chung một
+ * Session đã xác thực, mỗi terminal chỉ mở thêm một channel shell thay vì handshake TCP + KEX + auth mới.
+ * Session được đếm số channel đang mở và chỉ bị đóng khi không còn terminal nào dùng quá IDLE_TEARDOWN_MS.
+ *
+ * Tách riêng khỏi {@link SshSessionPool}: shell sống lâu nên không chiếm permit của các lệnh backend,
+ * và session chỉ được dùng lại khi thông tin xác thực khớp (định danh gồm hash của key/password).
+ */
+@Component
+public class TerminalSessionRegistry {
+
+    // Số shell tối đa trên một session (sshd mặc định MaxSessions = 10), đầy thì mở thêm session
+    private static final int MAX_CHANNELS_PER_SESSION = 8;
+    // Session không còn shell nào quá ngưỡng này sẽ bị đóng
+    private static final long IDLE_TEARDOWN_MS = 2 * 60_000L;
+
+    private final Map<String, List<SharedSession>> sessions = new HashMap<>();
+
+    /**
+     * Tạo Session mới đã kết nối khi chưa có session dùng chung phù hợp
+     */
+    @FunctionalInterface
+    public interface Connector {
+        /**
+         * @return Session đã kết nối, hoặc null nếu xác thực thất bại
+         */
+        Session connect() throws Exception;
+    }
+
+    /**
+     * Một lượt dùng session cho một shell, BẮT BUỘC trả lại bằng {@link #release(Lease)}
+     */
+    public static final class Lease {
+        private final SharedSession shared;
+        private final boolean reused;
+        private boolean released;
+
+        private Lease(SharedSession shared, boolean reused) {
+            this.shared = shared;
+            this.reused = reused;
+        }
+
+        public Session session() {
+            return shared.session;
+        }
+
+        /**
+         * Session đã có sẵn (không phải handshake mới)
+         */
+        public boolean reused() {
+            return reused;
+        }
+    }
+
+    private static final class SharedSession {
+        final String key;
+        final Session session;
+        int channels;
+        long lastUsed = System.currentTimeMillis();
+        boolean retired;
+
+        SharedSession(String key, Session session) {
+            this.key = key;
+            this.session = session;
+        }
+    }
+
+    /**
+     * Định danh session dùng chung: cùng server, cùng user SSH và cùng bí mật xác thực
+     *
+     * @param method "key" hoặc "password"
+     * @param secret private key PEM hoặc password (chỉ lưu hash)
+     */
+    public static String keyOf(String method, String host, int port, String username, String secret) {
+        return method + "|" + username + "@" + host + ":" + port + "|" + sha256(secret);
+    }
+
+    /**
+     * Mượn session theo định danh; chưa có (hoặc đã đủ channel) thì kết nối mới bằng connector.
+     *
+     * @return Lease, hoặc null nếu connector trả về null
+     */
+    public Lease acquire(String key, Connector connector) throws Exception {
+        synchronized (this) {
+            for (SharedSession shared : sessions.getOrDefault(key, List.of())) {
+                if (!shared.retired && shared.channels < MAX_CHANNELS_PER_SESSION && shared.session.isConnected()) {
+                    shared.channels++;
+                    shared.lastUsed = System.currentTimeMillis();
+                    return new Lease(shared, true);
+                }
+            }
+        }
+
+        // Handshake nằm ngoài lock để không chặn terminal tới server khác
+        Session session = connector.connect();
+        if (session == null) {
+            return null;
+        }
+        SharedSession shared = new SharedSession(key, session);
+        shared.channels = 1;
+        synchronized (this) {
+            sessions.computeIfAbsent(key, k -> new ArrayList<>()).add(shared);
+        }
+        System.out.println("[TerminalSessionRegistry] Đã mở session terminal mới: " + session.getUserName() + "@" + session.getHost());
+        return new Lease(shared, false);
+    }
+
+    /**
+     * Trả lượt dùng khi shell đóng. Session vẫn được giữ để terminal sau dùng lại.
+     */
+    public synchronized void release(Lease lease) {
+        if (lease == null || lease.released) {
+            return;
+        }
+        lease.released = true;
+        SharedSession shared = lease.shared;
+        shared.channels--;
+        shared.lastUsed = System.currentTimeMillis();
+        if (shared.retired && shared.channels == 0) {
+            close(shared);
+        }
+    }
+
+    /**
+     * Đánh dấu session hỏng (ví dụ openChannel báo "session is down"), không cho terminal mới dùng nữa
+     */
+    public synchronized void invalidate(Lease lease) {
+        if (lease != null) {
+            retire(lease.shared);
+        }
+    }
+
+    /**
+     * Định kỳ đóng các session không còn shell nào hoặc đã chết.
+     */
+    @Scheduled(fixedDelay = 30_000L)
+    public synchronized void teardownIdleSessions() {
+        long now = System.currentTimeMillis();
+        for (List<SharedSession> list : new ArrayList<>(sessions.values())) {
+            for (SharedSession shared : new ArrayList<>(list)) {
+                boolean dead = !shared.session.isConnected();
+                if (dead || (shared.channels == 0 && now - shared.lastUsed > IDLE_TEARDOWN_MS)) {
+                    retire(shared);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        for (List<SharedSession> list : sessions.values()) {
+            for (SharedSession shared : list) {
+                shared.retired = true;
+                close(shared);
+            }
+        }
+        sessions.clear();
+    }
+
+    // Gọi trong synchronized(this)
+    private void retire(SharedSession shared) {
+        shared.retired = true;
+        List<SharedSession> list = sessions.get(shared.key);
+        if (list != null) {
+            list.remove(shared);
+            if (list.isEmpty()) {
+                sessions.remove(shared.key);
+            }
+        }
+        if (shared.channels == 0) {
+            close(shared);
+        }
+    }
+
+    private void close(SharedSession shared) {
+        try {
+            if (shared.session.isConnected()) {
+                shared.session.disconnect();
+            }
+        } catch (Exception ignored) {
+        }
+        System.out.println("[TerminalSessionRegistry] Đã đóng session terminal: " + shared.session.getUserName() + "@" + shared.session.getHost());
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(String.valueOf(value).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
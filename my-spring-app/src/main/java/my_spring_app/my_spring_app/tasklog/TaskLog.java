@@ -0,0 +1,350 @@
+package my_spring_app.my_spring_app.tasklog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+/**
+ * Log của một task chạy nền (install, ansible, docker...), chỉ ghi nối thêm.
+ *
+ * Vị trí trong log (offset, tính theo ký tự) đóng vai trò sequence number: client giữ offset
+ * đã nhận và chỉ lấy phần mới từ offset đó, thay vì tải lại toàn bộ log mỗi lần poll.
+ *
+ * Trong bộ nhớ chỉ giữ phần đuôi tối đa TAIL_CAPACITY ký tự; toàn bộ log được ghi nối thêm xuống các
+ * file segment trên đĩa (UTF-16BE, mỗi ký tự 2 byte nên offset ký tự đổi thẳng ra vị trí byte).
+ * Đọc phần nằm trước đuôi thì map vùng tương ứng của segment (memory-mapped) thay vì nạp cả file.
+ * Khi task kết thúc, trạng thái được lưu vào file meta để log vẫn đọc được sau khi bị loại khỏi bộ nhớ.
+ *
+ * File trên đĩa chỉ bị xóa khi một task bắt đầu mới ({@link #create(String, Path)}); nạp lại log
+ * ({@link #restore(Path, String)}) không bao giờ xóa segment.
+ */
+public final class TaskLog {
+
+    // Phần đuôi giữ trong bộ nhớ (ký tự); vượt gấp đôi thì cắt bớt phần đầu
+    static final int TAIL_CAPACITY = 256 * 1024;
+    // Số ký tự trong một file segment (4 MB)
+    static final int SEGMENT_CHARS = 2 * 1024 * 1024;
+    // Số ký tự tối đa trả về trong một lần đọc, client đọc tiếp từ offset kế tiếp
+    static final int MAX_READ_CHARS = 1024 * 1024;
+
+    private final String taskId;
+    private final Path dir;
+    private final String fileBase;
+    private final StringBuilder tail = new StringBuilder();
+    // Offset của ký tự đầu tiên trong tail
+    private long tailStart;
+    private long length;
+    private FileChannel segment;
+    private long segmentIndex = -1;
+    // Ghi đĩa lỗi: giữ toàn bộ log trong bộ nhớ như trước
+    private boolean spillFailed;
+    private volatile String status = "running";
+    private volatile String error;
+    private volatile Integer progress;
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    private TaskLog(String taskId, Path dir) {
+        this.taskId = taskId;
+        this.dir = dir;
+        this.fileBase = fileBase(taskId);
+    }
+
+    private TaskLog(String taskId, Path dir, Properties meta) {
+        this(taskId, dir);
+        this.length = Long.parseLong(meta.getProperty("length", "0"));
+        this.tailStart = length;
+        this.status = meta.getProperty("status", "failed");
+        this.error = meta.getProperty("error");
+        String savedProgress = meta.getProperty("progress");
+        this.progress = savedProgress != null ? Integer.valueOf(savedProgress) : null;
+    }
+
+    /**
+     * Log cho một task bắt đầu mới: file cũ trên đĩa cùng taskId (nếu có) bị xóa
+     */
+    static TaskLog create(String taskId, Path dir) {
+        deleteFiles(dir, taskId);
+        return new TaskLog(taskId, dir);
+    }
+
+    /**
+     * Nạp lại log từ đĩa (chỉ đọc), null nếu không có.
+     *
+     * Có file meta (task đã kết thúc) thì dùng trạng thái đã lưu. Chỉ có segment mà không có meta là log của task
+     * đang chạy khi process trước dừng: độ dài tính từ các segment, task được coi là thất bại vì không còn ai ghi tiếp.
+     */
+    static TaskLog restore(Path dir, String taskId) {
+        Path metaFile = dir.resolve(fileBase(taskId) + ".meta");
+        try {
+            if (Files.exists(metaFile)) {
+                Properties meta = new Properties();
+                try (InputStream in = Files.newInputStream(metaFile)) {
+                    meta.load(in);
+                }
+                return new TaskLog(taskId, dir, meta);
+            }
+            long segmentChars = segmentChars(dir, taskId);
+            if (segmentChars < 0) {
+                return null;
+            }
+            TaskLog log = new TaskLog(taskId, dir);
+            log.length = segmentChars;
+            log.tailStart = segmentChars;
+            log.status = "failed";
+            log.error = "Task bị ngắt do server khởi động lại";
+            return log;
+        } catch (Exception e) {
+            System.err.println("[TaskLog] Không đọc được log đã lưu của task " + taskId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Tổng số ký tự trong các segment liên tiếp từ segment 0, -1 nếu không có segment nào
+    private static long segmentChars(Path dir, String taskId) throws IOException {
+        long total = -1;
+        for (long index = 0; ; index++) {
+            Path segment = dir.resolve(fileBase(taskId) + "." + index + ".log");
+            if (!Files.exists(segment)) {
+                return total;
+            }
+            total = Math.max(total, 0) + Files.size(segment) / 2;
+        }
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public synchronized void append(String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        spill(text);
+        tail.append(text);
+        length += text.length();
+        if (!spillFailed && tail.length() > 2 * TAIL_CAPACITY) {
+            int drop = tail.length() - TAIL_CAPACITY;
+            tail.delete(0, drop);
+            tailStart += drop;
+        }
+        lastActivity = System.currentTimeMillis();
+    }
+
+    public synchronized long length() {
+        return length;
+    }
+
+    /**
+     * Phần log từ offset (offset ngoài phạm vi được kẹp về [0, length]), tối đa MAX_READ_CHARS ký tự
+     */
+    public synchronized String readFrom(long offset) {
+        return readFrom(offset, MAX_READ_CHARS);
+    }
+
+    /**
+     * Như {@link #readFrom(long)} nhưng lấy tối đa maxChars ký tự
+     */
+    public synchronized String readFrom(long offset, int maxChars) {
+        long start = Math.max(0, Math.min(offset, length));
+        long end = Math.min(length, start + Math.min(maxChars, MAX_READ_CHARS));
+        StringBuilder result = new StringBuilder((int) (end - start));
+        if (start < tailStart) {
+            try {
+                readSegments(start, Math.min(end, tailStart), result);
+            } catch (IOException e) {
+                System.err.println("[TaskLog] Không đọc được log trên đĩa của task " + taskId + ": " + e.getMessage());
+                return "";
+            }
+        }
+        if (end > tailStart) {
+            long from = Math.max(start, tailStart);
+            result.append(tail, (int) (from - tailStart), (int) (end - tailStart));
+        }
+        return result.toString();
+    }
+
+    public String readAll() {
+        return readFrom(0);
+    }
+
+    public void setProgress(Integer progress) {
+        this.progress = progress;
+        lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Đánh dấu task kết thúc (completed | failed), subscriber SSE sẽ nhận sự kiện status rồi đóng
+     */
+    public void finish(String status, String error) {
+        this.error = error;
+        this.status = status;
+        lastActivity = System.currentTimeMillis();
+        persistMeta();
+    }
+
+    public boolean isFinished() {
+        return !"running".equals(status);
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Integer getProgress() {
+        return progress;
+    }
+
+    long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * Giải phóng bộ nhớ của task đang chạy nhưng lâu không hoạt động: bỏ phần đuôi trong heap và đóng file
+     * đang ghi. Log vẫn ở trong hub và đọc được qua segment; lần append sau mở lại segment.
+     */
+    synchronized void releaseMemory() {
+        if (spillFailed) {
+            return;
+        }
+        closeSegment();
+        tail.setLength(0);
+        tail.trimToSize();
+        tailStart = length;
+    }
+
+    /**
+     * Đóng file đang ghi khi log bị loại khỏi bộ nhớ (phần đã ghi vẫn đọc được qua segment)
+     */
+    synchronized void close() {
+        closeSegment();
+        if (isFinished()) {
+            // Cập nhật độ dài nếu có log ghi thêm sau khi kết thúc
+            persistMeta();
+        }
+    }
+
+    private void spill(String text) {
+        if (spillFailed) {
+            return;
+        }
+        try {
+            int written = 0;
+            while (written < text.length()) {
+                long position = length + written;
+                long index = position / SEGMENT_CHARS;
+                if (index != segmentIndex) {
+                    closeSegment();
+                    Files.createDirectories(dir);
+                    segment = FileChannel.open(segmentPath(index), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    segmentIndex = index;
+                }
+                int room = (int) (SEGMENT_CHARS - position % SEGMENT_CHARS);
+                int n = Math.min(room, text.length() - written);
+                // Ghi nguyên code unit UTF-16 (không qua encoder) để surrogate bị cắt giữa hai lần append vẫn giữ nguyên
+                ByteBuffer bytes = ByteBuffer.allocate(n * 2);
+                bytes.asCharBuffer().put(text, written, written + n);
+                while (bytes.hasRemaining()) {
+                    segment.write(bytes);
+                }
+                written += n;
+            }
+        } catch (IOException e) {
+            System.err.println("[TaskLog] Không ghi được log task " + taskId + " xuống đĩa, giữ log trong bộ nhớ: " + e.getMessage());
+            spillFailed = true;
+            closeSegment();
+        }
+    }
+
+    // Đọc [start, end) từ các segment bằng memory-mapped I/O
+    private void readSegments(long start, long end, StringBuilder out) throws IOException {
+        long position = start;
+        while (position < end) {
+            long index = position / SEGMENT_CHARS;
+            long offsetInSegment = position % SEGMENT_CHARS;
+            int n = (int) Math.min(end - position, SEGMENT_CHARS - offsetInSegment);
+            try (FileChannel channel = FileChannel.open(segmentPath(index), StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offsetInSegment * 2, n * 2L);
+                out.append(mapped.asCharBuffer());
+            }
+            position += n;
+        }
+    }
+
+    private void persistMeta() {
+        if (spillFailed) {
+            return;
+        }
+        Properties meta = new Properties();
+        synchronized (this) {
+            meta.setProperty("length", String.valueOf(length));
+            closeSegment();
+        }
+        meta.setProperty("status", status);
+        if (error != null) {
+            meta.setProperty("error", error);
+        }
+        if (progress != null) {
+            meta.setProperty("progress", String.valueOf(progress));
+        }
+        try {
+            Files.createDirectories(dir);
+            try (OutputStream out = Files.newOutputStream(dir.resolve(fileBase + ".meta"))) {
+                meta.store(out, taskId);
+            }
+        } catch (IOException e) {
+            System.err.println("[TaskLog] Không lưu được trạng thái task " + taskId + ": " + e.getMessage());
+        }
+    }
+
+    private void closeSegment() {
+        if (segment != null) {
+            try {
+                segment.close();
+            } catch (IOException ignored) {
+            }
+            segment = null;
+            segmentIndex = -1;
+        }
+    }
+
+    private Path segmentPath(long index) {
+        return dir.resolve(fileBase + "." + index + ".log");
+    }
+
+    /**
+     * Xóa toàn bộ file (segment + meta) của task
+     */
+    static void deleteFiles(Path dir, String taskId) {
+        String base = fileBase(taskId) + ".";
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (var files = Files.list(dir)) {
+            files.filter(path -> path.getFileName().toString().startsWith(base)).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("[TaskLog] Không xóa được log cũ của task " + taskId + ": " + e.getMessage());
+        }
+    }
+
+    // taskId có thể do client gửi lên, chỉ giữ ký tự an toàn cho tên file
+    static String fileBase(String taskId) {
+        return taskId.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+}
@@ -0,0 +1,284 @@
+package my_spring_app.my_spring_app.tasklog;
+
+import jakarta.annotation.PreDestroy;
+import my_spring_app.my_spring_app.dto.reponse.TaskLogChunkResponse;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Nơi giữ log của các task chạy nền và đẩy phần log mới tới client qua SSE.
+ *
+ * Thread ghi log không bao giờ bị chặn bởi client chậm: mỗi subscriber có một virtual thread gửi riêng
+ * và một hàng đợi tín hiệu (tối đa một tín hiệu chờ). Scheduler dùng chung chỉ offer tín hiệu định kỳ
+ * (không chặn); thread gửi gom phần log mới theo offset của subscriber đó và gửi thành một sự kiện "log".
+ * Client chậm chỉ làm chậm thread gửi của chính nó, dữ liệu chờ gửi nằm sẵn trong {@link TaskLog}
+ * nên hàng đợi không tăng theo lượng log. Khi task kết thúc và subscriber đã nhận hết log thì gửi
+ * sự kiện "status" rồi đóng kết nối. Mỗi sự kiện có id = offset tiếp theo nên EventSource tự resume
+ * qua header Last-Event-ID.
+ *
+ * Bộ nhớ không tăng theo số task: mỗi log chỉ giữ phần đuôi trong heap (toàn bộ log nằm trong các
+ * segment trên đĩa, xem {@link TaskLog}); task đã kết thúc bị loại khỏi bộ nhớ sau FINISHED_TTL_MS hoặc khi
+ * vượt quá MAX_FINISHED_IN_MEMORY (loại task ít dùng gần đây nhất trước). Log đã loại vẫn đọc được từ đĩa
+ * cho tới khi hết DISK_RETENTION_MS. Task đang chạy không bao giờ bị loại (service vẫn đang ghi vào nó),
+ * task lâu không hoạt động chỉ bị bỏ phần đuôi trong heap.
+ */
+@Component
+public class TaskLogHub {
+
+    private static final long FLUSH_INTERVAL_MS = 250;
+    // Log tồn đọng lớn (client mới kết nối từ offset 0) được chia thành nhiều sự kiện
+    private static final int MAX_CHUNK_CHARS = 256 * 1024;
+    private static final long SSE_TIMEOUT_MS = 60 * 60 * 1000L;
+    // Task đang chạy nhưng không có hoạt động quá thời gian này (task bị treo) thì bỏ phần đuôi trong heap
+    private static final long IDLE_RETENTION_MS = 2 * 60 * 60 * 1000L;
+    // Task đã kết thúc được giữ trong bộ nhớ tối đa chừng này thời gian và chừng này task
+    static final long FINISHED_TTL_MS = 30 * 60 * 1000L;
+    static final int MAX_FINISHED_IN_MEMORY = 100;
+    // File log trên đĩa được giữ để đọc lại sau khi task bị loại khỏi bộ nhớ
+    private static final long DISK_RETENTION_MS = 3 * 24 * 60 * 60 * 1000L;
+    static final Path LOG_DIR = Paths.get(System.getProperty("java.io.tmpdir"), "my-spring-app", "task-logs");
+
+    private final Map<String, TaskLog> logs = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "task-log-signal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final class Subscriber {
+        final TaskLog log;
+        final SseEmitter emitter;
+        // Tín hiệu có thể có log mới; offer khi đầy thì bỏ (các tín hiệu liên tiếp được gộp)
+        final BlockingQueue<Boolean> signals = new ArrayBlockingQueue<>(1);
+        // Chỉ thread gửi của subscriber đọc/ghi cursor và lastProgress
+        long cursor;
+        Integer lastProgress;
+        volatile boolean closed;
+
+        Subscriber(TaskLog log, SseEmitter emitter, long cursor) {
+            this.log = log;
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+    }
+
+    public TaskLogHub() {
+        flusher.scheduleWithFixedDelay(this::signalAll, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lấy (hoặc tạo) log cho task. Service gọi khi bắt đầu task, trước khi trả taskId cho client.
+     * Chỉ khi task chưa có trong bộ nhớ mới tạo log mới (xóa file cũ cùng taskId trên đĩa).
+     */
+    public TaskLog open(String taskId) {
+        return logs.computeIfAbsent(taskId, id -> TaskLog.create(id, LOG_DIR));
+    }
+
+    /**
+     * Log trong bộ nhớ, hoặc nạp lại từ đĩa nếu task đã kết thúc và bị loại khỏi bộ nhớ
+     */
+    public TaskLog get(String taskId) {
+        TaskLog log = logs.get(taskId);
+        if (log != null) {
+            return log;
+        }
+        TaskLog restored = TaskLog.restore(LOG_DIR, taskId);
+        return restored != null ? logs.computeIfAbsent(taskId, id -> restored) : null;
+    }
+
+    /**
+     * Đọc phần log từ offset since (dùng cho client poll)
+     */
+    public TaskLogChunkResponse read(String taskId, long since) {
+        TaskLog log = get(taskId);
+        if (log == null) {
+            return new TaskLogChunkResponse(taskId, since, since, "", "not_found", null, "Không tìm thấy task hoặc task đã hết hạn");
+        }
+        return chunk(log, since, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Mở kết nối SSE, gửi ngay phần log từ offset since rồi đẩy tiếp các đoạn mới.
+     * Task phải đã được mở bằng {@link #open(String)} (service mở log trước khi trả taskId cho client).
+     *
+     * @throws RuntimeException không có task với taskId (controller kiểm tra trước bằng {@link #get(String)})
+     */
+    public SseEmitter subscribe(String taskId, long since) {
+        TaskLog log = get(taskId);
+        if (log == null) {
+            throw new RuntimeException("Không tìm thấy task hoặc task đã hết hạn: " + taskId);
+        }
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(log, emitter, Math.max(0, since));
+        Runnable remove = () -> {
+            subscriber.closed = true;
+            subscribers.remove(subscriber);
+            subscriber.signals.offer(Boolean.TRUE);
+        };
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+        subscribers.add(subscriber);
+        Thread.ofVirtual().name("task-log-sse-" + TaskLog.fileBase(taskId)).start(() -> runSender(subscriber));
+        return emitter;
+    }
+
+    // Chỉ offer tín hiệu, không bao giờ chặn dù thread gửi của subscriber đang kẹt ở client chậm
+    private void signalAll() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.signals.offer(Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Thread gửi của một subscriber: gửi phần log mới mỗi khi có tín hiệu cho tới khi task kết thúc hoặc client đóng
+     */
+    private void runSender(Subscriber subscriber) {
+        try {
+            while (!subscriber.closed) {
+                if (flush(subscriber)) {
+                    return;
+                }
+                subscriber.signals.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Client đã ngắt kết nối
+            subscriber.emitter.completeWithError(e);
+        } finally {
+            subscriber.closed = true;
+            subscribers.remove(subscriber);
+        }
+    }
+
+    /**
+     * @return true nếu task đã kết thúc, subscriber đã nhận hết log và kết nối đã đóng
+     */
+    private boolean flush(Subscriber subscriber) throws Exception {
+        TaskLog log = subscriber.log;
+        // Đọc trạng thái trước khi đọc log: nếu đã kết thúc thì phần log đọc sau đó là đầy đủ
+        boolean finished = log.isFinished();
+        long length = log.length();
+        boolean progressChanged = !Objects.equals(log.getProgress(), subscriber.lastProgress);
+        if (length > subscriber.cursor || progressChanged) {
+            TaskLogChunkResponse chunk = chunk(log, subscriber.cursor, MAX_CHUNK_CHARS);
+            subscriber.emitter.send(SseEmitter.event()
+                    .id(String.valueOf(chunk.getNextOffset()))
+                    .name("log")
+                    .data(chunk));
+            subscriber.cursor = chunk.getNextOffset();
+            subscriber.lastProgress = chunk.getProgress();
+        }
+        if (finished && subscriber.cursor >= log.length()) {
+            TaskLogChunkResponse status = chunk(log, subscriber.cursor, 0);
+            subscriber.emitter.send(SseEmitter.event()
+                    .id(String.valueOf(status.getNextOffset()))
+                    .name("status")
+                    .data(status));
+            subscriber.emitter.complete();
+            return true;
+        }
+        return false;
+    }
+
+    private TaskLogChunkResponse chunk(TaskLog log, long since, int maxChars) {
+        String status = log.getStatus();
+        // Log chỉ dài thêm nên offset đã kẹp luôn hợp lệ cho lần đọc ngay sau
+        long offset = Math.max(0, Math.min(since, log.length()));
+        String text = log.readFrom(offset, maxChars);
+        return new TaskLogChunkResponse(log.getTaskId(), offset, offset + text.length(), text,
+                status, log.getProgress(), log.getError());
+    }
+
+    @Scheduled(fixedDelay = 60 * 1000L)
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (TaskLog log : logs.values()) {
+            long idle = now - log.getLastActivity();
+            if (log.isFinished() && idle > FINISHED_TTL_MS) {
+                evict(log);
+            } else if (!log.isFinished() && idle > IDLE_RETENTION_MS) {
+                // Không loại khỏi hub: service vẫn giữ và ghi vào log này, client subscribe lại phải thấy đúng log
+                log.releaseMemory();
+            }
+        }
+        // Quá nhiều task đã kết thúc: loại task ít hoạt động gần đây nhất trước
+        List<TaskLog> finished = logs.values().stream()
+                .filter(TaskLog::isFinished)
+                .sorted(Comparator.comparingLong(TaskLog::getLastActivity))
+                .toList();
+        for (int i = 0; i < finished.size() - MAX_FINISHED_IN_MEMORY; i++) {
+            evict(finished.get(i));
+        }
+    }
+
+    private void evict(TaskLog log) {
+        if (subscribers.stream().anyMatch(s -> s.log == log)) {
+            return;
+        }
+        if (logs.remove(log.getTaskId(), log)) {
+            log.close();
+        }
+    }
+
+    /**
+     * Xóa file log trên đĩa đã quá thời gian lưu giữ
+     */
+    @Scheduled(fixedDelay = 60 * 60 * 1000L)
+    public void purgeExpiredFiles() {
+        if (!Files.isDirectory(LOG_DIR)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - DISK_RETENTION_MS;
+        // Tên file dùng taskId đã thay ký tự đặc biệt, so theo cùng dạng đó
+        Set<String> liveFileBases = logs.keySet().stream().map(TaskLog::fileBase).collect(Collectors.toSet());
+        try (var files = Files.list(LOG_DIR)) {
+            files.filter(path -> {
+                try {
+                    return Files.getLastModifiedTime(path).toMillis() < cutoff
+                            && !liveFileBases.contains(path.getFileName().toString().split("\\.")[0]);
+                } catch (IOException e) {
+                    return false;
+                }
+            }).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("[TaskLogHub] Không dọn được thư mục log " + LOG_DIR + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.closed = true;
+            subscriber.signals.offer(Boolean.TRUE);
+        }
+        logs.values().forEach(TaskLog::close);
+    }
+}
@@ -0,0 +1,59 @@
+package my_spring_app.my_spring_app.tasklog;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bảng trạng thái task của một service (thay cho ConcurrentHashMap không bao giờ xóa).
+ *
+ * Áp dụng cùng chính sách loại bỏ với {@link TaskLogHub}: task đã kết thúc bị loại sau FINISHED_TTL_MS
+ * không hoạt động, và chỉ giữ tối đa MAX_FINISHED_IN_MEMORY task đã kết thúc (loại task ít được truy cập
+ * gần đây nhất trước). Task đang chạy không bao giờ bị loại. Log của task đã loại vẫn đọc được qua
+ * /api/tasks/{taskId}/logs.
+ *
+ * @param <T> đối tượng trạng thái riêng của service, có tham chiếu tới TaskLog của task
+ */
+public final class TaskRegistry<T> {
+
+    private final Function<T, TaskLog> logOf;
+    // accessOrder = true: thứ tự duyệt là từ task ít được truy cập gần đây nhất
+    private final LinkedHashMap<String, T> tasks = new LinkedHashMap<>(16, 0.75f, true);
+
+    public TaskRegistry(Function<T, TaskLog> logOf) {
+        this.logOf = logOf;
+    }
+
+    public synchronized void put(String taskId, T task) {
+        tasks.put(taskId, task);
+        evict();
+    }
+
+    public synchronized T get(String taskId) {
+        evict();
+        return tasks.get(taskId);
+    }
+
+    private void evict() {
+        long cutoff = System.currentTimeMillis() - TaskLogHub.FINISHED_TTL_MS;
+        List<String> finished = new ArrayList<>();
+        var iterator = tasks.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, T> entry = iterator.next();
+            TaskLog log = logOf.apply(entry.getValue());
+            if (log == null || !log.isFinished()) {
+                continue;
+            }
+            if (log.getLastActivity() < cutoff) {
+                iterator.remove();
+            } else {
+                finished.add(entry.getKey());
+            }
+        }
+        for (int i = 0; i < finished.size() - TaskLogHub.MAX_FINISHED_IN_MEMORY; i++) {
+            tasks.remove(finished.get(i));
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package my_spring_app.my_spring_app.tasklog;
+
+import jakarta.annotation.PreDestroy;
+import my_spring_app.my_spring_app.service.ServerService;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Engine chạy các task nền dài (install/uninstall qua SSH) thay cho CompletableFuture.runAsync trên common pool.
+ *
+ * Mỗi task chạy trên một virtual thread nên không chiếm thread của Tomcat hay ForkJoinPool dù kéo dài hàng chục phút.
+ * Worker có hàng đợi riêng (deploy job) thì chạy task ngay trên thread của worker qua {@link #run(String, Runnable)}.
+ *
+ * Mỗi server có SERVER_PERMITS permit. Task bảo trì (install/uninstall Docker, Ansible, K8s...) giành độc quyền
+ * server ({@link #claimServer}) và giữ tới khi task kết thúc; task khác tới cùng server phải xếp hàng. Task chỉ dùng
+ * server (docker build của deploy job) giành một permit ({@link #claimServerShared}): nhiều task dùng chung chạy
+ * song song được, nhưng không chạy cùng lúc với bảo trì.
+ *
+ * Chống deadlock: task chỉ được chờ một server khi mọi server nó đang giữ có id nhỏ hơn, nên task dùng nhiều server
+ * phải giành tất cả ngay đầu task ({@link #claimServers}, {@link #claimServersShared} giành theo thứ tự id tăng dần).
+ * Trường hợp khác (giữ server id lớn hơn, hoặc đang giữ permit dùng chung mà xin độc quyền) báo lỗi ngay thay vì chờ.
+ *
+ * Hủy task: đánh dấu hủy, kill tiến trình của task trên các server đã giành slot (lệnh được bọc bằng
+ * {@link #cancellable(String, String)}), rồi interrupt thread để ngắt channel SSH đang chờ.
+ */
+@Component
+public class TaskRunner {
+
+    // Task bảo trì giữ toàn bộ permit (apt/dpkg, kubespray không chạy song song được trên cùng node),
+    // task dùng chung giữ một permit
+    static final int SERVER_PERMITS = 16;
+    // Thời gian tối đa chờ slot của một server trước khi báo lỗi
+    private static final long SERVER_WAIT_TIMEOUT_MS = 30 * 60_000L;
+    private static final int KILL_TIMEOUT_MS = 15000;
+
+    private final ServerService serverService;
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("background-task-", 0).factory());
+    private final Map<String, RunningTask> running = new ConcurrentHashMap<>();
+    private final Map<Long, Semaphore> serverSlots = new ConcurrentHashMap<>();
+
+    private static final class RunningTask {
+        // serverId -> số permit task đang giữ
+        final Map<Long, Integer> claimedServers = new ConcurrentHashMap<>();
+        volatile Thread thread;
+        volatile boolean cancelled;
+    }
+
+    public TaskRunner(ServerService serverService) {
+        this.serverService = serverService;
+    }
+
+    /**
+     * Chạy task nền. Slot server đã giành được trả lại khi task kết thúc (kể cả lỗi hay bị hủy).
+     */
+    public void submit(String taskId, Runnable body) {
+        RunningTask task = new RunningTask();
+        running.put(taskId, task);
+        executor.execute(() -> {
+            try {
+                runRegistered(taskId, task, body);
+            } catch (Exception e) {
+                System.err.println("[TaskRunner] Task " + taskId + " lỗi: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Chạy task ngay trên thread hiện tại (worker của hàng đợi khác), vẫn được giới hạn theo server và hủy được
+     * như task nền. Exception của body được ném lại cho người gọi.
+     */
+    public void run(String taskId, Runnable body) {
+        RunningTask task = new RunningTask();
+        running.put(taskId, task);
+        try {
+            runRegistered(taskId, task, body);
+        } finally {
+            // Thread của worker được dùng lại: không để cờ interrupt của lần hủy trễ lọt sang task sau
+            Thread.interrupted();
+        }
+    }
+
+    private void runRegistered(String taskId, RunningTask task, Runnable body) {
+        task.thread = Thread.currentThread();
+        try {
+            if (!task.cancelled) {
+                body.run();
+            }
+        } finally {
+            task.thread = null;
+            running.remove(taskId);
+            task.claimedServers.forEach((serverId, permits) -> slotOf(serverId).release(permits));
+        }
+    }
+
+    /**
+     * Giành độc quyền server cho task nếu server đang rảnh
+     *
+     * @return true nếu task đã giữ độc quyền server (vừa giành hoặc giữ từ trước)
+     */
+    public boolean tryClaimServer(String taskId, Long serverId) {
+        RunningTask task = running.get(taskId);
+        if (task == null || serverId == null) {
+            return true;
+        }
+        int held = task.claimedServers.getOrDefault(serverId, 0);
+        if (held == SERVER_PERMITS) {
+            return true;
+        }
+        if (slotOf(serverId).tryAcquire(SERVER_PERMITS - held)) {
+            task.claimedServers.put(serverId, SERVER_PERMITS);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Giành độc quyền server, chờ tới khi các task khác trên server đó kết thúc
+     *
+     * @throws CancellationException task bị hủy trong lúc chờ
+     */
+    public void claimServer(String taskId, Long serverId) {
+        if (tryClaimServer(taskId, serverId)) {
+            return;
+        }
+        acquire(taskId, serverId, SERVER_PERMITS);
+    }
+
+    /**
+     * Giành một permit của server (task chỉ dùng server, không cài đặt/gỡ gì trên đó),
+     * chờ nếu server đang có task bảo trì
+     *
+     * @throws CancellationException task bị hủy trong lúc chờ
+     */
+    public void claimServerShared(String taskId, Long serverId) {
+        RunningTask task = running.get(taskId);
+        if (task == null || serverId == null || task.claimedServers.containsKey(serverId)) {
+            return;
+        }
+        if (slotOf(serverId).tryAcquire()) {
+            task.claimedServers.put(serverId, 1);
+            return;
+        }
+        acquire(taskId, serverId, 1);
+    }
+
+    /**
+     * Giành độc quyền nhiều server theo thứ tự id tăng dần, chờ server nào đang bận.
+     * Gọi ở đầu task dùng nhiều server, trước khi giữ server nào khác.
+     *
+     * @param onWait gọi với id server trước khi bắt đầu chờ server đó
+     * @throws CancellationException task bị hủy trong lúc chờ
+     */
+    public void claimServers(String taskId, Collection<Long> serverIds, Consumer<Long> onWait) {
+        for (Long serverId : sortedIds(serverIds)) {
+            if (!tryClaimServer(taskId, serverId)) {
+                onWait.accept(serverId);
+                acquire(taskId, serverId, SERVER_PERMITS);
+            }
+        }
+    }
+
+    /**
+     * Giành một permit trên nhiều server theo thứ tự id tăng dần (task chỉ dùng các server đó)
+     *
+     * @throws CancellationException task bị hủy trong lúc chờ
+     */
+    public void claimServersShared(String taskId, Collection<Long> serverIds) {
+        for (Long serverId : sortedIds(serverIds)) {
+            claimServerShared(taskId, serverId);
+        }
+    }
+
+    private static List<Long> sortedIds(Collection<Long> serverIds) {
+        return serverIds.stream().filter(Objects::nonNull).distinct().sorted().toList();
+    }
+
+    private void acquire(String taskId, Long serverId, int permits) {
+        RunningTask task = running.get(taskId);
+        int held = task.claimedServers.getOrDefault(serverId, 0);
+        // Chờ trong khi giữ server id >= serverId (kể cả nâng permit dùng chung lên độc quyền) có thể tạo vòng chờ
+        // với task khác: báo lỗi ngay
+        for (Long heldId : task.claimedServers.keySet()) {
+            if (heldId >= serverId) {
+                throw new RuntimeException("Task " + taskId + " đang giữ server " + heldId + " nên không chờ server "
+                        + serverId + " (tránh deadlock); các server cần dùng phải được giành ngay đầu task");
+            }
+        }
+        Semaphore slot = slotOf(serverId);
+        long deadline = System.currentTimeMillis() + SERVER_WAIT_TIMEOUT_MS;
+        try {
+            while (!slot.tryAcquire(permits - held, 1, TimeUnit.SECONDS)) {
+                checkCancelled(taskId);
+                if (System.currentTimeMillis() > deadline) {
+                    throw new RuntimeException("Server " + serverId + " đang bận với task khác quá "
+                            + SERVER_WAIT_TIMEOUT_MS / 60_000 + " phút");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Task " + taskId + " đã bị hủy");
+        }
+        task.claimedServers.put(serverId, permits);
+        checkCancelled(taskId);
+    }
+
+    /**
+     * Hủy task đang chạy: kill tiến trình của task trên các server nó đang giữ rồi interrupt thread của task
+     *
+     * @return false nếu task không còn chạy
+     */
+    public boolean cancel(String taskId) {
+        RunningTask task = running.get(taskId);
+        if (task == null) {
+            return false;
+        }
+        task.cancelled = true;
+        // "[t]ask-..." để pgrep không khớp chính lệnh kill này
+        String killCmd = "for p in $(pgrep -f '[t]ask-" + TaskLog.fileBase(taskId) + "'); do "
+                + "kill -TERM -- -$p 2>/dev/null || kill -TERM $p 2>/dev/null; done; true";
+        for (Long serverId : task.claimedServers.keySet()) {
+            try {
+                serverService.execCommand(serverId, killCmd, KILL_TIMEOUT_MS);
+            } catch (Exception e) {
+                System.err.println("[TaskRunner] Không kill được task " + taskId + " trên server " + serverId + ": " + e.getMessage());
+            }
+        }
+        Thread thread = task.thread;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        System.out.println("[TaskRunner] Đã hủy task " + taskId);
+        return true;
+    }
+
+    public boolean isCancelled(String taskId) {
+        RunningTask task = running.get(taskId);
+        return task != null && task.cancelled;
+    }
+
+    /**
+     * Gọi giữa các bước của task để dừng sớm khi đã bị hủy
+     *
+     * @throws CancellationException task đã bị hủy
+     */
+    public void checkCancelled(String taskId) {
+        if (isCancelled(taskId)) {
+            throw new CancellationException("Task " + taskId + " đã bị hủy");
+        }
+    }
+
+    /**
+     * Bọc lệnh để có thể kill khi hủy task: lệnh chạy trong process group riêng (setsid) với
+     * tên tiến trình mang marker của task, {@link #cancel(String)} tìm theo marker rồi kill cả group.
+     */
+    public static String cancellable(String taskId, String command) {
+        return "setsid -w bash -c '" + command.replace("'", "'\\''") + "' " + marker(taskId);
+    }
+
+    private static String marker(String taskId) {
+        return "task-" + TaskLog.fileBase(taskId);
+    }
+
+    private Semaphore slotOf(Long serverId) {
+        // Fair: task bảo trì đang chờ không bị các task dùng chung tới sau chen lên mãi
+        return serverSlots.computeIfAbsent(serverId, id -> new Semaphore(SERVER_PERMITS, true));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (String taskId : running.keySet()) {
+            cancel(taskId);
+        }
+        executor.shutdownNow();
+    }
+}
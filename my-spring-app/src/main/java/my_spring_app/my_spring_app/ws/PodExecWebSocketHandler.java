@@ -0,0 +1,277 @@
+package my_spring_app.my_spring_app.ws;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.kubernetes.client.Exec;
+import my_spring_app.my_spring_app.k8s.KubernetesClientRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebSocket Handler cho terminal tương tác vào container của pod, dùng API exec của Kubernetes (TTY)
+ * thay cho chạy kubectl exec qua SSH tới master cho từng lệnh.
+ *
+ * Message đầu tiên là cấu hình JSON: {"namespace", "pod", "container"?, "command"?, "cols"?, "rows"?}.
+ * Không có command thì mở bash (hoặc sh nếu container không có bash). Sau đó mỗi text message là stdin,
+ * trừ message {"type":"resize","cols":..,"rows":..} dùng để đổi kích thước TTY.
+ *
+ * Output đi qua {@link TerminalOutputPump} như terminal SSH: gom thành frame nhị phân, buffer có giới hạn;
+ * client chậm làm thread copy output bị chặn, pipe của kết nối exec đầy và API server ngừng gửi thay vì
+ * dồn output lên heap. Thông báo điều khiển "[server] ..." là text frame.
+ */
+public class PodExecWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PodExecWebSocketHandler.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ExecutorService executorService = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("pod-exec-ws-", 0).factory());
+
+    // Giống terminal SSH: một lần gửi bị treo quá thời gian này (client không đọc) thì đóng WebSocket
+    private static final int SEND_TIME_LIMIT_MS = 30_000;
+    private static final int SEND_BUFFER_LIMIT_BYTES = 512 * 1024;
+    private static final int COPY_BUFFER_BYTES = 8 * 1024;
+    private static final String RESIZE_PREFIX = "{\"type\":\"resize\"";
+    private static final String[] DEFAULT_SHELL = {"/bin/sh", "-c", "command -v bash >/dev/null 2>&1 && exec bash || exec sh"};
+
+    private static class ExecBinding {
+        Process process;
+        OutputStream stdin;
+        OutputStream resize;
+        TerminalOutputPump pump;
+        WebSocketSession ws;
+        volatile boolean isActive = true;
+    }
+
+    private final Map<String, ExecBinding> connectionMap = new ConcurrentHashMap<>();
+    private final KubernetesClientRegistry clientRegistry;
+
+    public PodExecWebSocketHandler(KubernetesClientRegistry clientRegistry) {
+        this.clientRegistry = clientRegistry;
+    }
+
+    @Override
+    public void afterConnectionEstablished(@NonNull WebSocketSession session) throws Exception {
+        logger.info("Pod exec WebSocket connection established: {}", session.getId());
+    }
+
+    @Override
+    protected void handleTextMessage(@NonNull WebSocketSession ws, @NonNull TextMessage message) throws Exception {
+        ExecBinding binding = connectionMap.get(ws.getId());
+        if (binding == null) {
+            handleInitialConnection(ws, message);
+        } else if (message.getPayload().startsWith(RESIZE_PREFIX)) {
+            handleResize(ws, binding, message);
+        } else {
+            handleInput(ws, binding, message);
+        }
+    }
+
+    private void handleInitialConnection(WebSocketSession ws, TextMessage message) {
+        ExecBinding binding = new ExecBinding();
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> cfg = objectMapper.readValue(message.getPayload(), Map.class);
+            String namespace = getStringValue(cfg, "namespace");
+            String pod = getStringValue(cfg, "pod");
+            String container = getStringValue(cfg, "container");
+            String command = getStringValue(cfg, "command");
+            if (namespace == null || pod == null) {
+                sendErrorMessage(ws, "Missing namespace or pod");
+                return;
+            }
+            String[] argv = command == null || command.isBlank()
+                    ? DEFAULT_SHELL
+                    : new String[]{"/bin/sh", "-c", command};
+
+            // Phiên exec có thể im lặng lâu: dùng client không có read timeout (có ping)
+            Exec exec = new Exec(clientRegistry.getWatchClient());
+            Exec.ExecutionBuilder builder = exec.newExecutionBuilder(namespace, pod, argv)
+                    .setStdin(true)
+                    .setStdout(true)
+                    // TTY gộp stderr vào stdout
+                    .setStderr(false)
+                    .setTty(true);
+            if (container != null && !container.isBlank()) {
+                builder.setContainer(container);
+            }
+            binding.process = builder.execute();
+            binding.stdin = binding.process.getOutputStream();
+            if (binding.process instanceof Exec.ExecProcess execProcess) {
+                binding.resize = execProcess.getResizeStream();
+            }
+            binding.ws = ws;
+
+            WebSocketSession out = new ConcurrentWebSocketSessionDecorator(ws, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT_BYTES,
+                    ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE);
+            binding.pump = new TerminalOutputPump(ws.getId(), TerminalOutputPump.OverflowMode.BLOCK,
+                    () -> onPumpFinished(binding));
+            connectionMap.put(ws.getId(), binding);
+
+            Integer cols = getIntValue(cfg, "cols");
+            Integer rows = getIntValue(cfg, "rows");
+            if (cols != null && rows != null) {
+                resize(binding, cols, rows);
+            }
+            out.sendMessage(new TextMessage("[server] Exec connected to " + namespace + "/" + pod
+                    + (container != null ? " (" + container + ")" : "") + "\n"));
+            binding.pump.attach(out);
+            executorService.submit(binding.pump);
+            executorService.submit(() -> copyOutput(binding));
+        } catch (Exception e) {
+            logger.error("Failed to start pod exec for session: {}", ws.getId(), e);
+            connectionMap.remove(ws.getId());
+            cleanup(binding);
+            sendErrorMessage(ws, "Exec failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Chép stdout của exec vào pump. Pump đầy thì write bị chặn và thread này ngừng đọc.
+     */
+    private void copyOutput(ExecBinding binding) {
+        byte[] buffer = new byte[COPY_BUFFER_BYTES];
+        try (InputStream stdout = binding.process.getInputStream()) {
+            int read;
+            while ((read = stdout.read(buffer)) != -1) {
+                binding.pump.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            // Pump đã dừng (WebSocket đóng) hoặc kết nối exec bị đóng
+            logger.debug("Pod exec output ended for session: {}", binding.ws.getId(), e);
+        } finally {
+            binding.pump.close();
+        }
+    }
+
+    private void handleInput(WebSocketSession ws, ExecBinding binding, TextMessage message) {
+        if (!binding.isActive || binding.stdin == null) {
+            return;
+        }
+        try {
+            String payload = message.getPayload();
+            if (!payload.isEmpty()) {
+                binding.stdin.write(payload.getBytes(StandardCharsets.UTF_8));
+                binding.stdin.flush();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to send input to pod exec for session: {}", ws.getId(), e);
+            binding.isActive = false;
+        }
+    }
+
+    private void handleResize(WebSocketSession ws, ExecBinding binding, TextMessage message) {
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> msg = objectMapper.readValue(message.getPayload(), Map.class);
+            Integer cols = getIntValue(msg, "cols");
+            Integer rows = getIntValue(msg, "rows");
+            if (cols != null && rows != null) {
+                resize(binding, cols, rows);
+            }
+        } catch (Exception e) {
+            logger.debug("Invalid resize message for session: {}", ws.getId(), e);
+        }
+    }
+
+    // Kênh resize của API exec nhận JSON {"Width","Height"}
+    private void resize(ExecBinding binding, int cols, int rows) throws IOException {
+        if (binding.resize == null || cols <= 0 || rows <= 0) {
+            return;
+        }
+        synchronized (binding) {
+            binding.resize.write(objectMapper.writeValueAsBytes(Map.of("Width", cols, "Height", rows)));
+            binding.resize.flush();
+        }
+    }
+
+    /**
+     * Tiến trình trong container đã kết thúc hoặc pump bị dừng: đóng exec và WebSocket
+     */
+    private void onPumpFinished(ExecBinding binding) {
+        WebSocketSession ws = binding.ws;
+        connectionMap.remove(ws.getId());
+        cleanup(binding);
+        try {
+            if (ws.isOpen()) {
+                ws.close(CloseStatus.NORMAL);
+            }
+        } catch (Exception e) {
+            logger.warn("Error closing WebSocket session: {}", ws.getId(), e);
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus status) throws Exception {
+        logger.info("Pod exec WebSocket connection closed: {} with status: {}", session.getId(), status);
+        ExecBinding binding = connectionMap.remove(session.getId());
+        if (binding != null) {
+            cleanup(binding);
+        }
+    }
+
+    private void cleanup(ExecBinding binding) {
+        binding.isActive = false;
+        // Dừng pump trước để giải phóng thread copy output nếu đang chờ buffer
+        if (binding.pump != null) {
+            binding.pump.stop();
+        }
+        if (binding.process != null) {
+            try {
+                binding.process.destroy();
+            } catch (Exception e) {
+                logger.debug("Error closing pod exec connection", e);
+            }
+        }
+    }
+
+    private String getStringValue(Map<String, Object> map, String key) {
+        Object value = map.get(key);
+        return value != null ? String.valueOf(value) : null;
+    }
+
+    private Integer getIntValue(Map<String, Object> map, String key) {
+        Object value = map.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return null;
+    }
+
+    private void sendErrorMessage(WebSocketSession ws, String message) {
+        try {
+            ws.sendMessage(new TextMessage("[server] " + message + "\n"));
+            ws.close(CloseStatus.BAD_DATA);
+        } catch (Exception e) {
+            logger.warn("Failed to send error message to WebSocket", e);
+        }
+    }
+
+    // Hook dọn dẹp khi ứng dụng dừng
+    public static void shutdown() {
+        logger.info("Shutting down PodExecWebSocketHandler executor service");
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(30, TimeUnit.SECONDS)) {
+                executorService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
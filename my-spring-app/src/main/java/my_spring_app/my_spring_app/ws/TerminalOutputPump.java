@@ -0,0 +1,292 @@
+package my_spring_app.my_spring_app.ws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bơm output của SSH shell tới WebSocket theo từng frame nhị phân.
+ *
+ * Bên ghi đẩy output vào pump, pump giữ một buffer vòng có giới hạn. Thread gửi (virtual thread)
+ * gom dữ liệu thành frame tối đa FRAME_MAX_BYTES hoặc sau FRAME_WINDOW_MS kể từ byte đầu tiên,
+ * rồi gửi một BinaryMessage. Khi buffer đầy (client chậm) có hai chế độ:
+ * <ul>
+ *   <li>{@link OverflowMode#BLOCK}: write bị chặn tới khi có chỗ. Chỉ dùng khi bên ghi là thread riêng của
+ *   terminal (ví dụ thread copy stdout của exec), chặn nó thì kết nối phía dưới ngừng nhận qua TCP.</li>
+ *   <li>{@link OverflowMode#DROP_OLDEST}: write không bao giờ chặn, output cũ nhất chưa gửi bị bỏ và client
+ *   nhận thông báo số byte đã bỏ. Dùng cho SSH shell: JSch ghi trên thread đọc duy nhất của Session, mà Session
+ *   được nhiều terminal dùng chung ({@code TerminalSessionRegistry}), chặn thread đó sẽ treo mọi shell khác.</li>
+ * </ul>
+ *
+ * Byte được gửi nguyên vẹn, client decode UTF-8 dạng stream nên ký tự nhiều byte bị cắt giữa hai frame
+ * vẫn hiển thị đúng.
+ *
+ * Pump có thể tạm tách khỏi WebSocket (trình duyệt mất kết nối) rồi gắn lại vào WebSocket mới khi resume:
+ * trong lúc tách, output dồn trong buffer (đầy thì xử lý theo chế độ ở trên) và được gửi tiếp sau khi gắn lại,
+ * frame đang gửi dở lúc mất kết nối được giữ lại để gửi lại.
+ */
+class TerminalOutputPump extends OutputStream implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TerminalOutputPump.class);
+
+    static final int FRAME_MAX_BYTES = 16 * 1024;
+    static final long FRAME_WINDOW_MS = 10;
+    // Output tối đa giữ trong bộ nhớ cho mỗi terminal
+    static final int BUFFER_CAPACITY = 64 * 1024;
+
+    /**
+     * Cách xử lý khi buffer đầy
+     */
+    enum OverflowMode {
+        BLOCK,
+        DROP_OLDEST
+    }
+
+    private final String terminalId;
+    private final Runnable onFinished;
+    private final OverflowMode overflowMode;
+
+    private final byte[] buffer = new byte[BUFFER_CAPACITY];
+    private int head;
+    private int size;
+    // SSH channel đã đóng output (EOF)
+    private boolean eof;
+    // Terminal đã bị đóng hẳn, bỏ toàn bộ output còn lại
+    private boolean stopped;
+    // WebSocket đang nhận output, null khi đang tách chờ resume
+    private WebSocketSession target;
+    // Frame gửi thất bại do WebSocket vừa đóng, gửi lại khi gắn WebSocket mới
+    private byte[] pending;
+    // Số byte đã bỏ ở chế độ DROP_OLDEST, chưa báo cho client
+    private long dropped;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private record Frame(WebSocketSession target, byte[] data) {
+    }
+
+    /**
+     * @param terminalId định danh terminal (dùng cho log)
+     * @param onFinished chạy khi pump kết thúc (hết output hoặc bị dừng)
+     */
+    TerminalOutputPump(String terminalId, OverflowMode overflowMode, Runnable onFinished) {
+        this.terminalId = terminalId;
+        this.overflowMode = overflowMode;
+        this.onFinished = onFinished;
+    }
+
+    /**
+     * Gắn WebSocket nhận output (đã bọc ConcurrentWebSocketSessionDecorator)
+     */
+    void attach(WebSocketSession ws) {
+        lock.lock();
+        try {
+            target = ws;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tách khỏi WebSocket nếu nó vẫn đang là đích gửi; output tiếp tục được giữ trong buffer
+     */
+    void detach(WebSocketSession ws) {
+        lock.lock();
+        try {
+            if (target == ws) {
+                target = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * SSH channel đã hết output và mọi output đã được gửi
+     */
+    boolean isFinished() {
+        lock.lock();
+        try {
+            return stopped || (eof && size == 0 && pending == null && dropped == 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] data, int off, int len) throws IOException {
+        while (len > 0) {
+            lock.lock();
+            try {
+                if (overflowMode == OverflowMode.DROP_OLDEST) {
+                    if (stopped) {
+                        throw new IOException("Terminal đã đóng");
+                    }
+                    // Chỉ giữ phần cuối của khối ghi nếu nó lớn hơn cả buffer
+                    if (len > BUFFER_CAPACITY) {
+                        dropped += len - BUFFER_CAPACITY;
+                        off += len - BUFFER_CAPACITY;
+                        len = BUFFER_CAPACITY;
+                    }
+                    int overflow = size + len - BUFFER_CAPACITY;
+                    if (overflow > 0) {
+                        head = (head + overflow) % BUFFER_CAPACITY;
+                        size -= overflow;
+                        dropped += overflow;
+                    }
+                } else {
+                    while (size == BUFFER_CAPACITY && !stopped) {
+                        notFull.await();
+                    }
+                    if (stopped) {
+                        throw new IOException("Terminal đã đóng");
+                    }
+                }
+                int tail = (head + size) % BUFFER_CAPACITY;
+                int n = Math.min(len, Math.min(BUFFER_CAPACITY - size, BUFFER_CAPACITY - tail));
+                System.arraycopy(data, off, buffer, tail, n);
+                size += n;
+                off += n;
+                len -= n;
+                notEmpty.signal();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Bị ngắt khi chờ gửi output terminal", e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * JSch gọi khi SSH channel hết output: gửi nốt phần còn lại rồi kết thúc
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            eof = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dừng ngay (WebSocket đã đóng), giải phóng bên ghi đang chờ buffer
+     */
+    void stop() {
+        lock.lock();
+        try {
+            stopped = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            Frame frame;
+            while ((frame = nextFrame()) != null) {
+                try {
+                    frame.target().sendMessage(new BinaryMessage(frame.data()));
+                } catch (Exception e) {
+                    // WebSocket đã đóng: giữ frame lại và chờ resume (hoặc bị dừng khi hết thời gian chờ)
+                    logger.debug("Output send failed for terminal {}, waiting for resume", terminalId, e);
+                    requeue(frame);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("SSH output pump error for terminal: {}", terminalId, e);
+        } finally {
+            stop();
+            onFinished.run();
+        }
+    }
+
+    private void requeue(Frame frame) {
+        lock.lock();
+        try {
+            pending = frame.data();
+            if (target == frame.target()) {
+                target = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Chờ có dữ liệu và có WebSocket đích rồi gom thành một frame
+     *
+     * @return frame cần gửi, hoặc null khi hết output hay đã dừng
+     */
+    private Frame nextFrame() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                while (!stopped && !(eof && size == 0 && pending == null)
+                        && (target == null || (size == 0 && pending == null && dropped == 0))) {
+                    notEmpty.await();
+                }
+                if (stopped || (eof && size == 0 && pending == null)) {
+                    return null;
+                }
+                if (pending != null) {
+                    byte[] frame = pending;
+                    pending = null;
+                    return new Frame(target, frame);
+                }
+                if (dropped > 0) {
+                    String notice = "\r\n[server] Đã bỏ " + dropped + " byte output do client nhận không kịp\r\n";
+                    dropped = 0;
+                    return new Frame(target, notice.getBytes(StandardCharsets.UTF_8));
+                }
+                // Gom thêm output tới khi đủ một frame hoặc hết cửa sổ thời gian
+                long remaining = TimeUnit.MILLISECONDS.toNanos(FRAME_WINDOW_MS);
+                while (size < FRAME_MAX_BYTES && !eof && !stopped && target != null && remaining > 0) {
+                    remaining = notEmpty.awaitNanos(remaining);
+                }
+                if (stopped) {
+                    return null;
+                }
+                if (target == null) {
+                    // Vừa bị tách trong lúc gom, chờ gắn lại
+                    continue;
+                }
+                int n = Math.min(size, FRAME_MAX_BYTES);
+                byte[] frame = new byte[n];
+                int first = Math.min(n, BUFFER_CAPACITY - head);
+                System.arraycopy(buffer, head, frame, 0, first);
+                System.arraycopy(buffer, 0, frame, first, n - first);
+                head = (head + n) % BUFFER_CAPACITY;
+                size -= n;
+                notFull.signalAll();
+                return new Frame(target, frame);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -6,52 +6,89 @@ import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 import my_spring_app.my_spring_app.service.ServerService;
+import my_spring_app.my_spring_app.ssh.TerminalSessionRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.lang.NonNull;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 import java.util.Base64;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
  * WebSocket Handler cho SSH Terminal real-time
  * Cho phép người dùng kết nối SSH qua WebSocket và tương tác với server
+ *
+ * Output của shell được gửi dưới dạng frame nhị phân (xem {@link TerminalOutputPump}), mỗi terminal
+ * dùng một virtual thread để gửi; thông báo điều khiển "[server] ..." vẫn là text frame.
+ *
+ * Các terminal tới cùng server với cùng thông tin đăng nhập mở channel shell trên một SSH session dùng chung
+ * ({@link TerminalSessionRegistry}), nên mở terminal mới không phải handshake lại. Vì thread đọc của session
+ * là chung, output của một terminal không bao giờ chặn thread đó: client chậm (hoặc terminal đang chờ resume)
+ * chỉ làm terminal đó mất phần output cũ nhất khi buffer đầy.
+ *
+ * Reconnect-and-resume: sau khi kết nối, client nhận "[server] resume-token &lt;token&gt;". Nếu WebSocket đứt
+ * bất thường (mạng, reload trang) shell vẫn được giữ RESUME_GRACE_SECONDS giây; client gửi {"resumeToken": ...}
+ * trên WebSocket mới để gắn lại và nhận tiếp output. Client đóng chủ động (close code 1000) thì shell bị đóng ngay.
  */
 public class TerminalWebSocketHandler extends TextWebSocketHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(TerminalWebSocketHandler.class);
     private static final ObjectMapper objectMapper = new ObjectMapper();
-    private static final ExecutorService executorService = Executors.newCachedThreadPool(r -> {
-        Thread t = new Thread(r, "terminal-ws-");
-        t.setDaemon(true);
-        return t;
+    private static final ExecutorService executorService = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("terminal-ws-", 0).factory());
+    private static final ScheduledExecutorService resumeExpiry = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "terminal-resume-expiry");
+        thread.setDaemon(true);
+        return thread;
     });
+    private static final SecureRandom random = new SecureRandom();
+
+    // Một lần gửi bị treo quá thời gian này (client không đọc) thì đóng WebSocket
+    private static final int SEND_TIME_LIMIT_MS = 30_000;
+    // Dữ liệu tối đa chờ gửi khi có nhiều thread cùng gửi vào một WebSocket
+    private static final int SEND_BUFFER_LIMIT_BYTES = 512 * 1024;
+    // Thời gian giữ shell sau khi WebSocket đứt để client kết nối lại
+    private static final long RESUME_GRACE_SECONDS = 60;
+    private static final String RESUME_TOKEN_PREFIX = "[server] resume-token ";
 
     private static class SshBinding {
-        Session session;
+        TerminalSessionRegistry.Lease lease;
         ChannelShell channel;
         OutputStream stdin;
-        InputStream stdout;
+        TerminalOutputPump pump;
+        String host;
+        String resumeToken;
+        // WebSocket đang gắn (null khi đang chờ resume) và bản bọc decorator dùng để gửi
+        WebSocketSession ws;
+        WebSocketSession out;
+        ScheduledFuture<?> expiry;
         volatile boolean isActive = true;
     }
 
     private final Map<String, SshBinding> connectionMap = new ConcurrentHashMap<>();
+    // Terminal theo resume token (kể cả đang gắn WebSocket)
+    private final Map<String, SshBinding> resumable = new ConcurrentHashMap<>();
     private final ServerService serverService;
+    private final TerminalSessionRegistry sessionRegistry;
 
-    public TerminalWebSocketHandler(ServerService serverService) {
+    public TerminalWebSocketHandler(ServerService serverService, TerminalSessionRegistry sessionRegistry) {
         this.serverService = serverService;
+        this.sessionRegistry = sessionRegistry;
     }
 
     @Override
@@ -76,6 +113,11 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
             // Phân tích cấu hình JSON từ client
             @SuppressWarnings("unchecked")
             Map<String, Object> cfg = objectMapper.readValue(message.getPayload(), Map.class);
+            String resumeToken = getStringValue(cfg, "resumeToken");
+            if (resumeToken != null) {
+                handleResume(ws, resumeToken);
+                return;
+            }
             String host = getStringValue(cfg, "host");
             int port = getIntValue(cfg, "port", 22);
             String username = getStringValue(cfg, "username");
@@ -98,12 +140,24 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
                 return;
             }
 
+            // Mọi lần gửi (output + thông báo) đi qua decorator: giới hạn buffer và thời gian gửi
+            WebSocketSession out = new ConcurrentWebSocketSessionDecorator(ws, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT_BYTES,
+                    ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE);
+
             // Thiết lập kết nối SSH
             SshBinding binding = establishSshConnection(ws, host, port, username, password, serverId);
             if (binding != null) {
+                binding.host = host;
+                binding.resumeToken = newResumeToken();
+                binding.ws = ws;
+                binding.out = out;
+                resumable.put(binding.resumeToken, binding);
                 connectionMap.put(ws.getId(), binding);
-                startOutputPump(ws, binding);
-                sendSuccessMessage(ws, host, serverId != null);
+                // Gửi thông báo kết nối trước output đầu tiên của shell
+                sendSuccessMessage(out, host, binding.lease.reused() ? " (shared session)" : serverId != null ? " (SSH key)" : " (password)");
+                sendResumeToken(out, binding.resumeToken);
+                binding.pump.attach(out);
+                executorService.submit(binding.pump);
             }
 
         } catch (Exception e) {
@@ -112,6 +166,44 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
+    /**
+     * Gắn WebSocket mới vào shell đang chờ resume (hoặc chiếm lại shell từ WebSocket cũ chưa kịp đóng)
+     */
+    private void handleResume(WebSocketSession ws, String resumeToken) {
+        SshBinding binding = resumable.get(resumeToken);
+        if (binding == null || !binding.isActive || binding.pump.isFinished()) {
+            sendErrorMessage(ws, "Terminal session expired");
+            return;
+        }
+        WebSocketSession out = new ConcurrentWebSocketSessionDecorator(ws, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT_BYTES,
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE);
+        WebSocketSession previous;
+        synchronized (binding) {
+            if (binding.expiry != null) {
+                binding.expiry.cancel(false);
+                binding.expiry = null;
+            }
+            previous = binding.ws;
+            if (previous != null) {
+                connectionMap.remove(previous.getId());
+                binding.pump.detach(binding.out);
+            }
+            binding.ws = ws;
+            binding.out = out;
+            connectionMap.put(ws.getId(), binding);
+        }
+        if (previous != null) {
+            try {
+                previous.close(new CloseStatus(4000, "Terminal resumed on another connection"));
+            } catch (Exception e) {
+                logger.debug("Error closing previous WebSocket session: {}", previous.getId(), e);
+            }
+        }
+        logger.info("Terminal resumed on WebSocket session: {}", ws.getId());
+        sendSuccessMessage(out, binding.host, " (resumed)");
+        binding.pump.attach(out);
+    }
+
     private void handleTerminalInput(WebSocketSession ws, SshBinding binding, TextMessage message) {
         if (!binding.isActive || binding.stdin == null) {
             return;
@@ -131,8 +223,7 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
 
     private SshBinding establishSshConnection(WebSocketSession ws, String host, int port,
             String username, String password, Long serverId) {
-        Session ssh = null;
-        boolean connected = false;
+        SshBinding binding = new SshBinding();
         boolean triedSshKey = false;
 
         try {
@@ -142,9 +233,8 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
                 if (pem != null && !pem.isBlank()) {
                     triedSshKey = true;
                     logger.info("Trying SSH key authentication for {}@{}:{}", username, host, port);
-                    ssh = createSshSessionWithKey(username, host, port, pem);
-                    if (ssh != null && ssh.isConnected()) {
-                        connected = true;
+                    String key = TerminalSessionRegistry.keyOf("key", host, port, username, serverId + "|" + pem);
+                    if (openShell(binding, key, () -> createSshSessionWithKey(username, host, port, pem))) {
                         logger.info("SSH key authentication successful for {}@{}:{}", username, host, port);
                     } else {
                         logger.warn("SSH key authentication failed for {}@{}:{}, will try password if available", username, host, port);
@@ -153,7 +243,7 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
             }
 
             // Nếu không được thì quay về xác thực mật khẩu
-            if (!connected) {
+            if (binding.channel == null) {
                 if (password == null || password.isBlank()) {
                     if (triedSshKey) {
                         sendErrorMessage(ws, "SSH key authentication failed. Please provide password");
@@ -163,39 +253,65 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
                     return null;
                 }
                 logger.info("Trying password authentication for {}@{}:{}", username, host, port);
-                ssh = createSshSessionWithPassword(username, host, port, password);
-                connected = ssh != null && ssh.isConnected();
-                if (connected) {
+                String key = TerminalSessionRegistry.keyOf("password", host, port, username, password);
+                if (openShell(binding, key, () -> createSshSessionWithPassword(username, host, port, password))) {
                     logger.info("Password authentication successful for {}@{}:{}", username, host, port);
                 }
             }
 
-            if (!connected || ssh == null) {
+            if (binding.channel == null) {
                 sendErrorMessage(ws, "SSH connection failed");
                 return null;
             }
 
-            // Tạo kênh shell
-            ChannelShell channel = (ChannelShell) ssh.openChannel("shell");
+            // JSch đẩy output thẳng vào pump trên thread đọc của session dùng chung: pump không được chặn
+            // thread này (sẽ treo mọi shell khác trên session), buffer đầy thì bỏ output cũ nhất
+            ChannelShell channel = binding.channel;
             channel.setPty(true);
-            channel.connect(3000);
-
-            SshBinding binding = new SshBinding();
-            binding.session = ssh;
-            binding.channel = channel;
+            binding.pump = new TerminalOutputPump(ws.getId(), TerminalOutputPump.OverflowMode.DROP_OLDEST,
+                    () -> onPumpFinished(binding));
+            channel.setOutputStream(binding.pump);
             binding.stdin = channel.getOutputStream();
-            binding.stdout = channel.getInputStream();
+            channel.connect(3000);
 
             return binding;
 
         } catch (Exception e) {
             logger.error("SSH connection error for {}@{}:{}", username, host, port, e);
-            cleanupSshSession(ssh);
+            cleanupSshBinding(binding);
             sendErrorMessage(ws, "SSH connection failed: " + e.getMessage());
             return null;
         }
     }
 
+    /**
+     * Mở channel shell trên session dùng chung (kết nối mới nếu chưa có). Session dùng chung đã chết
+     * thì loại bỏ và thử lại một lần với session mới.
+     *
+     * @return true nếu đã mở được channel (binding.lease và binding.channel được gán)
+     */
+    private boolean openShell(SshBinding binding, String key, TerminalSessionRegistry.Connector connector) throws Exception {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            TerminalSessionRegistry.Lease lease = sessionRegistry.acquire(key, connector);
+            if (lease == null) {
+                return false;
+            }
+            try {
+                binding.channel = (ChannelShell) lease.session().openChannel("shell");
+                binding.lease = lease;
+                return true;
+            } catch (JSchException e) {
+                sessionRegistry.invalidate(lease);
+                sessionRegistry.release(lease);
+                if (!lease.reused()) {
+                    throw e;
+                }
+                logger.info("Shared SSH session is down, reconnecting: {}", e.getMessage());
+            }
+        }
+        return false;
+    }
+
     private Session createSshSessionWithKey(String username, String host, int port, String pem) {
         try {
             JSch jsch = new JSch();
@@ -231,55 +347,86 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
         session.setConfig("StrictHostKeyChecking", "no");
         session.setConfig("UserKnownHostsFile", "/dev/null");
 
-        // Cấu hình timeout để giữ kết nối ổn định
-        session.setConfig("ServerAliveInterval", "60");
-        session.setConfig("ServerAliveCountMax", "3");
+        // Session được dùng chung và sống lâu: keepalive để phát hiện session chết và giữ NAT
+        session.setServerAliveInterval(60_000);
+        session.setServerAliveCountMax(3);
     }
 
-    private void startOutputPump(WebSocketSession ws, SshBinding binding) {
-        executorService.submit(() -> {
-            byte[] buffer = new byte[4096];
-            try {
-                while (ws.isOpen() && binding.isActive && binding.channel.isConnected()) {
-                    int bytesRead = binding.stdout.read(buffer);
-                    if (bytesRead < 0) {
-                        break;
-                    }
-                    if (bytesRead > 0) {
-                        String output = new String(buffer, 0, bytesRead, StandardCharsets.UTF_8);
-                        ws.sendMessage(new TextMessage(output));
-                    }
-                }
-            } catch (IOException e) {
-                logger.warn("SSH output pump error for session: {}", ws.getId(), e);
-            } finally {
-                binding.isActive = false;
-                cleanupSshBinding(binding);
-                try {
-                    if (ws.isOpen()) {
-                        ws.close(CloseStatus.NORMAL);
-                    }
-                } catch (Exception e) {
-                    logger.warn("Error closing WebSocket session: {}", ws.getId(), e);
-                }
+    /**
+     * Shell đã kết thúc (exit, channel đóng) hoặc pump bị dừng: đóng terminal và WebSocket đang gắn
+     */
+    private void onPumpFinished(SshBinding binding) {
+        WebSocketSession ws;
+        synchronized (binding) {
+            ws = binding.ws;
+        }
+        terminate(binding);
+        if (ws == null) {
+            return;
+        }
+        connectionMap.remove(ws.getId());
+        try {
+            if (ws.isOpen()) {
+                ws.close(CloseStatus.NORMAL);
             }
-        });
+        } catch (Exception e) {
+            logger.warn("Error closing WebSocket session: {}", ws.getId(), e);
+        }
     }
 
     @Override
     public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus status) throws Exception {
         logger.info("WebSocket connection closed: {} with status: {}", session.getId(), status);
         SshBinding binding = connectionMap.remove(session.getId());
-        if (binding != null) {
-            binding.isActive = false;
-            cleanupSshBinding(binding);
+        if (binding == null) {
+            return;
+        }
+        synchronized (binding) {
+            if (binding.ws != session) {
+                // Terminal đã được resume trên WebSocket khác
+                return;
+            }
+            binding.pump.detach(binding.out);
+            binding.ws = null;
+            binding.out = null;
+            boolean closedByClient = status.getCode() == CloseStatus.NORMAL.getCode();
+            if (!closedByClient && binding.isActive && !binding.pump.isFinished()) {
+                // Mất kết nối bất thường: giữ shell chờ client resume
+                binding.expiry = resumeExpiry.schedule(() -> expire(binding), RESUME_GRACE_SECONDS, TimeUnit.SECONDS);
+                logger.info("Keeping terminal alive for {}s awaiting resume", RESUME_GRACE_SECONDS);
+                return;
+            }
+        }
+        terminate(binding);
+    }
+
+    private void expire(SshBinding binding) {
+        synchronized (binding) {
+            if (binding.ws != null) {
+                return;
+            }
+        }
+        logger.info("Terminal resume grace period expired, closing shell");
+        terminate(binding);
+    }
+
+    private void terminate(SshBinding binding) {
+        binding.isActive = false;
+        if (binding.resumeToken != null) {
+            resumable.remove(binding.resumeToken);
         }
+        cleanupSshBinding(binding);
     }
 
     private void cleanupSshBinding(SshBinding binding) {
         if (binding == null)
             return;
 
+        // Dừng pump trước để thread gửi không giữ WebSocket
+        if (binding.pump != null) {
+            binding.pump.stop();
+        }
+
         try {
             if (binding.channel != null && binding.channel.isConnected()) {
                 binding.channel.disconnect();
@@ -288,13 +435,8 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
             logger.debug("Error disconnecting SSH channel", e);
         }
 
-        try {
-            if (binding.session != null && binding.session.isConnected()) {
-                binding.session.disconnect();
-            }
-        } catch (Exception e) {
-            logger.debug("Error disconnecting SSH session", e);
-        }
+        // Trả session dùng chung, session chỉ bị đóng khi không còn terminal nào dùng
+        sessionRegistry.release(binding.lease);
 
         try {
             if (binding.stdin != null) {
@@ -304,23 +446,6 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
             logger.debug("Error closing SSH input stream", e);
         }
 
-        try {
-            if (binding.stdout != null) {
-                binding.stdout.close();
-            }
-        } catch (Exception e) {
-            logger.debug("Error closing SSH output stream", e);
-        }
-    }
-
-    private void cleanupSshSession(Session session) {
-        if (session != null && session.isConnected()) {
-            try {
-                session.disconnect();
-            } catch (Exception e) {
-                logger.debug("Error disconnecting SSH session", e);
-            }
-        }
     }
 
     // Helper methods để parse JSON
@@ -354,18 +479,32 @@ public class TerminalWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
-    private void sendSuccessMessage(WebSocketSession ws, String host, boolean usedKey) {
+    private void sendSuccessMessage(WebSocketSession ws, String host, String detail) {
         try {
-            String authMethod = usedKey ? " (SSH key)" : " (password)";
-            ws.sendMessage(new TextMessage("[server] SSH connected to " + host + authMethod + "\n"));
+            ws.sendMessage(new TextMessage("[server] SSH connected to " + host + detail + "\n"));
         } catch (Exception e) {
             logger.warn("Failed to send success message to WebSocket", e);
         }
     }
 
+    private void sendResumeToken(WebSocketSession ws, String resumeToken) {
+        try {
+            ws.sendMessage(new TextMessage(RESUME_TOKEN_PREFIX + resumeToken));
+        } catch (Exception e) {
+            logger.warn("Failed to send resume token to WebSocket", e);
+        }
+    }
+
+    private static String newResumeToken() {
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
     // Hook dọn dẹp khi ứng dụng dừng
     public static void shutdown() {
         logger.info("Shutting down TerminalWebSocketHandler executor service");
+        resumeExpiry.shutdownNow();
         executorService.shutdown();
         try {
             if (!executorService.awaitTermination(30, TimeUnit.SECONDS)) {
@@ -0,0 +1,86 @@
+package my_spring_app.my_spring_app.k8s;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetricsSnapshotServiceTest {
+
+    /**
+     * Metrics client giả: trả snapshot cố định và ghi lại selector được gửi xuống "apiserver"
+     */
+    private static class FakeMetricsClient extends KubernetesMetricsClient {
+        final List<KubernetesMetricsClient.PodUsage> pods;
+        final List<String> passedSelectors = new ArrayList<>();
+
+        FakeMetricsClient(List<KubernetesMetricsClient.PodUsage> pods) {
+            super(null);
+            this.pods = pods;
+        }
+
+        @Override
+        public List<PodUsage> listPodUsage(String namespace, String labelSelector) {
+            if (labelSelector != null) {
+                passedSelectors.add(labelSelector);
+                // Chỉ cần đủ cho test: "app!=web" trả các pod không phải web
+                return pods.stream().filter(pod -> !"web".equals(pod.labels().get("app"))).toList();
+            }
+            return pods;
+        }
+    }
+
+    private static KubernetesMetricsClient.PodUsage pod(String name, Map<String, String> labels, double cpu, long memory) {
+        return new KubernetesMetricsClient.PodUsage("default", name, labels, cpu, memory);
+    }
+
+    private final FakeMetricsClient client = new FakeMetricsClient(List.of(
+            pod("web-1", Map.of("app", "web", "tier", "frontend"), 0.25, 100L),
+            pod("web-2", Map.of("app", "web", "tier", "canary"), 0.5, 200L),
+            pod("db-1", Map.of("app", "db"), 1.0, 1000L)));
+    private final MetricsSnapshotService service = new MetricsSnapshotService(client);
+
+    @Test
+    void parsesEqualityTerms() {
+        assertThat(MetricsSnapshotService.parseEqualitySelector("app=web, tier==frontend"))
+                .containsExactly(Map.entry("app", "web"), Map.entry("tier", "frontend"));
+        assertThat(MetricsSnapshotService.parseEqualitySelector("app=")).containsExactly(Map.entry("app", ""));
+    }
+
+    @Test
+    void rejectsSelectorsThatAreNotPureEquality() {
+        assertThat(MetricsSnapshotService.parseEqualitySelector("app!=web")).isNull();
+        assertThat(MetricsSnapshotService.parseEqualitySelector("app in (web,db)")).isNull();
+        assertThat(MetricsSnapshotService.parseEqualitySelector("tier notin (canary)")).isNull();
+        assertThat(MetricsSnapshotService.parseEqualitySelector("app")).isNull();
+        assertThat(MetricsSnapshotService.parseEqualitySelector("!app")).isNull();
+        assertThat(MetricsSnapshotService.parseEqualitySelector("app=web,")).isNull();
+        assertThat(MetricsSnapshotService.parseEqualitySelector("app=web,app=db")).isNull();
+    }
+
+    @Test
+    void equalitySelectorIsAnsweredFromSnapshot() throws Exception {
+        MetricsSnapshotService.Usage usage = service.usageForSelector("default", "app=web,tier=frontend");
+
+        assertThat(usage.cpuCores()).isEqualTo(0.25);
+        assertThat(usage.memoryBytes()).isEqualTo(100L);
+        assertThat(client.passedSelectors).isEmpty();
+    }
+
+    @Test
+    void otherSelectorsArePassedToApiServer() throws Exception {
+        MetricsSnapshotService.Usage usage = service.usageForSelector("default", "app!=web");
+
+        assertThat(usage.cpuCores()).isEqualTo(1.0);
+        assertThat(usage.memoryBytes()).isEqualTo(1000L);
+        assertThat(client.passedSelectors).containsExactly("app!=web");
+    }
+
+    @Test
+    void blankSelectorHasNoUsage() throws Exception {
+        assertThat(service.usageForSelector("default", " ")).isEqualTo(MetricsSnapshotService.Usage.ZERO);
+    }
+}
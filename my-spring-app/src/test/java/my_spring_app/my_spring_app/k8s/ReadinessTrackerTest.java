@@ -0,0 +1,82 @@
+package my_spring_app.my_spring_app.k8s;
+
+import io.kubernetes.client.openapi.models.V1Deployment;
+import io.kubernetes.client.openapi.models.V1DeploymentCondition;
+import io.kubernetes.client.openapi.models.V1DeploymentSpec;
+import io.kubernetes.client.openapi.models.V1DeploymentStatus;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1StatefulSet;
+import io.kubernetes.client.openapi.models.V1StatefulSetSpec;
+import io.kubernetes.client.openapi.models.V1StatefulSetStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReadinessTrackerTest {
+
+    private static V1Deployment deployment(long generation, long observedGeneration, int replicas, int updated,
+                                           int available, V1DeploymentCondition... conditions) {
+        return new V1Deployment()
+                .metadata(new V1ObjectMeta().name("app").namespace("ns").generation(generation))
+                .spec(new V1DeploymentSpec().replicas(replicas))
+                .status(new V1DeploymentStatus()
+                        .observedGeneration(observedGeneration)
+                        .replicas(updated)
+                        .updatedReplicas(updated)
+                        .availableReplicas(available)
+                        .conditions(List.of(conditions)));
+    }
+
+    private static V1DeploymentCondition deadlineExceeded() {
+        return new V1DeploymentCondition().type("Progressing").status("False")
+                .reason("ProgressDeadlineExceeded").message("ReplicaSet has timed out progressing.");
+    }
+
+    @Test
+    void rolloutCompleteWhenAllReplicasUpdatedAndAvailable() {
+        assertThat(ReadinessTracker.isRolloutComplete(deployment(3, 3, 2, 2, 2), 3)).isTrue();
+    }
+
+    @Test
+    void rolloutPendingWhileReplicasAreUnavailable() {
+        assertThat(ReadinessTracker.isRolloutComplete(deployment(3, 3, 2, 2, 1), 3)).isFalse();
+        assertThat(ReadinessTracker.isRolloutComplete(deployment(3, 3, 2, 1, 1), 3)).isFalse();
+    }
+
+    @Test
+    void rolloutPendingWhileCacheHoldsOlderGeneration() {
+        assertThat(ReadinessTracker.isRolloutComplete(deployment(2, 2, 1, 1, 1), 3)).isFalse();
+    }
+
+    @Test
+    void staleDeadlineConditionIsIgnoredUntilControllerObservesNewGeneration() {
+        // Redeploy: generation 4 mới apply, status vẫn là của rollout thất bại ở generation 3
+        V1Deployment redeployed = deployment(4, 3, 1, 0, 0, deadlineExceeded());
+        assertThat(ReadinessTracker.isRolloutComplete(redeployed, 4)).isFalse();
+    }
+
+    @Test
+    void deadlineExceededFailsCurrentGeneration() {
+        V1Deployment failed = deployment(4, 4, 1, 1, 0, deadlineExceeded());
+        assertThatThrownBy(() -> ReadinessTracker.isRolloutComplete(failed, 4))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("timed out progressing");
+    }
+
+    @Test
+    void statefulSetReadyOnlyAfterRevisionSettles() {
+        V1StatefulSet rolling = new V1StatefulSet()
+                .metadata(new V1ObjectMeta().name("db").namespace("ns").generation(2L))
+                .spec(new V1StatefulSetSpec().replicas(1))
+                .status(new V1StatefulSetStatus().observedGeneration(2L).readyReplicas(1)
+                        .currentRevision("db-1").updateRevision("db-2"));
+        assertThat(ReadinessTracker.isStatefulSetReady(rolling, 2)).isFalse();
+
+        rolling.getStatus().currentRevision("db-2");
+        assertThat(ReadinessTracker.isStatefulSetReady(rolling, 2)).isTrue();
+        assertThat(ReadinessTracker.isStatefulSetReady(rolling, 3)).isFalse();
+    }
+}
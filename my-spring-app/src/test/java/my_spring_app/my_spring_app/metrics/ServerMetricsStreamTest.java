@@ -0,0 +1,94 @@
+package my_spring_app.my_spring_app.metrics;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.Session;
+import my_spring_app.my_spring_app.ssh.SshCommandExecutor;
+import my_spring_app.my_spring_app.ssh.SshSessionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ServerMetricsStreamTest {
+
+    private static final Long SERVER_ID = 1L;
+
+    private final SshSessionPool pool = mock(SshSessionPool.class);
+    private final SshCommandExecutor executor = new SshCommandExecutor();
+    private final ServerMetricsStream metricsStream = new ServerMetricsStream(pool, executor);
+
+    private OutputStream stdout;
+    private OutputStream stderr;
+
+    @AfterEach
+    void tearDown() {
+        metricsStream.shutdown();
+        executor.shutdown();
+    }
+
+    /**
+     * Session riêng giả của stream: channel in các dòng của STREAM_SCRIPT khi connect và giữ mở
+     * tới khi bị ngắt (giống vòng lặp while : phía server)
+     */
+    private void serverPrints(String lines) throws Exception {
+        Session session = mock(Session.class);
+        ChannelExec channel = mock(ChannelExec.class);
+        when(pool.connectDedicated("10.0.0.1", 22, "root", null, "secret")).thenReturn(session);
+        when(session.openChannel("exec")).thenReturn(channel);
+        when(channel.isConnected()).thenReturn(true);
+        doAnswer(invocation -> stdout = invocation.getArgument(0)).when(channel).setOutputStream(any(OutputStream.class));
+        doAnswer(invocation -> stderr = invocation.getArgument(0)).when(channel).setExtOutputStream(any(OutputStream.class));
+        doAnswer(invocation -> {
+            stdout.write(lines.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(channel).connect(anyInt());
+        doAnswer(invocation -> {
+            stdout.close();
+            stderr.close();
+            return null;
+        }).when(channel).disconnect();
+    }
+
+    @Test
+    void streamLinesBecomeSamples() throws Exception {
+        serverPrints("M 2 1000 800 2048 1024 4096 100 40\n"
+                + "M 2 1100 850 2048 1024 4096 100 40\n");
+        BlockingQueue<ServerMetricsProbe.ServerSample> samples = new LinkedBlockingQueue<>();
+
+        metricsStream.ensureStarted(SERVER_ID, "10.0.0.1", 22, "root", null, "secret", samples::add);
+
+        ServerMetricsProbe.ServerSample first = samples.poll(5, TimeUnit.SECONDS);
+        ServerMetricsProbe.ServerSample second = samples.poll(5, TimeUnit.SECONDS);
+        assertThat(first).isNotNull();
+        assertThat(second).isNotNull();
+        // Dòng đầu chưa có mốc jiffies; dòng hai: idle 50/100 jiffies trên 2 core = 1 core bận
+        assertThat(first.cpuLoad()).isNaN();
+        assertThat(second.cpuLoad()).isEqualTo(1.0);
+        assertThat(second.ramTotalBytes()).isEqualTo(2048L * 1024);
+        assertThat(second.ramUsedBytes()).isEqualTo(1024L * 1024);
+        assertThat(second.diskUsedBytes()).isEqualTo(60L * 4096);
+        assertThat(metricsStream.isStreaming(SERVER_ID)).isTrue();
+    }
+
+    @Test
+    void probeUsesSameCpuDefinitionAsStream() {
+        ServerMetricsProbe.ServerSample sample = ServerMetricsProbe.parse("CPU_STAT:cpu  500 0 0 800 0 0 0 0 0 0\n"
+                + "CPU_CORES:2\n"
+                + "RAM_TOTAL_BYTES:100\n"
+                + "CPU_STAT:cpu  550 0 0 850 0 0 0 0 0 0\n");
+
+        assertThat(sample.cpuLoad()).isEqualTo(1.0);
+        assertThat(ServerMetricsProbe.parse("CPU_CORES:2\n").cpuLoad()).isNaN();
+    }
+}
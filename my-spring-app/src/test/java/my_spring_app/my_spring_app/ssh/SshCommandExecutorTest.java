@@ -0,0 +1,90 @@
+package my_spring_app.my_spring_app.ssh;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SshCommandExecutorTest {
+
+    private final SshCommandExecutor executor = new SshCommandExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Channel giả: JSch không cho tạo Session/ChannelExec ngoài package nên dùng mock,
+     * giữ lại hai OutputStream executor gắn vào để test tự ghi output
+     */
+    private static final class FakeChannel {
+        final ChannelExec channel = mock(ChannelExec.class);
+        final Session session = mock(Session.class);
+        OutputStream stdout;
+        OutputStream stderr;
+
+        FakeChannel() throws JSchException {
+            when(session.openChannel("exec")).thenReturn(channel);
+            doAnswer(invocation -> stdout = invocation.getArgument(0)).when(channel).setOutputStream(any(OutputStream.class));
+            doAnswer(invocation -> stderr = invocation.getArgument(0)).when(channel).setExtOutputStream(any(OutputStream.class));
+        }
+
+        /**
+         * connect() ghi output rồi đóng channel như JSch khi lệnh kết thúc
+         */
+        void replyOnConnect(String output) throws JSchException {
+            doAnswer(invocation -> {
+                stdout.write(output.getBytes(StandardCharsets.UTF_8));
+                stdout.close();
+                stderr.close();
+                return null;
+            }).when(channel).connect(anyInt());
+        }
+    }
+
+    @Test
+    void handlerReceivesOutputWhenResultKeepsNothing() throws Exception {
+        FakeChannel fake = new FakeChannel();
+        fake.replyOnConnect("dong 1\ndong 2\n");
+        StringBuilder received = new StringBuilder();
+
+        SshCommandExecutor.CommandResult result = executor.executeAsync(fake.session, "echo",
+                        SshCommandExecutor.CommandOptions.of(0).withMaxOutputBytes(0).withOutputHandler(received::append))
+                .get(5, TimeUnit.SECONDS);
+
+        // Future chỉ complete sau khi handler đã nhận hết output
+        assertThat(received.toString()).isEqualTo("dong 1\ndong 2\n");
+        assertThat(result.stdout()).isEmpty();
+        assertThat(result.truncated()).isTrue();
+    }
+
+    @Test
+    void connectFailureCompletesExceptionally() throws Exception {
+        FakeChannel fake = new FakeChannel();
+        doThrow(new JSchException("channel is not opened")).when(fake.channel).connect(anyInt());
+
+        CompletableFuture<SshCommandExecutor.CommandResult> future = executor.executeAsync(fake.session, "echo",
+                SshCommandExecutor.CommandOptions.of(0).withOutputHandler(chunk -> { }));
+
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(JSchException.class);
+    }
+}
@@ -0,0 +1,84 @@
+package my_spring_app.my_spring_app.ssh;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.ServerSocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SshSessionPoolTest {
+
+    private static final Long SERVER_ID = 1L;
+
+    private final SshSessionPool pool = new SshSessionPool();
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Cổng local không có ai lắng nghe: kết nối bị từ chối ngay, không cần SSH server thật
+     */
+    private static int closedPort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Test
+    void serverWithoutSessionHasAllChannels() {
+        assertThat(pool.availableChannels(SERVER_ID)).isEqualTo(8);
+        assertThat(pool.availableChannels(null)).isEqualTo(8);
+    }
+
+    @Test
+    void failedConnectReleasesPermit() throws Exception {
+        int port = closedPort();
+
+        assertThatThrownBy(() -> pool.acquire(SERVER_ID, "127.0.0.1", port, "root", null, "secret"))
+                .isInstanceOf(JSchException.class);
+
+        assertThat(pool.availableChannels(SERVER_ID)).isEqualTo(8);
+    }
+
+    @Test
+    void repeatedFailuresDoNotExhaustChannels() throws Exception {
+        int port = closedPort();
+
+        // Nhiều hơn MAX_CHANNELS_PER_SESSION lần: nếu rò permit, các lần sau sẽ chờ tới hết ACQUIRE_TIMEOUT_MS
+        for (int i = 0; i < 10; i++) {
+            assertThatThrownBy(() -> pool.acquire(SERVER_ID, "127.0.0.1", port, "root", null, "secret"))
+                    .isInstanceOf(JSchException.class)
+                    .hasMessageNotContaining("Hết channel");
+        }
+    }
+
+    @Test
+    void missingCredentialsFailWithoutConnecting() {
+        assertThatThrownBy(() -> pool.acquire(SERVER_ID, "127.0.0.1", 22, "root", null, " "))
+                .isInstanceOf(JSchException.class)
+                .hasMessageContaining("Không có SSH key hoặc password");
+        assertThat(pool.availableChannels(SERVER_ID)).isEqualTo(8);
+    }
+
+    @Test
+    void releaseAndEvictIgnoreUnknownSessions() throws Exception {
+        Session foreign = new JSch().getSession("root", "127.0.0.1", 22);
+
+        assertThatCode(() -> {
+            pool.release(null);
+            pool.release(foreign);
+            pool.invalidate(foreign);
+            pool.evict(SERVER_ID);
+            pool.evict(null);
+        }).doesNotThrowAnyException();
+        assertThat(pool.availableChannels(SERVER_ID)).isEqualTo(8);
+    }
+}
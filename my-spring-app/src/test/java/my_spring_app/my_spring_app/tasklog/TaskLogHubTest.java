@@ -0,0 +1,96 @@
+package my_spring_app.my_spring_app.tasklog;
+
+import my_spring_app.my_spring_app.dto.reponse.TaskLogChunkResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TaskLogHubTest {
+
+    private final TaskLogHub hub = new TaskLogHub();
+
+    @AfterEach
+    void tearDown() {
+        hub.shutdown();
+    }
+
+    private static String newTaskId() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Test
+    void readReturnsOnlyTextAfterOffset() {
+        String taskId = newTaskId();
+        TaskLog log = hub.open(taskId);
+        log.append("hello ");
+        log.append("world");
+
+        TaskLogChunkResponse first = hub.read(taskId, 0);
+        assertThat(first.getText()).isEqualTo("hello world");
+        assertThat(first.getNextOffset()).isEqualTo(11);
+
+        log.append("!");
+        TaskLogChunkResponse next = hub.read(taskId, first.getNextOffset());
+        assertThat(next.getText()).isEqualTo("!");
+        assertThat(next.getStatus()).isEqualTo("running");
+    }
+
+    @Test
+    void unknownTaskIsNotCreated() {
+        String taskId = newTaskId();
+        assertThat(hub.read(taskId, 0).getStatus()).isEqualTo("not_found");
+        assertThatThrownBy(() -> hub.subscribe(taskId, 0)).isInstanceOf(RuntimeException.class);
+        assertThat(hub.get(taskId)).isNull();
+    }
+
+    @Test
+    void evictedFinishedTaskIsReplayedFromDisk() {
+        TaskLog[] finished = new TaskLog[TaskLogHub.MAX_FINISHED_IN_MEMORY + 1];
+        for (int i = 0; i < finished.length; i++) {
+            finished[i] = hub.open(newTaskId());
+            finished[i].append("log " + i + "\n");
+            finished[i].finish("completed", null);
+        }
+        TaskLog running = hub.open(newTaskId());
+        running.append("still running\n");
+
+        hub.evictIdle();
+
+        // Đúng một task đã kết thúc bị loại khỏi bộ nhớ (vượt MAX_FINISHED_IN_MEMORY) nhưng vẫn đọc lại được từ đĩa
+        int evicted = 0;
+        for (int i = 0; i < finished.length; i++) {
+            TaskLog current = hub.get(finished[i].getTaskId());
+            if (current != finished[i]) {
+                evicted++;
+                assertThat(current.readAll()).isEqualTo("log " + i + "\n");
+                assertThat(current.getStatus()).isEqualTo("completed");
+            }
+        }
+        assertThat(evicted).isEqualTo(1);
+        // Task đang chạy không bao giờ bị loại
+        assertThat(hub.get(running.getTaskId())).isSameAs(running);
+    }
+
+    @Test
+    void purgeKeepsFilesOfLiveTaskWithSpecialCharacters() throws Exception {
+        // taskId có ký tự bị thay khi đặt tên file
+        String taskId = "deploy:" + newTaskId();
+        hub.open(taskId).append("still running\n");
+        // Segment cũ của task vẫn đang chạy
+        Files.createDirectories(TaskLogHub.LOG_DIR);
+        Path segment = TaskLogHub.LOG_DIR.resolve(TaskLog.fileBase(taskId) + ".0.log");
+        Files.writeString(segment, "still running\n");
+        Files.setLastModifiedTime(segment, FileTime.fromMillis(0));
+
+        hub.purgeExpiredFiles();
+        assertThat(segment).exists();
+        TaskLog.deleteFiles(TaskLogHub.LOG_DIR, taskId);
+    }
+}
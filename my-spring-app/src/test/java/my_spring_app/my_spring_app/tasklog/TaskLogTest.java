@@ -0,0 +1,87 @@
+package my_spring_app.my_spring_app.tasklog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TaskLogTest {
+
+    @TempDir
+    Path dir;
+
+    private static String repeat(char c, int count) {
+        return String.valueOf(c).repeat(count);
+    }
+
+    @Test
+    void readFromReplaysWholeLogAcrossSegmentsAndTail() {
+        TaskLog log = TaskLog.create("task-1", dir);
+        // Vượt qua một segment và đẩy phần đầu ra khỏi tail trong bộ nhớ
+        String first = repeat('a', TaskLog.SEGMENT_CHARS - 10);
+        String second = repeat('b', 3 * TaskLog.TAIL_CAPACITY);
+        log.append(first);
+        log.append(second);
+
+        assertThat(log.length()).isEqualTo(first.length() + second.length());
+        assertThat(log.readFrom(TaskLog.SEGMENT_CHARS - 20, 20)).isEqualTo(repeat('a', 10) + repeat('b', 10));
+        assertThat(log.readFrom(log.length() - 5)).isEqualTo(repeat('b', 5));
+        assertThat(log.readFrom(log.length() + 100)).isEmpty();
+    }
+
+    @Test
+    void restoreFinishedLogKeepsStatusAndContent() {
+        TaskLog log = TaskLog.create("task-2", dir);
+        log.append("line 1\n");
+        log.append("line 2\n");
+        log.setProgress(100);
+        log.finish("completed", null);
+        log.close();
+
+        TaskLog restored = TaskLog.restore(dir, "task-2");
+        assertThat(restored).isNotNull();
+        assertThat(restored.getStatus()).isEqualTo("completed");
+        assertThat(restored.getProgress()).isEqualTo(100);
+        assertThat(restored.readAll()).isEqualTo("line 1\nline 2\n");
+    }
+
+    @Test
+    void restoreWithoutMetaReloadsSegmentsOfInterruptedTask() {
+        TaskLog log = TaskLog.create("task-3", dir);
+        log.append("đang chạy...\n");
+        log.close();
+
+        TaskLog restored = TaskLog.restore(dir, "task-3");
+        assertThat(restored).isNotNull();
+        assertThat(restored.isFinished()).isTrue();
+        assertThat(restored.getStatus()).isEqualTo("failed");
+        assertThat(restored.readAll()).isEqualTo("đang chạy...\n");
+        // Nạp lại không xóa segment
+        assertThat(TaskLog.restore(dir, "task-3").readAll()).isEqualTo("đang chạy...\n");
+    }
+
+    @Test
+    void createStartsFreshButRestoreOfUnknownTaskIsNull() {
+        TaskLog old = TaskLog.create("task-4", dir);
+        old.append("old run\n");
+        old.finish("failed", "boom");
+
+        TaskLog fresh = TaskLog.create("task-4", dir);
+        assertThat(fresh.length()).isZero();
+        assertThat(fresh.isFinished()).isFalse();
+        assertThat(TaskLog.restore(dir, "task-4")).isNull();
+        assertThat(TaskLog.restore(dir, "missing")).isNull();
+    }
+
+    @Test
+    void releaseMemoryKeepsLogReadableAndAppendable() {
+        TaskLog log = TaskLog.create("task-5", dir);
+        log.append("before\n");
+        log.releaseMemory();
+        log.append("after\n");
+
+        assertThat(log.readAll()).isEqualTo("before\nafter\n");
+    }
+}
@@ -0,0 +1,155 @@
+package my_spring_app.my_spring_app.tasklog;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TaskRunnerTest {
+
+    private static final Long SERVER_ID = 1L;
+
+    // Không cần ServerService thật: lệnh kill lúc hủy task lỗi thì TaskRunner chỉ log lại
+    private final TaskRunner runner = new TaskRunner(null);
+
+    @AfterEach
+    void tearDown() {
+        runner.shutdown();
+    }
+
+    /**
+     * Chạy task nền giữ server tới khi release được mở
+     */
+    private CountDownLatch holdServer(String taskId, boolean exclusive, CountDownLatch release) {
+        CountDownLatch claimed = new CountDownLatch(1);
+        runner.submit(taskId, () -> {
+            if (exclusive) {
+                runner.claimServer(taskId, SERVER_ID);
+            } else {
+                runner.claimServerShared(taskId, SERVER_ID);
+            }
+            claimed.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return claimed;
+    }
+
+    @Test
+    void sharedClaimsRunTogether() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        assertThat(holdServer("build-1", false, release).await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(holdServer("build-2", false, release).await(5, TimeUnit.SECONDS)).isTrue();
+        release.countDown();
+    }
+
+    @Test
+    void exclusiveClaimWaitsForSharedHolders() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        assertThat(holdServer("build", false, release).await(5, TimeUnit.SECONDS)).isTrue();
+
+        AtomicBoolean claimedWhileBusy = new AtomicBoolean(true);
+        runner.run("install", () -> claimedWhileBusy.set(runner.tryClaimServer("install", SERVER_ID)));
+        assertThat(claimedWhileBusy).isFalse();
+
+        release.countDown();
+        CountDownLatch exclusive = holdServer("install-2", true, new CountDownLatch(0));
+        assertThat(exclusive.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void runReleasesServerWhenBodyThrows() {
+        assertThatThrownBy(() -> runner.run("deploy", () -> {
+            runner.claimServerShared("deploy", SERVER_ID);
+            throw new IllegalStateException("build lỗi");
+        })).isInstanceOf(IllegalStateException.class);
+
+        AtomicBoolean claimed = new AtomicBoolean();
+        runner.run("install", () -> claimed.set(runner.tryClaimServer("install", SERVER_ID)));
+        assertThat(claimed).isTrue();
+    }
+
+    @Test
+    void cancelledTaskStopsWaitingForServer() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        assertThat(holdServer("install-1", true, release).await(5, TimeUnit.SECONDS)).isTrue();
+
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicBoolean ranAfterClaim = new AtomicBoolean();
+        runner.submit("install-2", () -> {
+            try {
+                runner.claimServer("install-2", SERVER_ID);
+                ranAfterClaim.set(true);
+            } finally {
+                finished.countDown();
+            }
+        });
+        // Chỉ đánh dấu hủy (không có server nào được giữ nên không chạy lệnh kill)
+        Thread.sleep(200);
+        assertThat(runner.isCancelled("install-2")).isFalse();
+        runner.cancel("install-2");
+
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(ranAfterClaim).isFalse();
+        release.countDown();
+    }
+
+    @Test
+    void waitingWhileHoldingHigherServerFailsFast() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        assertThat(holdServer("install-1", true, release).await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Giữ server 2 rồi mới xin server 1 đang bận: báo lỗi ngay thay vì chờ
+        assertThatThrownBy(() -> runner.run("install-2", () -> {
+            runner.claimServer("install-2", 2L);
+            runner.claimServer("install-2", SERVER_ID);
+        })).isInstanceOf(RuntimeException.class).hasMessageContaining("deadlock");
+        release.countDown();
+    }
+
+    @Test
+    void upgradingSharedClaimFailsFast() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        assertThat(holdServer("build", false, release).await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Đang giữ permit dùng chung mà xin độc quyền trong khi task khác cũng dùng server: không chờ
+        assertThatThrownBy(() -> runner.run("deploy", () -> {
+            runner.claimServerShared("deploy", SERVER_ID);
+            runner.claimServer("deploy", SERVER_ID);
+        })).isInstanceOf(RuntimeException.class).hasMessageContaining("deadlock");
+        release.countDown();
+    }
+
+    @Test
+    void claimServersWaitsInIdOrder() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        assertThat(holdServer("install-1", true, release).await(5, TimeUnit.SECONDS)).isTrue();
+
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicReference<Long> waitedFor = new AtomicReference<>();
+        runner.submit("install-2", () -> {
+            try {
+                runner.claimServers("install-2", List.of(2L, SERVER_ID), waitedFor::set);
+            } finally {
+                finished.countDown();
+            }
+        });
+        // Server 1 được xin trước server 2 nên task chờ mà không giữ server nào
+        Thread.sleep(200);
+        assertThat(waitedFor.get()).isEqualTo(SERVER_ID);
+        assertThat(finished.getCount()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+}